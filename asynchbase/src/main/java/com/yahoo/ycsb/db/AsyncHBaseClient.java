@@ -25,6 +25,9 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
 
 import org.hbase.async.Bytes;
 import org.hbase.async.Config;
@@ -35,6 +38,10 @@ import org.hbase.async.KeyValue;
 import org.hbase.async.PutRequest;
 import org.hbase.async.Scanner;
 
+import com.stumbleupon.async.Callback;
+import com.stumbleupon.async.Deferred;
+
+import com.yahoo.ycsb.AsyncDB;
 import com.yahoo.ycsb.ByteArrayByteIterator;
 import com.yahoo.ycsb.ByteIterator;
 import com.yahoo.ycsb.DBException;
@@ -49,8 +56,11 @@ import static com.yahoo.ycsb.workloads.CoreWorkload.TABLENAME_PROPERTY_DEFAULT;
  * This client provides a subset of the main HBase client and uses a completely
  * asynchronous pipeline for all calls. It is particularly useful for write heavy
  * workloads. It is also compatible with all production versions of HBase. 
+ * 
+ * Operations are exposed through {@link AsyncDB} so that, with openloop=true,
+ * a single client thread can keep many of them in flight.
  */
-public class AsyncHBaseClient extends com.yahoo.ycsb.DB {
+public class AsyncHBaseClient extends AsyncDB {
   public static final Charset UTF8_CHARSET = Charset.forName("UTF8");
   private static final String CLIENT_SIDE_BUFFERING_PROPERTY = "clientbuffering";
   private static final String DURABILITY_PROPERTY = "durability";
@@ -196,8 +206,8 @@ public class AsyncHBaseClient extends com.yahoo.ycsb.DB {
   }
   
   @Override
-  public Status read(String table, String key, Set<String> fields,
-                     Map<String, ByteIterator> result) {
+  public CompletionStage<Status> readAsync(String table, final String key, Set<String> fields,
+                                           final Map<String, ByteIterator> result) {
     setTable(table);
     
     final GetRequest get = new GetRequest(
@@ -206,47 +216,45 @@ public class AsyncHBaseClient extends com.yahoo.ycsb.DB {
       get.qualifiers(getQualifierList(fields));
     }
     
-    try {
-      if (debug) {
-        System.out.println("Doing read from HBase columnfamily " + 
-            Bytes.pretty(columnFamilyBytes));
-        System.out.println("Doing read for key: " + key);
-      }
-      
-      final ArrayList<KeyValue> row = client.get(get).join(joinTimeout);
-      if (row == null || row.isEmpty()) {
-        return Status.NOT_FOUND;
-      }
-      
-      // got something so populate the results
-      for (final KeyValue column : row) {
-        result.put(new String(column.qualifier()), 
-            // TODO - do we need to clone this array? YCSB may keep it in memory
-            // for a while which would mean the entire KV would hang out and won't
-            // be GC'd.
-            new ByteArrayByteIterator(column.value()));
+    if (debug) {
+      System.out.println("Doing read from HBase columnfamily " + 
+          Bytes.pretty(columnFamilyBytes));
+      System.out.println("Doing read for key: " + key);
+    }
+    
+    final CompletableFuture<Status> future = new CompletableFuture<Status>();
+    client.get(get).addCallbacks(new Callback<Object, ArrayList<KeyValue>>() {
+      @Override
+      public Object call(final ArrayList<KeyValue> row) {
+        if (row == null || row.isEmpty()) {
+          future.complete(Status.NOT_FOUND);
+          return null;
+        }
         
-        if (debug) {
-          System.out.println(
-              "Result for field: " + Bytes.pretty(column.qualifier())
-                  + " is: " + Bytes.pretty(column.value()));
+        // got something so populate the results
+        for (final KeyValue column : row) {
+          result.put(new String(column.qualifier()), 
+              // TODO - do we need to clone this array? YCSB may keep it in memory
+              // for a while which would mean the entire KV would hang out and won't
+              // be GC'd.
+              new ByteArrayByteIterator(column.value()));
+          
+          if (debug) {
+            System.out.println(
+                "Result for field: " + Bytes.pretty(column.qualifier())
+                    + " is: " + Bytes.pretty(column.value()));
+          }
         }
+        future.complete(Status.OK);
+        return null;
       }
-      return Status.OK;
-    } catch (InterruptedException e) {
-      System.err.println("Thread interrupted");
-      Thread.currentThread().interrupt();
-    } catch (Exception e) {
-      System.err.println("Failure reading from row with key " + key + 
-          ": " + e.getMessage());
-      return Status.ERROR;
-    }
-    return Status.ERROR;
+    }, new Errback(future, "Failure reading from row with key " + key));
+    return future;
   }
 
   @Override
-  public Status scan(String table, String startkey, int recordcount,
-      Set<String> fields, Vector<HashMap<String, ByteIterator>> result) {
+  public CompletionStage<Status> scanAsync(String table, final String startkey, final int recordcount,
+      Set<String> fields, final Vector<HashMap<String, ByteIterator>> result) {
     setTable(table);
     
     final Scanner scanner = client.newScanner(lastTableBytes);
@@ -258,49 +266,52 @@ public class AsyncHBaseClient extends com.yahoo.ycsb.DB {
     }
     
     // no filters? *sniff*
-    ArrayList<ArrayList<KeyValue>> rows = null;
-    try {
-      int numResults = 0;
-      while ((rows = scanner.nextRows().join(joinTimeout)) != null) {
-        for (final ArrayList<KeyValue> row : rows) {
-          final HashMap<String, ByteIterator> rowResult =
-              new HashMap<String, ByteIterator>(row.size());
-          for (final KeyValue column : row) {
-            rowResult.put(new String(column.qualifier()), 
-                // TODO - do we need to clone this array? YCSB may keep it in memory
-                // for a while which would mean the entire KV would hang out and won't
-                // be GC'd.
-                new ByteArrayByteIterator(column.value()));
-            if (debug) {
-              System.out.println("Got scan result for key: " + 
-                  Bytes.pretty(column.key()));
+    final CompletableFuture<Status> future = new CompletableFuture<Status>();
+    final Errback errback = new Errback(future, "Failure reading from row with key " + startkey, scanner);
+    scanner.nextRows().addCallbacks(new Callback<Object, ArrayList<ArrayList<KeyValue>>>() {
+      private int numResults = 0;
+
+      @Override
+      public Object call(final ArrayList<ArrayList<KeyValue>> rows) {
+        if (rows != null) {
+          for (final ArrayList<KeyValue> row : rows) {
+            final HashMap<String, ByteIterator> rowResult =
+                new HashMap<String, ByteIterator>(row.size());
+            for (final KeyValue column : row) {
+              rowResult.put(new String(column.qualifier()), 
+                  // TODO - do we need to clone this array? YCSB may keep it in memory
+                  // for a while which would mean the entire KV would hang out and won't
+                  // be GC'd.
+                  new ByteArrayByteIterator(column.value()));
+              if (debug) {
+                System.out.println("Got scan result for key: " + 
+                    Bytes.pretty(column.key()));
+              }
             }
-          }
-          result.add(rowResult);
-          numResults++;
+            result.add(rowResult);
+            numResults++;
 
-          if (numResults >= recordcount) {// if hit recordcount, bail out
-            break;
+            if (numResults >= recordcount) {// if hit recordcount, bail out
+              break;
+            }
+          }
+          if (numResults < recordcount) {
+            // fetch the next batch from the callback chain rather than blocking on it
+            scanner.nextRows().addCallbacks(this, errback);
+            return null;
           }
         }
+        scanner.close();
+        future.complete(Status.OK);
+        return null;
       }
-      scanner.close().join(joinTimeout);
-      return Status.OK;
-    } catch (InterruptedException e) {
-      System.err.println("Thread interrupted");
-      Thread.currentThread().interrupt();
-    } catch (Exception e) {
-      System.err.println("Failure reading from row with key " + startkey + 
-          ": " + e.getMessage());
-      return Status.ERROR;
-    }
-    
-    return Status.ERROR;
+    }, errback);
+    return future;
   }
 
   @Override
-  public Status update(String table, String key,
-                       Map<String, ByteIterator> values) {
+  public CompletionStage<Status> updateAsync(String table, final String key,
+                                             Map<String, ByteIterator> values) {
     setTable(table);
     
     if (debug) {
@@ -327,33 +338,22 @@ public class AsyncHBaseClient extends com.yahoo.ycsb.DB {
     }
     if (!clientSideBuffering) {
       put.setBufferable(false);
-      try {
-        client.put(put).join(joinTimeout);
-      } catch (InterruptedException e) {
-        System.err.println("Thread interrupted");
-        Thread.currentThread().interrupt();
-      } catch (Exception e) {
-        System.err.println("Failure reading from row with key " + key + 
-            ": " + e.getMessage());
-        return Status.ERROR;
-      }
-    } else {
-      // hooray! Asynchronous write. But without a callback and an async
-      // YCSB call we don't know whether it succeeded or not
-      client.put(put);
+      return complete(client.put(put), "Failure writing to row with key " + key);
     }
-    
-    return Status.OK;
+    // hooray! Asynchronous write. But with client side buffering the put may
+    // sit in the buffer for a while so we don't wait to learn whether it succeeded
+    client.put(put);
+    return CompletableFuture.completedFuture(Status.OK);
   }
 
   @Override
-  public Status insert(String table, String key,
-                       Map<String, ByteIterator> values) {
-    return update(table, key, values);
+  public CompletionStage<Status> insertAsync(String table, String key,
+                                             Map<String, ByteIterator> values) {
+    return updateAsync(table, key, values);
   }
 
   @Override
-  public Status delete(String table, String key) {
+  public CompletionStage<Status> deleteAsync(String table, final String key) {
     setTable(table);
     
     if (debug) {
@@ -367,22 +367,76 @@ public class AsyncHBaseClient extends com.yahoo.ycsb.DB {
     }
     if (!clientSideBuffering) {
       delete.setBufferable(false);
-      try {
-        client.delete(delete).join(joinTimeout);
-      } catch (InterruptedException e) {
-        System.err.println("Thread interrupted");
-        Thread.currentThread().interrupt();
-      } catch (Exception e) {
-        System.err.println("Failure reading from row with key " + key + 
-            ": " + e.getMessage());
-        return Status.ERROR;
+      return complete(client.delete(delete), "Failure deleting row with key " + key);
+    }
+    // hooray! Asynchronous write. But with client side buffering the delete may
+    // sit in the buffer for a while so we don't wait to learn whether it succeeded
+    client.delete(delete);
+    return CompletableFuture.completedFuture(Status.OK);
+  }
+
+  /**
+   * Blocks for at most {@code jointimeout} milliseconds, as the synchronous calls did before.
+   */
+  @Override
+  protected Status await(CompletionStage<Status> stage) {
+    try {
+      return stage.toCompletableFuture().get(joinTimeout, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      System.err.println("Thread interrupted");
+      Thread.currentThread().interrupt();
+    } catch (Exception e) {
+      System.err.println("Operation did not complete: " + e.getMessage());
+    }
+    return Status.ERROR;
+  }
+
+  /**
+   * Little helper to turn the deferred result of a mutation into a status.
+   * @param deferred The pending mutation.
+   * @param failureMessage What to log if the mutation fails.
+   * @return A stage completing with OK once the mutation has been acknowledged.
+   */
+  private static CompletionStage<Status> complete(final Deferred<Object> deferred,
+                                                  final String failureMessage) {
+    final CompletableFuture<Status> future = new CompletableFuture<Status>();
+    deferred.addCallbacks(new Callback<Object, Object>() {
+      @Override
+      public Object call(final Object arg) {
+        future.complete(Status.OK);
+        return null;
+      }
+    }, new Errback(future, failureMessage));
+    return future;
+  }
+
+  /**
+   * Completes a pending operation with an error when its deferred fails, closing its scanner if it has one.
+   */
+  private static final class Errback implements Callback<Object, Exception> {
+    private final CompletableFuture<Status> future;
+    private final String failureMessage;
+    private final Scanner scanner;
+
+    private Errback(final CompletableFuture<Status> future, final String failureMessage) {
+      this(future, failureMessage, null);
+    }
+
+    private Errback(final CompletableFuture<Status> future, final String failureMessage, final Scanner scanner) {
+      this.future = future;
+      this.failureMessage = failureMessage;
+      this.scanner = scanner;
+    }
+
+    @Override
+    public Object call(final Exception e) {
+      System.err.println(failureMessage + ": " + e.getMessage());
+      if (scanner != null) {
+        scanner.close();
       }
-    } else {
-      // hooray! Asynchronous write. But without a callback and an async
-      // YCSB call we don't know whether it succeeded or not
-      client.delete(delete);
+      future.complete(Status.ERROR);
+      return null;
     }
-    return Status.OK;
   }
 
   /**
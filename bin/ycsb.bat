@@ -104,8 +104,10 @@ FOR /F "tokens=1 delims=-" %%G IN ("%BINDING_NAME%") DO (
   SET BINDING_DIR=%%G
 )
 
-@REM The 'basic' binding is core functionality
+@REM The 'basic' and 'memory' bindings are core functionality
+IF "%BINDING_NAME%" == "memory" GOTO basic
 IF NOT "%BINDING_NAME%" == "basic" GOTO noBasic
+:basic
 SET BINDING_DIR=core
 :noBasic
 
@@ -158,7 +160,7 @@ GOTO classpathComplete
 IF EXIST "%YCSB_HOME%\%BINDING_DIR%\target\*.jar" GOTO gotJars
 
 @REM Call mvn to build source checkout.
-IF "%BINDING_NAME%" == "basic" GOTO buildCore
+IF "%BINDING_DIR%" == "core" GOTO buildCore
 SET MVN_PROJECT=%BINDING_DIR%-binding
 goto gotMvnProject
 :buildCore
@@ -109,8 +109,8 @@ BINDING_CLASS=$(echo "$BINDING_LINE" | cut -d':' -f2)
 #   (e.g. cassandra-7 & cassandra-8)
 BINDING_DIR=$(echo "$BINDING_NAME" | cut -d'-' -f1)
 
-# The 'basic' binding is core functionality
-if [ "$BINDING_NAME" = "basic" ] ; then
+# The 'basic' and 'memory' bindings are core functionality
+if [ "$BINDING_NAME" = "basic" ] || [ "$BINDING_NAME" = "memory" ] ; then
   BINDING_DIR=core
 fi
 
@@ -188,7 +188,7 @@ else
 
     # Call mvn to build source checkout.
     if [ ! -e "$f" ] ; then
-      if [ "$BINDING_NAME" = "basic" ] ; then
+      if [ "$BINDING_DIR" = "core" ] ; then
         MVN_PROJECT=core
       else
         MVN_PROJECT="$BINDING_DIR"-binding
@@ -0,0 +1,266 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import org.HdrHistogram.HistogramIterationValue;
+import org.HdrHistogram.HistogramLogReader;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The distribution of the times between the starts of two operations, as a multiple of their mean.
+ * <p>
+ * A {@link RateController} adds up these multiples to number the operations, so the rate it follows sets the mean
+ * time between operations and the distribution only sets their spread. Implementations are called concurrently by
+ * every client thread and must be thread-safe.
+ * </p>
+ */
+public abstract class ArrivalDistribution {
+  /** Operations evenly spaced. */
+  public static final ArrivalDistribution CONSTANT = new ArrivalDistribution() {
+    @Override
+    public double next() {
+      return 1;
+    }
+  };
+
+  /** Operations starting independently of each other: a Poisson process, with exponential inter-arrival times. */
+  public static final ArrivalDistribution POISSON = new ArrivalDistribution() {
+    @Override
+    public double next() {
+      // 1 - u is in (0, 1], so the log is finite
+      return -Math.log(1 - ThreadLocalRandom.current().nextDouble());
+    }
+  };
+
+  /**
+   * @return The time until the next operation starts, as a multiple of the mean time between operations.
+   */
+  public abstract double next();
+
+  /**
+   * Inter-arrival times drawn from a histogram.
+   */
+  public static final class Histogram extends ArrivalDistribution {
+    private final double[] values;
+    private final double[] cumulative;
+    private final double meanMicros;
+
+    /**
+     * @param values Inter-arrival times, in microseconds.
+     * @param counts How many times each of them was seen.
+     * @throws IllegalArgumentException If a value or count is negative, or the mean is not positive.
+     */
+    public Histogram(double[] values, double[] counts) {
+      if (values.length != counts.length || values.length == 0) {
+        throw new IllegalArgumentException("An inter-arrival histogram needs as many counts as values");
+      }
+      cumulative = new double[counts.length];
+      double total = 0;
+      double sum = 0;
+      for (int i = 0; i < values.length; i++) {
+        if (!(values[i] >= 0) || !(counts[i] >= 0)) {
+          throw new IllegalArgumentException("Inter-arrival times and counts cannot be negative");
+        }
+        total += counts[i];
+        sum += values[i] * counts[i];
+        cumulative[i] = total;
+      }
+      if (!(sum > 0)) {
+        throw new IllegalArgumentException("The inter-arrival histogram must have a positive mean");
+      }
+      meanMicros = sum / total;
+      this.values = new double[values.length];
+      for (int i = 0; i < values.length; i++) {
+        this.values[i] = values[i] / meanMicros;
+      }
+    }
+
+    /**
+     * Read a histogram with one inter-arrival time, in microseconds, per line, optionally followed by how many
+     * times it was seen. Empty lines and text after a '#' are ignored.
+     *
+     * @throws IOException If the file cannot be read.
+     * @throws IllegalArgumentException If the file does not hold a valid histogram.
+     */
+    public static Histogram fromFile(String file) throws IOException {
+      List<String> lines = Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8);
+      double[] values = new double[lines.size()];
+      double[] counts = new double[lines.size()];
+      int n = 0;
+      for (String line : lines) {
+        int comment = line.indexOf('#');
+        String[] tokens = (comment >= 0 ? line.substring(0, comment) : line).trim().split("[\\s,]+");
+        if (tokens.length == 1 && tokens[0].isEmpty()) {
+          continue;
+        }
+        if (tokens.length > 2) {
+          throw new IllegalArgumentException("Invalid inter-arrival histogram line '" + line
+              + "', expected a time in microseconds and an optional count");
+        }
+        try {
+          values[n] = Double.parseDouble(tokens[0]);
+          counts[n] = tokens.length == 2 ? Double.parseDouble(tokens[1]) : 1;
+        } catch (NumberFormatException e) {
+          throw new IllegalArgumentException("Invalid inter-arrival histogram line '" + line + "'");
+        }
+        n++;
+      }
+      return new Histogram(Arrays.copyOf(values, n), Arrays.copyOf(counts, n));
+    }
+
+    /**
+     * Read a histogram from an HdrHistogram log, such as the hdrhistogram measurement writes with
+     * hdrhistogram.fileoutput, adding up all of its intervals. Its values are taken as microseconds.
+     *
+     * @throws IOException If the file cannot be read.
+     * @throws IllegalArgumentException If the log holds no values.
+     */
+    public static Histogram fromHdrLog(String file) throws IOException {
+      org.HdrHistogram.Histogram total = null;
+      try (InputStream in = new FileInputStream(file)) {
+        HistogramLogReader reader = new HistogramLogReader(in);
+        org.HdrHistogram.EncodableHistogram interval;
+        while ((interval = reader.nextIntervalHistogram()) != null) {
+          if (total == null) {
+            total = new org.HdrHistogram.Histogram(3);
+          }
+          if (!(interval instanceof org.HdrHistogram.AbstractHistogram)) {
+            throw new IllegalArgumentException("The HdrHistogram log " + file + " does not hold integer values");
+          }
+          total.add((org.HdrHistogram.AbstractHistogram) interval);
+        }
+      }
+      if (total == null || total.getTotalCount() == 0) {
+        throw new IllegalArgumentException("The HdrHistogram log " + file + " holds no values");
+      }
+      List<double[]> buckets = new ArrayList<>();
+      for (HistogramIterationValue value : total.recordedValues()) {
+        buckets.add(new double[] {total.highestEquivalentValue(value.getValueIteratedTo()),
+            value.getCountAtValueIteratedTo()});
+      }
+      double[] values = new double[buckets.size()];
+      double[] counts = new double[buckets.size()];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = buckets.get(i)[0];
+        counts[i] = buckets.get(i)[1];
+      }
+      return new Histogram(values, counts);
+    }
+
+    /**
+     * @return The mean inter-arrival time, in microseconds.
+     */
+    public double getMeanMicros() {
+      return meanMicros;
+    }
+
+    @Override
+    public double next() {
+      double u = ThreadLocalRandom.current().nextDouble() * cumulative[cumulative.length - 1];
+      int i = Arrays.binarySearch(cumulative, u);
+      // the first bucket whose cumulative count is above u, skipping empty buckets on an exact match
+      i = i < 0 ? -i - 1 : i + 1;
+      while (i < cumulative.length - 1 && cumulative[i] <= u) {
+        i++;
+      }
+      return values[Math.min(i, values.length - 1)];
+    }
+  }
+
+  /**
+   * Times given by some of their percentiles, such as 50:200,99:2000,100:10000 for a median of 200us, a 99th
+   * percentile of 2ms and a maximum of 10ms. Times between two given percentiles are spread evenly between their
+   * values; below the first given percentile, times are its value.
+   */
+  public static final class Percentiles extends ArrivalDistribution {
+    private final double[] percentiles;
+    private final double[] values;
+    private final double meanMicros;
+
+    /**
+     * @param spec Comma separated percentile:microseconds pairs, in increasing order of both.
+     * @throws IllegalArgumentException If the spec is not valid.
+     */
+    public Percentiles(String spec) {
+      String[] pairs = spec.trim().split("\\s*,\\s*");
+      percentiles = new double[pairs.length + 1];
+      values = new double[pairs.length + 1];
+      for (int i = 0; i < pairs.length; i++) {
+        String[] pair = pairs[i].split(":");
+        if (pair.length != 2) {
+          throw new IllegalArgumentException("Invalid percentile '" + pairs[i] + "', expected percentile:microseconds");
+        }
+        try {
+          percentiles[i] = Double.parseDouble(pair[0].trim());
+          values[i] = Double.parseDouble(pair[1].trim());
+        } catch (NumberFormatException e) {
+          throw new IllegalArgumentException("Invalid percentile '" + pairs[i] + "', expected percentile:microseconds");
+        }
+        if (!(percentiles[i] > 0 && percentiles[i] <= 100) || !(values[i] >= 0)
+            || i > 0 && (percentiles[i] <= percentiles[i - 1] || values[i] < values[i - 1])) {
+          throw new IllegalArgumentException("Percentiles must be in (0, 100] and increase, with times that do not "
+              + "decrease, got '" + spec + "'");
+        }
+      }
+      // above the last given percentile, times are its value
+      percentiles[pairs.length] = 100;
+      values[pairs.length] = values[pairs.length - 1];
+
+      double sum = percentiles[0] * values[0];
+      for (int i = 1; i < values.length; i++) {
+        sum += (percentiles[i] - percentiles[i - 1]) * (values[i] + values[i - 1]) / 2;
+      }
+      meanMicros = sum / 100;
+      if (!(meanMicros > 0)) {
+        throw new IllegalArgumentException("The percentiles must have a positive mean, got '" + spec + "'");
+      }
+    }
+
+    /**
+     * @return The mean time, in microseconds.
+     */
+    public double getMeanMicros() {
+      return meanMicros;
+    }
+
+    @Override
+    public double next() {
+      double u = ThreadLocalRandom.current().nextDouble() * 100;
+      int i = Arrays.binarySearch(percentiles, u);
+      if (i >= 0) {
+        return values[i] / meanMicros;
+      }
+      i = -i - 1;
+      if (i == 0) {
+        return values[0] / meanMicros;
+      }
+      double fraction = (u - percentiles[i - 1]) / (percentiles[i] - percentiles[i - 1]);
+      return (values[i - 1] + fraction * (values[i] - values[i - 1])) / meanMicros;
+    }
+  }
+}
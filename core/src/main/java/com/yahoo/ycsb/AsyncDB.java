@@ -0,0 +1,143 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A layer for accessing a database whose client library is asynchronous.
+ * <p>
+ * Each operation returns a {@link CompletionStage} that completes with the result of the operation once the
+ * database has answered, so a single client thread can keep many requests in flight when the client runs
+ * open-loop (see {@link OpenLoopDB}). Result maps passed to reads and scans are filled in before the stage
+ * completes.
+ * </p>
+ * <p>
+ * The synchronous methods inherited from {@link DB} block on the corresponding asynchronous call, so an
+ * AsyncDB also works with the regular closed-loop client.
+ * </p>
+ */
+public abstract class AsyncDB extends DB {
+
+  /**
+   * Read a record from the database. Each field/value pair from the result will be stored in a HashMap.
+   *
+   * @param table The name of the table
+   * @param key The record key of the record to read.
+   * @param fields The list of fields to read, or null for all of them
+   * @param result A HashMap of field/value pairs for the result
+   * @return A stage completing with the result of the operation.
+   */
+  public abstract CompletionStage<Status> readAsync(String table, String key, Set<String> fields,
+                                                    Map<String, ByteIterator> result);
+
+  /**
+   * Perform a range scan for a set of records in the database. Each field/value pair from the result will be stored
+   * in a HashMap.
+   *
+   * @param table The name of the table
+   * @param startkey The record key of the first record to read.
+   * @param recordcount The number of records to read
+   * @param fields The list of fields to read, or null for all of them
+   * @param result A Vector of HashMaps, where each HashMap is a set field/value pairs for one record
+   * @return A stage completing with the result of the operation.
+   */
+  public abstract CompletionStage<Status> scanAsync(String table, String startkey, int recordcount,
+                                                    Set<String> fields, Vector<HashMap<String, ByteIterator>> result);
+
+  /**
+   * Update a record in the database. Any field/value pairs in the specified values HashMap will be written into the
+   * record with the specified record key, overwriting any existing values with the same field name.
+   *
+   * @param table The name of the table
+   * @param key The record key of the record to write.
+   * @param values A HashMap of field/value pairs to update in the record
+   * @return A stage completing with the result of the operation.
+   */
+  public abstract CompletionStage<Status> updateAsync(String table, String key, Map<String, ByteIterator> values);
+
+  /**
+   * Insert a record in the database. Any field/value pairs in the specified values HashMap will be written into the
+   * record with the specified record key.
+   *
+   * @param table The name of the table
+   * @param key The record key of the record to insert.
+   * @param values A HashMap of field/value pairs to insert in the record
+   * @return A stage completing with the result of the operation.
+   */
+  public abstract CompletionStage<Status> insertAsync(String table, String key, Map<String, ByteIterator> values);
+
+  /**
+   * Delete a record from the database.
+   *
+   * @param table The name of the table
+   * @param key The record key of the record to delete.
+   * @return A stage completing with the result of the operation.
+   */
+  public abstract CompletionStage<Status> deleteAsync(String table, String key);
+
+  @Override
+  public Status read(String table, String key, Set<String> fields, Map<String, ByteIterator> result) {
+    return await(readAsync(table, key, fields, result));
+  }
+
+  @Override
+  public Status scan(String table, String startkey, int recordcount, Set<String> fields,
+                     Vector<HashMap<String, ByteIterator>> result) {
+    return await(scanAsync(table, startkey, recordcount, fields, result));
+  }
+
+  @Override
+  public Status update(String table, String key, Map<String, ByteIterator> values) {
+    return await(updateAsync(table, key, values));
+  }
+
+  @Override
+  public Status insert(String table, String key, Map<String, ByteIterator> values) {
+    return await(insertAsync(table, key, values));
+  }
+
+  @Override
+  public Status delete(String table, String key) {
+    return await(deleteAsync(table, key));
+  }
+
+  /**
+   * Blocks until the operation completes. Bindings with a client side timeout of their own may override this
+   * to apply it.
+   *
+   * @param stage The pending operation.
+   * @return The result of the operation, or {@link Status#ERROR} if it completed exceptionally.
+   */
+  protected Status await(CompletionStage<Status> stage) {
+    try {
+      return stage.toCompletableFuture().get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return Status.ERROR;
+    } catch (ExecutionException e) {
+      System.err.println("Asynchronous operation failed: " + e.getCause());
+      return Status.ERROR;
+    }
+  }
+}
@@ -0,0 +1,172 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import org.apache.htrace.core.TraceScope;
+import org.apache.htrace.core.Tracer;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Wrapper around an {@link AsyncDB} that measures latencies and counts return codes.
+ * <p>
+ * The start time of an asynchronous operation is taken on the issuing thread and the latency is recorded by
+ * whichever thread completes the operation. Synchronous calls go through a regular {@link DBWrapper}, so both
+ * paths report under the same measurement names.
+ * </p>
+ */
+public class AsyncDBWrapper extends AsyncDB {
+  private final AsyncDB db;
+  private final DBWrapper syncWrapper;
+  private final Measurements measurements;
+  private final Tracer tracer;
+
+  private final String scopeStringDelete;
+  private final String scopeStringInsert;
+  private final String scopeStringRead;
+  private final String scopeStringScan;
+  private final String scopeStringUpdate;
+
+  public AsyncDBWrapper(final AsyncDB db, final Tracer tracer) {
+    this.db = db;
+    this.tracer = tracer;
+    syncWrapper = new DBWrapper(db, tracer);
+    measurements = Measurements.getMeasurements();
+    final String simple = db.getClass().getSimpleName();
+    scopeStringDelete = simple + "#deleteAsync";
+    scopeStringInsert = simple + "#insertAsync";
+    scopeStringRead = simple + "#readAsync";
+    scopeStringScan = simple + "#scanAsync";
+    scopeStringUpdate = simple + "#updateAsync";
+  }
+
+  @Override
+  public void setProperties(Properties p) {
+    db.setProperties(p);
+  }
+
+  @Override
+  public Properties getProperties() {
+    return db.getProperties();
+  }
+
+  @Override
+  public void init() throws DBException {
+    syncWrapper.init();
+  }
+
+  @Override
+  public void cleanup() throws DBException {
+    syncWrapper.cleanup();
+  }
+
+  @Override
+  public CompletionStage<Status> readAsync(String table, String key, Set<String> fields,
+                                           Map<String, ByteIterator> result) {
+    try (final TraceScope span = tracer.newScope(scopeStringRead)) {
+      long ist = measurements.getIntendedtartTimeNs();
+      long st = System.nanoTime();
+      return measureOnCompletion(DBWrapper.READ, db.readAsync(table, key, fields, result), ist, st);
+    }
+  }
+
+  @Override
+  public CompletionStage<Status> scanAsync(String table, String startkey, int recordcount, Set<String> fields,
+                                           Vector<HashMap<String, ByteIterator>> result) {
+    try (final TraceScope span = tracer.newScope(scopeStringScan)) {
+      long ist = measurements.getIntendedtartTimeNs();
+      long st = System.nanoTime();
+      return measureOnCompletion(DBWrapper.SCAN, db.scanAsync(table, startkey, recordcount, fields, result), ist, st);
+    }
+  }
+
+  @Override
+  public CompletionStage<Status> updateAsync(String table, String key, Map<String, ByteIterator> values) {
+    try (final TraceScope span = tracer.newScope(scopeStringUpdate)) {
+      long ist = measurements.getIntendedtartTimeNs();
+      long st = System.nanoTime();
+      return measureOnCompletion(DBWrapper.UPDATE, db.updateAsync(table, key, values), ist, st);
+    }
+  }
+
+  @Override
+  public CompletionStage<Status> insertAsync(String table, String key, Map<String, ByteIterator> values) {
+    try (final TraceScope span = tracer.newScope(scopeStringInsert)) {
+      long ist = measurements.getIntendedtartTimeNs();
+      long st = System.nanoTime();
+      return measureOnCompletion(DBWrapper.INSERT, db.insertAsync(table, key, values), ist, st);
+    }
+  }
+
+  @Override
+  public CompletionStage<Status> deleteAsync(String table, String key) {
+    try (final TraceScope span = tracer.newScope(scopeStringDelete)) {
+      long ist = measurements.getIntendedtartTimeNs();
+      long st = System.nanoTime();
+      return measureOnCompletion(DBWrapper.DELETE, db.deleteAsync(table, key), ist, st);
+    }
+  }
+
+  /**
+   * Records the latency and return code once the operation completes. A stage completing exceptionally is
+   * reported, and handed on, as {@link Status#ERROR}.
+   */
+  private CompletionStage<Status> measureOnCompletion(final int op, CompletionStage<Status> stage,
+                                                      final long intendedStartTimeNanos,
+                                                      final long startTimeNanos) {
+    return stage.handle((res, throwable) -> {
+        long en = System.nanoTime();
+        Status status = throwable == null ? res : Status.ERROR;
+        syncWrapper.measure(op, status, intendedStartTimeNanos, startTimeNanos, en);
+        syncWrapper.reportStatus(op, status);
+        return status;
+      });
+  }
+
+  @Override
+  public Status read(String table, String key, Set<String> fields, Map<String, ByteIterator> result) {
+    return syncWrapper.read(table, key, fields, result);
+  }
+
+  @Override
+  public Status scan(String table, String startkey, int recordcount, Set<String> fields,
+                     Vector<HashMap<String, ByteIterator>> result) {
+    return syncWrapper.scan(table, startkey, recordcount, fields, result);
+  }
+
+  @Override
+  public Status update(String table, String key, Map<String, ByteIterator> values) {
+    return syncWrapper.update(table, key, values);
+  }
+
+  @Override
+  public Status insert(String table, String key, Map<String, ByteIterator> values) {
+    return syncWrapper.insert(table, key, values);
+  }
+
+  @Override
+  public Status delete(String table, String key) {
+    return syncWrapper.delete(table, key);
+  }
+}
@@ -16,6 +16,10 @@
  */
 package com.yahoo.ycsb;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
 /**
  *  A ByteIterator that iterates through a byte array.
  */
@@ -51,6 +55,43 @@ public class ByteArrayByteIterator extends ByteIterator {
     return ret;
   }
 
+  @Override
+  public int nextBuf(byte[] buf, int bufOff) {
+    int n = Math.min(buf.length - bufOff, len - off);
+    System.arraycopy(str, off, buf, bufOff, n);
+    off += n;
+    return bufOff + n;
+  }
+
+  @Override
+  public int nextBuf(ByteBuffer dst) {
+    int n = Math.min(dst.remaining(), len - off);
+    dst.put(str, off, n);
+    off += n;
+    return n;
+  }
+
+  @Override
+  public ByteBuffer toByteBuffer() {
+    ByteBuffer view = ByteBuffer.wrap(str, off, len - off).slice().asReadOnlyBuffer();
+    off = len;
+    return view;
+  }
+
+  @Override
+  public byte[] toArray() {
+    byte[] ret = Arrays.copyOfRange(str, off, len);
+    off = len;
+    return ret;
+  }
+
+  @Override
+  public String toString() {
+    String ret = new String(str, off, len - off, StandardCharsets.UTF_8);
+    off = len;
+    return ret;
+  }
+
   @Override
   public long bytesLeft() {
     return len - off;
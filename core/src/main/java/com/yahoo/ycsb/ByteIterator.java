@@ -17,8 +17,7 @@
 package com.yahoo.ycsb;
 
 import java.nio.ByteBuffer;
-import java.nio.CharBuffer;
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.Iterator;
 
 /**
@@ -42,7 +41,11 @@ import java.util.Iterator;
  * The StringByteIterator class contains a number of convenience methods for
  * backend drivers that convert between Map&lt;String,String&gt; and
  * Map&lt;String,ByteBuffer&gt;.
- *
+ * <p>
+ * Drivers that can send a {@link ByteBuffer} should use {@link #toByteBuffer()}, which does not copy values backed
+ * by an array, or {@link #nextBuf(ByteBuffer)} to fill buffers of their own. {@link #bytesLeft()} gives the size of
+ * the value up front, without consuming it.
+ * </p>
  */
 public abstract class ByteIterator implements Iterator<Byte> {
 
@@ -66,6 +69,21 @@ public abstract class ByteIterator implements Iterator<Byte> {
     return sz;
   }
 
+  /**
+   * Transfers as many of the remaining bytes as fit into a buffer, at its position.
+   *
+   * @return The number of bytes transferred.
+   */
+  public int nextBuf(ByteBuffer dst) {
+    int n = 0;
+    while (dst.hasRemaining() && hasNext()) {
+      dst.put(nextByte());
+      n++;
+    }
+    return n;
+  }
+
+  /** @return The number of bytes not yet consumed. Does not consume anything. */
   public abstract long bytesLeft();
 
   @Override
@@ -84,9 +102,16 @@ public abstract class ByteIterator implements Iterator<Byte> {
   
   /** Consumes remaining contents of this object, and returns them as a string. */
   public String toString() {
-    Charset cset = Charset.forName("UTF-8");
-    CharBuffer cb = cset.decode(ByteBuffer.wrap(this.toArray()));
-    return cb.toString();
+    return new String(toArray(), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Consumes remaining contents of this object, and returns them as a buffer, positioned at the first byte.
+   * Implementations backed by an array return a read-only view of it rather than a copy, so the buffer must be
+   * treated as read-only and not be kept longer than the value itself.
+   */
+  public ByteBuffer toByteBuffer() {
+    return ByteBuffer.wrap(toArray());
   }
 
   /** Consumes remaining contents of this object, and returns them as a byte array. */
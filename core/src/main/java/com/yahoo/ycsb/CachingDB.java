@@ -0,0 +1,303 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import com.yahoo.ycsb.cache.Cache;
+import com.yahoo.ycsb.measurements.CacheStatistics;
+import com.yahoo.ycsb.measurements.Measurements;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+
+/**
+ * Wrapper around a DB that keeps recently read records in a cache on the client, as a near-cache in front of a
+ * database would, to size such a cache with the key distributions of a workload.
+ * <p>
+ * {@link DBFactory} puts it between the {@link DBWrapper} and the DB when {@value #SIZE_PROPERTY} is set, so the
+ * operations are measured with their hits and misses. The cache is shared by all the DB instances of the client.
+ * A read that misses reads the whole record from the DB and caches it, whatever fields were asked for. Writes always
+ * go to the DB; then, with the write-through policy, an insert caches its record and an update changes the cached
+ * record if there is one, while with the write-invalidate policy both drop the record from the cache. Deletes drop
+ * it too, and scans bypass the cache. As with most near-caches, a read that misses while another thread writes the
+ * same record may cache the older version.
+ * </p>
+ * <p>
+ * The hits, misses, evictions and rejections are exported as CACHE, see {@link CacheStatistics}, and the latencies
+ * of reads that hit and missed are measured as READ-CACHE-HIT and READ-CACHE-MISS.
+ * </p>
+ * Properties:
+ * <UL>
+ * <LI><b>cache.size</b>: the capacity of the cache, in bytes of keys, field names and values
+ * <LI><b>cache.policy</b>: the eviction policy, lru, clock or wtinylfu (default: wtinylfu)
+ * <LI><b>cache.write</b>: what a write does to the cache, through or invalidate (default: invalidate)
+ * <LI><b>cache.shards</b>: the number of independently locked parts of the cache, each with an equal share of its
+ * capacity (default: 16)
+ * </UL>
+ */
+public class CachingDB extends DB {
+  public static final String SIZE_PROPERTY = "cache.size";
+  public static final String POLICY_PROPERTY = "cache.policy";
+  public static final String POLICY_PROPERTY_DEFAULT = Cache.W_TINY_LFU;
+  public static final String WRITE_PROPERTY = "cache.write";
+  public static final String WRITE_PROPERTY_DEFAULT = "invalidate";
+  public static final String SHARDS_PROPERTY = "cache.shards";
+  public static final String SHARDS_PROPERTY_DEFAULT = "16";
+
+  /** Guards {@link #sharedCache} and {@link #instances}. */
+  private static final Object MUTEX = new Object();
+  private static Cache<Record> sharedCache;
+  private static int instances = 0;
+
+  private final DB db;
+  private Cache<Record> cache;
+  private boolean writeThrough;
+  private Measurements measurements;
+  private CacheStatistics statistics;
+  private int hitHandle;
+  private int missHandle;
+
+  public CachingDB(DB db) {
+    this.db = db;
+  }
+
+  /**
+   * @return Whether the properties ask for a cache.
+   */
+  public static boolean isEnabled(Properties props) {
+    return props.getProperty(SIZE_PROPERTY) != null;
+  }
+
+  @Override
+  public void setProperties(Properties p) {
+    db.setProperties(p);
+  }
+
+  @Override
+  public Properties getProperties() {
+    return db.getProperties();
+  }
+
+  @Override
+  public void init() throws DBException {
+    Properties props = getProperties();
+    String write = props.getProperty(WRITE_PROPERTY, WRITE_PROPERTY_DEFAULT);
+    switch (write) {
+    case "through":
+      writeThrough = true;
+      break;
+    case "invalidate":
+      writeThrough = false;
+      break;
+    default:
+      throw new DBException("Unknown " + WRITE_PROPERTY + " '" + write + "', expected through or invalidate");
+    }
+
+    synchronized (MUTEX) {
+      if (sharedCache == null) {
+        try {
+          long size = Long.parseLong(props.getProperty(SIZE_PROPERTY));
+          int shards = Integer.parseInt(props.getProperty(SHARDS_PROPERTY, SHARDS_PROPERTY_DEFAULT));
+          sharedCache = new Cache<>(props.getProperty(POLICY_PROPERTY, POLICY_PROPERTY_DEFAULT), size, shards,
+              Measurements.getMeasurements().getCacheStatistics()::rejected);
+        } catch (IllegalArgumentException e) {
+          throw new DBException("Invalid cache properties: " + e.getMessage(), e);
+        }
+      }
+      cache = sharedCache;
+      instances++;
+    }
+
+    measurements = Measurements.getMeasurements();
+    statistics = measurements.getCacheStatistics();
+    hitHandle = measurements.getOperationHandle("READ-CACHE-HIT");
+    missHandle = measurements.getOperationHandle("READ-CACHE-MISS");
+    db.init();
+  }
+
+  @Override
+  public void cleanup() throws DBException {
+    try {
+      db.cleanup();
+    } finally {
+      statistics.setSize(cache.size(), cache.getWeight());
+      synchronized (MUTEX) {
+        if (--instances == 0) {
+          sharedCache = null;
+        }
+      }
+    }
+  }
+
+  private static String cacheKey(String table, String key) {
+    return table + '\0' + key;
+  }
+
+  @Override
+  public Status read(String table, String key, Set<String> fields, Map<String, ByteIterator> result) {
+    long start = System.nanoTime();
+    String cacheKey = cacheKey(table, key);
+    Record record = cache.get(cacheKey);
+    if (record != null) {
+      record.copyTo(fields, result);
+      statistics.hit();
+      measurements.measure(hitHandle, (int) ((System.nanoTime() - start) / 1000));
+      return Status.OK;
+    }
+
+    Map<String, ByteIterator> values = new HashMap<>();
+    Status status = db.read(table, key, null, values);
+    if (status.isOk()) {
+      record = new Record(values);
+      statistics.evicted(cache.put(cacheKey, record, record.getWeight(cacheKey)));
+      record.copyTo(fields, result);
+    }
+    statistics.miss();
+    measurements.measure(missHandle, (int) ((System.nanoTime() - start) / 1000));
+    return status;
+  }
+
+  @Override
+  public Status scan(String table, String startkey, int recordcount, Set<String> fields,
+                     Vector<HashMap<String, ByteIterator>> result) {
+    return db.scan(table, startkey, recordcount, fields, result);
+  }
+
+  @Override
+  public Status update(String table, String key, Map<String, ByteIterator> values) {
+    String cacheKey = cacheKey(table, key);
+    if (!writeThrough) {
+      Status status = db.update(table, key, values);
+      cache.remove(cacheKey);
+      return status;
+    }
+    Record update = new Record(values);
+    Status status = db.update(table, key, update.toByteIterators());
+    Record cached = cache.get(cacheKey);
+    if (!status.isOk()) {
+      cache.remove(cacheKey);
+    } else if (cached != null) {
+      Record merged = cached.merge(update);
+      statistics.evicted(cache.put(cacheKey, merged, merged.getWeight(cacheKey)));
+    }
+    return status;
+  }
+
+  @Override
+  public Status insert(String table, String key, Map<String, ByteIterator> values) {
+    String cacheKey = cacheKey(table, key);
+    if (!writeThrough) {
+      Status status = db.insert(table, key, values);
+      cache.remove(cacheKey);
+      return status;
+    }
+    Record record = new Record(values);
+    Status status = db.insert(table, key, record.toByteIterators());
+    if (status.isOk()) {
+      statistics.evicted(cache.put(cacheKey, record, record.getWeight(cacheKey)));
+    } else {
+      cache.remove(cacheKey);
+    }
+    return status;
+  }
+
+  @Override
+  public Status delete(String table, String key) {
+    Status status = db.delete(table, key);
+    cache.remove(cacheKey(table, key));
+    return status;
+  }
+
+  /**
+   * The fields of a cached record, as bytes, sorted by name.
+   */
+  private static final class Record {
+    private final String[] names;
+    private final byte[][] values;
+
+    private Record(String[] names, byte[][] values) {
+      this.names = names;
+      this.values = values;
+    }
+
+    /**
+     * Read the values, which can only be read once.
+     */
+    private Record(Map<String, ByteIterator> fields) {
+      names = fields.keySet().toArray(new String[fields.size()]);
+      Arrays.sort(names);
+      values = new byte[names.length][];
+      for (int i = 0; i < names.length; i++) {
+        values[i] = fields.get(names[i]).toArray();
+      }
+    }
+
+    /**
+     * @return The fields, to be read again.
+     */
+    private Map<String, ByteIterator> toByteIterators() {
+      Map<String, ByteIterator> fields = new HashMap<>(names.length * 2);
+      for (int i = 0; i < names.length; i++) {
+        fields.put(names[i], new ByteArrayByteIterator(values[i]));
+      }
+      return fields;
+    }
+
+    private void copyTo(Set<String> fields, Map<String, ByteIterator> result) {
+      for (int i = 0; i < names.length; i++) {
+        if (fields == null || fields.contains(names[i])) {
+          result.put(names[i], new ByteArrayByteIterator(values[i]));
+        }
+      }
+    }
+
+    /**
+     * @return This record with the fields of the update set.
+     */
+    private Record merge(Record update) {
+      Map<String, byte[]> merged = new HashMap<>(names.length * 2);
+      for (int i = 0; i < names.length; i++) {
+        merged.put(names[i], values[i]);
+      }
+      for (int i = 0; i < update.names.length; i++) {
+        merged.put(update.names[i], update.values[i]);
+      }
+      String[] mergedNames = merged.keySet().toArray(new String[merged.size()]);
+      Arrays.sort(mergedNames);
+      byte[][] mergedValues = new byte[mergedNames.length][];
+      for (int i = 0; i < mergedNames.length; i++) {
+        mergedValues[i] = merged.get(mergedNames[i]);
+      }
+      return new Record(mergedNames, mergedValues);
+    }
+
+    /**
+     * @return The bytes the record takes in the cache: its values, and the characters of its key and field names.
+     */
+    private long getWeight(String cacheKey) {
+      long weight = cacheKey.length();
+      for (int i = 0; i < names.length; i++) {
+        weight += names[i].length() + values[i].length;
+      }
+      return weight;
+    }
+  }
+}
@@ -17,7 +17,10 @@
 
 package com.yahoo.ycsb;
 
+import com.yahoo.ycsb.measurements.IntervalExporter;
 import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.MetricsServer;
+import com.yahoo.ycsb.measurements.OverheadBreakdown;
 import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
 import com.yahoo.ycsb.measurements.exporter.TextMeasurementsExporter;
 import org.apache.htrace.core.HTraceConfiguration;
@@ -33,9 +36,8 @@ import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.LockSupport;
 
 /**
  * A thread to periodically show the status of the experiment to reassure you that progress is being made.
@@ -50,6 +52,16 @@ class StatusThread extends Thread {
   // Whether or not to track the JVM stats per run
   private final boolean trackJVMStats;
 
+  // Told about each interval, to end an automatic warm-up; may be null
+  private final Warmup warmup;
+
+  // Writes the records of each interval; may be null
+  private IntervalExporter intervalExporter;
+
+  // Only used by this thread, so they are made once
+  private final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss:SSS");
+  private final DecimalFormat d = new DecimalFormat("#.##");
+
   // The clients that are running.
   private final List<ClientThread> clients;
 
@@ -98,6 +110,24 @@ class StatusThread extends Thread {
   public StatusThread(CountDownLatch completeLatch, List<ClientThread> clients,
                       String label, boolean standardstatus, int statusIntervalSeconds,
                       boolean trackJVMStats) {
+    this(completeLatch, clients, label, standardstatus, statusIntervalSeconds, trackJVMStats, null);
+  }
+
+  /**
+   * Creates a new StatusThread which also tells a warm-up about every interval.
+   *
+   * @param completeLatch         The latch that each client thread will {@link CountDownLatch#countDown()}
+   *                              as they complete.
+   * @param clients               The clients to collect metrics from.
+   * @param label                 The label for the status.
+   * @param standardstatus        If true the status is printed to stdout in addition to stderr.
+   * @param statusIntervalSeconds The number of seconds between status updates.
+   * @param trackJVMStats         Whether or not to track JVM stats.
+   * @param warmup                The warm-up to end once the intervals are steady, or null.
+   */
+  StatusThread(CountDownLatch completeLatch, List<ClientThread> clients,
+               String label, boolean standardstatus, int statusIntervalSeconds,
+               boolean trackJVMStats, Warmup warmup) {
     this.completeLatch = completeLatch;
     this.clients = clients;
     this.label = label;
@@ -105,6 +135,14 @@ class StatusThread extends Thread {
     sleeptimeNs = TimeUnit.SECONDS.toNanos(statusIntervalSeconds);
     measurements = Measurements.getMeasurements();
     this.trackJVMStats = trackJVMStats;
+    this.warmup = warmup;
+  }
+
+  /**
+   * Also write the records of every interval to an exporter, which is closed once the clients are done.
+   */
+  void setIntervalExporter(IntervalExporter exporter) {
+    intervalExporter = exporter;
   }
 
   /**
@@ -141,6 +179,13 @@ class StatusThread extends Thread {
     }
     // Print the final stats.
     computeStats(startTimeMs, startIntervalMs, System.currentTimeMillis(), lastTotalOps);
+    if (intervalExporter != null) {
+      try {
+        intervalExporter.close();
+      } catch (IOException e) {
+        System.err.println("Could not write the interval records: " + e.getMessage());
+      }
+    }
   }
 
   /**
@@ -154,8 +199,6 @@ class StatusThread extends Thread {
    */
   private long computeStats(final long startTimeMs, long startIntervalMs, long endIntervalMs,
                             long lastTotalOps) {
-    SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss:SSS");
-
     long totalops = 0;
     long todoops = 0;
 
@@ -172,8 +215,6 @@ class StatusThread extends Thread {
         ((double) (endIntervalMs - startIntervalMs)));
     long estremaining = (long) Math.ceil(todoops / throughput);
 
-
-    DecimalFormat d = new DecimalFormat("#.##");
     String labelString = this.label + format.format(new Date());
 
     StringBuilder msg = new StringBuilder(labelString).append(" ").append(interval / 1000).append(" sec: ");
@@ -186,7 +227,19 @@ class StatusThread extends Thread {
       msg.append("est completion in ").append(RemainingFormatter.format(estremaining));
     }
 
-    msg.append(Measurements.getMeasurements().getSummary());
+    msg.append(measurements.getSummary());
+    if (intervalExporter != null) {
+      try {
+        intervalExporter.write(measurements, endIntervalMs, (endIntervalMs - startTimeMs) / 1000.0,
+            (endIntervalMs - startIntervalMs) / 1000.0);
+      } catch (IOException e) {
+        System.err.println("Could not write the interval records, giving up on them: " + e.getMessage());
+        intervalExporter = null;
+      }
+    }
+    if (warmup != null) {
+      warmup.onInterval(curthroughput, measurements.getSummaryAverageLatency());
+    }
 
     System.err.println(msg);
 
@@ -356,168 +409,6 @@ final class RemainingFormatter {
   }
 }
 
-/**
- * A thread for executing transactions or data inserts to the database.
- */
-class ClientThread implements Runnable {
-  // Counts down each of the clients completing.
-  private final CountDownLatch completeLatch;
-
-  private static boolean spinSleep;
-  private DB db;
-  private boolean dotransactions;
-  private Workload workload;
-  private int opcount;
-  private double targetOpsPerMs;
-
-  private int opsdone;
-  private int threadid;
-  private int threadcount;
-  private Object workloadstate;
-  private Properties props;
-  private long targetOpsTickNs;
-  private final Measurements measurements;
-
-  /**
-   * Constructor.
-   *
-   * @param db                   the DB implementation to use
-   * @param dotransactions       true to do transactions, false to insert data
-   * @param workload             the workload to use
-   * @param props                the properties defining the experiment
-   * @param opcount              the number of operations (transactions or inserts) to do
-   * @param targetperthreadperms target number of operations per thread per ms
-   * @param completeLatch        The latch tracking the completion of all clients.
-   */
-  public ClientThread(DB db, boolean dotransactions, Workload workload, Properties props, int opcount,
-                      double targetperthreadperms, CountDownLatch completeLatch) {
-    this.db = db;
-    this.dotransactions = dotransactions;
-    this.workload = workload;
-    this.opcount = opcount;
-    opsdone = 0;
-    if (targetperthreadperms > 0) {
-      targetOpsPerMs = targetperthreadperms;
-      targetOpsTickNs = (long) (1000000 / targetOpsPerMs);
-    }
-    this.props = props;
-    measurements = Measurements.getMeasurements();
-    spinSleep = Boolean.valueOf(this.props.getProperty("spin.sleep", "false"));
-    this.completeLatch = completeLatch;
-  }
-
-  public void setThreadId(final int threadId) {
-    threadid = threadId;
-  }
-  
-  public void setThreadCount(final int threadCount) {
-    threadcount = threadCount;
-  }
-  
-  public int getOpsDone() {
-    return opsdone;
-  }
-
-  @Override
-  public void run() {
-    try {
-      db.init();
-    } catch (DBException e) {
-      e.printStackTrace();
-      e.printStackTrace(System.out);
-      return;
-    }
-
-    try {
-      workloadstate = workload.initThread(props, threadid, threadcount);
-    } catch (WorkloadException e) {
-      e.printStackTrace();
-      e.printStackTrace(System.out);
-      return;
-    }
-
-    //NOTE: Switching to using nanoTime and parkNanos for time management here such that the measurements
-    // and the client thread have the same view on time.
-
-    //spread the thread operations out so they don't all hit the DB at the same time
-    // GH issue 4 - throws exception if _target>1 because random.nextInt argument must be >0
-    // and the sleep() doesn't make sense for granularities < 1 ms anyway
-    if ((targetOpsPerMs > 0) && (targetOpsPerMs <= 1.0)) {
-      long randomMinorDelay = ThreadLocalRandom.current().nextInt((int) targetOpsTickNs);
-      sleepUntil(System.nanoTime() + randomMinorDelay);
-    }
-    try {
-      if (dotransactions) {
-        long startTimeNanos = System.nanoTime();
-
-        while (((opcount == 0) || (opsdone < opcount)) && !workload.isStopRequested()) {
-
-          if (!workload.doTransaction(db, workloadstate)) {
-            break;
-          }
-
-          opsdone++;
-
-          throttleNanos(startTimeNanos);
-        }
-      } else {
-        long startTimeNanos = System.nanoTime();
-
-        while (((opcount == 0) || (opsdone < opcount)) && !workload.isStopRequested()) {
-
-          if (!workload.doInsert(db, workloadstate)) {
-            break;
-          }
-
-          opsdone++;
-
-          throttleNanos(startTimeNanos);
-        }
-      }
-    } catch (Exception e) {
-      e.printStackTrace();
-      e.printStackTrace(System.out);
-      System.exit(0);
-    }
-
-    try {
-      measurements.setIntendedStartTimeNs(0);
-      db.cleanup();
-    } catch (DBException e) {
-      e.printStackTrace();
-      e.printStackTrace(System.out);
-    } finally {
-      completeLatch.countDown();
-    }
-  }
-
-  private static void sleepUntil(long deadline) {
-    while (System.nanoTime() < deadline) {
-      if (!spinSleep) {
-        LockSupport.parkNanos(deadline - System.nanoTime());
-      }
-    }
-  }
-
-  private void throttleNanos(long startTimeNanos) {
-    //throttle the operations
-    if (targetOpsPerMs > 0) {
-      // delay until next tick
-      long deadline = startTimeNanos + opsdone * targetOpsTickNs;
-      sleepUntil(deadline);
-      measurements.setIntendedStartTimeNs(deadline);
-    }
-  }
-
-  /**
-   * The total amount of work this thread is still expected to do.
-   */
-  int getOpsTodo() {
-    int todo = opcount - opsdone;
-    return todo < 0 ? 0 : todo;
-  }
-}
-
 /**
  * Main class for executing YCSB.
  */
@@ -597,6 +488,19 @@ public final class Client {
    */
   public static final String LABEL_PROPERTY = "label";
 
+  /**
+   * Whether to run open-loop: client threads issue operations on their arrival schedule without waiting for
+   * earlier ones to complete. See {@link OpenLoopDB}.
+   */
+  public static final String OPEN_LOOP_PROPERTY = "openloop";
+  public static final String OPEN_LOOP_PROPERTY_DEFAULT = "false";
+
+  /**
+   * The java.util.concurrent.ThreadFactory class making the client threads, for instance one making virtual
+   * threads to run many sessions of a {@link SessionPool}. The default makes platform threads.
+   */
+  public static final String THREAD_FACTORY_PROPERTY = "threadfactory";
+
   /**
    * An optional thread used to track progress and measure JVM stats.
    */
@@ -641,10 +545,14 @@ public final class Client {
     System.out.println("To run the load phase from multiple servers, start a separate client on each; additionally,");
     System.out.println("use the \"insertcount\" and \"insertstart\" properties to divide up the records " +
         "to be inserted");
+    System.out.println("Alternatively, start a coordinator with \"-p " + Coordinator.WORKERS_PROPERTY + "=n\" and n " +
+        "workers with \"-p " + Coordinator.ADDRESS_PROPERTY + "=host:port\";");
+    System.out.println("the coordinator divides up the work and merges the results of the workers.");
   }
 
   public static boolean checkRequiredProperties(Properties props) {
-    if (props.getProperty(WORKLOAD_PROPERTY) == null) {
+    // a worker gets its workload from the coordinator
+    if (props.getProperty(WORKLOAD_PROPERTY) == null && props.getProperty(Coordinator.ADDRESS_PROPERTY) == null) {
       System.out.println("Missing property: " + WORKLOAD_PROPERTY);
       return false;
     }
@@ -653,6 +561,33 @@ public final class Client {
   }
 
 
+  /**
+   * Create the exporter chosen by the exporter and exportfile properties.
+   */
+  static MeasurementsExporter newExporter(Properties props) throws IOException {
+    // if no destination file is provided the results will be written to stdout
+    OutputStream out;
+    String exportFile = props.getProperty(EXPORT_FILE_PROPERTY);
+    if (exportFile == null) {
+      out = System.out;
+    } else {
+      out = new FileOutputStream(exportFile);
+    }
+
+    // if no exporter is provided the default text one will be used
+    String exporterStr = props.getProperty(EXPORTER_PROPERTY,
+        "com.yahoo.ycsb.measurements.exporter.TextMeasurementsExporter");
+    try {
+      return (MeasurementsExporter) Class.forName(exporterStr).getConstructor(OutputStream.class)
+          .newInstance(out);
+    } catch (Exception e) {
+      System.err.println("Could not find exporter " + exporterStr
+          + ", will use default text reporter.");
+      e.printStackTrace();
+      return new TextMeasurementsExporter(out);
+    }
+  }
+
   /**
    * Exports the measurements to either sysout or a file using the exporter
    * loaded from conf.
@@ -663,27 +598,7 @@ public final class Client {
       throws IOException {
     MeasurementsExporter exporter = null;
     try {
-      // if no destination file is provided the results will be written to stdout
-      OutputStream out;
-      String exportFile = props.getProperty(EXPORT_FILE_PROPERTY);
-      if (exportFile == null) {
-        out = System.out;
-      } else {
-        out = new FileOutputStream(exportFile);
-      }
-
-      // if no exporter is provided the default text one will be used
-      String exporterStr = props.getProperty(EXPORTER_PROPERTY,
-          "com.yahoo.ycsb.measurements.exporter.TextMeasurementsExporter");
-      try {
-        exporter = (MeasurementsExporter) Class.forName(exporterStr).getConstructor(OutputStream.class)
-            .newInstance(out);
-      } catch (Exception e) {
-        System.err.println("Could not find exporter " + exporterStr
-            + ", will use default text reporter.");
-        e.printStackTrace();
-        exporter = new TextMeasurementsExporter(out);
-      }
+      exporter = newExporter(props);
 
       exporter.write("OVERALL", "RunTime(ms)", runtime);
       double throughput = 1000.0 * (opcount) / (runtime);
@@ -724,8 +639,14 @@ public final class Client {
   @SuppressWarnings("unchecked")
   public static void main(String[] args) {
     Properties props = parseArguments(args);
+    if (props.containsKey(Coordinator.WORKERS_PROPERTY)) {
+      System.exit(Coordinator.run(props));
+    }
+    final CoordinatedWorker worker = connectToCoordinator(props);
+    SlaSearch.configure(props);
 
-    boolean status = Boolean.valueOf(props.getProperty(STATUS_PROPERTY, String.valueOf(false)));
+    boolean status = Boolean.valueOf(props.getProperty(STATUS_PROPERTY, String.valueOf(false)))
+        || Warmup.isAuto(props) || MetricsServer.isSet(props) || IntervalExporter.isSet(props);
     String label = props.getProperty(LABEL_PROPERTY, "");
 
     long maxExecutionTime = Integer.parseInt(props.getProperty(MAX_EXECUTION_TIME, "0"));
@@ -746,6 +667,7 @@ public final class Client {
     warningthread.start();
 
     Measurements.setProperties(props);
+    startMetricsServer(props);
 
     Workload workload = getWorkload(props);
 
@@ -758,6 +680,10 @@ public final class Client {
 
     final List<ClientThread> clients = initDb(dbname, props, threadcount, targetperthreadperms,
         workload, tracer, completeLatch);
+    if (SlaSearch.isSet(props)) {
+      System.exit(SlaSearch.run(props, workload, clients));
+    }
+    final Warmup warmup = new Warmup(props, Measurements.getMeasurements(), clients);
 
     if (status) {
       boolean standardstatus = false;
@@ -768,7 +694,8 @@ public final class Client {
       boolean trackJVMStats = props.getProperty(Measurements.MEASUREMENT_TRACK_JVM_PROPERTY,
           Measurements.MEASUREMENT_TRACK_JVM_PROPERTY_DEFAULT).equals("true");
       statusthread = new StatusThread(completeLatch, clients, label, standardstatus, statusIntervalSeconds,
-          trackJVMStats);
+          trackJVMStats, warmup);
+      statusthread.setIntervalExporter(newIntervalExporter(props));
       statusthread.start();
     }
 
@@ -780,11 +707,14 @@ public final class Client {
     try (final TraceScope span = tracer.newScope(CLIENT_WORKLOAD_SPAN)) {
 
       final Map<Thread, ClientThread> threads = new HashMap<>(threadcount);
+      final ThreadFactory threadFactory = getThreadFactory(props);
       for (ClientThread client : clients) {
-        threads.put(new Thread(tracer.wrap(client, "ClientThread")), client);
+        threads.put(threadFactory.newThread(tracer.wrap(client, "ClientThread")), client);
       }
 
+      awaitCoordinator(worker, warmup);
       st = System.currentTimeMillis();
+      warmup.start();
 
       for (Thread t : threads.keySet()) {
         t.start();
@@ -807,6 +737,10 @@ public final class Client {
       }
 
       en = System.currentTimeMillis();
+      warmup.stop();
+      opsDone = warmup.measuredOperations(opsDone);
+      st = warmup.measuredStart(st);
+      finishCoordinated(worker, opsDone, en - st);
     }
 
     try {
@@ -848,11 +782,74 @@ public final class Client {
     System.exit(0);
   }
 
+  /**
+   * Connect to the coordinator if the Client is a worker, taking the properties of the phase from it.
+   */
+  private static CoordinatedWorker connectToCoordinator(Properties props) {
+    try {
+      return CoordinatedWorker.connect(props);
+    } catch (IOException e) {
+      System.err.println("Could not get the properties from the coordinator: " + e);
+      System.exit(-1);
+      return null;
+    }
+  }
+
+  private static void awaitCoordinator(CoordinatedWorker worker, Warmup warmup) {
+    if (worker != null) {
+      try {
+        worker.awaitStart(Measurements.getMeasurements(), warmup);
+      } catch (IOException e) {
+        System.err.println("Lost the coordinator before the start: " + e);
+        System.exit(-1);
+      }
+    }
+  }
+
+  private static void finishCoordinated(CoordinatedWorker worker, int opsDone, long runtime) {
+    if (worker != null) {
+      try {
+        worker.finish(opsDone, runtime);
+      } catch (IOException e) {
+        System.err.println("Could not send the results to the coordinator: " + e);
+      }
+    }
+  }
+
   private static List<ClientThread> initDb(String dbname, Properties props, int threadcount,
                                            double targetperthreadperms, Workload workload, Tracer tracer,
                                            CountDownLatch completeLatch) {
     boolean initFailed = false;
     boolean dotransactions = Boolean.valueOf(props.getProperty(DO_TRANSACTIONS_PROPERTY, String.valueOf(true)));
+    boolean openloop = Boolean.valueOf(props.getProperty(OPEN_LOOP_PROPERTY, OPEN_LOOP_PROPERTY_DEFAULT));
+
+    RateController rateController = null;
+    try {
+      rateController = RateController.fromProperties(props);
+    } catch (IOException | IllegalArgumentException e) {
+      System.err.println("Invalid target throughput profile or arrivals: " + e.getMessage());
+      System.exit(0);
+    }
+    if (RateController.isSet(props) && targetperthreadperms > 0) {
+      System.err.println("Following the target throughput profile, " + TARGET_PROPERTY + " is ignored.");
+    }
+
+    SessionPool sessionPool = null;
+    try {
+      sessionPool = SessionPool.fromProperties(dbname, props, tracer);
+    } catch (IOException | IllegalArgumentException e) {
+      System.err.println("Invalid sessions: " + e.getMessage());
+      System.exit(0);
+    }
+    if (sessionPool != null && openloop) {
+      System.err.println("Sessions run closed-loop, " + OPEN_LOOP_PROPERTY + " cannot be used with "
+          + SessionPool.POOL_SIZE_PROPERTY + ".");
+      System.exit(0);
+    }
+    if (openloop && OverheadBreakdown.isSet(props)) {
+      System.err.println("With " + OPEN_LOOP_PROPERTY + " the DB is called from worker threads, the totals of the "
+          + "overhead breakdown do not add up; only the rows of each thread hold.");
+    }
 
     final List<ClientThread> clients = new ArrayList<>(threadcount);
     try (final TraceScope span = tracer.newScope(CLIENT_INIT_SPAN)) {
@@ -870,12 +867,15 @@ public final class Client {
       for (int threadid = 0; threadid < threadcount; threadid++) {
         DB db;
         try {
-          db = DBFactory.newDB(dbname, props, tracer);
+          db = sessionPool != null ? sessionPool.newSession() : DBFactory.newDB(dbname, props, tracer);
         } catch (UnknownDBException e) {
           System.out.println("Unknown DB " + dbname);
           initFailed = true;
           break;
         }
+        if (openloop) {
+          db = new OpenLoopDB(db, dbname, tracer);
+        }
 
         int threadopcount = opcount / threadcount;
 
@@ -888,6 +888,12 @@ public final class Client {
             completeLatch);
         t.setThreadId(threadid);
         t.setThreadCount(threadcount);
+        if (rateController != null) {
+          t.setRateController(rateController);
+        }
+        if (sessionPool != null) {
+          t.setSessionPool(sessionPool);
+        }
         clients.add(t);
       }
 
@@ -899,6 +905,44 @@ public final class Client {
     return clients;
   }
 
+  private static IntervalExporter newIntervalExporter(Properties props) {
+    try {
+      return IntervalExporter.fromProperties(props);
+    } catch (IOException | IllegalArgumentException e) {
+      System.err.println("Could not export the status intervals: " + e.getMessage());
+      System.exit(0);
+      return null;
+    }
+  }
+
+  private static void startMetricsServer(Properties props) {
+    try {
+      MetricsServer.start(props);
+    } catch (IOException | IllegalArgumentException e) {
+      System.err.println("Could not start the metrics server: " + e.getMessage());
+      System.exit(0);
+    }
+  }
+
+  private static ThreadFactory getThreadFactory(Properties props) {
+    String factory = props.getProperty(THREAD_FACTORY_PROPERTY);
+    if (factory == null) {
+      return new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          return new Thread(r);
+        }
+      };
+    }
+    try {
+      return (ThreadFactory) Class.forName(factory).newInstance();
+    } catch (Exception e) {
+      System.err.println("Could not create thread factory " + factory + ": " + e);
+      System.exit(0);
+      return null;
+    }
+  }
+
   private static Tracer getTracer(Properties props, Workload workload) {
     return new Tracer.Builder("YCSB " + workload.getClass().getSimpleName())
         .conf(getHTraceConfiguration(props))
@@ -0,0 +1,304 @@
+/**
+ * Copyright (c) 2010-2016 Yahoo! Inc., 2017 YCSB contributors All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.OverheadBreakdown;
+
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A thread for executing transactions or data inserts to the database.
+ */
+class ClientThread implements Runnable {
+  // Counts down each of the clients completing.
+  private final CountDownLatch completeLatch;
+
+  private static boolean spinSleep;
+  private DB db;
+  private boolean dotransactions;
+  private Workload workload;
+  private int opcount;
+  private double targetOpsPerMs;
+
+  private int opsdone;
+  private int threadid;
+  private int threadcount;
+  private Object workloadstate;
+  private Properties props;
+  private long targetOpsTickNs;
+  private RateController rateController;
+  private SessionPool sessionPool;
+  private Measurements measurements;
+  private OverheadBreakdown overhead;
+
+  /**
+   * Constructor.
+   *
+   * @param db                   the DB implementation to use
+   * @param dotransactions       true to do transactions, false to insert data
+   * @param workload             the workload to use
+   * @param props                the properties defining the experiment
+   * @param opcount              the number of operations (transactions or inserts) to do
+   * @param targetperthreadperms target number of operations per thread per ms
+   * @param completeLatch        The latch tracking the completion of all clients.
+   */
+  public ClientThread(DB db, boolean dotransactions, Workload workload, Properties props, int opcount,
+                      double targetperthreadperms, CountDownLatch completeLatch) {
+    this.db = db;
+    this.dotransactions = dotransactions;
+    this.workload = workload;
+    this.opcount = opcount;
+    opsdone = 0;
+    if (targetperthreadperms > 0) {
+      targetOpsPerMs = targetperthreadperms;
+      targetOpsTickNs = (long) (1000000 / targetOpsPerMs);
+    }
+    this.props = props;
+    measurements = Measurements.getMeasurements();
+    overhead = measurements.getOverheadBreakdown();
+    spinSleep = Boolean.valueOf(this.props.getProperty("spin.sleep", "false"));
+    this.completeLatch = completeLatch;
+  }
+
+  /**
+   * Use other measurements than the process wide ones, those the DB records to. Called before the thread starts.
+   */
+  void setMeasurements(Measurements newMeasurements) {
+    measurements = newMeasurements;
+    overhead = newMeasurements.getOverheadBreakdown();
+  }
+
+  public void setThreadId(final int threadId) {
+    threadid = threadId;
+  }
+  
+  public void setThreadCount(final int threadCount) {
+    threadcount = threadCount;
+  }
+
+  /**
+   * Take the start time of every operation from a controller shared by all threads, instead of the target
+   * throughput per thread.
+   */
+  public void setRateController(final RateController controller) {
+    rateController = controller;
+    targetOpsPerMs = 0;
+  }
+  
+  /**
+   * Pause between operations for the think times of the pool the DB of this thread is a session of.
+   */
+  public void setSessionPool(final SessionPool pool) {
+    sessionPool = pool;
+  }
+
+  public int getOpsDone() {
+    return opsdone;
+  }
+
+  @Override
+  public void run() {
+    if (!initThread()) {
+      return;
+    }
+
+    //NOTE: Switching to using nanoTime and parkNanos for time management here such that the measurements
+    // and the client thread have the same view on time.
+
+    //spread the thread operations out so they don't all hit the DB at the same time
+    // GH issue 4 - throws exception if _target>1 because random.nextInt argument must be >0
+    // and the sleep() doesn't make sense for granularities < 1 ms anyway
+    if ((targetOpsPerMs > 0) && (targetOpsPerMs <= 1.0)) {
+      long randomMinorDelay = ThreadLocalRandom.current().nextInt((int) targetOpsTickNs);
+      sleepUntil(System.nanoTime() + randomMinorDelay);
+    }
+    try {
+      long startTimeNanos = System.nanoTime();
+
+      while (((opcount == 0) || (opsdone < opcount)) && awaitScheduledStart()) {
+
+        if (!doOperation()) {
+          break;
+        }
+
+        opsdone++;
+
+        throttleNanos(startTimeNanos);
+        think();
+      }
+    } catch (Exception e) {
+      e.printStackTrace();
+      e.printStackTrace(System.out);
+      System.exit(0);
+    }
+
+    cleanupThread();
+  }
+
+  /**
+   * Do a transaction, or an insert when loading, adding its time to the overhead breakdown if it is on.
+   *
+   * @return false if the workload has nothing more to do.
+   */
+  private boolean doOperation() {
+    long start = overhead == null ? 0 : System.nanoTime();
+    boolean more = dotransactions ?
+        workload.doTransaction(db, workloadstate) :
+        workload.doInsert(db, workloadstate);
+    if (overhead != null) {
+      overhead.operation(System.nanoTime() - start);
+    }
+    return more;
+  }
+
+  /**
+   * Run the trials of an SLA search one after the other, instead of {@link #run()}, keeping the same DB and
+   * workload state throughout.
+   */
+  void runTrials(SlaSearch search) {
+    if (!search.ready(initThread())) {
+      return;
+    }
+    try {
+      SlaSearch.Trial trial = search.awaitTrial(null);
+      while (trial != null) {
+        // the first operation of a trial is not throttled, it must not look late for the last of the previous one
+        measurements.setIntendedStartTimeNs(0);
+        opsdone = 0;
+        targetOpsPerMs = trial.getTargetPerThreadPerMs();
+        targetOpsTickNs = targetOpsPerMs > 0 ? (long) (1000000 / targetOpsPerMs) : 0;
+        long startTimeNanos = System.nanoTime();
+        while (System.nanoTime() < trial.getEndNanos() && !workload.isStopRequested()) {
+          if (!doOperation()) {
+            break;
+          }
+          opsdone++;
+          throttleNanos(startTimeNanos);
+          think();
+        }
+        trial.done(opsdone);
+        trial = search.awaitTrial(trial);
+      }
+    } catch (Exception e) {
+      e.printStackTrace();
+      e.printStackTrace(System.out);
+      System.exit(0);
+    }
+    cleanupThread();
+  }
+
+  /**
+   * Initialize the DB and the workload state of this thread.
+   *
+   * @return false if either failed.
+   */
+  private boolean initThread() {
+    try {
+      db.init();
+    } catch (DBException e) {
+      e.printStackTrace();
+      e.printStackTrace(System.out);
+      return false;
+    }
+
+    try {
+      workloadstate = workload.initThread(props, threadid, threadcount);
+    } catch (WorkloadException e) {
+      e.printStackTrace();
+      e.printStackTrace(System.out);
+      return false;
+    }
+    return true;
+  }
+
+  private void cleanupThread() {
+    if (overhead != null) {
+      overhead.finish();
+    }
+    try {
+      measurements.setIntendedStartTimeNs(0);
+      db.cleanup();
+    } catch (DBException e) {
+      e.printStackTrace();
+      e.printStackTrace(System.out);
+    } finally {
+      completeLatch.countDown();
+    }
+  }
+
+  private static void sleepUntil(long deadline) {
+    while (System.nanoTime() < deadline) {
+      if (!spinSleep) {
+        LockSupport.parkNanos(deadline - System.nanoTime());
+      }
+    }
+  }
+
+  /**
+   * Wait for the start time the rate controller gives the next operation, if there is a controller.
+   *
+   * @return false if the workload was stopped instead.
+   */
+  private boolean awaitScheduledStart() {
+    if (rateController != null && !workload.isStopRequested()) {
+      long deadline = rateController.nextStartNanos();
+      // wake up now and then, a profile may leave long gaps between operations
+      long remaining = deadline - System.nanoTime();
+      while (remaining > 0 && !workload.isStopRequested()) {
+        if (!spinSleep) {
+          LockSupport.parkNanos(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(100)));
+        }
+        remaining = deadline - System.nanoTime();
+      }
+      measurements.setIntendedStartTimeNs(deadline);
+    }
+    return !workload.isStopRequested();
+  }
+
+  private void think() {
+    if (sessionPool != null) {
+      long thinkTimeNanos = sessionPool.nextThinkTimeNanos();
+      if (thinkTimeNanos > 0) {
+        sleepUntil(System.nanoTime() + thinkTimeNanos);
+      }
+    }
+  }
+
+  private void throttleNanos(long startTimeNanos) {
+    //throttle the operations
+    if (targetOpsPerMs > 0) {
+      // delay until next tick
+      long deadline = startTimeNanos + opsdone * targetOpsTickNs;
+      sleepUntil(deadline);
+      measurements.setIntendedStartTimeNs(deadline);
+    }
+  }
+
+  /**
+   * The total amount of work this thread is still expected to do.
+   */
+  int getOpsTodo() {
+    int todo = opcount - opsdone;
+    return todo < 0 ? 0 : todo;
+  }
+}
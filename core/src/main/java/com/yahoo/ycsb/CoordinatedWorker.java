@@ -0,0 +1,208 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.OneMeasurementHdrHistogram;
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+import org.HdrHistogram.Histogram;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * The worker side of a {@link Coordinator}: receives the properties of the phase, waits for the start and streams
+ * the interval histograms and final counts back.
+ */
+final class CoordinatedWorker implements OneMeasurementHdrHistogram.IntervalListener {
+  private final Socket socket;
+  private final DataInputStream in;
+  private final DataOutputStream out;
+  private final long intervalMs;
+  private Measurements measurements;
+  private Warmup warmup;
+  private Thread reporter;
+  private ByteBuffer buffer = ByteBuffer.allocate(1024);
+
+  private CoordinatedWorker(Socket socket, DataInputStream in, long intervalMs) throws IOException {
+    this.socket = socket;
+    this.in = in;
+    this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    this.intervalMs = intervalMs;
+  }
+
+  /**
+   * Connect to the coordinator named by coordinator.address, if any, and set the properties it sends. Properties
+   * the coordinator does not have keep their local value.
+   *
+   * @return The worker, or null if the Client is not a worker.
+   */
+  static CoordinatedWorker connect(Properties props) throws IOException {
+    String address = props.getProperty(Coordinator.ADDRESS_PROPERTY);
+    if (address == null) {
+      return null;
+    }
+    int colon = address.lastIndexOf(':');
+    String host = colon < 0 ? address : address.substring(0, colon);
+    int port = Integer.parseInt(colon < 0 ? Coordinator.PORT_PROPERTY_DEFAULT : address.substring(colon + 1));
+    System.err.println("Connecting to coordinator " + host + ":" + port);
+    Socket socket = new Socket(host, port);
+    socket.setTcpNoDelay(true);
+    CoordinatedWorker worker;
+    try {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      if (in.readByte() != Coordinator.PROPERTIES) {
+        throw new IOException("The coordinator did not send properties");
+      }
+      int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        props.setProperty(in.readUTF(), in.readUTF());
+      }
+      worker = new CoordinatedWorker(socket, in, 1000 * Long.parseLong(props.getProperty(
+          Coordinator.INTERVAL_PROPERTY, Coordinator.INTERVAL_PROPERTY_DEFAULT)));
+    } catch (IOException | RuntimeException e) {
+      socket.close();
+      throw e;
+    }
+    return worker;
+  }
+
+  /**
+   * Tell the coordinator the DB is initialized, wait for the start, then stream intervals until {@link #finish}.
+   *
+   * @param workerWarmup The warm-up whose intervals are not sent, or null.
+   */
+  void awaitStart(Measurements workerMeasurements, Warmup workerWarmup) throws IOException {
+    this.measurements = workerMeasurements;
+    this.warmup = workerWarmup;
+    measurements.setIntervalListener(this);
+    synchronized (out) {
+      out.writeByte(Coordinator.READY);
+      out.flush();
+    }
+    byte type = in.readByte();
+    if (type != Coordinator.START) {
+      throw new IOException("The coordinator sent message " + type + " instead of the start");
+    }
+
+    reporter = new Thread("CoordinatedWorker-reporter") {
+      @Override
+      public void run() {
+        try {
+          while (!isInterrupted()) {
+            Thread.sleep(intervalMs);
+            measurements.takeIntervals();
+          }
+        } catch (InterruptedException ignored) {
+          // done
+        }
+      }
+    };
+    reporter.setDaemon(true);
+    reporter.start();
+  }
+
+  /**
+   * Send the last intervals, the operations done and the status counts to the coordinator, then disconnect.
+   */
+  void finish(long opsDone, long runtime) throws IOException {
+    reporter.interrupt();
+    try {
+      reporter.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    measurements.takeIntervals();
+    measurements.setIntervalListener(null);
+
+    final List<String[]> statuses = new ArrayList<>();
+    final List<Long> counts = new ArrayList<>();
+    measurements.exportStatusCounts(new MeasurementsExporter() {
+      @Override
+      public void write(String metric, String measurement, int i) {
+        write(metric, measurement, (long) i);
+      }
+
+      @Override
+      public void write(String metric, String measurement, long i) {
+        statuses.add(new String[]{metric, measurement.substring("Return=".length())});
+        counts.add(i);
+      }
+
+      @Override
+      public void write(String metric, String measurement, double d) {
+        write(metric, measurement, (long) d);
+      }
+
+      @Override
+      public void close() {
+      }
+    });
+
+    try {
+      synchronized (out) {
+        out.writeByte(Coordinator.DONE);
+        out.writeLong(opsDone);
+        out.writeLong(runtime);
+        out.writeInt(statuses.size());
+        for (int i = 0; i < statuses.size(); i++) {
+          out.writeUTF(statuses.get(i)[0]);
+          out.writeUTF(statuses.get(i)[1]);
+          out.writeLong(counts.get(i));
+        }
+        out.flush();
+      }
+    } finally {
+      socket.close();
+    }
+  }
+
+  /**
+   * Called by whichever thread takes an interval, with the measurement lock held.
+   */
+  @Override
+  public void onInterval(String name, Histogram interval) {
+    if (warmup != null && !warmup.isOver()) {
+      return;
+    }
+    synchronized (out) {
+      if (buffer.capacity() < interval.getNeededByteBufferCapacity()) {
+        buffer = ByteBuffer.allocate(interval.getNeededByteBufferCapacity());
+      }
+      buffer.clear();
+      int length = interval.encodeIntoCompressedByteBuffer(buffer);
+      try {
+        out.writeByte(Coordinator.INTERVAL);
+        out.writeUTF(name);
+        out.writeInt(length);
+        out.write(buffer.array(), 0, length);
+        out.flush();
+      } catch (IOException e) {
+        System.err.println("Could not send an interval to the coordinator: " + e);
+      }
+    }
+  }
+}
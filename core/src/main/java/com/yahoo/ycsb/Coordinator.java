@@ -0,0 +1,419 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.OneMeasurementHdrHistogram;
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+import org.HdrHistogram.Histogram;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.text.DecimalFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+
+/**
+ * Runs one benchmark phase over several worker Clients, possibly on several machines, and reports their merged
+ * results.
+ * <p>
+ * A Client started with <b>coordinator.workers</b> set becomes a coordinator: it does not run any DB itself, but
+ * waits for that many workers, Clients started with <b>coordinator.address</b> pointing at it. Each worker is sent
+ * every property of the coordinator, with its own share of the phase, and once all of them have initialized their
+ * DB they are started together. While they run they stream their HdrHistogram intervals back, and the coordinator
+ * merges them, so the reported percentiles are those of every operation of every worker rather than a combination
+ * of per worker percentiles.
+ * </p>
+ * <p>
+ * A worker gets measurementtype=hdrhistogram and:
+ * <UL>
+ * <LI>its own slice of the keys from insertstart to insertstart + insertcount, which it loads, or which its
+ * operations go to in a run
+ * <LI>for a run, its share of operationcount
+ * <LI>its share of target, or of every rate of target.profile
+ * </UL>
+ * New keys inserted during a run are not split, workers pick them from the same sequence. Workers still report their
+ * own results as a standalone Client would.
+ * </p>
+ * <p>
+ * Properties:
+ * <UL>
+ * <LI><b>coordinator.workers</b>: the number of workers to wait for
+ * <LI><b>coordinator.port</b>: the port to listen on for workers (default: 6789)
+ * <LI><b>coordinator.address</b>: on a worker, the host:port of the coordinator
+ * <LI><b>coordinator.interval</b>: seconds between the intervals workers send, and the status lines the
+ * coordinator prints (default: 10)
+ * </UL>
+ * </p>
+ */
+public final class Coordinator {
+  public static final String WORKERS_PROPERTY = "coordinator.workers";
+
+  public static final String PORT_PROPERTY = "coordinator.port";
+  public static final String PORT_PROPERTY_DEFAULT = "6789";
+
+  public static final String ADDRESS_PROPERTY = "coordinator.address";
+
+  public static final String INTERVAL_PROPERTY = "coordinator.interval";
+  public static final String INTERVAL_PROPERTY_DEFAULT = "10";
+
+  // messages, each a type byte followed by its content
+  /** To a worker: a count, then that many property names and values. */
+  static final byte PROPERTIES = 1;
+  /** To the coordinator: the DB is initialized. */
+  static final byte READY = 2;
+  /** To a worker: start the phase. */
+  static final byte START = 3;
+  /** To the coordinator: a measurement name, then the length and bytes of a compressed interval histogram. */
+  static final byte INTERVAL = 4;
+  /**
+   * To the coordinator: operations done, runtime in ms, then a count followed by that many measurement names,
+   * status names and operation counts.
+   */
+  static final byte DONE = 5;
+
+  private Coordinator() {
+    // not used
+  }
+
+  /**
+   * Coordinate the workers until all of them are done, then export the merged results.
+   *
+   * @return The exit code of the Client.
+   */
+  static int run(Properties props) {
+    int port = Integer.parseInt(props.getProperty(PORT_PROPERTY, PORT_PROPERTY_DEFAULT));
+    Results results;
+    try (ServerSocket server = new ServerSocket(port)) {
+      results = coordinate(props, server);
+    } catch (IOException | InterruptedException e) {
+      System.err.println("Coordination failed: " + e);
+      e.printStackTrace();
+      return -1;
+    }
+
+    MeasurementsExporter exporter = null;
+    try {
+      exporter = Client.newExporter(props);
+      results.export(exporter);
+    } catch (IOException e) {
+      System.err.println("Could not export measurements, error: " + e.getMessage());
+      e.printStackTrace();
+      return -1;
+    } finally {
+      if (exporter != null) {
+        try {
+          exporter.close();
+        } catch (IOException ignored) {
+          // ignored
+        }
+      }
+    }
+    return results.getFailedWorkers() == 0 ? 0 : -1;
+  }
+
+  /**
+   * Accept the workers, run the phase and collect their results.
+   */
+  static Results coordinate(Properties props, ServerSocket server) throws IOException, InterruptedException {
+    int count = Integer.parseInt(props.getProperty(WORKERS_PROPERTY));
+    long intervalMs = Long.parseLong(props.getProperty(INTERVAL_PROPERTY, INTERVAL_PROPERTY_DEFAULT)) * 1000;
+    Results results = new Results(props);
+    CountDownLatch done = new CountDownLatch(count);
+    List<WorkerConnection> workers = new ArrayList<>(count);
+    try {
+      System.err.println("Waiting for " + count + " workers on port " + server.getLocalPort());
+      for (int i = 0; i < count; i++) {
+        WorkerConnection worker = new WorkerConnection(i, server.accept(), results, done);
+        workers.add(worker);
+        worker.sendProperties(workerProperties(props, i, count));
+        System.err.println("Worker " + i + " connected from " + worker.socket.getRemoteSocketAddress());
+      }
+      for (WorkerConnection worker : workers) {
+        worker.awaitReady();
+      }
+
+      System.err.println("Starting test.");
+      long start = System.currentTimeMillis();
+      for (WorkerConnection worker : workers) {
+        worker.sendStart();
+      }
+      for (WorkerConnection worker : workers) {
+        worker.start();
+      }
+      long intervalStart = start;
+      while (!done.await(intervalMs, TimeUnit.MILLISECONDS)) {
+        long now = System.currentTimeMillis();
+        results.printStatus(now - start, now - intervalStart);
+        intervalStart = now;
+      }
+      for (WorkerConnection worker : workers) {
+        worker.join();
+      }
+    } finally {
+      for (WorkerConnection worker : workers) {
+        worker.socket.close();
+      }
+    }
+    return results;
+  }
+
+  /**
+   * The properties of one worker: those of the coordinator, with the worker's share of the phase.
+   */
+  static Properties workerProperties(Properties props, int index, int workers) {
+    Properties worker = new Properties();
+    for (String name : props.stringPropertyNames()) {
+      worker.setProperty(name, props.getProperty(name));
+    }
+    worker.remove(WORKERS_PROPERTY);
+    worker.setProperty(Measurements.MEASUREMENT_TYPE_PROPERTY, "hdrhistogram");
+
+    if (Boolean.valueOf(props.getProperty(Client.DO_TRANSACTIONS_PROPERTY, String.valueOf(true)))) {
+      long operations = Long.parseLong(props.getProperty(Client.OPERATION_COUNT_PROPERTY, "0"));
+      if (operations > 0) {
+        worker.setProperty(Client.OPERATION_COUNT_PROPERTY, String.valueOf(share(operations, index, workers)));
+      }
+    }
+    long insertStart = Long.parseLong(props.getProperty(Workload.INSERT_START_PROPERTY,
+        Workload.INSERT_START_PROPERTY_DEFAULT));
+    long insertCount = props.containsKey(Client.INSERT_COUNT_PROPERTY) ?
+        Long.parseLong(props.getProperty(Client.INSERT_COUNT_PROPERTY)) :
+        Long.parseLong(props.getProperty(Client.RECORD_COUNT_PROPERTY, Client.DEFAULT_RECORD_COUNT)) - insertStart;
+    worker.setProperty(Workload.INSERT_START_PROPERTY,
+        String.valueOf(insertStart + insertCount * index / workers));
+    worker.setProperty(Client.INSERT_COUNT_PROPERTY, String.valueOf(share(insertCount, index, workers)));
+
+    if (RateController.isSet(props)) {
+      double scale = Double.parseDouble(props.getProperty(RateController.SCALE_PROPERTY,
+          RateController.SCALE_PROPERTY_DEFAULT));
+      worker.setProperty(RateController.SCALE_PROPERTY, String.valueOf(scale / workers));
+    }
+    long target = Long.parseLong(props.getProperty(Client.TARGET_PROPERTY, "0"));
+    if (target > 0) {
+      worker.setProperty(Client.TARGET_PROPERTY, String.valueOf(Math.max(1, share(target, index, workers))));
+    }
+    return worker;
+  }
+
+  /**
+   * The share of a total given to one worker; shares differ by at most one and add up to the total.
+   */
+  private static long share(long total, int index, int workers) {
+    return total * (index + 1) / workers - total * index / workers;
+  }
+
+  /**
+   * The merged results of the workers.
+   */
+  static final class Results {
+    private final Properties measurementProps;
+    private final Map<String, OneMeasurementHdrHistogram> measurements = new TreeMap<>();
+    private final Map<String, Histogram> window = new TreeMap<>();
+    private final Map<String, Status> statuses = new HashMap<>();
+    private long opsDone;
+    private long runtime;
+    private int failedWorkers;
+
+    Results(Properties props) {
+      measurementProps = (Properties) props.clone();
+      // the coordinator only sees merged intervals, the workers log their own
+      measurementProps.remove("hdrhistogram.fileoutput");
+      for (int slot = 0; slot < Status.PREDEFINED; slot++) {
+        Status s = Status.getPredefined(slot);
+        statuses.put(s.getName(), s);
+      }
+    }
+
+    synchronized void addInterval(String name, Histogram interval) {
+      measurement(name).addInterval(interval);
+      Histogram current = window.get(name);
+      if (current == null) {
+        // decoded histograms do not resize, intervals of other workers may hold larger values
+        current = new Histogram(3);
+        window.put(name, current);
+      }
+      current.add(interval);
+    }
+
+    synchronized void addStatusCount(String name, String status, long count) {
+      measurement(name).reportStatus(status(status), count);
+    }
+
+    /**
+     * @return The one status counted under the given name: the predefined one if there is such, so that OK is
+     * {@link Status#isOk() ok}, or else one created the first time the name is seen.
+     */
+    private Status status(String name) {
+      Status s = statuses.get(name);
+      if (s == null) {
+        s = new Status(name, name);
+        statuses.put(name, s);
+      }
+      return s;
+    }
+
+    synchronized void addWorker(long workerOpsDone, long workerRuntime) {
+      opsDone += workerOpsDone;
+      runtime = Math.max(runtime, workerRuntime);
+    }
+
+    synchronized void addFailedWorker() {
+      failedWorkers++;
+    }
+
+    synchronized int getFailedWorkers() {
+      return failedWorkers;
+    }
+
+    synchronized long getOpsDone() {
+      return opsDone;
+    }
+
+    private OneMeasurementHdrHistogram measurement(String name) {
+      OneMeasurementHdrHistogram m = measurements.get(name);
+      if (m == null) {
+        m = new OneMeasurementHdrHistogram(name, measurementProps);
+        measurements.put(name, m);
+      }
+      return m;
+    }
+
+    /**
+     * Print the operations of the intervals received since the last status line, in the StatusThread format.
+     */
+    synchronized void printStatus(long elapsedMs, long intervalMs) {
+      long ops = 0;
+      StringBuilder summary = new StringBuilder();
+      for (Map.Entry<String, Histogram> entry : window.entrySet()) {
+        ops += entry.getValue().getTotalCount();
+        summary.append(OneMeasurementHdrHistogram.getSummary(entry.getKey(), entry.getValue())).append(' ');
+      }
+      window.clear();
+      DecimalFormat d = new DecimalFormat("#.##");
+      System.err.println(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss:SSS").format(new Date()) + " "
+          + elapsedMs / 1000 + " sec: " + ops + " interval operations; "
+          + d.format(1000.0 * ops / intervalMs) + " current ops/sec; " + summary);
+    }
+
+    /**
+     * Export the overall results, with the runtime of the slowest worker, then the merged measurements. There is
+     * no throughput when no worker ran for a millisecond, such as when they all failed.
+     */
+    synchronized void export(MeasurementsExporter exporter) throws IOException {
+      exporter.write("OVERALL", "RunTime(ms)", runtime);
+      if (runtime > 0) {
+        exporter.write("OVERALL", "Throughput(ops/sec)", 1000.0 * opsDone / runtime);
+      }
+      for (OneMeasurementHdrHistogram m : measurements.values()) {
+        m.exportMeasurements(exporter);
+      }
+    }
+  }
+
+  /**
+   * The connection to one worker, reading what it sends once it has been started.
+   */
+  private static final class WorkerConnection extends Thread {
+    private final int index;
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final Results results;
+    private final CountDownLatch done;
+
+    private WorkerConnection(int index, Socket socket, Results results, CountDownLatch done) throws IOException {
+      super("Coordinator-worker-" + index);
+      this.index = index;
+      this.socket = socket;
+      this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      this.results = results;
+      this.done = done;
+    }
+
+    private void sendProperties(Properties props) throws IOException {
+      out.writeByte(PROPERTIES);
+      out.writeInt(props.size());
+      for (String name : props.stringPropertyNames()) {
+        out.writeUTF(name);
+        out.writeUTF(props.getProperty(name));
+      }
+      out.flush();
+    }
+
+    private void awaitReady() throws IOException {
+      byte type = in.readByte();
+      if (type != READY) {
+        throw new IOException("Worker " + index + " sent message " + type + " instead of being ready");
+      }
+    }
+
+    private void sendStart() throws IOException {
+      out.writeByte(START);
+      out.flush();
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (true) {
+          byte type = in.readByte();
+          if (type == INTERVAL) {
+            String name = in.readUTF();
+            byte[] encoded = new byte[in.readInt()];
+            in.readFully(encoded);
+            results.addInterval(name, Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(encoded), 0));
+          } else if (type == DONE) {
+            long opsDone = in.readLong();
+            long runtime = in.readLong();
+            int statusCount = in.readInt();
+            for (int i = 0; i < statusCount; i++) {
+              results.addStatusCount(in.readUTF(), in.readUTF(), in.readLong());
+            }
+            results.addWorker(opsDone, runtime);
+            System.err.println("Worker " + index + " done: " + opsDone + " operations in " + runtime + " ms");
+            return;
+          } else {
+            throw new IOException("Unexpected message " + type);
+          }
+        }
+      } catch (IOException | DataFormatException e) {
+        System.err.println("Lost worker " + index + ": " + e);
+        results.addFailedWorker();
+      } finally {
+        done.countDown();
+      }
+    }
+  }
+}
@@ -45,7 +45,30 @@ public final class DBFactory {
 
     ret.setProperties(properties);
 
-    return new DBWrapper(ret, tracer);
+    if (LatencyInjectingDB.isEnabled(properties)) {
+      if (ret instanceof AsyncDB) {
+        System.err.println("Latency injection is not supported for asynchronous bindings, ignoring the "
+            + LatencyInjectingDB.PROPERTY_PREFIX + "* properties");
+      } else {
+        ret = new LatencyInjectingDB(ret);
+      }
+    }
+    if (CachingDB.isEnabled(properties)) {
+      if (ret instanceof AsyncDB) {
+        System.err.println("Caching is not supported for asynchronous bindings, ignoring "
+            + CachingDB.SIZE_PROPERTY);
+      } else {
+        ret = new CachingDB(ret);
+      }
+    }
+
+    boolean record = properties.getProperty(RecordingDB.TRACE_FILE_PROPERTY) != null;
+    if (ret instanceof AsyncDB) {
+      AsyncDB wrapper = new AsyncDBWrapper((AsyncDB) ret, tracer);
+      return record ? new AsyncRecordingDB(wrapper) : wrapper;
+    }
+    DB wrapper = new DBWrapper(ret, tracer);
+    return record ? new RecordingDB(wrapper) : wrapper;
   }
 
 }
@@ -19,10 +19,12 @@ package com.yahoo.ycsb;
 
 import java.util.Map;
 import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.OverheadBreakdown;
 import org.apache.htrace.core.TraceScope;
 import org.apache.htrace.core.Tracer;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Wrapper around a "real" DB that measures latencies and counts return codes.
@@ -32,6 +34,7 @@ public class DBWrapper extends DB {
   private final DB db;
   private final Measurements measurements;
   private final Tracer tracer;
+  private final OverheadBreakdown overhead;
 
   private boolean reportLatencyForEachError = false;
   private Set<String> latencyTrackedErrors = new HashSet<String>();
@@ -41,6 +44,31 @@ public class DBWrapper extends DB {
 
   private static final String LATENCY_TRACKED_ERRORS_PROPERTY = "latencytrackederrors";
 
+  /** Operation indexes into the handle tables. */
+  static final int READ = 0;
+  static final int SCAN = 1;
+  static final int UPDATE = 2;
+  static final int INSERT = 3;
+  static final int DELETE = 4;
+  static final int CLEANUP = 5;
+  private static final String[] OPERATIONS = {"READ", "SCAN", "UPDATE", "INSERT", "DELETE", "CLEANUP"};
+
+  /** Measurement handle of each operation, under which its return codes and successful latencies go. */
+  private final int[] operationHandles = new int[OPERATIONS.length];
+
+  /**
+   * Measurement handle of each operation and predefined status, indexed by {@link Status#getSlot()}; resolved again
+   * by {@link #init()}, since the measurement name depends on the error reporting properties.
+   */
+  private volatile int[][] predefinedHandles;
+
+  /**
+   * Measurement handle of each operation and name of a status created by the binding, resolved when the combination
+   * first occurs. Keyed by name rather than by status, so a binding creating a status per failure adds nothing;
+   * concurrent, as asynchronous bindings measure from their own threads.
+   */
+  private final List<ConcurrentHashMap<String, Integer>> failureHandles = new ArrayList<>(OPERATIONS.length);
+
   private final String scopeStringCleanup;
   private final String scopeStringDelete;
   private final String scopeStringInit;
@@ -50,9 +78,17 @@ public class DBWrapper extends DB {
   private final String scopeStringUpdate;
 
   public DBWrapper(final DB db, final Tracer tracer) {
+    this(db, tracer, Measurements.getMeasurements());
+  }
+
+  /**
+   * @param measurements Where to record the operations, rather than the process wide measurements.
+   */
+  DBWrapper(final DB db, final Tracer tracer, final Measurements measurements) {
     this.db = db;
-    measurements = Measurements.getMeasurements();
+    this.measurements = measurements;
     this.tracer = tracer;
+    overhead = measurements.getOverheadBreakdown();
     final String simple = db.getClass().getSimpleName();
     scopeStringCleanup = simple + "#cleanup";
     scopeStringDelete = simple + "#delete";
@@ -61,6 +97,11 @@ public class DBWrapper extends DB {
     scopeStringRead = simple + "#read";
     scopeStringScan = simple + "#scan";
     scopeStringUpdate = simple + "#update";
+    for (int op = 0; op < OPERATIONS.length; op++) {
+      operationHandles[op] = measurements.getOperationHandle(OPERATIONS[op]);
+      failureHandles.add(new ConcurrentHashMap<String, Integer>());
+    }
+    resolvePredefinedHandles();
   }
 
   /**
@@ -100,6 +141,7 @@ public class DBWrapper extends DB {
       System.err.println("DBWrapper: report latency for each error is " +
           this.reportLatencyForEachError + " and specific error codes to track" +
           " for latency are: " + this.latencyTrackedErrors.toString());
+      resolvePredefinedHandles();
     }
   }
 
@@ -113,7 +155,7 @@ public class DBWrapper extends DB {
       long st = System.nanoTime();
       db.cleanup();
       long en = System.nanoTime();
-      measure("CLEANUP", Status.OK, ist, st, en);
+      measure(CLEANUP, Status.OK, ist, st, en);
     }
   }
 
@@ -129,14 +171,19 @@ public class DBWrapper extends DB {
    */
   public Status read(String table, String key, Set<String> fields,
                      Map<String, ByteIterator> result) {
+    long entered = enterOverhead();
+    long dbNanos = 0;
     try (final TraceScope span = tracer.newScope(scopeStringRead)) {
       long ist = measurements.getIntendedtartTimeNs();
       long st = System.nanoTime();
       Status res = db.read(table, key, fields, result);
       long en = System.nanoTime();
-      measure("READ", res, ist, st, en);
-      measurements.reportStatus("READ", res);
+      dbNanos = en - st;
+      measure(READ, res, ist, st, en);
+      reportStatus(READ, res);
       return res;
+    } finally {
+      exitOverhead(entered, dbNanos);
     }
   }
 
@@ -153,34 +200,99 @@ public class DBWrapper extends DB {
    */
   public Status scan(String table, String startkey, int recordcount,
                      Set<String> fields, Vector<HashMap<String, ByteIterator>> result) {
+    long entered = enterOverhead();
+    long dbNanos = 0;
     try (final TraceScope span = tracer.newScope(scopeStringScan)) {
       long ist = measurements.getIntendedtartTimeNs();
       long st = System.nanoTime();
       Status res = db.scan(table, startkey, recordcount, fields, result);
       long en = System.nanoTime();
-      measure("SCAN", res, ist, st, en);
-      measurements.reportStatus("SCAN", res);
+      dbNanos = en - st;
+      measure(SCAN, res, ist, st, en);
+      reportStatus(SCAN, res);
       return res;
+    } finally {
+      exitOverhead(entered, dbNanos);
     }
   }
 
-  private void measure(String op, Status result, long intendedStartTimeNanos,
-                       long startTimeNanos, long endTimeNanos) {
-    String measurementName = op;
-    if (result == null || !result.isOk()) {
-      if (this.reportLatencyForEachError ||
-          this.latencyTrackedErrors.contains(result.getName())) {
-        measurementName = op + "-" + result.getName();
-      } else {
-        measurementName = op + "-FAILED";
-      }
-    }
-    measurements.measure(measurementName,
+  /**
+   * Records the latency of a completed operation, under a name that depends on its result. Also used by
+   * {@link AsyncDBWrapper} for operations that complete on another thread.
+   *
+   * @param op One of {@link #READ}, {@link #SCAN}, {@link #UPDATE}, {@link #INSERT}, {@link #DELETE} or
+   *           {@link #CLEANUP}.
+   */
+  void measure(int op, Status result, long intendedStartTimeNanos,
+               long startTimeNanos, long endTimeNanos) {
+    int handle = result.isOk() ? operationHandles[op] : failureHandle(op, result);
+    measurements.measure(handle,
         (int) ((endTimeNanos - startTimeNanos) / 1000));
-    measurements.measureIntended(measurementName,
+    measurements.measureIntended(handle,
         (int) ((endTimeNanos - intendedStartTimeNanos) / 1000));
   }
 
+  /**
+   * Reports the return code of a completed operation.
+   */
+  void reportStatus(int op, Status result) {
+    measurements.reportStatus(operationHandles[op], result);
+  }
+
+  /**
+   * @return The time an operation enters the wrapper, if the overhead breakdown is on.
+   */
+  private long enterOverhead() {
+    return overhead == null ? 0 : System.nanoTime();
+  }
+
+  /**
+   * Add the operation which entered the wrapper at the given time to the overhead breakdown, if it is on.
+   *
+   * @param dbNanos The time the operation spent in the DB, 0 if the DB call threw.
+   */
+  private void exitOverhead(long entered, long dbNanos) {
+    if (overhead != null) {
+      overhead.dbCall(System.nanoTime() - entered, dbNanos);
+    }
+  }
+
+  private void resolvePredefinedHandles() {
+    int[][] handles = new int[OPERATIONS.length][Status.PREDEFINED];
+    for (int op = 0; op < OPERATIONS.length; op++) {
+      for (int slot = 0; slot < Status.PREDEFINED; slot++) {
+        Status status = Status.getPredefined(slot);
+        handles[op][slot] = status.isOk() ? operationHandles[op] : resolveFailureHandle(op, status);
+      }
+      failureHandles.get(op).clear();
+    }
+    predefinedHandles = handles;
+  }
+
+  private int failureHandle(int op, Status result) {
+    if (result.getSlot() >= 0) {
+      return predefinedHandles[op][result.getSlot()];
+    }
+    Map<String, Integer> handles = failureHandles.get(op);
+    Integer handle = handles.get(result.getName());
+    if (handle == null) {
+      handle = resolveFailureHandle(op, result);
+      handles.put(result.getName(), handle);
+    }
+    return handle;
+  }
+
+  private int resolveFailureHandle(int op, Status result) {
+    String measurementName;
+    if (this.reportLatencyForEachError ||
+        this.latencyTrackedErrors.contains(result.getName())) {
+      measurementName = OPERATIONS[op] + "-" + result.getName();
+    } else {
+      measurementName = OPERATIONS[op] + "-FAILED";
+    }
+    return measurements.getOperationHandle(measurementName);
+  }
+
   /**
    * Update a record in the database. Any field/value pairs in the specified values HashMap will be written into the
    * record with the specified record key, overwriting any existing values with the same field name.
@@ -192,14 +304,19 @@ public class DBWrapper extends DB {
    */
   public Status update(String table, String key,
                        Map<String, ByteIterator> values) {
+    long entered = enterOverhead();
+    long dbNanos = 0;
     try (final TraceScope span = tracer.newScope(scopeStringUpdate)) {
       long ist = measurements.getIntendedtartTimeNs();
       long st = System.nanoTime();
       Status res = db.update(table, key, values);
       long en = System.nanoTime();
-      measure("UPDATE", res, ist, st, en);
-      measurements.reportStatus("UPDATE", res);
+      dbNanos = en - st;
+      measure(UPDATE, res, ist, st, en);
+      reportStatus(UPDATE, res);
       return res;
+    } finally {
+      exitOverhead(entered, dbNanos);
     }
   }
 
@@ -215,14 +332,19 @@ public class DBWrapper extends DB {
    */
   public Status insert(String table, String key,
                        Map<String, ByteIterator> values) {
+    long entered = enterOverhead();
+    long dbNanos = 0;
     try (final TraceScope span = tracer.newScope(scopeStringInsert)) {
       long ist = measurements.getIntendedtartTimeNs();
       long st = System.nanoTime();
       Status res = db.insert(table, key, values);
       long en = System.nanoTime();
-      measure("INSERT", res, ist, st, en);
-      measurements.reportStatus("INSERT", res);
+      dbNanos = en - st;
+      measure(INSERT, res, ist, st, en);
+      reportStatus(INSERT, res);
       return res;
+    } finally {
+      exitOverhead(entered, dbNanos);
     }
   }
 
@@ -234,14 +356,19 @@ public class DBWrapper extends DB {
    * @return The result of the operation.
    */
   public Status delete(String table, String key) {
+    long entered = enterOverhead();
+    long dbNanos = 0;
     try (final TraceScope span = tracer.newScope(scopeStringDelete)) {
       long ist = measurements.getIntendedtartTimeNs();
       long st = System.nanoTime();
       Status res = db.delete(table, key);
       long en = System.nanoTime();
-      measure("DELETE", res, ist, st, en);
-      measurements.reportStatus("DELETE", res);
+      dbNanos = en - st;
+      measure(DELETE, res, ist, st, en);
+      reportStatus(DELETE, res);
       return res;
+    } finally {
+      exitOverhead(entered, dbNanos);
     }
   }
 }
@@ -0,0 +1,287 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A database kept in memory, shared by all the client threads of a run.
+ * <p>
+ * Unlike {@link BasicDB}, it keeps what is written, so workloads that read their data back, such as
+ * <b>dataintegrity</b>=true, scans or read-modify-writes, can be run end to end without a database server, for
+ * instance to test a workload, or to see how fast the client itself can go.
+ * </p>
+ * <p>
+ * Each table is a {@link ConcurrentSkipListMap}, so scans go over the keys in order and no operation takes a lock.
+ * A record is one byte array holding the names and values of its fields, never modified once stored: an update
+ * builds a new array and swaps it in only if the record did not change meanwhile, otherwise it starts over. Reads
+ * return values pointing into the stored array rather than copies.
+ * </p>
+ * <p>
+ * The tables live as long as the JVM. To run a workload on what a load phase inserted, give both phases the same
+ * <b>inmemorydb.file</b>: the tables are read from it when the first DB instance is initialized, and written to it
+ * when the last one is cleaned up.
+ * </p>
+ * <p>
+ * Each operation can take a latency drawn from a distribution, as a database on the network would.
+ * </p>
+ * Properties:
+ * <UL>
+ * <LI><b>inmemorydb.latency</b>: the mean latency of an operation, in microseconds (default: 0)
+ * <LI><b>inmemorydb.latency.distribution</b>: constant (default), exponential or histogram
+ * <LI><b>inmemorydb.latency.file</b>: the histogram of latencies, see {@link ArrivalDistribution.Histogram#fromFile}.
+ * Its mean is used unless <b>inmemorydb.latency</b> is set
+ * <LI><b>inmemorydb.file</b>: the file to keep the tables in between runs (default: none)
+ * </UL>
+ */
+public class InMemoryDB extends DB {
+  public static final String LATENCY_PROPERTY = "inmemorydb.latency";
+  public static final String LATENCY_DISTRIBUTION_PROPERTY = "inmemorydb.latency.distribution";
+  public static final String LATENCY_DISTRIBUTION_PROPERTY_DEFAULT = "constant";
+  public static final String LATENCY_FILE_PROPERTY = "inmemorydb.latency.file";
+  public static final String FILE_PROPERTY = "inmemorydb.file";
+
+  private static final ConcurrentMap<String, ConcurrentSkipListMap<String, byte[]>> TABLES =
+      new ConcurrentHashMap<>();
+
+  /** Guards {@link #instances} and the file. */
+  private static final Object MUTEX = new Object();
+  private static int instances = 0;
+
+  private long meanLatencyNanos;
+  private ArrivalDistribution latencies;
+  private String file;
+
+  @Override
+  public void init() throws DBException {
+    Properties props = getProperties();
+    String distribution = props.getProperty(LATENCY_DISTRIBUTION_PROPERTY, LATENCY_DISTRIBUTION_PROPERTY_DEFAULT);
+    String latency = props.getProperty(LATENCY_PROPERTY);
+    double meanMicros = latency == null ? 0 : Double.parseDouble(latency);
+    switch (distribution) {
+    case "constant":
+      latencies = ArrivalDistribution.CONSTANT;
+      break;
+    case "exponential":
+      latencies = ArrivalDistribution.POISSON;
+      break;
+    case "histogram":
+      String histogramFile = props.getProperty(LATENCY_FILE_PROPERTY);
+      if (histogramFile == null) {
+        throw new DBException(LATENCY_FILE_PROPERTY + " must be set for histogram latencies");
+      }
+      try {
+        ArrivalDistribution.Histogram histogram = ArrivalDistribution.Histogram.fromFile(histogramFile);
+        if (latency == null) {
+          meanMicros = histogram.getMeanMicros();
+        }
+        latencies = histogram;
+      } catch (IOException | IllegalArgumentException e) {
+        throw new DBException("Could not read the latencies from " + histogramFile, e);
+      }
+      break;
+    default:
+      throw new DBException("Unknown " + LATENCY_DISTRIBUTION_PROPERTY + " '" + distribution
+          + "', expected constant, exponential or histogram");
+    }
+    if (!(meanMicros >= 0)) {
+      throw new DBException(LATENCY_PROPERTY + " cannot be negative");
+    }
+    meanLatencyNanos = (long) (TimeUnit.MICROSECONDS.toNanos(1) * meanMicros);
+
+    file = props.getProperty(FILE_PROPERTY);
+    synchronized (MUTEX) {
+      if (instances == 0 && file != null && new File(file).exists()) {
+        try {
+          load(file);
+        } catch (IOException e) {
+          throw new DBException("Could not read the tables from " + file, e);
+        }
+      }
+      instances++;
+    }
+  }
+
+  @Override
+  public void cleanup() throws DBException {
+    synchronized (MUTEX) {
+      instances--;
+      if (instances == 0 && file != null) {
+        try {
+          save(file);
+        } catch (IOException e) {
+          throw new DBException("Could not write the tables to " + file, e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Replace the tables with those of a file written by {@link #save(String)}.
+   */
+  private static void load(String file) throws IOException {
+    TABLES.clear();
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      int tables = in.readInt();
+      for (int t = 0; t < tables; t++) {
+        ConcurrentSkipListMap<String, byte[]> table = table(in.readUTF());
+        while (in.readBoolean()) {
+          String key = in.readUTF();
+          byte[] record = new byte[in.readInt()];
+          in.readFully(record);
+          table.put(key, record);
+        }
+      }
+    }
+  }
+
+  /**
+   * Write the tables to a file, through a temporary file so that a failed write does not lose the previous one.
+   */
+  private static void save(String file) throws IOException {
+    File temporary = new File(file + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+      out.writeInt(TABLES.size());
+      for (Map.Entry<String, ConcurrentSkipListMap<String, byte[]>> table : TABLES.entrySet()) {
+        out.writeUTF(table.getKey());
+        for (Map.Entry<String, byte[]> record : table.getValue().entrySet()) {
+          out.writeBoolean(true);
+          out.writeUTF(record.getKey());
+          out.writeInt(record.getValue().length);
+          out.write(record.getValue());
+        }
+        out.writeBoolean(false);
+      }
+    }
+    Files.move(temporary.toPath(), new File(file).toPath(), StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * Drop all the tables and forget the DB instances, such as between tests.
+   */
+  static void clear() {
+    synchronized (MUTEX) {
+      TABLES.clear();
+      instances = 0;
+    }
+  }
+
+  private static ConcurrentSkipListMap<String, byte[]> table(String name) {
+    ConcurrentSkipListMap<String, byte[]> table = TABLES.get(name);
+    if (table == null) {
+      ConcurrentSkipListMap<String, byte[]> created = new ConcurrentSkipListMap<>();
+      table = TABLES.putIfAbsent(name, created);
+      if (table == null) {
+        table = created;
+      }
+    }
+    return table;
+  }
+
+  /**
+   * Wait for the latency of an operation, if there is one.
+   */
+  private void delay() {
+    if (meanLatencyNanos > 0) {
+      long deadline = System.nanoTime() + (long) (meanLatencyNanos * latencies.next());
+      long remaining = deadline - System.nanoTime();
+      while (remaining > 0) {
+        LockSupport.parkNanos(remaining);
+        remaining = deadline - System.nanoTime();
+      }
+    }
+  }
+
+  @Override
+  public Status read(String table, String key, Set<String> fields, Map<String, ByteIterator> result) {
+    delay();
+    byte[] record = table(table).get(key);
+    if (record == null) {
+      return Status.NOT_FOUND;
+    }
+    RecordCodec.decode(record, fields, result);
+    return Status.OK;
+  }
+
+  @Override
+  public Status scan(String table, String startkey, int recordcount, Set<String> fields,
+                     Vector<HashMap<String, ByteIterator>> result) {
+    delay();
+    if (recordcount <= 0) {
+      return Status.OK;
+    }
+    for (byte[] record : table(table).tailMap(startkey, true).values()) {
+      HashMap<String, ByteIterator> values = new HashMap<>();
+      RecordCodec.decode(record, fields, values);
+      result.add(values);
+      if (result.size() == recordcount) {
+        break;
+      }
+    }
+    return Status.OK;
+  }
+
+  @Override
+  public Status update(String table, String key, Map<String, ByteIterator> values) {
+    delay();
+    ConcurrentSkipListMap<String, byte[]> records = table(table);
+    List<byte[]> fields = RecordCodec.toBytes(values);
+    while (true) {
+      byte[] record = records.get(key);
+      if (record == null) {
+        return Status.NOT_FOUND;
+      }
+      if (records.replace(key, record, RecordCodec.merge(record, fields))) {
+        return Status.OK;
+      }
+    }
+  }
+
+  @Override
+  public Status insert(String table, String key, Map<String, ByteIterator> values) {
+    delay();
+    table(table).put(key, RecordCodec.merge(null, RecordCodec.toBytes(values)));
+    return Status.OK;
+  }
+
+  @Override
+  public Status delete(String table, String key) {
+    delay();
+    return table(table).remove(key) == null ? Status.NOT_FOUND : Status.OK;
+  }
+}
@@ -0,0 +1,316 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Wrapper around a DB that delays its operations and makes some of them fail, to rehearse how latency tooling, such
+ * as the coordinated omission correction, behaves with a known latency profile on any binding.
+ * <p>
+ * {@link DBFactory} puts it between the {@link DBWrapper} and the DB when any <b>latencyinject.</b> property is
+ * set, so the injected delays and errors are part of the measured operations. Each operation first waits for a
+ * latency drawn from a distribution, then for the end of the pause it falls in, if any, and then either fails with
+ * {@link Status#ERROR} or is handed to the DB.
+ * </p>
+ * <p>
+ * Pauses model the stop-the-world garbage collections of a server: they start at random, a mean interval apart,
+ * and hold up every operation of the run, across all client threads, until they end.
+ * </p>
+ * Properties:
+ * <UL>
+ * <LI><b>latencyinject.latency</b>: the mean latency of an operation, in microseconds (default: 0)
+ * <LI><b>latencyinject.latency.distribution</b>: constant (default), exponential, histogram, hdrhistogram or
+ * percentiles
+ * <LI><b>latencyinject.latency.file</b>: the histogram of latencies, one latency in microseconds per line as read by
+ * {@link ArrivalDistribution.Histogram#fromFile}, or an HdrHistogram log in microseconds, such as
+ * hdrhistogram.fileoutput writes. Its mean is used unless <b>latencyinject.latency</b> is set
+ * <LI><b>latencyinject.latency.percentiles</b>: the latencies as percentile:microseconds pairs, such as
+ * 50:200,99:2000,100:10000, see {@link ArrivalDistribution.Percentiles}. Their mean is used unless
+ * <b>latencyinject.latency</b> is set
+ * <LI><b>latencyinject.pause.interval</b>: the mean time between pauses, in milliseconds, 0 for none (default: 0)
+ * <LI><b>latencyinject.pause.duration</b>: the duration of a pause, in milliseconds (default: 100)
+ * <LI><b>latencyinject.errorrate</b>: the share of operations that fail (default: 0)
+ * <LI><b>latencyinject.errorrate.&lt;operation&gt;</b>: the share of read, update, insert, scan or delete operations
+ * that fail (default: latencyinject.errorrate)
+ * </UL>
+ */
+public class LatencyInjectingDB extends DB {
+  public static final String PROPERTY_PREFIX = "latencyinject.";
+  public static final String LATENCY_PROPERTY = "latencyinject.latency";
+  public static final String LATENCY_DISTRIBUTION_PROPERTY = "latencyinject.latency.distribution";
+  public static final String LATENCY_DISTRIBUTION_PROPERTY_DEFAULT = "constant";
+  public static final String LATENCY_FILE_PROPERTY = "latencyinject.latency.file";
+  public static final String LATENCY_PERCENTILES_PROPERTY = "latencyinject.latency.percentiles";
+  public static final String PAUSE_INTERVAL_PROPERTY = "latencyinject.pause.interval";
+  public static final String PAUSE_INTERVAL_PROPERTY_DEFAULT = "0";
+  public static final String PAUSE_DURATION_PROPERTY = "latencyinject.pause.duration";
+  public static final String PAUSE_DURATION_PROPERTY_DEFAULT = "100";
+  public static final String ERROR_RATE_PROPERTY = "latencyinject.errorrate";
+  public static final String ERROR_RATE_PROPERTY_DEFAULT = "0";
+
+  /** Guards {@link #sharedPauses}. */
+  private static final Object MUTEX = new Object();
+  private static Pauses sharedPauses;
+
+  private final DB db;
+  private long meanLatencyNanos;
+  private ArrivalDistribution latencies;
+  private Pauses pauses;
+  private final double[] errorRates = new double[Workload.Operation.values().length];
+
+  public LatencyInjectingDB(DB db) {
+    this.db = db;
+  }
+
+  /**
+   * @return Whether any property asks for latencies or errors to be injected.
+   */
+  public static boolean isEnabled(Properties props) {
+    for (String name : props.stringPropertyNames()) {
+      if (name.startsWith(PROPERTY_PREFIX)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public void setProperties(Properties p) {
+    db.setProperties(p);
+  }
+
+  @Override
+  public Properties getProperties() {
+    return db.getProperties();
+  }
+
+  @Override
+  public void init() throws DBException {
+    Properties props = getProperties();
+    initLatencies(props);
+
+    try {
+      long pauseInterval = Long.parseLong(props.getProperty(PAUSE_INTERVAL_PROPERTY, PAUSE_INTERVAL_PROPERTY_DEFAULT));
+      long pauseDuration = Long.parseLong(props.getProperty(PAUSE_DURATION_PROPERTY, PAUSE_DURATION_PROPERTY_DEFAULT));
+      if (pauseInterval < 0 || pauseDuration < 0) {
+        throw new DBException(PAUSE_INTERVAL_PROPERTY + " and " + PAUSE_DURATION_PROPERTY + " cannot be negative");
+      }
+      if (pauseInterval > 0 && pauseDuration > 0) {
+        pauses = sharedPauses(TimeUnit.MILLISECONDS.toNanos(pauseInterval),
+            TimeUnit.MILLISECONDS.toNanos(pauseDuration));
+      }
+
+      String errorRate = props.getProperty(ERROR_RATE_PROPERTY, ERROR_RATE_PROPERTY_DEFAULT);
+      for (Workload.Operation operation : Workload.Operation.values()) {
+        String name = ERROR_RATE_PROPERTY + "." + operation.name().toLowerCase(Locale.ROOT);
+        errorRates[operation.ordinal()] = Double.parseDouble(props.getProperty(name, errorRate));
+        if (!(errorRates[operation.ordinal()] >= 0 && errorRates[operation.ordinal()] <= 1)) {
+          throw new DBException(name + " must be between 0 and 1");
+        }
+      }
+    } catch (NumberFormatException e) {
+      throw new DBException("Invalid latency injection property", e);
+    }
+
+    db.init();
+  }
+
+  private void initLatencies(Properties props) throws DBException {
+    String distribution = props.getProperty(LATENCY_DISTRIBUTION_PROPERTY, LATENCY_DISTRIBUTION_PROPERTY_DEFAULT);
+    String latency = props.getProperty(LATENCY_PROPERTY);
+    double meanMicros = latency == null ? 0 : Double.parseDouble(latency);
+    try {
+      switch (distribution) {
+      case "constant":
+        latencies = ArrivalDistribution.CONSTANT;
+        break;
+      case "exponential":
+        latencies = ArrivalDistribution.POISSON;
+        break;
+      case "histogram":
+      case "hdrhistogram":
+        String histogramFile = props.getProperty(LATENCY_FILE_PROPERTY);
+        if (histogramFile == null) {
+          throw new DBException(LATENCY_FILE_PROPERTY + " must be set for " + distribution + " latencies");
+        }
+        ArrivalDistribution.Histogram histogram;
+        try {
+          histogram = "histogram".equals(distribution) ? ArrivalDistribution.Histogram.fromFile(histogramFile)
+              : ArrivalDistribution.Histogram.fromHdrLog(histogramFile);
+        } catch (IOException e) {
+          throw new DBException("Could not read the latencies from " + histogramFile, e);
+        }
+        if (latency == null) {
+          meanMicros = histogram.getMeanMicros();
+        }
+        latencies = histogram;
+        break;
+      case "percentiles":
+        String spec = props.getProperty(LATENCY_PERCENTILES_PROPERTY);
+        if (spec == null) {
+          throw new DBException(LATENCY_PERCENTILES_PROPERTY + " must be set for percentile latencies");
+        }
+        ArrivalDistribution.Percentiles percentiles = new ArrivalDistribution.Percentiles(spec);
+        if (latency == null) {
+          meanMicros = percentiles.getMeanMicros();
+        }
+        latencies = percentiles;
+        break;
+      default:
+        throw new DBException("Unknown " + LATENCY_DISTRIBUTION_PROPERTY + " '" + distribution
+            + "', expected constant, exponential, histogram, hdrhistogram or percentiles");
+      }
+    } catch (IllegalArgumentException e) {
+      throw new DBException("Invalid latencies: " + e.getMessage(), e);
+    }
+    if (!(meanMicros >= 0)) {
+      throw new DBException(LATENCY_PROPERTY + " cannot be negative");
+    }
+    meanLatencyNanos = (long) (TimeUnit.MICROSECONDS.toNanos(1) * meanMicros);
+  }
+
+  /**
+   * @return The pauses of the run, the same for every instance unless their properties differ.
+   */
+  private static Pauses sharedPauses(long meanIntervalNanos, long durationNanos) {
+    synchronized (MUTEX) {
+      if (sharedPauses == null || !sharedPauses.isLike(meanIntervalNanos, durationNanos)) {
+        sharedPauses = new Pauses(meanIntervalNanos, durationNanos, System.nanoTime());
+      }
+      return sharedPauses;
+    }
+  }
+
+  @Override
+  public void cleanup() throws DBException {
+    db.cleanup();
+  }
+
+  /**
+   * Wait for the latency of an operation, and for the end of the pause it falls in, if any.
+   *
+   * @return Whether the operation fails.
+   */
+  private boolean inject(Workload.Operation operation) {
+    long deadline = System.nanoTime();
+    if (meanLatencyNanos > 0) {
+      deadline += (long) (meanLatencyNanos * latencies.next());
+      waitUntil(deadline);
+    }
+    if (pauses != null) {
+      waitUntil(pauses.release(deadline));
+    }
+    double errorRate = errorRates[operation.ordinal()];
+    return errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate;
+  }
+
+  private static void waitUntil(long deadline) {
+    long remaining = deadline - System.nanoTime();
+    while (remaining > 0) {
+      LockSupport.parkNanos(remaining);
+      remaining = deadline - System.nanoTime();
+    }
+  }
+
+  @Override
+  public Status read(String table, String key, Set<String> fields, Map<String, ByteIterator> result) {
+    if (inject(Workload.Operation.READ)) {
+      return Status.ERROR;
+    }
+    return db.read(table, key, fields, result);
+  }
+
+  @Override
+  public Status scan(String table, String startkey, int recordcount, Set<String> fields,
+                     Vector<HashMap<String, ByteIterator>> result) {
+    if (inject(Workload.Operation.SCAN)) {
+      return Status.ERROR;
+    }
+    return db.scan(table, startkey, recordcount, fields, result);
+  }
+
+  @Override
+  public Status update(String table, String key, Map<String, ByteIterator> values) {
+    if (inject(Workload.Operation.UPDATE)) {
+      return Status.ERROR;
+    }
+    return db.update(table, key, values);
+  }
+
+  @Override
+  public Status insert(String table, String key, Map<String, ByteIterator> values) {
+    if (inject(Workload.Operation.INSERT)) {
+      return Status.ERROR;
+    }
+    return db.insert(table, key, values);
+  }
+
+  @Override
+  public Status delete(String table, String key) {
+    if (inject(Workload.Operation.DELETE)) {
+      return Status.ERROR;
+    }
+    return db.delete(table, key);
+  }
+
+  /**
+   * Pauses starting independently of each other, a mean interval apart, each lasting the same time.
+   */
+  static final class Pauses {
+    private final long meanIntervalNanos;
+    private final long durationNanos;
+    private long start;
+    private long end;
+
+    Pauses(long meanIntervalNanos, long durationNanos, long now) {
+      this.meanIntervalNanos = meanIntervalNanos;
+      this.durationNanos = durationNanos;
+      scheduleAfter(now);
+    }
+
+    boolean isLike(long otherMeanIntervalNanos, long otherDurationNanos) {
+      return meanIntervalNanos == otherMeanIntervalNanos && durationNanos == otherDurationNanos;
+    }
+
+    private void scheduleAfter(long time) {
+      start = time + (long) (meanIntervalNanos * ArrivalDistribution.POISSON.next());
+      end = start + durationNanos;
+    }
+
+    /**
+     * @return When an operation that would end at the given time can end: at the end of the pause the time falls
+     * in, or at that time.
+     */
+    synchronized long release(long time) {
+      while (time - end >= 0) {
+        scheduleAfter(end);
+      }
+      return time - start >= 0 ? end : time;
+    }
+  }
+}
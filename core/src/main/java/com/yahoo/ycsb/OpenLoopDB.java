@@ -0,0 +1,437 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import org.apache.htrace.core.Tracer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * The DB handed to the workload when the client runs open-loop.
+ * <p>
+ * Each call is dispatched to a pool of worker threads and returns {@link Status#BATCHED_OK} right away,
+ * so the {@link ClientThread} driving this instance keeps issuing operations on its arrival schedule
+ * instead of waiting for the previous one to complete. At most <b>openloop.maxinflight</b> operations are
+ * outstanding at a time; once the window is full the issuing thread waits for a slot, but the intended
+ * start time of the operation has already been captured so the wait is charged to its latency.
+ * </p>
+ * <p>
+ * Workers run the regular synchronous DB methods on DB instances taken from a pool that grows on demand up
+ * to the window size, so bindings work unchanged. Each instance is wrapped in a {@link DBWrapper} which records
+ * the latency on the worker thread when the operation completes. Once an instance cannot be created or
+ * initialized, such as when the backend refuses more connections, the operation that asked for it is recorded as
+ * {@link Status#ERROR} and the pool stops growing: later operations wait for one of the instances there are.
+ * </p>
+ * <p>
+ * The worker threads are shared by all the client threads of the process: there are
+ * <b>openloop.workerthreads</b> of them however many client threads run open-loop, and operations beyond that
+ * queue for a worker with their intended start time already taken.
+ * </p>
+ * <p>
+ * Bindings implementing {@link AsyncDB} need no worker threads: the operation is issued on the calling thread,
+ * the {@link AsyncDBWrapper} records its latency on completion, and the completion frees its slot in the window.
+ * A single DB instance is used.
+ * </p>
+ * <p>
+ * Because the workload does not wait for the operation, read and scan results are not handed back to it
+ * and the status it sees is always {@link Status#BATCHED_OK}; the real status is reported to
+ * {@link Measurements} by the worker. Workloads that inspect results, such as CoreWorkload with
+ * <b>dataintegrity</b>, should be run closed-loop. For the same reason the totals of the
+ * {@link com.yahoo.ycsb.measurements.OverheadBreakdown overhead breakdown} do not add up in open-loop runs.
+ * </p>
+ */
+public class OpenLoopDB extends DB {
+  /**
+   * The maximum number of operations a single client thread may have outstanding.
+   */
+  public static final String MAX_IN_FLIGHT_PROPERTY = "openloop.maxinflight";
+  public static final String MAX_IN_FLIGHT_PROPERTY_DEFAULT = "100";
+
+  /**
+   * The number of worker threads running the operations of synchronous bindings, for all client threads together.
+   */
+  public static final String WORKER_THREADS_PROPERTY = "openloop.workerthreads";
+  public static final String WORKER_THREADS_PROPERTY_DEFAULT = "100";
+
+  private static final AtomicInteger WORKER_ID = new AtomicInteger();
+
+  /** The worker threads shared by the open-loop instances, and the number of instances using them. */
+  private static ExecutorService sharedWorkers;
+  private static int sharedWorkersUsers;
+
+  private final String dbname;
+  private final Tracer tracer;
+  private final Measurements measurements;
+
+  /** DB instances not currently executing an operation. */
+  private final LinkedBlockingQueue<DB> idle = new LinkedBlockingQueue<>();
+
+  /** Every DB instance created by this pool, so they can all be cleaned up; guards instance creation. */
+  private final List<DB> created = new ArrayList<>();
+
+  /** Set once an instance could not be created, after which the pool no longer grows. Guarded by created. */
+  private boolean exhausted;
+
+  private int maxInFlight;
+  private Semaphore window;
+  private ExecutorService workers;
+
+  /** Set when the binding is asynchronous, in which case there are no workers. */
+  private AsyncDB async;
+
+  /** Runs the operations no DB instance could be found for, so they are measured as errors. */
+  private DB unavailable;
+
+  /**
+   * @param db     The first DB instance of the pool, as returned by {@link DBFactory#newDB}. Not yet initialized.
+   * @param dbname The DB class to instantiate when more instances are needed.
+   * @param tracer The tracer passed on to new instances.
+   */
+  public OpenLoopDB(DB db, String dbname, Tracer tracer) {
+    this(db, dbname, tracer, Measurements.getMeasurements());
+  }
+
+  /**
+   * @param measurements Where the intended start times of the operations are handed to the workers.
+   */
+  OpenLoopDB(DB db, String dbname, Tracer tracer, Measurements measurements) {
+    this.dbname = dbname;
+    this.tracer = tracer;
+    this.measurements = measurements;
+    created.add(db);
+    setProperties(db.getProperties());
+  }
+
+  @Override
+  public void init() throws DBException {
+    maxInFlight = Integer.parseInt(getProperties().getProperty(MAX_IN_FLIGHT_PROPERTY,
+        MAX_IN_FLIGHT_PROPERTY_DEFAULT));
+    if (maxInFlight < 1) {
+      throw new DBException(MAX_IN_FLIGHT_PROPERTY + " must be at least 1");
+    }
+    DB first = created.get(0);
+    first.init();
+    idle.add(first);
+
+    window = new Semaphore(maxInFlight);
+    if (first instanceof AsyncDB) {
+      async = (AsyncDB) first;
+      return;
+    }
+    unavailable = new DBWrapper(new UnavailableDB(), tracer, measurements);
+    unavailable.setProperties(getProperties());
+    unavailable.init();
+    int workerThreads = Integer.parseInt(getProperties().getProperty(WORKER_THREADS_PROPERTY,
+        WORKER_THREADS_PROPERTY_DEFAULT));
+    if (workerThreads < 1) {
+      throw new DBException(WORKER_THREADS_PROPERTY + " must be at least 1");
+    }
+    workers = acquireWorkers(workerThreads);
+  }
+
+  /**
+   * @return The shared worker threads, started by the first instance to ask for them.
+   */
+  private static synchronized ExecutorService acquireWorkers(int threads) {
+    if (sharedWorkers == null) {
+      sharedWorkers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, "OpenLoopWorker-" + WORKER_ID.getAndIncrement());
+          t.setDaemon(true);
+          return t;
+        }
+      });
+    }
+    sharedWorkersUsers++;
+    return sharedWorkers;
+  }
+
+  /**
+   * Stops the shared worker threads once the last instance using them is done.
+   */
+  private static synchronized void releaseWorkers() {
+    if (--sharedWorkersUsers > 0) {
+      return;
+    }
+    sharedWorkers.shutdown();
+    try {
+      sharedWorkers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    sharedWorkers = null;
+  }
+
+  /**
+   * Waits for every outstanding operation to complete, then cleans up all the pooled DB instances.
+   */
+  @Override
+  public void cleanup() throws DBException {
+    window.acquireUninterruptibly(maxInFlight);
+    if (workers != null) {
+      workers = null;
+      releaseWorkers();
+    }
+
+    DBException failure = null;
+    synchronized (created) {
+      for (DB db : created) {
+        try {
+          db.cleanup();
+        } catch (DBException e) {
+          if (failure == null) {
+            failure = e;
+          }
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  @Override
+  public Status read(final String table, final String key, final Set<String> fields,
+                     Map<String, ByteIterator> result) {
+    if (async != null) {
+      return issue(() -> async.readAsync(table, key, fields, new HashMap<String, ByteIterator>()));
+    }
+    return dispatch(new Operation() {
+      @Override
+      public Status execute(DB db) {
+        return db.read(table, key, fields, new HashMap<String, ByteIterator>());
+      }
+    });
+  }
+
+  @Override
+  public Status scan(final String table, final String startkey, final int recordcount, final Set<String> fields,
+                     Vector<HashMap<String, ByteIterator>> result) {
+    if (async != null) {
+      return issue(() -> async.scanAsync(table, startkey, recordcount, fields,
+          new Vector<HashMap<String, ByteIterator>>()));
+    }
+    return dispatch(new Operation() {
+      @Override
+      public Status execute(DB db) {
+        return db.scan(table, startkey, recordcount, fields, new Vector<HashMap<String, ByteIterator>>());
+      }
+    });
+  }
+
+  @Override
+  public Status update(final String table, final String key, final Map<String, ByteIterator> values) {
+    if (async != null) {
+      return issue(() -> async.updateAsync(table, key, values));
+    }
+    return dispatch(new Operation() {
+      @Override
+      public Status execute(DB db) {
+        return db.update(table, key, values);
+      }
+    });
+  }
+
+  @Override
+  public Status insert(final String table, final String key, final Map<String, ByteIterator> values) {
+    if (async != null) {
+      return issue(() -> async.insertAsync(table, key, values));
+    }
+    return dispatch(new Operation() {
+      @Override
+      public Status execute(DB db) {
+        return db.insert(table, key, values);
+      }
+    });
+  }
+
+  @Override
+  public Status delete(final String table, final String key) {
+    if (async != null) {
+      return issue(() -> async.deleteAsync(table, key));
+    }
+    return dispatch(new Operation() {
+      @Override
+      public Status execute(DB db) {
+        return db.delete(table, key);
+      }
+    });
+  }
+
+  /**
+   * One operation against a pooled DB instance.
+   */
+  private interface Operation {
+    Status execute(DB db);
+  }
+
+  private Status dispatch(final Operation op) {
+    // Captured on the issuing thread, before we possibly wait for the window, so that time spent queued
+    // behind earlier operations shows up in the intended latency.
+    final long intendedStartTimeNanos = measurements.getIntendedtartTimeNs();
+    window.acquireUninterruptibly();
+    try {
+      workers.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            DB db = acquire();
+            measurements.setIntendedStartTimeNs(intendedStartTimeNanos);
+            if (db == null) {
+              op.execute(unavailable);
+              return;
+            }
+            try {
+              op.execute(db);
+            } finally {
+              idle.add(db);
+            }
+          } finally {
+            window.release();
+          }
+        }
+      });
+    } catch (RuntimeException e) {
+      window.release();
+      throw e;
+    }
+    return Status.BATCHED_OK;
+  }
+
+  /**
+   * Issues an asynchronous operation once there is room in the window, and frees its slot once it completes,
+   * or right away if the binding throws instead of returning a stage.
+   */
+  private Status issue(Supplier<CompletionStage<Status>> op) {
+    window.acquireUninterruptibly();
+    CompletionStage<Status> stage;
+    try {
+      stage = op.get();
+    } catch (RuntimeException e) {
+      window.release();
+      throw e;
+    }
+    stage.whenComplete((res, throwable) -> window.release());
+    return Status.BATCHED_OK;
+  }
+
+  /**
+   * @return An initialized DB instance for the calling worker, or null if a new one could not be created.
+   */
+  private DB acquire() {
+    DB db = idle.poll();
+    if (db != null) {
+      return db;
+    }
+    synchronized (created) {
+      if (!exhausted) {
+        db = newInstance();
+        if (db == null) {
+          exhausted = true;
+        } else {
+          created.add(db);
+        }
+        return db;
+      }
+    }
+    try {
+      return idle.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    }
+  }
+
+  /**
+   * @return A new initialized DB instance, or null if it could not be created.
+   */
+  private DB newInstance() {
+    DB db;
+    try {
+      db = DBFactory.newDB(dbname, getProperties(), tracer);
+    } catch (UnknownDBException e) {
+      db = null;
+    }
+    if (db == null) {
+      System.err.println("Open loop: could not instantiate another " + dbname + ", staying at " + created.size()
+          + " instances");
+      return null;
+    }
+    try {
+      db.init();
+    } catch (DBException e) {
+      System.err.println("Open loop: failed to initialize another " + dbname + ", staying at " + created.size()
+          + " instances: " + e);
+      try {
+        db.cleanup();
+      } catch (DBException cleanupFailure) {
+        System.err.println("Open loop: failed to clean up the instance: " + cleanupFailure);
+      }
+      return null;
+    }
+    return db;
+  }
+
+  /**
+   * Stands in for a DB instance that could not be created, failing every operation so the workload's operation
+   * is still counted, with the latency it was meant to have.
+   */
+  private static final class UnavailableDB extends DB {
+    @Override
+    public Status read(String table, String key, Set<String> fields, Map<String, ByteIterator> result) {
+      return Status.ERROR;
+    }
+
+    @Override
+    public Status scan(String table, String startkey, int recordcount, Set<String> fields,
+                       Vector<HashMap<String, ByteIterator>> result) {
+      return Status.ERROR;
+    }
+
+    @Override
+    public Status update(String table, String key, Map<String, ByteIterator> values) {
+      return Status.ERROR;
+    }
+
+    @Override
+    public Status insert(String table, String key, Map<String, ByteIterator> values) {
+      return Status.ERROR;
+    }
+
+    @Override
+    public Status delete(String table, String key) {
+      return Status.ERROR;
+    }
+  }
+}
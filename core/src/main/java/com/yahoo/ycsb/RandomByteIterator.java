@@ -16,6 +16,7 @@
  */
 package com.yahoo.ycsb;
 
+import java.nio.ByteBuffer;
 import java.util.concurrent.ThreadLocalRandom;
 
 /**
@@ -78,8 +79,8 @@ public class RandomByteIterator extends ByteIterator {
   @Override
   public int nextBuf(byte[] buffer, int bufOffset) {
     int ret;
-    if (len - off < buffer.length - bufOffset) {
-      ret = (int) (len - off);
+    if (bytesLeft() < buffer.length - bufOffset) {
+      ret = (int) bytesLeft();
     } else {
       ret = buffer.length - bufOffset;
     }
@@ -91,6 +92,30 @@ public class RandomByteIterator extends ByteIterator {
     return ret + bufOffset;
   }
 
+  @Override
+  public int nextBuf(ByteBuffer dst) {
+    int ret = (int) Math.min(dst.remaining(), bytesLeft());
+    if (dst.hasArray()) {
+      byte[] array = dst.array();
+      int base = dst.arrayOffset() + dst.position();
+      // fillBytesImpl writes up to 6 bytes, stopping at the end of the array only
+      int whole = ret - ret % 6;
+      for (int i = 0; i < whole; i += 6) {
+        fillBytesImpl(array, base + i);
+      }
+      fillBytesImpl(buf, 0);
+      System.arraycopy(buf, 0, array, base + whole, ret - whole);
+      dst.position(dst.position() + ret);
+    } else {
+      for (int i = 0; i < ret; i += 6) {
+        fillBytesImpl(buf, 0);
+        dst.put(buf, 0, Math.min(6, ret - i));
+      }
+    }
+    off += ret;
+    return ret;
+  }
+
   @Override
   public long bytesLeft() {
     return len - off - bufOff;
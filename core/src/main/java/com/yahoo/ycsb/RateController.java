@@ -0,0 +1,175 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out the start times of the operations of all client threads, following a {@link RateProfile}.
+ * <p>
+ * Operations are numbered in the order threads ask for a start time, so the client as a whole follows the
+ * profile whatever the number of threads, and a thread held up by a slow operation does not hold the others
+ * back. The start time an operation is given is its intended start time: when every thread is busy and an
+ * operation starts late, its latency is still measured from when it should have started.
+ * </p>
+ * <p>
+ * Operations are numbered by adding up inter-arrival times drawn from an {@link ArrivalDistribution}, with a mean
+ * of 1, and the profile turns these numbers into start times. Evenly spaced numbers follow the profile exactly;
+ * exponential ones make a Poisson process whose rate follows the profile, which shows the queueing a regular
+ * schedule hides. Numbers are claimed without locking.
+ * </p>
+ * <p>
+ * Properties:
+ * <UL>
+ * <LI><b>target.profile</b>: the profile itself, as described in {@link RateProfile}. It replaces <b>target</b>
+ * <LI><b>target.profile.file</b>: a file holding the profile
+ * <LI><b>target.profile.scale</b>: a factor applied to every rate of the profile (default: 1)
+ * <LI><b>target.arrival</b>: the distribution of the times between operations: perthread (default), constant,
+ * poisson or histogram. Without a profile, all but perthread make the client follow <b>target</b> as a whole
+ * instead of giving each thread its share of it; perthread is the same as constant with a profile
+ * <LI><b>target.arrival.file</b>: the histogram of inter-arrival times, see
+ * {@link ArrivalDistribution.Histogram#fromFile}. Without <b>target</b> or a profile, the client follows the
+ * mean rate of the histogram
+ * </UL>
+ * </p>
+ */
+public final class RateController {
+  public static final String PROFILE_PROPERTY = "target.profile";
+  public static final String PROFILE_FILE_PROPERTY = "target.profile.file";
+  public static final String SCALE_PROPERTY = "target.profile.scale";
+  public static final String SCALE_PROPERTY_DEFAULT = "1";
+  public static final String ARRIVAL_PROPERTY = "target.arrival";
+  public static final String ARRIVAL_PROPERTY_DEFAULT = "perthread";
+  public static final String ARRIVAL_FILE_PROPERTY = "target.arrival.file";
+
+  private final RateProfile profile;
+  private final double scale;
+  private final ArrivalDistribution arrivals;
+  /** The number of the next operation, as the bits of a double. */
+  private final AtomicLong next = new AtomicLong(Double.doubleToRawLongBits(0));
+  private volatile boolean started;
+  private long startNanos;
+
+  public RateController(RateProfile profile, double scale) {
+    this(profile, scale, ArrivalDistribution.CONSTANT);
+  }
+
+  public RateController(RateProfile profile, double scale, ArrivalDistribution arrivals) {
+    if (!(scale > 0)) {
+      throw new IllegalArgumentException(SCALE_PROPERTY + " must be positive, got " + scale);
+    }
+    this.profile = profile;
+    this.scale = scale;
+    this.arrivals = arrivals;
+  }
+
+  /**
+   * @return The controller described by the properties, or null if they neither set a profile nor ask for
+   * arrivals other than per thread.
+   * @throws IllegalArgumentException If the profile or the arrivals are not valid.
+   * @throws IOException If the profile or histogram file cannot be read.
+   */
+  public static RateController fromProperties(Properties props) throws IOException {
+    String spec = props.getProperty(PROFILE_PROPERTY);
+    String file = props.getProperty(PROFILE_FILE_PROPERTY);
+    String arrival = props.getProperty(ARRIVAL_PROPERTY, ARRIVAL_PROPERTY_DEFAULT);
+    if (spec == null && file == null && arrival.equals(ARRIVAL_PROPERTY_DEFAULT)) {
+      return null;
+    }
+    if (spec != null && file != null) {
+      throw new IllegalArgumentException("Set either " + PROFILE_PROPERTY + " or " + PROFILE_FILE_PROPERTY);
+    }
+    if (file != null) {
+      spec = new String(Files.readAllBytes(Paths.get(file)), StandardCharsets.UTF_8);
+    }
+
+    ArrivalDistribution arrivals;
+    switch (arrival) {
+    case ARRIVAL_PROPERTY_DEFAULT:
+    case "constant":
+      arrivals = ArrivalDistribution.CONSTANT;
+      break;
+    case "poisson":
+      arrivals = ArrivalDistribution.POISSON;
+      break;
+    case "histogram":
+      String histogram = props.getProperty(ARRIVAL_FILE_PROPERTY);
+      if (histogram == null) {
+        throw new IllegalArgumentException(ARRIVAL_FILE_PROPERTY + " must be set for histogram arrivals");
+      }
+      arrivals = ArrivalDistribution.Histogram.fromFile(histogram);
+      break;
+    default:
+      throw new IllegalArgumentException("Unknown " + ARRIVAL_PROPERTY + " '" + arrival
+          + "', expected perthread, constant, poisson or histogram");
+    }
+
+    if (spec == null) {
+      // a single, endless, constant rate
+      double target = Double.parseDouble(props.getProperty(Client.TARGET_PROPERTY, "0"));
+      if (!(target > 0) && arrivals instanceof ArrivalDistribution.Histogram) {
+        target = 1e6 / ((ArrivalDistribution.Histogram) arrivals).getMeanMicros();
+      }
+      if (!(target > 0)) {
+        throw new IllegalArgumentException(ARRIVAL_PROPERTY + "=" + arrival + " needs " + Client.TARGET_PROPERTY
+            + " or " + PROFILE_PROPERTY);
+      }
+      return new RateController(RateProfile.parse("1h constant " + target), 1, arrivals);
+    }
+    return new RateController(RateProfile.parse(spec),
+        Double.parseDouble(props.getProperty(SCALE_PROPERTY, SCALE_PROPERTY_DEFAULT)), arrivals);
+  }
+
+  /**
+   * @return Whether the properties set a profile.
+   */
+  static boolean isSet(Properties props) {
+    return props.containsKey(PROFILE_PROPERTY) || props.containsKey(PROFILE_FILE_PROPERTY);
+  }
+
+  /**
+   * Claim the next operation.
+   *
+   * @return The time, as {@link System#nanoTime()}, at which it should start. The profile starts with the first
+   * operation claimed.
+   */
+  public long nextStartNanos() {
+    if (!started) {
+      start();
+    }
+    long bits;
+    double n;
+    do {
+      bits = next.get();
+      n = Double.longBitsToDouble(bits);
+    } while (!next.compareAndSet(bits, Double.doubleToRawLongBits(n + arrivals.next())));
+    return startNanos + profile.startNanos(n / scale);
+  }
+
+  private synchronized void start() {
+    if (!started) {
+      startNanos = System.nanoTime();
+      started = true;
+    }
+  }
+}
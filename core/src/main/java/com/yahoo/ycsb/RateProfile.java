@@ -0,0 +1,377 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A target throughput which changes over time, made of segments played one after the other, then repeated.
+ * <p>
+ * Segments are separated by commas or new lines, and text after a '#' is ignored. Each segment is a duration,
+ * such as 500ms, 90s, 5m or 1h, followed by its shape, rates being in operations per second:
+ * <UL>
+ * <LI><b>constant</b> <i>rate</i>
+ * <LI><b>ramp</b> <i>from</i> <i>to</i>: a linear change over the segment
+ * <LI><b>step</b> <i>from</i> <i>increment</i> <i>every</i>: from, then increased by increment after every duration
+ * <LI><b>sine</b> <i>mean</i> <i>amplitude</i> <i>period</i>: a sine wave starting at its mean and going up first
+ * <LI><b>burst</b> <i>base</i> <i>peak</i> <i>every</i> <i>length</i>: base, except for the last length of every
+ * duration, at peak
+ * </UL>
+ * For instance "1m ramp 0 1000, 10m step 1000 1000 2m, 1h sine 5000 3000 1h, 10m burst 2000 10000 1m 5s".
+ * </p>
+ */
+public final class RateProfile {
+  private static final double NANOS_PER_SECOND = 1e9;
+
+  /** One segment, with its times in seconds since the start of the segment. */
+  private abstract static class Segment {
+    private final double duration;
+
+    Segment(double duration) {
+      this.duration = duration;
+    }
+
+    /** The rate at a time. */
+    abstract double rate(double t);
+
+    /** The number of operations from the start of the segment to a time. */
+    abstract double count(double t);
+
+    /** The earliest time at which the count reaches n, within a microsecond. */
+    double time(double n) {
+      double lo = 0;
+      double hi = duration;
+      while (hi - lo > 1e-6) {
+        double mid = (lo + hi) / 2;
+        if (count(mid) < n) {
+          lo = mid;
+        } else {
+          hi = mid;
+        }
+      }
+      return hi;
+    }
+  }
+
+  private static final class Constant extends Segment {
+    private final double rate;
+
+    Constant(double duration, double rate) {
+      super(duration);
+      this.rate = rate;
+    }
+
+    @Override
+    double rate(double t) {
+      return rate;
+    }
+
+    @Override
+    double count(double t) {
+      return rate * t;
+    }
+
+    @Override
+    double time(double n) {
+      return n / rate;
+    }
+  }
+
+  private static final class Ramp extends Segment {
+    private final double from;
+    private final double slope;
+
+    Ramp(double duration, double from, double to) {
+      super(duration);
+      this.from = from;
+      this.slope = (to - from) / duration;
+    }
+
+    @Override
+    double rate(double t) {
+      return from + slope * t;
+    }
+
+    @Override
+    double count(double t) {
+      return from * t + slope * t * t / 2;
+    }
+  }
+
+  private static final class Step extends Segment {
+    private final double from;
+    private final double increment;
+    private final double every;
+
+    Step(double duration, double from, double increment, double every) {
+      super(duration);
+      this.from = from;
+      this.increment = increment;
+      this.every = every;
+    }
+
+    @Override
+    double rate(double t) {
+      return from + increment * Math.floor(t / every);
+    }
+
+    @Override
+    double count(double t) {
+      double steps = Math.floor(t / every);
+      return every * (from * steps + increment * steps * (steps - 1) / 2) + (t - steps * every) * rate(t);
+    }
+  }
+
+  private static final class Sine extends Segment {
+    private final double mean;
+    private final double amplitude;
+    private final double period;
+
+    Sine(double duration, double mean, double amplitude, double period) {
+      super(duration);
+      this.mean = mean;
+      this.amplitude = amplitude;
+      this.period = period;
+    }
+
+    @Override
+    double rate(double t) {
+      return mean + amplitude * Math.sin(2 * Math.PI * t / period);
+    }
+
+    @Override
+    double count(double t) {
+      return mean * t + amplitude * period / (2 * Math.PI) * (1 - Math.cos(2 * Math.PI * t / period));
+    }
+  }
+
+  private static final class Burst extends Segment {
+    private final double base;
+    private final double peak;
+    private final double every;
+    private final double length;
+
+    Burst(double duration, double base, double peak, double every, double length) {
+      super(duration);
+      this.base = base;
+      this.peak = peak;
+      this.every = every;
+      this.length = length;
+    }
+
+    @Override
+    double rate(double t) {
+      return t % every < every - length ? base : peak;
+    }
+
+    @Override
+    double count(double t) {
+      double periods = Math.floor(t / every);
+      double u = t - periods * every;
+      return periods * (base * (every - length) + peak * length)
+          + base * Math.min(u, every - length) + peak * Math.max(0, u - (every - length));
+    }
+  }
+
+  private final List<Segment> segments;
+  /** The start time and count of each segment, and of the end of the profile after the last one. */
+  private final double[] starts;
+  private final double[] counts;
+
+  private RateProfile(List<Segment> segments) {
+    this.segments = segments;
+    starts = new double[segments.size() + 1];
+    counts = new double[segments.size() + 1];
+    for (int i = 0; i < segments.size(); i++) {
+      Segment segment = segments.get(i);
+      starts[i + 1] = starts[i] + segment.duration;
+      counts[i + 1] = counts[i] + segment.count(segment.duration);
+    }
+  }
+
+  /**
+   * @return The profile described by a specification, see the class description.
+   * @throws IllegalArgumentException If the specification is not valid.
+   */
+  public static RateProfile parse(String spec) {
+    List<Segment> segments = new ArrayList<>();
+    for (String line : spec.split("[\n\r]+")) {
+      int comment = line.indexOf('#');
+      if (comment >= 0) {
+        line = line.substring(0, comment);
+      }
+      for (String segment : line.split(",")) {
+        if (!segment.trim().isEmpty()) {
+          segments.add(parseSegment(segment.trim()));
+        }
+      }
+    }
+    if (segments.isEmpty()) {
+      throw new IllegalArgumentException("A rate profile needs at least one segment");
+    }
+    RateProfile profile = new RateProfile(segments);
+    if (!(profile.getCount() > 0)) {
+      throw new IllegalArgumentException("A rate profile must have some operations: " + spec);
+    }
+    return profile;
+  }
+
+  private static Segment parseSegment(String segment) {
+    String[] tokens = segment.split("\\s+");
+    if (tokens.length < 3) {
+      throw new IllegalArgumentException("Rate profile segment '" + segment + "' needs a duration, a shape and rates");
+    }
+    double duration = parseDuration(tokens[0]);
+    String shape = tokens[1];
+    Segment parsed;
+    switch (shape) {
+    case "constant":
+      checkArguments(segment, tokens, 1);
+      parsed = new Constant(duration, parseRate(tokens[2]));
+      break;
+    case "ramp":
+      checkArguments(segment, tokens, 2);
+      parsed = new Ramp(duration, parseRate(tokens[2]), parseRate(tokens[3]));
+      break;
+    case "step":
+      checkArguments(segment, tokens, 3);
+      parsed = new Step(duration, parseRate(tokens[2]), Double.parseDouble(tokens[3]), parseDuration(tokens[4]));
+      break;
+    case "sine":
+      checkArguments(segment, tokens, 3);
+      parsed = new Sine(duration, parseRate(tokens[2]), parseRate(tokens[3]), parseDuration(tokens[4]));
+      break;
+    case "burst":
+      checkArguments(segment, tokens, 4);
+      double every = parseDuration(tokens[4]);
+      double length = parseDuration(tokens[5]);
+      if (length > every) {
+        throw new IllegalArgumentException("Rate profile segment '" + segment
+            + "' has bursts longer than their period");
+      }
+      parsed = new Burst(duration, parseRate(tokens[2]), parseRate(tokens[3]), every, length);
+      break;
+    default:
+      throw new IllegalArgumentException("Unknown rate profile shape '" + shape + "' in '" + segment + "'");
+    }
+    // rates are not negative, but steps may go down and a sine wave below its mean
+    boolean negative = parsed instanceof Sine ? parseRate(tokens[3]) > parseRate(tokens[2])
+        : parsed.rate(Math.nextDown(duration)) < 0;
+    if (negative) {
+      throw new IllegalArgumentException("Rate profile segment '" + segment + "' has a negative rate");
+    }
+    return parsed;
+  }
+
+  private static void checkArguments(String segment, String[] tokens, int arguments) {
+    if (tokens.length != arguments + 2) {
+      throw new IllegalArgumentException("Rate profile segment '" + segment + "' needs " + arguments
+          + " values after " + tokens[1]);
+    }
+  }
+
+  private static double parseRate(String rate) {
+    double value = Double.parseDouble(rate);
+    if (value < 0 || Double.isNaN(value) || Double.isInfinite(value)) {
+      throw new IllegalArgumentException("Invalid rate " + rate);
+    }
+    return value;
+  }
+
+  /**
+   * @return The number of seconds of a duration such as 500us, 250ms, 30s, 5m or 2h.
+   */
+  static double parseDuration(String duration) {
+    int unit = 0;
+    while (unit < duration.length() && (Character.isDigit(duration.charAt(unit)) || duration.charAt(unit) == '.')) {
+      unit++;
+    }
+    double value = unit == 0 ? -1 : Double.parseDouble(duration.substring(0, unit));
+    TimeUnit timeUnit;
+    switch (duration.substring(unit)) {
+    case "us":
+      timeUnit = TimeUnit.MICROSECONDS;
+      break;
+    case "ms":
+      timeUnit = TimeUnit.MILLISECONDS;
+      break;
+    case "s":
+      timeUnit = TimeUnit.SECONDS;
+      break;
+    case "m":
+      timeUnit = TimeUnit.MINUTES;
+      break;
+    case "h":
+      timeUnit = TimeUnit.HOURS;
+      break;
+    default:
+      timeUnit = null;
+    }
+    if (timeUnit == null || !(value > 0)) {
+      throw new IllegalArgumentException("Invalid duration " + duration + ", expected a number followed by us, ms, s, "
+          + "m or h");
+    }
+    return value * timeUnit.toNanos(1) / NANOS_PER_SECOND;
+  }
+
+  /**
+   * @return The duration of one pass of the profile, in seconds.
+   */
+  public double getDuration() {
+    return starts[segments.size()];
+  }
+
+  /**
+   * @return The number of operations of one pass of the profile.
+   */
+  public double getCount() {
+    return counts[segments.size()];
+  }
+
+  /**
+   * @return The target rate, in operations per second, at a number of seconds since the start.
+   */
+  public double rate(double seconds) {
+    double t = seconds % getDuration();
+    int i = segments.size() - 1;
+    while (i > 0 && starts[i] > t) {
+      i--;
+    }
+    return segments.get(i).rate(t - starts[i]);
+  }
+
+  /**
+   * @return The time, in nanoseconds since the start, at which operation n (counting from 0) should start.
+   */
+  public long startNanos(double n) {
+    double passes = Math.floor(n / getCount());
+    double rest = n - passes * getCount();
+    int i = segments.size() - 1;
+    while (i > 0 && counts[i] > rest) {
+      i--;
+    }
+    // skip segments without operations, so the operation starts in the one reaching it
+    while (i < segments.size() - 1 && counts[i + 1] <= rest) {
+      i++;
+    }
+    double seconds = passes * getDuration() + starts[i] + segments.get(i).time(rest - counts[i]);
+    return (long) (seconds * NANOS_PER_SECOND);
+  }
+}
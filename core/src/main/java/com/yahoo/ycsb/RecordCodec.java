@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Encodes a record, the names and values of its fields, into a single byte array, for the bindings that store
+ * records as bytes themselves, such as {@link InMemoryDB}.
+ * <p>
+ * Each field is the length of its name as a short, its name in UTF-8, the length of its value as an int, then its
+ * value. Values decoded from a record point into its array rather than being copied.
+ * </p>
+ */
+public final class RecordCodec {
+  private RecordCodec() {
+    // not used
+  }
+
+  /**
+   * @return The names and values of the fields, in turn, as bytes.
+   */
+  public static List<byte[]> toBytes(Map<String, ByteIterator> values) {
+    List<byte[]> fields = new ArrayList<>(2 * values.size());
+    for (Map.Entry<String, ByteIterator> entry : values.entrySet()) {
+      fields.add(entry.getKey().getBytes(StandardCharsets.UTF_8));
+      fields.add(entry.getValue().toArray());
+    }
+    return fields;
+  }
+
+  /**
+   * Build a record, each field being the length of its name as a short, its name, the length of its value as an
+   * int, then its value.
+   *
+   * @param record The record to start from, whose fields are kept unless given again, or null.
+   * @param fields The names and values of the fields to set, in turn.
+   */
+  public static byte[] merge(byte[] record, List<byte[]> fields) {
+    int size = 0;
+    for (int i = 0; i < fields.size(); i += 2) {
+      size += 6 + fields.get(i).length + fields.get(i + 1).length;
+    }
+    if (record != null) {
+      size += keptFields(record, fields, null);
+    }
+    ByteBuffer merged = ByteBuffer.allocate(size);
+    if (record != null) {
+      keptFields(record, fields, merged);
+    }
+    for (int i = 0; i < fields.size(); i += 2) {
+      merged.putShort((short) fields.get(i).length).put(fields.get(i));
+      merged.putInt(fields.get(i + 1).length).put(fields.get(i + 1));
+    }
+    return merged.array();
+  }
+
+  /**
+   * Go over the fields of a record which are not being set.
+   *
+   * @param into Where to copy them, or null to only add up their size.
+   * @return Their size, in bytes.
+   */
+  private static int keptFields(byte[] record, List<byte[]> fields, ByteBuffer into) {
+    ByteBuffer buffer = ByteBuffer.wrap(record);
+    int kept = 0;
+    int position = 0;
+    while (position < record.length) {
+      int nameLength = buffer.getShort(position) & 0xffff;
+      int length = 6 + nameLength + buffer.getInt(position + 2 + nameLength);
+      if (!isSet(record, position + 2, nameLength, fields)) {
+        if (into != null) {
+          into.put(record, position, length);
+        }
+        kept += length;
+      }
+      position += length;
+    }
+    return kept;
+  }
+
+  /**
+   * @return True if the field whose name is at the given place in the record is one of the fields being set.
+   */
+  private static boolean isSet(byte[] record, int nameStart, int nameLength, List<byte[]> fields) {
+    for (int i = 0; i < fields.size(); i += 2) {
+      byte[] name = fields.get(i);
+      if (name.length == nameLength) {
+        int j = 0;
+        while (j < nameLength && name[j] == record[nameStart + j]) {
+          j++;
+        }
+        if (j == nameLength) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Put the fields of a record into the result, all of them or only those asked for.
+   */
+  public static void decode(byte[] record, Set<String> fields, Map<String, ByteIterator> result) {
+    ByteBuffer buffer = ByteBuffer.wrap(record);
+    while (buffer.hasRemaining()) {
+      int nameLength = buffer.getShort() & 0xffff;
+      String name = new String(record, buffer.position(), nameLength, StandardCharsets.UTF_8);
+      buffer.position(buffer.position() + nameLength);
+      int valueLength = buffer.getInt();
+      if (fields == null || fields.contains(name)) {
+        result.put(name, new ByteArrayByteIterator(record, buffer.position(), valueLength));
+      }
+      buffer.position(buffer.position() + valueLength);
+    }
+  }
+}
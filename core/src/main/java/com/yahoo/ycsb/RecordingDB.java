@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+
+/**
+ * Wrapper around a DB that records every operation into a binary trace, which
+ * {@link com.yahoo.ycsb.workloads.TraceReplayWorkload} replays. Recorded are the operation, table, key, fields,
+ * the largest value size and the time since the first operation; values themselves are not.
+ * <p>
+ * {@link DBFactory} puts it around the {@link DBWrapper} when {@value #TRACE_FILE_PROPERTY} is set, so the
+ * time spent recording is not part of the measured latencies.
+ * </p>
+ * Properties:
+ * <UL>
+ * <LI><b>tracerecord.file</b>: the trace to write, replaced if it exists
+ * <LI><b>tracerecord.blocksize</b>: the size of the trace blocks (default: 65536)
+ * </UL>
+ */
+public class RecordingDB extends DB {
+  public static final String TRACE_FILE_PROPERTY = "tracerecord.file";
+  public static final String BLOCK_SIZE_PROPERTY = "tracerecord.blocksize";
+
+  private final DB db;
+  private final TraceRecorder recorder = new TraceRecorder();
+
+  public RecordingDB(DB db) {
+    this.db = db;
+  }
+
+  @Override
+  public void setProperties(Properties p) {
+    db.setProperties(p);
+  }
+
+  @Override
+  public Properties getProperties() {
+    return db.getProperties();
+  }
+
+  @Override
+  public void init() throws DBException {
+    db.init();
+    recorder.open(getProperties());
+  }
+
+  @Override
+  public void cleanup() throws DBException {
+    try {
+      db.cleanup();
+    } finally {
+      recorder.close();
+    }
+  }
+
+  @Override
+  public Status read(String table, String key, Set<String> fields, Map<String, ByteIterator> result) {
+    recorder.record(Workload.Operation.READ, table, key, fields, 0);
+    return db.read(table, key, fields, result);
+  }
+
+  @Override
+  public Status scan(String table, String startkey, int recordcount, Set<String> fields,
+                     Vector<HashMap<String, ByteIterator>> result) {
+    recorder.record(Workload.Operation.SCAN, table, startkey, fields, recordcount);
+    return db.scan(table, startkey, recordcount, fields, result);
+  }
+
+  @Override
+  public Status update(String table, String key, Map<String, ByteIterator> values) {
+    recorder.record(Workload.Operation.UPDATE, table, key, values);
+    return db.update(table, key, values);
+  }
+
+  @Override
+  public Status insert(String table, String key, Map<String, ByteIterator> values) {
+    recorder.record(Workload.Operation.INSERT, table, key, values);
+    return db.insert(table, key, values);
+  }
+
+  @Override
+  public Status delete(String table, String key) {
+    recorder.record(Workload.Operation.DELETE, table, key, null, 0);
+    return db.delete(table, key);
+  }
+}
@@ -0,0 +1,344 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import org.apache.htrace.core.Tracer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded pool of DB instances shared by many client threads, each standing for one user session.
+ * <p>
+ * Each client thread gets a {@link #newSession() session}, a DB which runs every operation on one of
+ * <b>session.dbpool</b> worker threads, each using a DB instance of its own, and waits for it to complete. So a
+ * client can run far more sessions than it could run DB instances, for instance with <b>threadcount</b> in the tens
+ * of thousands and a <b>threadfactory</b> making virtual threads, modelling the connection fan-in of that many
+ * users on a much smaller number of connections. Results are handed back to the workload as usual.
+ * </p>
+ * <p>
+ * Latencies are recorded by the workers, so the measurements keep one shard per worker instead of one per
+ * session. An operation which waits for a free DB instance has that wait in its intended latency: its intended
+ * start time is the one set by the target throughput, or else the time the session issued it.
+ * </p>
+ * <p>
+ * Sessions pause between operations for a think time drawn from a distribution, as a user would.
+ * </p>
+ * Properties:
+ * <UL>
+ * <LI><b>session.dbpool</b>: the number of DB instances, which turns sessions on
+ * <LI><b>session.thinktime</b>: the mean think time, in milliseconds (default: 0)
+ * <LI><b>session.thinktime.distribution</b>: constant (default), exponential or histogram
+ * <LI><b>session.thinktime.file</b>: the histogram of think times, see
+ * {@link ArrivalDistribution.Histogram#fromFile}. Its mean is used unless <b>session.thinktime</b> is set
+ * </UL>
+ */
+public final class SessionPool {
+  public static final String POOL_SIZE_PROPERTY = "session.dbpool";
+  public static final String THINK_TIME_PROPERTY = "session.thinktime";
+  public static final String THINK_TIME_DISTRIBUTION_PROPERTY = "session.thinktime.distribution";
+  public static final String THINK_TIME_DISTRIBUTION_PROPERTY_DEFAULT = "constant";
+  public static final String THINK_TIME_FILE_PROPERTY = "session.thinktime.file";
+
+  private static final AtomicInteger POOL_ID = new AtomicInteger();
+
+  private final String dbname;
+  private final Properties props;
+  private final Tracer tracer;
+  private final int size;
+  private final double thinkTimeNanos;
+  private final ArrivalDistribution thinkTimes;
+  private final Measurements measurements;
+
+  /** DB instances not currently executing an operation. */
+  private final ConcurrentLinkedQueue<DB> idle = new ConcurrentLinkedQueue<>();
+
+  /** Every DB instance created by this pool, so they can all be cleaned up. */
+  private final List<DB> created = new ArrayList<>();
+
+  private ExecutorService workers;
+  private int openSessions;
+
+  private SessionPool(String dbname, Properties props, Tracer tracer, int size, double thinkTimeNanos,
+                      ArrivalDistribution thinkTimes) {
+    this.dbname = dbname;
+    this.props = props;
+    this.tracer = tracer;
+    this.size = size;
+    this.thinkTimeNanos = thinkTimeNanos;
+    this.thinkTimes = thinkTimes;
+    measurements = Measurements.getMeasurements();
+  }
+
+  /**
+   * @return The pool described by the properties, or null if they do not set <b>session.dbpool</b>.
+   * @throws IllegalArgumentException If the properties are not valid.
+   * @throws IOException If the think time histogram cannot be read.
+   */
+  public static SessionPool fromProperties(String dbname, Properties props, Tracer tracer) throws IOException {
+    if (!props.containsKey(POOL_SIZE_PROPERTY)) {
+      return null;
+    }
+    int size = Integer.parseInt(props.getProperty(POOL_SIZE_PROPERTY));
+    if (size < 1) {
+      throw new IllegalArgumentException(POOL_SIZE_PROPERTY + " must be at least 1");
+    }
+    String distribution = props.getProperty(THINK_TIME_DISTRIBUTION_PROPERTY,
+        THINK_TIME_DISTRIBUTION_PROPERTY_DEFAULT);
+    String thinkTime = props.getProperty(THINK_TIME_PROPERTY);
+    double meanMillis = thinkTime == null ? 0 : Double.parseDouble(thinkTime);
+    ArrivalDistribution thinkTimes;
+    switch (distribution) {
+    case "constant":
+      thinkTimes = ArrivalDistribution.CONSTANT;
+      break;
+    case "exponential":
+      thinkTimes = ArrivalDistribution.POISSON;
+      break;
+    case "histogram":
+      String file = props.getProperty(THINK_TIME_FILE_PROPERTY);
+      if (file == null) {
+        throw new IllegalArgumentException(THINK_TIME_FILE_PROPERTY + " must be set for histogram think times");
+      }
+      ArrivalDistribution.Histogram histogram = ArrivalDistribution.Histogram.fromFile(file);
+      if (thinkTime == null) {
+        meanMillis = histogram.getMeanMicros() / 1000;
+      }
+      thinkTimes = histogram;
+      break;
+    default:
+      throw new IllegalArgumentException("Unknown " + THINK_TIME_DISTRIBUTION_PROPERTY + " '" + distribution
+          + "', expected constant, exponential or histogram");
+    }
+    if (!(meanMillis >= 0)) {
+      throw new IllegalArgumentException(THINK_TIME_PROPERTY + " cannot be negative");
+    }
+    return new SessionPool(dbname, props, tracer, size, TimeUnit.MILLISECONDS.toNanos(1) * meanMillis,
+        thinkTimes);
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  /**
+   * @return A new session, to be used by one client thread.
+   */
+  public DB newSession() {
+    Session session = new Session();
+    session.setProperties(props);
+    return session;
+  }
+
+  /**
+   * @return How long a session should wait before its next operation, in nanoseconds.
+   */
+  public long nextThinkTimeNanos() {
+    return thinkTimeNanos > 0 ? (long) (thinkTimeNanos * thinkTimes.next()) : 0;
+  }
+
+  /**
+   * Start the workers with the first session, creating the first DB instance so a binding which cannot be
+   * initialized fails right away.
+   */
+  private synchronized void open() throws DBException {
+    if (openSessions > 0) {
+      openSessions++;
+      return;
+    }
+    idle.add(newDB());
+    openSessions = 1;
+    final int poolId = POOL_ID.getAndIncrement();
+    workers = Executors.newFixedThreadPool(size, new ThreadFactory() {
+      private int count = 0;
+
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "SessionWorker-" + poolId + "-" + (count++));
+        t.setDaemon(true);
+        return t;
+      }
+    });
+  }
+
+  /**
+   * Stop the workers and clean up all the DB instances with the last session.
+   */
+  private synchronized void close() throws DBException {
+    if (openSessions == 0 || --openSessions > 0) {
+      return;
+    }
+    workers.shutdown();
+    try {
+      workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    DBException failure = null;
+    synchronized (created) {
+      for (DB db : created) {
+        try {
+          db.cleanup();
+        } catch (DBException e) {
+          if (failure == null) {
+            failure = e;
+          }
+        }
+      }
+      created.clear();
+    }
+    idle.clear();
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private DB newDB() throws DBException {
+    DB db;
+    try {
+      db = DBFactory.newDB(dbname, props, tracer);
+    } catch (UnknownDBException e) {
+      throw new DBException("Unknown DB " + dbname);
+    }
+    db.init();
+    synchronized (created) {
+      created.add(db);
+    }
+    return db;
+  }
+
+  /**
+   * One operation against a pooled DB instance.
+   */
+  private interface Operation {
+    Status execute(DB db);
+  }
+
+  private Status execute(final Operation op) {
+    long intended = measurements.getIntendedtartTimeNs();
+    final long intendedStartTimeNanos = intended != 0 ? intended : System.nanoTime();
+    Future<Status> result = workers.submit(new Callable<Status>() {
+      @Override
+      public Status call() throws DBException {
+        DB db = idle.poll();
+        if (db == null) {
+          db = newDB();
+        }
+        try {
+          measurements.setIntendedStartTimeNs(intendedStartTimeNanos);
+          return op.execute(db);
+        } finally {
+          measurements.setIntendedStartTimeNs(0);
+          idle.add(db);
+        }
+      }
+    });
+    try {
+      return result.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return Status.ERROR;
+    } catch (ExecutionException e) {
+      System.err.println("Session: operation failed: " + e.getCause());
+      return Status.ERROR;
+    }
+  }
+
+  /**
+   * The DB of one client thread, running its operations on the pool.
+   */
+  private final class Session extends DB {
+    @Override
+    public void init() throws DBException {
+      open();
+    }
+
+    @Override
+    public void cleanup() throws DBException {
+      close();
+    }
+
+    @Override
+    public Status read(final String table, final String key, final Set<String> fields,
+                       final Map<String, ByteIterator> result) {
+      return execute(new Operation() {
+        @Override
+        public Status execute(DB db) {
+          return db.read(table, key, fields, result);
+        }
+      });
+    }
+
+    @Override
+    public Status scan(final String table, final String startkey, final int recordcount, final Set<String> fields,
+                       final Vector<HashMap<String, ByteIterator>> result) {
+      return execute(new Operation() {
+        @Override
+        public Status execute(DB db) {
+          return db.scan(table, startkey, recordcount, fields, result);
+        }
+      });
+    }
+
+    @Override
+    public Status update(final String table, final String key, final Map<String, ByteIterator> values) {
+      return execute(new Operation() {
+        @Override
+        public Status execute(DB db) {
+          return db.update(table, key, values);
+        }
+      });
+    }
+
+    @Override
+    public Status insert(final String table, final String key, final Map<String, ByteIterator> values) {
+      return execute(new Operation() {
+        @Override
+        public Status execute(DB db) {
+          return db.insert(table, key, values);
+        }
+      });
+    }
+
+    @Override
+    public Status delete(final String table, final String key) {
+      return execute(new Operation() {
+        @Override
+        public Status execute(DB db) {
+          return db.delete(table, key);
+        }
+      });
+    }
+  }
+}
@@ -0,0 +1,396 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Searches for the highest target throughput at which the latencies stay within an SLA.
+ * <p>
+ * The search runs short trials, one after the other, with the DB instances and workload initialized once. The
+ * first trial runs at <b>sla.max</b>, or unthrottled if it is not set; if it misses the SLA, the following
+ * trials bisect the targets between <b>sla.min</b> and it. A trial meets the SLA when it reaches at least 95% of
+ * its target and every latency of the SLA is within its limit; a trial without any operation of a limit misses it.
+ * Latencies are measured from the intended start of the operations, so a client falling behind its target misses
+ * the SLA rather than hiding the delay.
+ * </p>
+ * <p>
+ * The exported results hold the highest target which met the SLA and, for every trial, its target, throughput
+ * and latencies, which together draw the latency curve of the system.
+ * </p>
+ * Properties:
+ * <UL>
+ * <LI><b>sla</b>: the latency limits, such as "READ p99 &lt; 5ms, UPDATE p99.9 &lt; 20ms". Setting it runs the
+ * search instead of the usual run, with measurementtype=hdrhistogram and measurement.interval=both.
+ * <LI><b>sla.trialtime</b>: seconds per trial (default: 30)
+ * <LI><b>sla.min</b>: the lowest target to try, in operations per second (default: 100)
+ * <LI><b>sla.max</b>: the highest target to try (default: the throughput of an unthrottled first trial)
+ * <LI><b>sla.precision</b>: the search stops when the range left is below this fraction of its top (default:
+ * 0.05)
+ * <LI><b>sla.maxtrials</b>: the search stops after this many trials (default: 12)
+ * </UL>
+ */
+final class SlaSearch {
+  public static final String SLA_PROPERTY = "sla";
+  public static final String TRIAL_TIME_PROPERTY = "sla.trialtime";
+  public static final String TRIAL_TIME_PROPERTY_DEFAULT = "30";
+  public static final String MIN_PROPERTY = "sla.min";
+  public static final String MIN_PROPERTY_DEFAULT = "100";
+  public static final String MAX_PROPERTY = "sla.max";
+  public static final String PRECISION_PROPERTY = "sla.precision";
+  public static final String PRECISION_PROPERTY_DEFAULT = "0.05";
+  public static final String MAX_TRIALS_PROPERTY = "sla.maxtrials";
+  public static final String MAX_TRIALS_PROPERTY_DEFAULT = "12";
+
+  /** The part of its target a trial must reach to meet the SLA. */
+  private static final double MIN_ACHIEVED = 0.95;
+
+  private static final Pattern LIMIT = Pattern.compile("\\s*(\\S+)\\s+p([0-9.]+)\\s*<\\s*(\\S+(?:\\s+[a-z]+)?)\\s*");
+
+  /** One latency limit of the SLA. */
+  static final class Limit {
+    private final String operation;
+    private final double percentile;
+    private final double maxLatencyUs;
+
+    Limit(String operation, double percentile, double maxLatencyUs) {
+      this.operation = operation;
+      this.percentile = percentile;
+      this.maxLatencyUs = maxLatencyUs;
+    }
+
+    String getName() {
+      return operation + " p" + new DecimalFormat("#.###").format(percentile);
+    }
+  }
+
+  /** One trial, as seen by the client threads. */
+  static final class Trial {
+    private final double target;
+    private final double targetPerThreadPerMs;
+    private final long endNanos;
+    private final CountDownLatch done;
+    private final AtomicLong operations = new AtomicLong();
+
+    private Trial(double target, int threads, long endNanos) {
+      this.target = target;
+      this.targetPerThreadPerMs = target / threads / 1000;
+      this.endNanos = endNanos;
+      this.done = new CountDownLatch(threads);
+    }
+
+    /** @return The target of each thread, 0 for none. */
+    double getTargetPerThreadPerMs() {
+      return targetPerThreadPerMs;
+    }
+
+    /** @return When the trial ends, as {@link System#nanoTime()}. */
+    long getEndNanos() {
+      return endNanos;
+    }
+
+    /** Called by each client thread at the end of the trial. */
+    void done(int opsDone) {
+      operations.addAndGet(opsDone);
+      done.countDown();
+    }
+  }
+
+  /** The outcome of a trial. */
+  private static final class Result {
+    private final double target;
+    private final double throughput;
+    private final double[] latencies;
+    private final boolean passed;
+
+    private Result(double target, double throughput, double[] latencies, boolean passed) {
+      this.target = target;
+      this.throughput = throughput;
+      this.latencies = latencies;
+      this.passed = passed;
+    }
+  }
+
+  private final List<Limit> limits;
+  private final int threads;
+  private final long trialNanos;
+  private final double min;
+  private final double max;
+  private final double precision;
+  private final int maxTrials;
+  private final Measurements measurements;
+  private final CountDownLatch ready;
+  private final List<Result> results = new ArrayList<>();
+  private volatile boolean failed;
+
+  private Trial current;
+  private boolean finished;
+
+  SlaSearch(Properties props, int threads, Measurements measurements) {
+    limits = parse(props.getProperty(SLA_PROPERTY));
+    this.threads = threads;
+    trialNanos = (long) (Double.parseDouble(props.getProperty(TRIAL_TIME_PROPERTY, TRIAL_TIME_PROPERTY_DEFAULT))
+        * TimeUnit.SECONDS.toNanos(1));
+    min = Double.parseDouble(props.getProperty(MIN_PROPERTY, MIN_PROPERTY_DEFAULT));
+    max = Double.parseDouble(props.getProperty(MAX_PROPERTY, "0"));
+    precision = Double.parseDouble(props.getProperty(PRECISION_PROPERTY, PRECISION_PROPERTY_DEFAULT));
+    maxTrials = Integer.parseInt(props.getProperty(MAX_TRIALS_PROPERTY, MAX_TRIALS_PROPERTY_DEFAULT));
+    this.measurements = measurements;
+    ready = new CountDownLatch(threads);
+  }
+
+  /**
+   * @return The limits of an SLA such as "READ p99 &lt; 5ms, UPDATE p99.9 &lt; 20ms".
+   * @throws IllegalArgumentException If the SLA is not valid.
+   */
+  static List<Limit> parse(String sla) {
+    List<Limit> parsed = new ArrayList<>();
+    for (String limit : sla.split(",")) {
+      Matcher m = LIMIT.matcher(limit);
+      if (!m.matches()) {
+        throw new IllegalArgumentException("Invalid SLA limit '" + limit.trim()
+            + "', expected an operation, a percentile and a latency such as READ p99 < 5ms");
+      }
+      double percentile = Double.parseDouble(m.group(2));
+      if (!(percentile > 0 && percentile <= 100)) {
+        throw new IllegalArgumentException("Invalid SLA percentile in '" + limit.trim() + "'");
+      }
+      double maxLatencyUs = RateProfile.parseDuration(m.group(3).replaceAll("\\s", "")) * 1e6;
+      parsed.add(new Limit(m.group(1), percentile, maxLatencyUs));
+    }
+    return parsed;
+  }
+
+  /**
+   * Set the measurement properties the search needs, if the properties ask for a search.
+   */
+  static void configure(Properties props) {
+    if (isSet(props)) {
+      props.setProperty(Measurements.MEASUREMENT_TYPE_PROPERTY, "hdrhistogram");
+      props.setProperty(Measurements.MEASUREMENT_INTERVAL, "both");
+    }
+  }
+
+  static boolean isSet(Properties props) {
+    return props.containsKey(SLA_PROPERTY);
+  }
+
+  /**
+   * Run the search with client threads which have not been started, then export its results.
+   *
+   * @return The exit code of the Client.
+   */
+  static int run(Properties props, Workload workload, List<ClientThread> clients) {
+    return run(props, workload, clients, Measurements.getMeasurements());
+  }
+
+  /**
+   * Run the search on the given measurements, those the DB instances of the client threads record to.
+   */
+  static int run(Properties props, Workload workload, List<ClientThread> clients, Measurements measurements) {
+    final SlaSearch search;
+    try {
+      search = new SlaSearch(props, clients.size(), measurements);
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      return -1;
+    }
+    List<Thread> threads = new ArrayList<>(clients.size());
+    for (final ClientThread client : clients) {
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          client.runTrials(search);
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+
+    try {
+      search.ready.await();
+      if (search.failed) {
+        System.err.println("Could not initialize the client threads.");
+      } else {
+        search.search();
+      }
+      search.finish();
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      workload.cleanup();
+    } catch (InterruptedException | WorkloadException e) {
+      e.printStackTrace();
+      return -1;
+    }
+    if (search.failed) {
+      return -1;
+    }
+
+    MeasurementsExporter exporter = null;
+    try {
+      exporter = Client.newExporter(props);
+      search.export(exporter);
+    } catch (IOException e) {
+      System.err.println("Could not export measurements, error: " + e.getMessage());
+      e.printStackTrace();
+      return -1;
+    } finally {
+      if (exporter != null) {
+        try {
+          exporter.close();
+        } catch (IOException ignored) {
+          // ignored
+        }
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Called by each client thread once it is initialized.
+   *
+   * @return Whether it should go on with the trials.
+   */
+  boolean ready(boolean initialized) {
+    if (!initialized) {
+      failed = true;
+    }
+    ready.countDown();
+    return initialized;
+  }
+
+  /**
+   * Called by each client thread to wait for the trial after the previous one.
+   *
+   * @return The next trial, or null if the search is over.
+   */
+  synchronized Trial awaitTrial(Trial previous) throws InterruptedException {
+    while (current == previous && !finished) {
+      wait();
+    }
+    return finished ? null : current;
+  }
+
+  private synchronized void finish() {
+    finished = true;
+    notifyAll();
+  }
+
+  /**
+   * Bisect the targets until the precision or the number of trials is reached.
+   */
+  private void search() throws InterruptedException {
+    Result first = runTrial(max);
+    if (first.passed) {
+      return;
+    }
+    double lo = min;
+    double hi = max > 0 ? max : first.throughput;
+    boolean found = false;
+    while (results.size() < maxTrials && hi - lo > precision * hi) {
+      double target = (lo + hi) / 2;
+      if (runTrial(target).passed) {
+        lo = target;
+        found = true;
+      } else {
+        hi = target;
+      }
+    }
+    if (!found && results.size() < maxTrials) {
+      // make sure the bottom of the range does meet the SLA
+      runTrial(min);
+    }
+  }
+
+  private Result runTrial(double target) throws InterruptedException {
+    measurements.reset();
+    long start = System.nanoTime();
+    Trial trial = new Trial(target, threads, start + trialNanos);
+    synchronized (this) {
+      current = trial;
+      notifyAll();
+    }
+    trial.done.await();
+    double throughput = trial.operations.get() * 1e9 / (System.nanoTime() - start);
+
+    boolean passed = target <= 0 || throughput >= MIN_ACHIEVED * target;
+    double[] latencies = new double[limits.size()];
+    StringBuilder msg = new StringBuilder();
+    DecimalFormat d = new DecimalFormat("#.##");
+    for (int i = 0; i < limits.size(); i++) {
+      Limit limit = limits.get(i);
+      latencies[i] = measurements.getLatencyPercentile(limit.operation, true, limit.percentile);
+      msg.append(", ").append(limit.getName()).append("=");
+      if (Double.isNaN(latencies[i])) {
+        // nothing to check the limit against, most likely a misspelled operation
+        passed = false;
+        msg.append("no ").append(limit.operation).append(" operations");
+      } else {
+        passed &= latencies[i] <= limit.maxLatencyUs;
+        msg.append(d.format(latencies[i])).append(" us");
+      }
+    }
+    Result result = new Result(target, throughput, latencies, passed);
+    results.add(result);
+    System.err.println("Trial " + results.size() + ": target "
+        + (target > 0 ? d.format(target) + " ops/sec" : "unthrottled") + ", " + d.format(throughput)
+        + " ops/sec" + msg + (passed ? ", meets the SLA" : ", misses the SLA"));
+    return result;
+  }
+
+  /**
+   * @return The highest target which met the SLA, or the throughput of an unthrottled trial which did; 0 if none.
+   */
+  double getMaxThroughput() {
+    double best = 0;
+    for (Result result : results) {
+      if (result.passed) {
+        best = Math.max(best, result.target > 0 ? result.target : result.throughput);
+      }
+    }
+    return best;
+  }
+
+  private void export(MeasurementsExporter exporter) throws IOException {
+    exporter.write("SLA", "MaxThroughput(ops/sec)", getMaxThroughput());
+    exporter.write("SLA", "Trials", results.size());
+    for (int i = 0; i < results.size(); i++) {
+      Result result = results.get(i);
+      String metric = "SLA-TRIAL-" + (i + 1);
+      exporter.write(metric, "Target(ops/sec)", result.target);
+      exporter.write(metric, "Throughput(ops/sec)", result.throughput);
+      for (int j = 0; j < limits.size(); j++) {
+        exporter.write(metric, limits.get(j).getName() + "(us)", result.latencies[j]);
+      }
+      exporter.write(metric, "MeetsSLA", result.passed ? 1 : 0);
+    }
+  }
+}
@@ -21,17 +21,26 @@ package com.yahoo.ycsb;
  * The result of an operation.
  */
 public class Status {
+  /** The number of predefined statuses, whose slots go from 0 to {@code PREDEFINED - 1}. */
+  public static final int PREDEFINED = 9;
+
   private final String name;
   private final String description;
+  private final int slot;
 
   /**
    * @param name A short name for the status.
    * @param description A description of the status.
    */
   public Status(String name, String description) {
+    this(name, description, -1);
+  }
+
+  private Status(String name, String description, int slot) {
     super();
     this.name = name;
     this.description = description;
+    this.slot = slot;
   }
 
   public String getName() {
@@ -42,6 +51,14 @@ public class Status {
     return description;
   }
 
+  /**
+   * @return The index of a predefined status such as {@link #ERROR}, below {@link #PREDEFINED}, or -1 for a status
+   * created elsewhere; lets per-status tables of the predefined ones be arrays.
+   */
+  public int getSlot() {
+    return slot;
+  }
+
   @Override
   public String toString() {
     return "Status [name=" + name + ", description=" + description + "]";
@@ -93,18 +110,27 @@ public class Status {
     return this == OK || this == BATCHED_OK;
   }
 
-  public static final Status OK = new Status("OK", "The operation completed successfully.");
-  public static final Status ERROR = new Status("ERROR", "The operation failed.");
-  public static final Status NOT_FOUND = new Status("NOT_FOUND", "The requested record was not found.");
+  public static final Status OK = new Status("OK", "The operation completed successfully.", 0);
+  public static final Status ERROR = new Status("ERROR", "The operation failed.", 1);
+  public static final Status NOT_FOUND = new Status("NOT_FOUND", "The requested record was not found.", 2);
   public static final Status NOT_IMPLEMENTED = new Status("NOT_IMPLEMENTED", "The operation is not " +
-      "implemented for the current binding.");
+      "implemented for the current binding.", 3);
   public static final Status UNEXPECTED_STATE = new Status("UNEXPECTED_STATE", "The operation reported" +
-      " success, but the result was not as expected.");
-  public static final Status BAD_REQUEST = new Status("BAD_REQUEST", "The request was not valid.");
-  public static final Status FORBIDDEN = new Status("FORBIDDEN", "The operation is forbidden.");
+      " success, but the result was not as expected.", 4);
+  public static final Status BAD_REQUEST = new Status("BAD_REQUEST", "The request was not valid.", 5);
+  public static final Status FORBIDDEN = new Status("FORBIDDEN", "The operation is forbidden.", 6);
   public static final Status SERVICE_UNAVAILABLE = new Status("SERVICE_UNAVAILABLE", "Dependant " +
-      "service for the current binding is not available.");
+      "service for the current binding is not available.", 7);
   public static final Status BATCHED_OK = new Status("BATCHED_OK", "The operation has been batched by " +
-      "the binding to be executed later.");
-}
+      "the binding to be executed later.", 8);
+
+  private static final Status[] PREDEFINED_STATUSES = {OK, ERROR, NOT_FOUND, NOT_IMPLEMENTED, UNEXPECTED_STATE,
+      BAD_REQUEST, FORBIDDEN, SERVICE_UNAVAILABLE, BATCHED_OK};
 
+  /**
+   * @return The predefined status with the given slot.
+   */
+  public static Status getPredefined(int slot) {
+    return PREDEFINED_STATUSES[slot];
+  }
+}
@@ -17,6 +17,7 @@
 
 package com.yahoo.ycsb;
 
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -91,6 +92,40 @@ public class StringByteIterator extends ByteIterator {
     return ret;
   }
 
+  @Override
+  public int nextBuf(byte[] buf, int bufOff) {
+    return bufOff + copy(buf, bufOff, buf.length - bufOff);
+  }
+
+  @Override
+  public int nextBuf(ByteBuffer dst) {
+    if (dst.hasArray()) {
+      int n = copy(dst.array(), dst.arrayOffset() + dst.position(), dst.remaining());
+      dst.position(dst.position() + n);
+      return n;
+    }
+    int n = Math.min(dst.remaining(), str.length() - off);
+    for (int i = 0; i < n; i++) {
+      dst.put((byte) str.charAt(off + i));
+    }
+    off += n;
+    return n;
+  }
+
+  /**
+   * Copies up to {@code max} of the remaining characters, each truncated to a byte like {@link #nextByte()} does.
+   *
+   * @return The number of bytes copied.
+   */
+  private int copy(byte[] buf, int bufOff, int max) {
+    int n = Math.min(max, str.length() - off);
+    for (int i = 0; i < n; i++) {
+      buf[bufOff + i] = (byte) str.charAt(off + i);
+    }
+    off += n;
+    return n;
+  }
+
   @Override
   public long bytesLeft() {
     return str.length() - off;
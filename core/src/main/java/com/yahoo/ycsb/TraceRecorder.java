@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import com.yahoo.ycsb.trace.TraceFormat;
+import com.yahoo.ycsb.trace.TraceRecord;
+import com.yahoo.ycsb.trace.TraceWriter;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the operations of one DB instance into the trace shared by all instances of the run. Used by
+ * {@link RecordingDB} and {@link AsyncRecordingDB}.
+ * <p>
+ * An instance is used by one thread at a time, like the DB it belongs to, and appends to a block of its own.
+ * The trace is opened by the first instance initialized and closed by the last one cleaned up. An operation which
+ * cannot be encoded, such as one whose record would not fit in a block, is left out of the trace rather than failing
+ * the thread, and reported once per run.
+ * </p>
+ */
+final class TraceRecorder {
+  private static TraceWriter writer;
+  private static int openRecorders = 0;
+  private static final AtomicLong START_NANOS = new AtomicLong(Long.MIN_VALUE);
+  private static final AtomicBoolean SKIP_REPORTED = new AtomicBoolean();
+
+  private TraceWriter.Appender appender;
+  private TraceRecord record;
+  private boolean failed = false;
+
+  void open(Properties p) throws DBException {
+    synchronized (TraceRecorder.class) {
+      if (writer == null) {
+        String file = p.getProperty(RecordingDB.TRACE_FILE_PROPERTY);
+        int blockSize = Integer.parseInt(p.getProperty(RecordingDB.BLOCK_SIZE_PROPERTY,
+            String.valueOf(TraceFormat.DEFAULT_BLOCK_SIZE)));
+        try {
+          writer = new TraceWriter(Paths.get(file), new TraceFormat(blockSize, TraceFormat.DEFAULT_FIELD_PREFIX));
+        } catch (IOException | IllegalArgumentException e) {
+          throw new DBException("Cannot create trace " + file, e);
+        }
+        START_NANOS.set(Long.MIN_VALUE);
+        SKIP_REPORTED.set(false);
+      }
+      openRecorders++;
+      appender = writer.newAppender();
+      record = new TraceRecord(writer.getFormat());
+    }
+  }
+
+  void close() throws DBException {
+    if (appender == null) {
+      return;
+    }
+    synchronized (TraceRecorder.class) {
+      try {
+        appender.close();
+        if (--openRecorders == 0) {
+          writer.close();
+          writer = null;
+        }
+      } catch (IOException e) {
+        throw new DBException("Cannot write trace", e);
+      } finally {
+        appender = null;
+      }
+    }
+  }
+
+  void record(Workload.Operation op, String table, String key, Set<String> fields, int recordCount) {
+    append(op, table, key, fields, 0, recordCount);
+  }
+
+  void record(Workload.Operation op, String table, String key, Map<String, ByteIterator> values) {
+    int valueSize = 0;
+    for (ByteIterator value : values.values()) {
+      valueSize = (int) Math.max(valueSize, value.bytesLeft());
+    }
+    append(op, table, key, values.keySet(), valueSize, 0);
+  }
+
+  /**
+   * Append an operation, timestamped relative to the first operation recorded by any instance.
+   */
+  private void append(Workload.Operation op, String table, String key, Set<String> fields, int valueSize,
+                      int recordCount) {
+    if (failed) {
+      return;
+    }
+    long now = System.nanoTime();
+    long start = START_NANOS.get();
+    if (start == Long.MIN_VALUE) {
+      START_NANOS.compareAndSet(Long.MIN_VALUE, now);
+      start = START_NANOS.get();
+    }
+    try {
+      appender.append(record.set(op, Math.max(0, now - start), table, key, fields, valueSize, recordCount));
+    } catch (IOException e) {
+      System.err.println("Cannot write trace, no longer recording this thread: " + e);
+      failed = true;
+    } catch (IllegalArgumentException e) {
+      if (SKIP_REPORTED.compareAndSet(false, true)) {
+        System.err.println("Leaving operations out of the trace which cannot be recorded: " + e.getMessage());
+      }
+    }
+  }
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Hands out field values as slices of a large buffer of random bytes, generated once per thread, instead of
+ * generating every byte of every value like {@link RandomByteIterator} does.
+ * <p>
+ * The bytes are printable characters, like those of {@link RandomByteIterator}. The compressibility is the
+ * fraction of each 64 byte run of the buffer that repeats its first byte, so 0 gives values as random as
+ * {@link RandomByteIterator}, and 0.5 values that compress to about half their size. Each value starts at a random
+ * offset of the buffer, so successive values differ.
+ * </p>
+ * <p>
+ * The buffers are never written once generated, so values can safely be read by other threads, and bindings can
+ * send them straight from the backing array.
+ * </p>
+ */
+public class ValuePool {
+  private static final int RUN = 64;
+
+  private final int size;
+  private final double compressibility;
+
+  private final ThreadLocal<byte[]> buffers = new ThreadLocal<byte[]>() {
+    @Override
+    protected byte[] initialValue() {
+      return generate(size);
+    }
+  };
+
+  /**
+   * @param size The size of the buffer of each thread. Grown as needed to fit the largest value.
+   * @param compressibility Between 0 and 1.
+   */
+  public ValuePool(int size, double compressibility) {
+    if (size < 1) {
+      throw new IllegalArgumentException("Value pool size must be positive, got " + size);
+    }
+    if (compressibility < 0 || compressibility > 1) {
+      throw new IllegalArgumentException("Value compressibility must be between 0 and 1, got " + compressibility);
+    }
+    this.size = size;
+    this.compressibility = compressibility;
+  }
+
+  /**
+   * @return A value of {@code len} bytes, backed by the calling thread's buffer.
+   */
+  public ByteIterator next(long len) {
+    byte[] buffer = buffers.get();
+    if (len > buffer.length) {
+      if (len > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("Values of " + len + " bytes cannot be pooled");
+      }
+      buffer = generate((int) len);
+      buffers.set(buffer);
+    }
+    int offset = ThreadLocalRandom.current().nextInt(buffer.length - (int) len + 1);
+    return new ByteArrayByteIterator(buffer, offset, (int) len);
+  }
+
+  private byte[] generate(int length) {
+    byte[] buffer = new byte[length];
+    new RandomByteIterator(length).nextBuf(buffer, 0);
+    int repeated = (int) Math.round(RUN * compressibility);
+    for (int run = 0; run < length; run += RUN) {
+      for (int i = run + RUN - repeated; i < Math.min(run + RUN, length); i++) {
+        buffer[i] = buffer[run];
+      }
+    }
+    return buffer;
+  }
+}
@@ -0,0 +1,217 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import com.yahoo.ycsb.measurements.Measurements;
+
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Keeps the start of a run, with its JIT compilation, new connections and cold caches, out of the results.
+ * <p>
+ * When the warm-up is over every measurement is reset, and the overall runtime and throughput only cover the
+ * operations which follow. The warm-up is part of the run: its operations count towards operationcount and its
+ * time towards maxexecutiontime. It ends as soon as one of the configured conditions is met:
+ * <UL>
+ * <LI><b>warmup.time</b>: seconds since the start of the run (default: 0, no limit)
+ * <LI><b>warmup.operations</b>: operations done by all threads (default: 0, no limit)
+ * <LI><b>warmup.auto</b>: the throughput and mean latency of <b>warmup.auto.intervals</b> consecutive status
+ * intervals are all within <b>warmup.auto.tolerance</b> of their mean (default: false, 3 intervals, 0.1). This
+ * turns on the status thread, whose <b>status.interval</b> should be short enough to see several intervals.
+ * </UL>
+ * If the run ends first, its results include the warm-up.
+ * </p>
+ */
+final class Warmup {
+  public static final String TIME_PROPERTY = "warmup.time";
+  public static final String OPERATIONS_PROPERTY = "warmup.operations";
+  public static final String AUTO_PROPERTY = "warmup.auto";
+  public static final String AUTO_INTERVALS_PROPERTY = "warmup.auto.intervals";
+  public static final String AUTO_INTERVALS_PROPERTY_DEFAULT = "3";
+  public static final String AUTO_TOLERANCE_PROPERTY = "warmup.auto.tolerance";
+  public static final String AUTO_TOLERANCE_PROPERTY_DEFAULT = "0.1";
+
+  private static final long POLL_MS = 10;
+
+  private final Measurements measurements;
+  private final List<ClientThread> clients;
+  private final long durationMs;
+  private final long operations;
+  private final boolean auto;
+  private final double tolerance;
+
+  /** The throughput and latency of the last intervals seen by the status thread, oldest first. */
+  private final double[] throughputs;
+  private final double[] latencies;
+  private int samples;
+
+  private Thread watcher;
+  private long startMs;
+  private volatile boolean over;
+  private long endMs;
+  private long endOperations;
+
+  Warmup(Properties props, Measurements measurements, List<ClientThread> clients) {
+    this.measurements = measurements;
+    this.clients = clients;
+    durationMs = 1000 * Long.parseLong(props.getProperty(TIME_PROPERTY, "0"));
+    operations = Long.parseLong(props.getProperty(OPERATIONS_PROPERTY, "0"));
+    auto = isAuto(props);
+    int intervals = Integer.parseInt(props.getProperty(AUTO_INTERVALS_PROPERTY, AUTO_INTERVALS_PROPERTY_DEFAULT));
+    if (intervals < 2) {
+      throw new IllegalArgumentException(AUTO_INTERVALS_PROPERTY + " must be at least 2");
+    }
+    tolerance = Double.parseDouble(props.getProperty(AUTO_TOLERANCE_PROPERTY, AUTO_TOLERANCE_PROPERTY_DEFAULT));
+    throughputs = new double[intervals];
+    latencies = new double[intervals];
+    // without a warm-up, measure from the start
+    over = durationMs <= 0 && operations <= 0 && !auto;
+  }
+
+  /**
+   * @return Whether the warm-up ends automatically, which needs the status thread.
+   */
+  static boolean isAuto(Properties props) {
+    return Boolean.parseBoolean(props.getProperty(AUTO_PROPERTY, "false"));
+  }
+
+  boolean isOver() {
+    return over;
+  }
+
+  /**
+   * Start the warm-up, when the client threads are started.
+   */
+  synchronized void start() {
+    startMs = System.currentTimeMillis();
+    if (over || (durationMs <= 0 && operations <= 0)) {
+      return;
+    }
+    watcher = new Thread("Warmup") {
+      @Override
+      public void run() {
+        try {
+          while (!over) {
+            boolean timeUp = durationMs > 0 && System.currentTimeMillis() - startMs >= durationMs;
+            if (timeUp || (operations > 0 && operationsDone() >= operations)) {
+              end(timeUp ? "time" : "operations");
+            }
+            Thread.sleep(POLL_MS);
+          }
+        } catch (InterruptedException ignored) {
+          // the run is over
+        }
+      }
+    };
+    watcher.setDaemon(true);
+    watcher.start();
+  }
+
+  /**
+   * Called by the status thread after each interval. Ends an automatic warm-up once the last intervals are
+   * steady.
+   *
+   * @param throughput The operations per second of the interval.
+   * @param latency The mean latency of the interval, in us.
+   */
+  void onInterval(double throughput, double latency) {
+    if (over || !auto) {
+      return;
+    }
+    if (!(throughput > 0) || Double.isNaN(latency) || Double.isInfinite(throughput)) {
+      // an empty interval, such as the first one, is no sign of a steady state
+      samples = 0;
+      return;
+    }
+    System.arraycopy(throughputs, 1, throughputs, 0, throughputs.length - 1);
+    System.arraycopy(latencies, 1, latencies, 0, latencies.length - 1);
+    throughputs[throughputs.length - 1] = throughput;
+    latencies[latencies.length - 1] = latency;
+    samples = Math.min(samples + 1, throughputs.length);
+    if (samples == throughputs.length && isSteady(throughputs) && isSteady(latencies)) {
+      end("steady state");
+    }
+  }
+
+  /**
+   * @return Whether every value is within the tolerance of their mean.
+   */
+  private boolean isSteady(double[] values) {
+    double sum = 0;
+    for (double value : values) {
+      sum += value;
+    }
+    double mean = sum / values.length;
+    for (double value : values) {
+      if (Math.abs(value - mean) > tolerance * mean) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private synchronized void end(String reason) {
+    if (over) {
+      return;
+    }
+    // intervals are taken under the same lock, so none of them mixes the warm-up with what follows
+    synchronized (measurements) {
+      measurements.reset();
+      endMs = System.currentTimeMillis();
+      endOperations = operationsDone();
+      over = true;
+    }
+    System.err.println("Warm-up over (" + reason + ") after " + (endMs - startMs) + " ms and " + endOperations
+        + " operations, measuring from now on.");
+  }
+
+  private long operationsDone() {
+    long done = 0;
+    for (ClientThread client : clients) {
+      done += client.getOpsDone();
+    }
+    return done;
+  }
+
+  /**
+   * Stop watching for the end of the warm-up, when the client threads are done.
+   */
+  synchronized void stop() {
+    if (watcher != null) {
+      watcher.interrupt();
+    }
+    if (!over) {
+      System.err.println("The run ended before the warm-up, its results include the warm-up.");
+    }
+  }
+
+  /**
+   * @return The operations done since the warm-up.
+   */
+  synchronized int measuredOperations(int opsDone) {
+    return over ? (int) (opsDone - endOperations) : opsDone;
+  }
+
+  /**
+   * @return The start of the measured part of the run, in ms.
+   */
+  synchronized long measuredStart(long st) {
+    return over && endMs > 0 ? endMs : st;
+  }
+}
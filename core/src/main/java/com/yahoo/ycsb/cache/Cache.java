@@ -0,0 +1,145 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * A thread-safe cache bounded by the total weight of its entries, such as their size in bytes.
+ * <p>
+ * Keys are spread over shards, each with its own lock, eviction policy and an equal share of the capacity, so
+ * client threads rarely wait for each other.
+ * </p>
+ *
+ * @param <V> The type of the values.
+ */
+public final class Cache<V> {
+  /** Least recently used. */
+  public static final String LRU = "lru";
+  /** CLOCK, or second chance. */
+  public static final String CLOCK = "clock";
+  /** W-TinyLFU, an LRU window in front of a segmented LRU with frequency-based admission. */
+  public static final String W_TINY_LFU = "wtinylfu";
+
+  private final List<Policy<V>> shards;
+
+  /**
+   * @param policy One of {@link #LRU}, {@link #CLOCK} or {@link #W_TINY_LFU}.
+   * @param capacity The largest total weight of the entries.
+   * @param shardCount The number of shards.
+   * @throws IllegalArgumentException If the policy is unknown, or the capacity too small for the shards.
+   */
+  public Cache(String policy, long capacity, int shardCount) {
+    this(policy, capacity, shardCount, count -> { });
+  }
+
+  /**
+   * @param policy One of {@link #LRU}, {@link #CLOCK} or {@link #W_TINY_LFU}.
+   * @param capacity The largest total weight of the entries.
+   * @param shardCount The number of shards.
+   * @param rejected Told how many entries the policy refused to admit, which {@link #W_TINY_LFU} does for entries
+   *                 less popular than those they would push out. Called with the lock of a shard held.
+   * @throws IllegalArgumentException If the policy is unknown, or the capacity too small for the shards.
+   */
+  public Cache(String policy, long capacity, int shardCount, IntConsumer rejected) {
+    if (shardCount < 1 || capacity < shardCount) {
+      throw new IllegalArgumentException("A cache needs at least one shard and a capacity of one per shard");
+    }
+    shards = new ArrayList<>(shardCount);
+    for (int i = 0; i < shardCount; i++) {
+      long shardCapacity = capacity / shardCount + (i < capacity % shardCount ? 1 : 0);
+      switch (policy) {
+      case LRU:
+        shards.add(new LruPolicy<>(shardCapacity));
+        break;
+      case CLOCK:
+        shards.add(new ClockPolicy<>(shardCapacity));
+        break;
+      case W_TINY_LFU:
+        shards.add(new TinyLfuPolicy<>(shardCapacity, rejected));
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown cache policy '" + policy + "', expected " + LRU + ", " + CLOCK
+            + " or " + W_TINY_LFU);
+      }
+    }
+  }
+
+  private Policy<V> shard(String key) {
+    int hash = key.hashCode();
+    return shards.get(Math.floorMod(hash ^ (hash >>> 16), shards.size()));
+  }
+
+  /**
+   * @return The value of the key, or null if it is not cached.
+   */
+  public V get(String key) {
+    Policy<V> shard = shard(key);
+    synchronized (shard) {
+      return shard.get(key);
+    }
+  }
+
+  /**
+   * Cache a value, replacing that of the key if there is one. The policy may turn it down, or evict other entries
+   * to make room for it.
+   *
+   * @return The number of entries evicted, including the new one if it weighs more than the capacity of its shard,
+   * but not the entries the policy refused to admit.
+   */
+  public int put(String key, V value, long weight) {
+    Policy<V> shard = shard(key);
+    synchronized (shard) {
+      return shard.put(key, value, weight);
+    }
+  }
+
+  public void remove(String key) {
+    Policy<V> shard = shard(key);
+    synchronized (shard) {
+      shard.remove(key);
+    }
+  }
+
+  /**
+   * @return The number of entries.
+   */
+  public int size() {
+    int size = 0;
+    for (Policy<V> shard : shards) {
+      synchronized (shard) {
+        size += shard.size();
+      }
+    }
+    return size;
+  }
+
+  /**
+   * @return The total weight of the entries.
+   */
+  public long getWeight() {
+    long weight = 0;
+    for (Policy<V> shard : shards) {
+      synchronized (shard) {
+        weight += shard.getWeight();
+      }
+    }
+    return weight;
+  }
+}
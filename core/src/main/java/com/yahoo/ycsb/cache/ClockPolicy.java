@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * CLOCK: an approximation of LRU that does not reorder entries on a read. Entries sit on a ring with a reference
+ * bit set when they are read; to make room, a hand goes round the ring, clearing set bits and evicting the first
+ * entry whose bit is clear.
+ */
+final class ClockPolicy<V> extends Policy<V> {
+  private final Map<String, Entry<V>> entries = new HashMap<>();
+  /** The next entry to look at; new entries go just behind it. */
+  private Entry<V> hand;
+  private long weight;
+
+  ClockPolicy(long capacity) {
+    super(capacity);
+  }
+
+  @Override
+  V get(String key) {
+    Entry<V> entry = entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+    entry.setReferenced(true);
+    return entry.getValue();
+  }
+
+  @Override
+  int put(String key, V value, long entryWeight) {
+    Entry<V> entry = entries.get(key);
+    if (entryWeight > getCapacity()) {
+      remove(key);
+      return 1;
+    }
+    if (entry != null) {
+      weight += entry.set(value, entryWeight);
+      entry.setReferenced(true);
+    } else {
+      entry = new Entry<>(key, value, entryWeight);
+      entries.put(key, entry);
+      weight += entryWeight;
+      link(entry);
+    }
+
+    int evicted = 0;
+    while (weight > getCapacity()) {
+      Entry<V> victim = hand;
+      hand = victim.getNext();
+      if (victim == entry) {
+        // the others weigh enough to make room
+        continue;
+      }
+      if (victim.isReferenced()) {
+        victim.setReferenced(false);
+      } else {
+        entries.remove(victim.getKey());
+        weight -= victim.getWeight();
+        unlink(victim);
+        evicted++;
+      }
+    }
+    return evicted;
+  }
+
+  @Override
+  void remove(String key) {
+    Entry<V> entry = entries.remove(key);
+    if (entry != null) {
+      weight -= entry.getWeight();
+      unlink(entry);
+    }
+  }
+
+  private void link(Entry<V> entry) {
+    if (hand == null) {
+      entry.setPrev(entry);
+      entry.setNext(entry);
+      hand = entry;
+    } else {
+      Entry<V> last = hand.getPrev();
+      entry.setPrev(last);
+      entry.setNext(hand);
+      last.setNext(entry);
+      hand.setPrev(entry);
+    }
+  }
+
+  private void unlink(Entry<V> entry) {
+    if (entry.getNext() == entry) {
+      hand = null;
+    } else {
+      if (hand == entry) {
+        hand = entry.getNext();
+      }
+      entry.getPrev().setNext(entry.getNext());
+      entry.getNext().setPrev(entry.getPrev());
+    }
+    entry.setPrev(null);
+    entry.setNext(null);
+  }
+
+  @Override
+  int size() {
+    return entries.size();
+  }
+
+  @Override
+  long getWeight() {
+    return weight;
+  }
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.cache;
+
+import java.util.Arrays;
+
+/**
+ * An estimate of how often keys were seen recently: a count-min sketch of four-bit counters, halved every time the
+ * number of increments reaches ten times the number of counters per row, so old popularity fades away.
+ */
+final class FrequencySketch {
+  private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL,
+      0xcbf29ce484222325L};
+  private static final long RESET_MASK = 0x7777777777777777L;
+  private static final int MIN_SIZE = 16;
+
+  /** Each long holds sixteen four-bit counters. */
+  private long[] table;
+  private int sampleSize;
+  private int additions;
+
+  FrequencySketch() {
+    ensureCapacity(MIN_SIZE);
+  }
+
+  /**
+   * Make the sketch big enough for the given number of keys. A key's counters in a larger table are in the copy of
+   * the long which held them in the smaller one, as the index only gains high bits, so the table grows by copying
+   * itself and keeps what it has seen.
+   */
+  void ensureCapacity(int keys) {
+    int size = Integer.highestOneBit(Math.max(keys, MIN_SIZE) - 1) << 1;
+    if (table != null && table.length >= size || size <= 0) {
+      return;
+    }
+    if (table == null) {
+      table = new long[size];
+    } else {
+      int length = table.length;
+      table = Arrays.copyOf(table, size);
+      for (int copy = length; copy < size; copy += length) {
+        System.arraycopy(table, 0, table, copy, length);
+      }
+    }
+    sampleSize = 10 * size;
+  }
+
+  /**
+   * @return How often the key was seen recently, at most 15.
+   */
+  int frequency(String key) {
+    int hash = spread(key.hashCode());
+    int start = (hash & 3) << 2;
+    int frequency = Integer.MAX_VALUE;
+    for (int i = 0; i < 4; i++) {
+      int index = indexOf(hash, i);
+      int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+      frequency = Math.min(frequency, count);
+    }
+    return frequency;
+  }
+
+  /**
+   * Count that the key was seen once more.
+   */
+  void increment(String key) {
+    int hash = spread(key.hashCode());
+    int start = (hash & 3) << 2;
+    boolean added = false;
+    for (int i = 0; i < 4; i++) {
+      added |= incrementAt(indexOf(hash, i), start + i);
+    }
+    if (added && ++additions == sampleSize) {
+      reset();
+    }
+  }
+
+  private boolean incrementAt(int index, int counter) {
+    int offset = counter << 2;
+    long mask = 0xfL << offset;
+    if ((table[index] & mask) != mask) {
+      table[index] += 1L << offset;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Halve every counter.
+   */
+  private void reset() {
+    for (int i = 0; i < table.length; i++) {
+      table[i] = (table[i] >>> 1) & RESET_MASK;
+    }
+    additions /= 2;
+  }
+
+  private int indexOf(int hash, int row) {
+    long h = (hash + SEEDS[row]) * SEEDS[row];
+    h += h >>> 32;
+    return (int) h & (table.length - 1);
+  }
+
+  private static int spread(int x) {
+    int h = ((x >>> 16) ^ x) * 0x45d9f3b;
+    h = ((h >>> 16) ^ h) * 0x45d9f3b;
+    return (h >>> 16) ^ h;
+  }
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Least recently used: evicts the entries that were not read or written for the longest time.
+ */
+final class LruPolicy<V> extends Policy<V> {
+  private final LinkedHashMap<String, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long weight;
+
+  LruPolicy(long capacity) {
+    super(capacity);
+  }
+
+  @Override
+  V get(String key) {
+    Entry<V> entry = entries.get(key);
+    return entry == null ? null : entry.getValue();
+  }
+
+  @Override
+  int put(String key, V value, long entryWeight) {
+    Entry<V> entry = entries.get(key);
+    if (entryWeight > getCapacity()) {
+      remove(key);
+      return 1;
+    }
+    if (entry != null) {
+      weight += entry.set(value, entryWeight);
+    } else {
+      entries.put(key, new Entry<>(key, value, entryWeight));
+      weight += entryWeight;
+    }
+
+    int evicted = 0;
+    Iterator<Entry<V>> eldest = entries.values().iterator();
+    while (weight > getCapacity()) {
+      weight -= eldest.next().getWeight();
+      eldest.remove();
+      evicted++;
+    }
+    return evicted;
+  }
+
+  @Override
+  void remove(String key) {
+    Entry<V> entry = entries.remove(key);
+    if (entry != null) {
+      weight -= entry.getWeight();
+    }
+  }
+
+  @Override
+  int size() {
+    return entries.size();
+  }
+
+  @Override
+  long getWeight() {
+    return weight;
+  }
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.cache;
+
+/**
+ * How one shard of a {@link Cache} keeps its entries within its capacity. Not thread-safe; the cache locks the
+ * shard around every call.
+ *
+ * @param <V> The type of the values.
+ */
+abstract class Policy<V> {
+  /**
+   * An entry, which a policy keeps in its own structures.
+   */
+  static final class Entry<V> {
+    private final String key;
+    private V value;
+    private long weight;
+    /** Set on access, for CLOCK. */
+    private boolean referenced;
+    /** The ring of entries, for CLOCK. */
+    private Entry<V> prev;
+    private Entry<V> next;
+
+    Entry(String key, V value, long weight) {
+      this.key = key;
+      this.value = value;
+      this.weight = weight;
+    }
+
+    String getKey() {
+      return key;
+    }
+
+    V getValue() {
+      return value;
+    }
+
+    long getWeight() {
+      return weight;
+    }
+
+    /**
+     * Replace the value.
+     *
+     * @return The change in weight.
+     */
+    long set(V newValue, long newWeight) {
+      long delta = newWeight - weight;
+      value = newValue;
+      weight = newWeight;
+      return delta;
+    }
+
+    boolean isReferenced() {
+      return referenced;
+    }
+
+    void setReferenced(boolean isReferenced) {
+      referenced = isReferenced;
+    }
+
+    Entry<V> getPrev() {
+      return prev;
+    }
+
+    void setPrev(Entry<V> entry) {
+      prev = entry;
+    }
+
+    Entry<V> getNext() {
+      return next;
+    }
+
+    void setNext(Entry<V> entry) {
+      next = entry;
+    }
+  }
+
+  private final long capacity;
+
+  Policy(long capacity) {
+    this.capacity = capacity;
+  }
+
+  /**
+   * @return The largest total weight of the entries.
+   */
+  long getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * @return The value of the key, or null if it is not cached.
+   */
+  abstract V get(String key);
+
+  /**
+   * Cache a value, replacing that of the key if there is one, unless it weighs more than the whole capacity.
+   *
+   * @return The number of entries evicted to make room, including the new one if it weighs more than the capacity,
+   * but not entries the policy refuses to admit.
+   */
+  abstract int put(String key, V value, long weight);
+
+  abstract void remove(String key);
+
+  /**
+   * @return The number of entries.
+   */
+  abstract int size();
+
+  /**
+   * @return The total weight of the entries.
+   */
+  abstract long getWeight();
+}
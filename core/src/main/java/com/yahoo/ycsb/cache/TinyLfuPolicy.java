@@ -0,0 +1,228 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.IntConsumer;
+
+/**
+ * W-TinyLFU: new entries go to a small LRU window, 1% of the capacity. Entries the window evicts, or that are too
+ * big for it, are candidates for the main space, a segmented LRU, and only get in by being more popular, according
+ * to a {@link FrequencySketch}, than the entry the main space would evict for them. This keeps one-off reads, such
+ * as those of a scan, from pushing out the popular entries, while the window still lets a burst of new keys in.
+ * <p>
+ * The main space has a probation segment, where admitted entries start, and a protected segment, 80% of the main
+ * space, where they move when read again. Entries the protected segment pushes out go back to probation, and
+ * evictions start with the least recently used entry on probation.
+ * </p>
+ * <p>
+ * Candidates which are not admitted are rejections rather than evictions. The sketch is sized for the number of
+ * entries as they grow, and keeps its counts when it does.
+ * </p>
+ */
+final class TinyLfuPolicy<V> extends Policy<V> {
+  private final long windowCapacity;
+  private final long mainCapacity;
+  private final long protectedCapacity;
+
+  private final LinkedHashMap<String, Entry<V>> window = new LinkedHashMap<>(16, 0.75f, true);
+  private final LinkedHashMap<String, Entry<V>> probation = new LinkedHashMap<>(16, 0.75f, true);
+  private final LinkedHashMap<String, Entry<V>> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+  private long windowWeight;
+  private long probationWeight;
+  private long protectedWeight;
+
+  private final FrequencySketch sketch = new FrequencySketch();
+  private final IntConsumer rejected;
+
+  TinyLfuPolicy(long capacity, IntConsumer rejected) {
+    super(capacity);
+    this.rejected = rejected;
+    windowCapacity = Math.max(1, capacity / 100);
+    mainCapacity = capacity - windowCapacity;
+    protectedCapacity = mainCapacity * 8 / 10;
+  }
+
+  @Override
+  V get(String key) {
+    sketch.increment(key);
+    Entry<V> entry = window.get(key);
+    if (entry == null) {
+      entry = protectedSegment.get(key);
+    }
+    if (entry == null) {
+      entry = probation.remove(key);
+      if (entry != null) {
+        probationWeight -= entry.getWeight();
+        protect(entry);
+      }
+    }
+    return entry == null ? null : entry.getValue();
+  }
+
+  /**
+   * Move an entry from probation to the protected segment, demoting the least recently used protected entries
+   * back to probation if it is full.
+   */
+  private void protect(Entry<V> entry) {
+    protectedSegment.put(entry.getKey(), entry);
+    protectedWeight += entry.getWeight();
+    Iterator<Entry<V>> eldest = protectedSegment.values().iterator();
+    while (protectedWeight > protectedCapacity && protectedSegment.size() > 1) {
+      Entry<V> demoted = eldest.next();
+      eldest.remove();
+      protectedWeight -= demoted.getWeight();
+      probation.put(demoted.getKey(), demoted);
+      probationWeight += demoted.getWeight();
+    }
+  }
+
+  @Override
+  int put(String key, V value, long weight) {
+    if (weight > getCapacity()) {
+      remove(key);
+      return 1;
+    }
+    LinkedHashMap<String, Entry<V>> segment = segmentOf(key);
+    if (segment != null) {
+      addWeight(segment, segment.get(key).set(value, weight));
+    } else {
+      window.put(key, new Entry<>(key, value, weight));
+      windowWeight += weight;
+      sketch.ensureCapacity(size());
+    }
+
+    int evicted = 0;
+    int refused = 0;
+    Iterator<Entry<V>> eldest = window.values().iterator();
+    while (windowWeight > windowCapacity) {
+      Entry<V> candidate = eldest.next();
+      eldest.remove();
+      windowWeight -= candidate.getWeight();
+      int admitEvicted = admit(candidate);
+      if (admitEvicted < 0) {
+        refused++;
+      } else {
+        evicted += admitEvicted;
+      }
+    }
+    while (probationWeight + protectedWeight > mainCapacity) {
+      evictFromMain(null);
+      evicted++;
+    }
+    if (refused > 0) {
+      rejected.accept(refused);
+    }
+    return evicted;
+  }
+
+  /**
+   * Give a candidate the window evicted a place on probation if it is more popular than the entry the main space
+   * would evict for it, evicting entries until it fits.
+   *
+   * @return The number of entries evicted for the candidate, or -1 if it is not admitted.
+   */
+  private int admit(Entry<V> candidate) {
+    if (probationWeight + protectedWeight + candidate.getWeight() <= mainCapacity) {
+      probation.put(candidate.getKey(), candidate);
+      probationWeight += candidate.getWeight();
+      return 0;
+    }
+    Entry<V> victim = mainVictim(null);
+    if (candidate.getWeight() > mainCapacity || victim == null
+        || sketch.frequency(candidate.getKey()) <= sketch.frequency(victim.getKey())) {
+      return -1;
+    }
+    probation.put(candidate.getKey(), candidate);
+    probationWeight += candidate.getWeight();
+    int evicted = 0;
+    while (probationWeight + protectedWeight > mainCapacity) {
+      evictFromMain(candidate);
+      evicted++;
+    }
+    return evicted;
+  }
+
+  /**
+   * @return The least recently used entry on probation, or in the protected segment if probation holds none but
+   * the given entry, or null if the main space is empty.
+   */
+  private Entry<V> mainVictim(Entry<V> keep) {
+    if (!probation.isEmpty()) {
+      Entry<V> eldest = probation.values().iterator().next();
+      if (eldest != keep) {
+        return eldest;
+      }
+    }
+    if (!protectedSegment.isEmpty()) {
+      return protectedSegment.values().iterator().next();
+    }
+    return null;
+  }
+
+  private void evictFromMain(Entry<V> keep) {
+    Entry<V> victim = mainVictim(keep);
+    if (probation.remove(victim.getKey()) != null) {
+      probationWeight -= victim.getWeight();
+    } else {
+      protectedSegment.remove(victim.getKey());
+      protectedWeight -= victim.getWeight();
+    }
+  }
+
+  @Override
+  void remove(String key) {
+    LinkedHashMap<String, Entry<V>> segment = segmentOf(key);
+    if (segment != null) {
+      addWeight(segment, -segment.remove(key).getWeight());
+    }
+  }
+
+  /**
+   * @return The segment holding the key, or null if it is not cached.
+   */
+  private LinkedHashMap<String, Entry<V>> segmentOf(String key) {
+    if (window.containsKey(key)) {
+      return window;
+    }
+    if (probation.containsKey(key)) {
+      return probation;
+    }
+    return protectedSegment.containsKey(key) ? protectedSegment : null;
+  }
+
+  private void addWeight(LinkedHashMap<String, Entry<V>> segment, long delta) {
+    if (segment == window) {
+      windowWeight += delta;
+    } else if (segment == probation) {
+      probationWeight += delta;
+    } else {
+      protectedWeight += delta;
+    }
+  }
+
+  @Override
+  int size() {
+    return window.size() + probation.size() + protectedSegment.size();
+  }
+
+  @Override
+  long getWeight() {
+    return windowWeight + probationWeight + protectedWeight;
+  }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The hits, misses, evictions and rejections of the client-side cache of {@link com.yahoo.ycsb.CachingDB}, exported
+ * as CACHE. The latencies of hits and misses are measured as the READ-CACHE-HIT and READ-CACHE-MISS operations.
+ * Rejections are the entries the cache refused to admit, which W-TinyLFU does for entries less popular than those
+ * they would push out; they were never cached, so they are not evictions.
+ */
+public final class CacheStatistics {
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final LongAdder rejections = new LongAdder();
+  private volatile long entries;
+  private volatile long bytes;
+
+  public void hit() {
+    hits.increment();
+  }
+
+  public void miss() {
+    misses.increment();
+  }
+
+  public void evicted(int count) {
+    if (count > 0) {
+      evictions.add(count);
+    }
+  }
+
+  public void rejected(int count) {
+    rejections.add(count);
+  }
+
+  /**
+   * Note how much the cache holds, to report with the counts.
+   */
+  public void setSize(long entryCount, long byteCount) {
+    entries = entryCount;
+    bytes = byteCount;
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  public long getEvictions() {
+    return evictions.sum();
+  }
+
+  public long getRejections() {
+    return rejections.sum();
+  }
+
+  /**
+   * Forget the counts so far, such as those of a warm-up period. What the cache holds is kept.
+   */
+  public void reset() {
+    hits.reset();
+    misses.reset();
+    evictions.reset();
+    rejections.reset();
+  }
+
+  public void exportMeasurements(MeasurementsExporter exporter) throws IOException {
+    long hitCount = getHits();
+    long missCount = getMisses();
+    exporter.write("CACHE", "Hits", hitCount);
+    exporter.write("CACHE", "Misses", missCount);
+    if (hitCount + missCount > 0) {
+      exporter.write("CACHE", "HitRatio", hitCount / (double) (hitCount + missCount));
+    }
+    exporter.write("CACHE", "Evictions", getEvictions());
+    exporter.write("CACHE", "Rejections", getRejections());
+    exporter.write("CACHE", "Entries", entries);
+    exporter.write("CACHE", "Size(bytes)", bytes);
+  }
+}
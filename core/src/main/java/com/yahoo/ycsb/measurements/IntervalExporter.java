@@ -0,0 +1,228 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Writes one machine-readable record per operation for every status interval, as CSV or JSON lines, for plotting
+ * a run without parsing the status lines.
+ * <p>
+ * A record holds the end of the interval, in ms since the epoch, the seconds since the start of the run, the
+ * measurement name, such as READ or Intended-READ, and the count, throughput, min, max and mean latency of the
+ * interval, followed by its percentiles. Latencies are in us. Min, max and percentiles are only known for
+ * measurementtype=hdrhistogram; they are empty in CSV and null in JSON otherwise.
+ * </p>
+ * <p>
+ * Records are written by the status thread right after it takes the interval, reusing one buffer, so nothing is
+ * allocated per operation and little per interval.
+ * </p>
+ * Properties:
+ * <UL>
+ * <LI><b>status.export.file</b>: the file to write to, which turns the records, and the status thread, on
+ * <LI><b>status.export.format</b>: csv (default) or json
+ * <LI><b>status.export.percentiles</b>: the percentiles of each record (default: 95,99)
+ * </UL>
+ */
+public final class IntervalExporter {
+  public static final String FILE_PROPERTY = "status.export.file";
+  public static final String FORMAT_PROPERTY = "status.export.format";
+  public static final String FORMAT_PROPERTY_DEFAULT = "csv";
+  public static final String PERCENTILES_PROPERTY = "status.export.percentiles";
+  public static final String PERCENTILES_PROPERTY_DEFAULT = "95,99";
+
+  private final Writer out;
+  private final boolean json;
+  private final double[] percentiles;
+  private final String[] percentileNames;
+  private final StringBuilder record = new StringBuilder(256);
+
+  /**
+   * @param out         Where to write, closed by {@link #close()}.
+   * @param json        Whether to write JSON lines rather than CSV.
+   * @param percentiles The percentiles of each record.
+   */
+  public IntervalExporter(OutputStream out, boolean json, double[] percentiles) throws IOException {
+    this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    this.json = json;
+    this.percentiles = percentiles.clone();
+    percentileNames = new String[percentiles.length];
+    for (int i = 0; i < percentiles.length; i++) {
+      double p = percentiles[i];
+      percentileNames[i] = "p" + (p == Math.rint(p) ? String.valueOf((long) p) : String.valueOf(p));
+    }
+    if (!json) {
+      record.append("timestamp,elapsed,operation,count,throughput,min,max,mean");
+      for (String name : percentileNames) {
+        record.append(',').append(name);
+      }
+      this.out.write(record.append('\n').toString());
+      this.out.flush();
+      record.setLength(0);
+    }
+  }
+
+  public static boolean isSet(Properties props) {
+    return props.containsKey(FILE_PROPERTY);
+  }
+
+  /**
+   * @return The exporter the properties describe, or null if they do not set <b>status.export.file</b>.
+   * @throws IllegalArgumentException If the format or percentiles are not valid.
+   * @throws IOException If the file cannot be opened.
+   */
+  public static IntervalExporter fromProperties(Properties props) throws IOException {
+    if (!isSet(props)) {
+      return null;
+    }
+    String format = props.getProperty(FORMAT_PROPERTY, FORMAT_PROPERTY_DEFAULT);
+    if (!format.equals("csv") && !format.equals("json")) {
+      throw new IllegalArgumentException("Unknown " + FORMAT_PROPERTY + " '" + format + "', expected csv or json");
+    }
+    List<Double> parsed = new ArrayList<>();
+    for (String p : props.getProperty(PERCENTILES_PROPERTY, PERCENTILES_PROPERTY_DEFAULT).split(",")) {
+      if (!p.trim().isEmpty()) {
+        double percentile = Double.parseDouble(p.trim());
+        if (!(percentile > 0 && percentile <= 100)) {
+          throw new IllegalArgumentException("Invalid percentile in " + PERCENTILES_PROPERTY + ": " + p);
+        }
+        parsed.add(percentile);
+      }
+    }
+    double[] percentiles = new double[parsed.size()];
+    for (int i = 0; i < percentiles.length; i++) {
+      percentiles[i] = parsed.get(i);
+    }
+    return new IntervalExporter(new FileOutputStream(props.getProperty(FILE_PROPERTY)), format.equals("json"),
+        percentiles);
+  }
+
+  /**
+   * Write the records of the interval the measurements just closed, with {@link Measurements#getSummary()}.
+   *
+   * @param timestampMs     The end of the interval, in ms since the epoch.
+   * @param elapsedSeconds  The time since the start of the run.
+   * @param intervalSeconds The length of the interval.
+   */
+  public void write(Measurements measurements, long timestampMs, double elapsedSeconds, double intervalSeconds)
+      throws IOException {
+    for (int intended = 0; intended < 2; intended++) {
+      for (OneMeasurement m : measurements.getOperationMeasurements(intended == 1)) {
+        write(m, timestampMs, elapsedSeconds, intervalSeconds);
+      }
+    }
+    out.flush();
+  }
+
+  private void write(OneMeasurement m, long timestampMs, double elapsedSeconds, double intervalSeconds)
+      throws IOException {
+    long count = m.getSummaryOperations();
+    OneMeasurementHdrHistogram.Snapshot snapshot = m instanceof OneMeasurementHdrHistogram ?
+        ((OneMeasurementHdrHistogram) m).getSnapshot() : null;
+    if (snapshot != null && snapshot.getIntervalCount() != count) {
+      // the last interval is not the one of the last summary
+      snapshot = null;
+    }
+    boolean some = count > 0;
+
+    record.setLength(0);
+    if (json) {
+      record.append("{\"timestamp\":").append(timestampMs);
+      record.append(",\"elapsed\":").append(elapsedSeconds);
+      record.append(",\"operation\":\"");
+      appendJsonString(m.getName());
+      record.append("\",\"count\":").append(count);
+    } else {
+      record.append(timestampMs).append(',').append(elapsedSeconds).append(',');
+      appendCsvString(m.getName());
+      record.append(',').append(count);
+    }
+    field("throughput", intervalSeconds > 0 ? count / intervalSeconds : Double.NaN);
+    field("min", some && snapshot != null ? snapshot.getIntervalMin() : Double.NaN);
+    field("max", some && snapshot != null ? snapshot.getIntervalMax() : Double.NaN);
+    field("mean", some ? m.getSummaryTotalLatency() / count : Double.NaN);
+    for (int i = 0; i < percentiles.length; i++) {
+      field(percentileNames[i], some && snapshot != null ?
+          snapshot.getIntervalValueAtPercentile(percentiles[i]) : Double.NaN);
+    }
+    record.append(json ? "}\n" : "\n");
+    out.append(record);
+  }
+
+  /**
+   * Append a number, or the missing value of the format if it is NaN. Whole numbers have no decimals.
+   */
+  private void field(String name, double value) {
+    if (json) {
+      record.append(",\"").append(name).append("\":");
+    } else {
+      record.append(',');
+    }
+    if (Double.isNaN(value) || Double.isInfinite(value)) {
+      if (json) {
+        record.append("null");
+      }
+    } else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+      record.append((long) value);
+    } else {
+      record.append(value);
+    }
+  }
+
+  private void appendJsonString(String value) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        record.append('\\').append(c);
+      } else if (c < 0x20) {
+        record.append(String.format("\\u%04x", (int) c));
+      } else {
+        record.append(c);
+      }
+    }
+  }
+
+  private void appendCsvString(String value) {
+    if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+      record.append(value);
+      return;
+    }
+    record.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"') {
+        record.append('"');
+      }
+      record.append(c);
+    }
+    record.append('"');
+  }
+
+  public void close() throws IOException {
+    out.close();
+  }
+}
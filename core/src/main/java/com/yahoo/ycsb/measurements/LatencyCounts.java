@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import java.util.Arrays;
+
+/**
+ * Exact count of how many times each latency value occurred, kept in primitive open addressing arrays.
+ * Latencies are in microseconds, so a run has far fewer distinct values than samples, and exact percentiles
+ * only need the distinct values sorted.
+ */
+final class LatencyCounts {
+  private static final int EMPTY = -1;
+
+  private int[] values = newValues(1024);
+  private long[] counts = new long[1024];
+  private int size = 0;
+  private long total = 0;
+
+  /**
+   * Count a value {@code count} more times. Negative values are counted as zero.
+   */
+  void add(int value, long count) {
+    if (size * 2 >= values.length) {
+      grow();
+    }
+    int slot = slotOf(Math.max(0, value));
+    if (values[slot] == EMPTY) {
+      values[slot] = Math.max(0, value);
+      size++;
+    }
+    counts[slot] += count;
+    total += count;
+  }
+
+  void addAll(LatencyCounts other) {
+    for (int i = 0; i < other.values.length; i++) {
+      if (other.values[i] != EMPTY) {
+        add(other.values[i], other.counts[i]);
+      }
+    }
+  }
+
+  long total() {
+    return total;
+  }
+
+  /**
+   * @return The distinct values counted, in ascending order.
+   */
+  int[] distinctValues() {
+    int[] keys = new int[size];
+    int n = 0;
+    for (int value : values) {
+      if (value != EMPTY) {
+        keys[n++] = value;
+      }
+    }
+    Arrays.sort(keys);
+    return keys;
+  }
+
+  long countOf(int value) {
+    int slot = slotOf(value);
+    return values[slot] == EMPTY ? 0 : counts[slot];
+  }
+
+  /**
+   * @param sorted The result of {@link #distinctValues()}.
+   * @param fraction Between 0 and 1.
+   * @return The value that would be at index {@code (int) (total * fraction)} if all samples were sorted.
+   */
+  int valueAt(int[] sorted, double fraction) {
+    long rank = (long) (total * fraction);
+    long seen = 0;
+    for (int value : sorted) {
+      seen += countOf(value);
+      if (seen > rank) {
+        return value;
+      }
+    }
+    return sorted[sorted.length - 1];
+  }
+
+  /**
+   * @return The slot holding {@code value}, or the empty slot where it belongs.
+   */
+  private int slotOf(int value) {
+    int mask = values.length - 1;
+    int h = value * 0x9E3779B9;
+    int slot = (h ^ (h >>> 16)) & mask;
+    while (values[slot] != EMPTY && values[slot] != value) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void grow() {
+    int[] oldValues = values;
+    long[] oldCounts = counts;
+    values = newValues(oldValues.length * 2);
+    counts = new long[oldValues.length * 2];
+    for (int i = 0; i < oldValues.length; i++) {
+      if (oldValues[i] != EMPTY) {
+        int slot = slotOf(oldValues[i]);
+        values[slot] = oldValues[i];
+        counts[slot] = oldCounts[i];
+      }
+    }
+  }
+
+  private static int[] newValues(int length) {
+    int[] values = new int[length];
+    Arrays.fill(values, EMPTY);
+    return values;
+  }
+}
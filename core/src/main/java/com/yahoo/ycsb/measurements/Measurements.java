@@ -21,11 +21,19 @@ import com.yahoo.ycsb.Status;
 import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Collects latency measurements, and reports them when requested.
+ * <p>
+ * Callers on a hot path should resolve their operation names once with {@link #getOperationHandle(String)} and
+ * record through the handle based methods, which index an array instead of looking the name up.
+ * </p>
  */
 public class Measurements {
   /**
@@ -68,9 +76,30 @@ public class Measurements {
 
   private final ConcurrentHashMap<String, OneMeasurement> opToMesurementMap;
   private final ConcurrentHashMap<String, OneMeasurement> opToIntendedMesurementMap;
+
+  /**
+   * The measurements of an operation resolved to a handle. They are filled in on first use, so that an
+   * operation which never happens is not reported.
+   */
+  private static final class OperationSlot {
+    private final String operation;
+    private volatile OneMeasurement measurement;
+    private volatile OneMeasurement intendedMeasurement;
+
+    private OperationSlot(String operation) {
+      this.operation = operation;
+    }
+  }
+
+  /** Indexed by handle; replaced, never modified, when a handle is added. */
+  private volatile OperationSlot[] slots = new OperationSlot[0];
+  private final Map<String, Integer> handles = new HashMap<>();
   private final MeasurementType measurementType;
   private final int measurementInterval;
   private final Properties props;
+  private volatile OneMeasurementHdrHistogram.IntervalListener intervalListener;
+  private final OverheadBreakdown overhead;
+  private CacheStatistics cacheStatistics;
 
   /**
    * Create a new object with the specified properties.
@@ -119,6 +148,27 @@ public class Measurements {
     default:
       throw new IllegalArgumentException("unknown " + MEASUREMENT_INTERVAL + "=" + mIntervalString);
     }
+
+    overhead = OverheadBreakdown.isSet(props) ? new OverheadBreakdown() : null;
+  }
+
+  /**
+   * @return Where client threads and DB wrappers add up the time of their operations, or null unless
+   * {@link OverheadBreakdown#OVERHEAD_PROPERTY} is set.
+   */
+  public OverheadBreakdown getOverheadBreakdown() {
+    return overhead;
+  }
+
+  /**
+   * @return Where {@link com.yahoo.ycsb.CachingDB} counts its hits, misses, evictions and rejections, exported from
+   * the first call on.
+   */
+  public synchronized CacheStatistics getCacheStatistics() {
+    if (cacheStatistics == null) {
+      cacheStatistics = new CacheStatistics();
+    }
+    return cacheStatistics;
   }
 
   private OneMeasurement constructOneMeasurement(String name) {
@@ -126,7 +176,9 @@ public class Measurements {
     case HISTOGRAM:
       return new OneMeasurementHistogram(name, props);
     case HDRHISTOGRAM:
-      return new OneMeasurementHdrHistogram(name, props);
+      OneMeasurementHdrHistogram hdr = new OneMeasurementHdrHistogram(name, props);
+      hdr.setIntervalListener(intervalListener);
+      return hdr;
     case HDRHISTOGRAM_AND_HISTOGRAM:
       return new TwoInOneMeasurement(name,
           new OneMeasurementHdrHistogram("Hdr" + name, props),
@@ -214,6 +266,78 @@ public class Measurements {
     }
   }
 
+  /**
+   * Resolve an operation name to a handle for {@link #measure(int, int)}, {@link #measureIntended(int, int)} and
+   * {@link #reportStatus(int, Status)}. Resolving the same name again returns the same handle.
+   */
+  public synchronized int getOperationHandle(String operation) {
+    Integer handle = handles.get(operation);
+    if (handle == null) {
+      handle = slots.length;
+      OperationSlot[] grown = Arrays.copyOf(slots, handle + 1);
+      grown[handle] = new OperationSlot(operation);
+      slots = grown;
+      handles.put(operation, handle);
+    }
+    return handle;
+  }
+
+  /**
+   * Same as {@link #measure(String, int)} for an operation resolved with {@link #getOperationHandle(String)}.
+   */
+  public void measure(int handle, int latency) {
+    if (measurementInterval == 1) {
+      return;
+    }
+    OperationSlot slot = slots[handle];
+    OneMeasurement m = slot.measurement;
+    if (m == null) {
+      m = getOpMeasurement(slot.operation);
+      slot.measurement = m;
+    }
+    m.measure(latency);
+  }
+
+  /**
+   * Same as {@link #measureIntended(String, int)} for an operation resolved with
+   * {@link #getOperationHandle(String)}.
+   */
+  public void measureIntended(int handle, int latency) {
+    if (measurementInterval == 0) {
+      return;
+    }
+    OperationSlot slot = slots[handle];
+    OneMeasurement m = slot.intendedMeasurement;
+    if (m == null) {
+      m = getOpIntendedMeasurement(slot.operation);
+      slot.intendedMeasurement = m;
+    }
+    m.measure(latency);
+  }
+
+  /**
+   * Same as {@link #reportStatus(String, Status)} for an operation resolved with
+   * {@link #getOperationHandle(String)}.
+   */
+  public void reportStatus(int handle, final Status status) {
+    OperationSlot slot = slots[handle];
+    OneMeasurement m;
+    if (measurementInterval == 1) {
+      m = slot.intendedMeasurement;
+      if (m == null) {
+        m = getOpIntendedMeasurement(slot.operation);
+        slot.intendedMeasurement = m;
+      }
+    } else {
+      m = slot.measurement;
+      if (m == null) {
+        m = getOpMeasurement(slot.operation);
+        slot.measurement = m;
+      }
+    }
+    m.reportStatus(status);
+  }
+
   private OneMeasurement getOpMeasurement(String operation) {
     OneMeasurement m = opToMesurementMap.get(operation);
     if (m == null) {
@@ -262,20 +386,132 @@ public class Measurements {
     for (OneMeasurement measurement : opToIntendedMesurementMap.values()) {
       measurement.exportMeasurements(exporter);
     }
+    if (overhead != null) {
+      overhead.exportMeasurements(exporter);
+    }
+    CacheStatistics cache;
+    synchronized (this) {
+      cache = cacheStatistics;
+    }
+    if (cache != null) {
+      cache.exportMeasurements(exporter);
+    }
+  }
+
+  /**
+   * Forget everything measured so far, such as the operations of a warm-up period.
+   */
+  public synchronized void reset() {
+    for (OneMeasurement m : opToMesurementMap.values()) {
+      m.reset();
+    }
+    for (OneMeasurement m : opToIntendedMesurementMap.values()) {
+      m.reset();
+    }
+    if (overhead != null) {
+      overhead.reset();
+    }
+    if (cacheStatistics != null) {
+      cacheStatistics.reset();
+    }
+  }
+
+  /**
+   * @return The mean latency, in us, of every operation in the interval covered by the last
+   * {@link #getSummary()}, or NaN if there was none.
+   */
+  public synchronized double getSummaryAverageLatency() {
+    long operations = 0;
+    double totalLatency = 0;
+    // with measurement.interval=intended only the intended latencies are measured
+    Map<String, OneMeasurement> measured = measurementInterval == 1 ? opToIntendedMesurementMap : opToMesurementMap;
+    for (OneMeasurement m : measured.values()) {
+      operations += m.getSummaryOperations();
+      totalLatency += m.getSummaryTotalLatency();
+    }
+    return operations == 0 ? Double.NaN : totalLatency / operations;
+  }
+
+  /**
+   * @param operation The operation, such as READ.
+   * @param intended Whether to look at the latency from the intended start of the operations rather than from
+   *                 their actual start, see {@link #MEASUREMENT_INTERVAL}.
+   * @param percentile The percentile, such as 99.
+   * @return The latency at the percentile of the operations measured so far, in us, or NaN if there was no such
+   * operation or the measurement type is not hdrhistogram.
+   */
+  public synchronized double getLatencyPercentile(String operation, boolean intended, double percentile) {
+    OneMeasurement m = (intended ? opToIntendedMesurementMap : opToMesurementMap).get(operation);
+    if (!(m instanceof OneMeasurementHdrHistogram)) {
+      return Double.NaN;
+    }
+    return ((OneMeasurementHdrHistogram) m).getValueAtPercentile(percentile);
   }
 
   /**
    * Return a one line summary of the measurements.
    */
   public synchronized String getSummary() {
-    String ret = "";
+    StringBuilder ret = new StringBuilder();
+    for (OneMeasurement m : opToMesurementMap.values()) {
+      ret.append(m.getSummary()).append(' ');
+    }
+    for (OneMeasurement m : opToIntendedMesurementMap.values()) {
+      ret.append(m.getSummary()).append(' ');
+    }
+    return ret.toString();
+  }
+
+  /**
+   * Hand every interval histogram taken from now on to a listener. Only applies to measurementtype=hdrhistogram.
+   */
+  public synchronized void setIntervalListener(OneMeasurementHdrHistogram.IntervalListener listener) {
+    intervalListener = listener;
+    for (OneMeasurement m : opToMesurementMap.values()) {
+      if (m instanceof OneMeasurementHdrHistogram) {
+        ((OneMeasurementHdrHistogram) m).setIntervalListener(listener);
+      }
+    }
+    for (OneMeasurement m : opToIntendedMesurementMap.values()) {
+      if (m instanceof OneMeasurementHdrHistogram) {
+        ((OneMeasurementHdrHistogram) m).setIntervalListener(listener);
+      }
+    }
+  }
+
+  /**
+   * Close the current interval of every HdrHistogram measurement, so the interval listener receives it.
+   */
+  public synchronized void takeIntervals() {
     for (OneMeasurement m : opToMesurementMap.values()) {
-      ret += m.getSummary() + " ";
+      if (m instanceof OneMeasurementHdrHistogram) {
+        ((OneMeasurementHdrHistogram) m).takeInterval();
+      }
     }
     for (OneMeasurement m : opToIntendedMesurementMap.values()) {
-      ret += m.getSummary() + " ";
+      if (m instanceof OneMeasurementHdrHistogram) {
+        ((OneMeasurementHdrHistogram) m).takeInterval();
+      }
     }
-    return ret;
   }
 
+  /**
+   * @return The measurements of the operations, from their actual or their intended start. The collection is a
+   * live view which can be read while operations are being measured.
+   */
+  Collection<OneMeasurement> getOperationMeasurements(boolean intended) {
+    return (intended ? opToIntendedMesurementMap : opToMesurementMap).values();
+  }
+
+  /**
+   * Export only the number of operations that returned each status, as Return=STATUS measurements.
+   */
+  public void exportStatusCounts(MeasurementsExporter exporter) throws IOException {
+    for (OneMeasurement measurement : opToMesurementMap.values()) {
+      measurement.exportStatusCounts(exporter);
+    }
+    for (OneMeasurement measurement : opToIntendedMesurementMap.values()) {
+      measurement.exportStatusCounts(exporter);
+    }
+  }
 }
@@ -0,0 +1,261 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.yahoo.ycsb.Status;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Serves the measurements of a running benchmark over HTTP, in the Prometheus text format, so it can be scraped
+ * along with the servers under test.
+ * <p>
+ * A scrape only reads what the measurements already publish without a lock: the return status counters, the
+ * interval summary of every measurement type and, for hdrhistogram, the last interval taken by the status thread
+ * with the totals up to it. It never closes an interval itself, so the status thread keeps its intervals and
+ * runs whenever the server does; percentiles cover the last <b>status.interval</b>.
+ * </p>
+ * <p>
+ * Metrics, all labelled with the measurement name as operation, such as READ or Intended-READ:
+ * <UL>
+ * <LI>ycsb_operations_total: operations done so far, by return status
+ * <LI>ycsb_latency_us: a summary with the hdrhistogram.percentiles of the last interval, and the count and sum
+ * of the latencies up to it
+ * <LI>ycsb_interval_operations, ycsb_interval_latency_mean_us: the operations and mean latency of the last
+ * interval, for every measurement type
+ * <LI>ycsb_jvm_*: heap use, threads, garbage collections and system load
+ * </UL>
+ * </p>
+ * Properties:
+ * <UL>
+ * <LI><b>metrics.port</b>: the port to serve /metrics on, which turns the server on
+ * <LI><b>metrics.host</b>: the address to listen on (default: all of them)
+ * </UL>
+ */
+public final class MetricsServer {
+  public static final String PORT_PROPERTY = "metrics.port";
+  public static final String HOST_PROPERTY = "metrics.host";
+  public static final String PATH = "/metrics";
+  public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+
+  private MetricsServer(HttpServer server, ExecutorService executor) {
+    this.server = server;
+    this.executor = executor;
+  }
+
+  public static boolean isSet(Properties props) {
+    return props.containsKey(PORT_PROPERTY);
+  }
+
+  /**
+   * Start serving the measurements of {@link Measurements#getMeasurements()}, if the properties ask for it.
+   *
+   * @return The running server, or null if the properties do not set <b>metrics.port</b>.
+   * @throws IOException If the server cannot listen on its port.
+   */
+  public static MetricsServer start(Properties props) throws IOException {
+    if (!isSet(props)) {
+      return null;
+    }
+    int port = Integer.parseInt(props.getProperty(PORT_PROPERTY));
+    String host = props.getProperty(HOST_PROPERTY);
+    InetSocketAddress address = host == null ? new InetSocketAddress(port) : new InetSocketAddress(host, port);
+    HttpServer server = HttpServer.create(address, 0);
+    server.createContext(PATH, new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        byte[] body = scrape(Measurements.getMeasurements()).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+          out.write(body);
+        }
+      }
+    });
+    // one daemon thread, a scrape must not keep the client from exiting
+    ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "MetricsServer");
+        t.setDaemon(true);
+        return t;
+      }
+    });
+    server.setExecutor(executor);
+    server.start();
+    System.err.println("Serving metrics on http://" + (host == null ? "0.0.0.0" : host) + ":"
+        + server.getAddress().getPort() + PATH);
+    return new MetricsServer(server, executor);
+  }
+
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  public void stop() {
+    server.stop(0);
+    executor.shutdown();
+  }
+
+  /**
+   * @return The measurements in the Prometheus text format.
+   */
+  static String scrape(Measurements measurements) {
+    StringBuilder out = new StringBuilder(4096);
+
+    header(out, "ycsb_operations_total", "counter", "Operations done, by return status.");
+    for (OneMeasurement m : measurements.getOperationMeasurements(false)) {
+      for (Map.Entry<Status, Long> count : m.getStatusCounts().entrySet()) {
+        out.append("ycsb_operations_total{operation=\"");
+        escape(out, m.getName());
+        out.append("\",status=\"");
+        escape(out, count.getKey().getName());
+        out.append("\"} ").append(count.getValue()).append('\n');
+      }
+    }
+
+    header(out, "ycsb_latency_us", "summary",
+        "Latency percentiles of the last status interval, and count and sum up to its end.");
+    for (boolean intended : new boolean[] {false, true}) {
+      for (OneMeasurement m : measurements.getOperationMeasurements(intended)) {
+        if (m instanceof OneMeasurementHdrHistogram) {
+          OneMeasurementHdrHistogram hdr = (OneMeasurementHdrHistogram) m;
+          OneMeasurementHdrHistogram.Snapshot snapshot = hdr.getSnapshot();
+          if (snapshot != null) {
+            summary(out, m.getName(), hdr, snapshot);
+          }
+        }
+      }
+    }
+
+    header(out, "ycsb_interval_operations", "gauge", "Operations of the last status interval.");
+    for (boolean intended : new boolean[] {false, true}) {
+      for (OneMeasurement m : measurements.getOperationMeasurements(intended)) {
+        sample(out, "ycsb_interval_operations", m.getName(), m.getSummaryOperations());
+      }
+    }
+    header(out, "ycsb_interval_latency_mean_us", "gauge", "Mean latency of the last status interval.");
+    for (boolean intended : new boolean[] {false, true}) {
+      for (OneMeasurement m : measurements.getOperationMeasurements(intended)) {
+        long operations = m.getSummaryOperations();
+        sample(out, "ycsb_interval_latency_mean_us", m.getName(),
+            operations == 0 ? Double.NaN : m.getSummaryTotalLatency() / operations);
+      }
+    }
+
+    jvm(out);
+    return out.toString();
+  }
+
+  private static void summary(StringBuilder out, String name, OneMeasurementHdrHistogram hdr,
+                              OneMeasurementHdrHistogram.Snapshot snapshot) {
+    if (snapshot.getIntervalCount() > 0) {
+      for (Double percentile : hdr.getPercentiles()) {
+        out.append("ycsb_latency_us{operation=\"");
+        escape(out, name);
+        out.append("\",quantile=\"")
+            .append(BigDecimal.valueOf(percentile).movePointLeft(2).stripTrailingZeros().toPlainString()).append("\"} ")
+            .append(snapshot.getIntervalValueAtPercentile(percentile)).append('\n');
+      }
+    }
+    sample(out, "ycsb_latency_us_count", name, snapshot.getTotalCount());
+    sample(out, "ycsb_latency_us_sum", name, snapshot.getTotalLatency());
+  }
+
+  private static void jvm(StringBuilder out) {
+    MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    header(out, "ycsb_jvm_heap_used_bytes", "gauge", "Heap in use.");
+    out.append("ycsb_jvm_heap_used_bytes ").append(memory.getHeapMemoryUsage().getUsed()).append('\n');
+    header(out, "ycsb_jvm_threads", "gauge", "Live threads.");
+    out.append("ycsb_jvm_threads ").append(ManagementFactory.getThreadMXBean().getThreadCount()).append('\n');
+    header(out, "ycsb_jvm_gc_collections_total", "counter", "Garbage collections, by collector.");
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      out.append("ycsb_jvm_gc_collections_total{gc=\"");
+      escape(out, gc.getName());
+      out.append("\"} ").append(gc.getCollectionCount()).append('\n');
+    }
+    header(out, "ycsb_jvm_gc_seconds_total", "counter", "Time spent in garbage collections, by collector.");
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      out.append("ycsb_jvm_gc_seconds_total{gc=\"");
+      escape(out, gc.getName());
+      out.append("\"} ").append(gc.getCollectionTime() / 1000.0).append('\n');
+    }
+    header(out, "ycsb_system_load_average", "gauge", "System load average over the last minute.");
+    out.append("ycsb_system_load_average ")
+        .append(ManagementFactory.getOperatingSystemMXBean().getSystemLoadAverage()).append('\n');
+  }
+
+  private static void header(StringBuilder out, String metric, String type, String help) {
+    out.append("# HELP ").append(metric).append(' ').append(help).append('\n');
+    out.append("# TYPE ").append(metric).append(' ').append(type).append('\n');
+  }
+
+  private static void sample(StringBuilder out, String metric, String operation, double value) {
+    out.append(metric).append("{operation=\"");
+    escape(out, operation);
+    out.append("\"} ");
+    if (Double.isNaN(value)) {
+      out.append("NaN");
+    } else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+      out.append((long) value);
+    } else {
+      out.append(value);
+    }
+    out.append('\n');
+  }
+
+  /**
+   * Label values escape backslashes, double quotes and new lines.
+   */
+  private static void escape(StringBuilder out, String value) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+      case '\\':
+        out.append("\\\\");
+        break;
+      case '"':
+        out.append("\\\"");
+        break;
+      case '\n':
+        out.append("\\n");
+        break;
+      default:
+        out.append(c);
+      }
+    }
+  }
+}
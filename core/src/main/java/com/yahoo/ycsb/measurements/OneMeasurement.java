@@ -21,9 +21,10 @@ import com.yahoo.ycsb.Status;
 import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
 
 import java.io.IOException;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * A single measured metric (such as READ LATENCY).
@@ -31,7 +32,12 @@ import java.util.concurrent.atomic.AtomicInteger;
 public abstract class OneMeasurement {
 
   private final String name;
-  private final ConcurrentHashMap<Status, AtomicInteger> returncodes;
+
+  /** Return code counters of the predefined statuses, indexed by {@link Status#getSlot()}. */
+  private final LongAdder[] predefinedReturncodes = new LongAdder[Status.PREDEFINED];
+
+  /** Return code counters of the other statuses, equal statuses created separately share one. */
+  private final ConcurrentHashMap<Status, LongAdder> returncodes = new ConcurrentHashMap<>();
 
   public String getName() {
     return name;
@@ -42,28 +48,81 @@ public abstract class OneMeasurement {
    */
   public OneMeasurement(String name) {
     this.name = name;
-    this.returncodes = new ConcurrentHashMap<>();
+    for (int i = 0; i < predefinedReturncodes.length; i++) {
+      predefinedReturncodes[i] = new LongAdder();
+    }
   }
 
   public abstract void measure(int latency);
 
   public abstract String getSummary();
 
+  /** The interval covered by the last {@link #getSummary()}. */
+  private volatile long summaryOperations;
+  private volatile double summaryTotalLatency;
+
+  /**
+   * Record what the interval of a summary held, for {@link #getSummaryOperations()} and
+   * {@link #getSummaryTotalLatency()}.
+   */
+  protected final void setSummaryInterval(long operations, double totalLatency) {
+    summaryOperations = operations;
+    summaryTotalLatency = totalLatency;
+  }
+
+  /**
+   * @return The number of operations in the interval covered by the last summary.
+   */
+  public long getSummaryOperations() {
+    return summaryOperations;
+  }
+
+  /**
+   * @return The sum of the latencies, in us, of the interval covered by the last summary.
+   */
+  public double getSummaryTotalLatency() {
+    return summaryTotalLatency;
+  }
+
+  /**
+   * Forget everything measured so far, such as the operations of a warm-up period. Operations recorded while
+   * the measurement is being reset may be lost.
+   */
+  public synchronized void reset() {
+    for (LongAdder counter : predefinedReturncodes) {
+      counter.reset();
+    }
+    returncodes.clear();
+    setSummaryInterval(0, 0);
+  }
+
   /**
    * No need for synchronization, using CHM to deal with that.
    */
   public void reportStatus(Status status) {
-    AtomicInteger counter = returncodes.get(status);
+    counter(status).increment();
+  }
 
+  /**
+   * Count several operations that returned the same status at once, such as the counts of another process.
+   */
+  public void reportStatus(Status status, long count) {
+    counter(status).add(count);
+  }
+
+  private LongAdder counter(Status status) {
+    if (status.getSlot() >= 0) {
+      return predefinedReturncodes[status.getSlot()];
+    }
+    LongAdder counter = returncodes.get(status);
     if (counter == null) {
-      counter = new AtomicInteger();
-      AtomicInteger other = returncodes.putIfAbsent(status, counter);
+      counter = new LongAdder();
+      LongAdder other = returncodes.putIfAbsent(status, counter);
       if (other != null) {
         counter = other;
       }
     }
-
-    counter.incrementAndGet();
+    return counter;
   }
 
   /**
@@ -75,8 +134,27 @@ public abstract class OneMeasurement {
   public abstract void exportMeasurements(MeasurementsExporter exporter) throws IOException;
 
   protected final void exportStatusCounts(MeasurementsExporter exporter) throws IOException {
-    for (Map.Entry<Status, AtomicInteger> entry : returncodes.entrySet()) {
-      exporter.write(getName(), "Return=" + entry.getKey().getName(), entry.getValue().get());
+    for (Map.Entry<Status, Long> entry : getStatusCounts().entrySet()) {
+      exporter.write(getName(), "Return=" + entry.getKey().getName(), entry.getValue());
+    }
+  }
+
+  /**
+   * @return The number of operations which returned each status so far. Only reads the counters, so it can be
+   * called while operations are being measured.
+   */
+  public Map<Status, Long> getStatusCounts() {
+    Map<Status, Long> counts = new LinkedHashMap<>();
+    for (int slot = 0; slot < Status.PREDEFINED; slot++) {
+      long count = predefinedReturncodes[slot].sum();
+      if (count > 0) {
+        counts.put(Status.getPredefined(slot), count);
+      }
+    }
+    for (Map.Entry<Status, LongAdder> entry : returncodes.entrySet()) {
+      // a binding may create its own copy of a predefined status
+      counts.merge(entry.getKey(), entry.getValue().sum(), Long::sum);
     }
+    return counts;
   }
 }
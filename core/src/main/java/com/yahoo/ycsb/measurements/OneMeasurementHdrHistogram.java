@@ -21,7 +21,7 @@ import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
 import org.HdrHistogram.Histogram;
 import org.HdrHistogram.HistogramIterationValue;
 import org.HdrHistogram.HistogramLogWriter;
-import org.HdrHistogram.Recorder;
+import org.HdrHistogram.SingleWriterRecorder;
 
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
@@ -34,16 +34,91 @@ import java.util.Properties;
 
 /**
  * Take measurements and maintain a HdrHistogram of a given metric, such as READ LATENCY.
- *
+ * <p>
+ * With <b>hdrhistogram.correction</b>=true a second histogram is corrected for coordinated omission: a thread
+ * stuck in a slow operation would have issued more operations meanwhile, which a closed-loop run never sees. Each
+ * latency is also recorded with an expected interval between operations equal to the mean latency of the thread so
+ * far, so a stall many times longer adds the operations it held back, with the latencies they would have had. The
+ * corrected histogram is exported alongside, as Corrected-<i>name</i>. Runs with a target throughput should rather
+ * use measurement.interval=intended, which knows when each operation was meant to start.
+ * </p>
  */
 public class OneMeasurementHdrHistogram extends OneMeasurement {
 
+  /**
+   * Receives every interval histogram as it is taken, for instance to send it to another process.
+   */
+  public interface IntervalListener {
+    /**
+     * Called with the measurement lock held. The histogram must not be kept or modified after returning.
+     *
+     * @param name The name of the measurement.
+     * @param interval The latencies recorded since the previous interval, with its start and end time stamps.
+     */
+    void onInterval(String name, Histogram interval);
+  }
+
   // we need one log per measurement histogram
   private final PrintStream log;
   private final HistogramLogWriter histogramLogWriter;
 
-  private final Recorder histogram;
+  /**
+   * One recorder per recording thread. Each keeps the interval histogram it last handed out so it can be
+   * recycled on the next interval.
+   */
+  private static final class Shard {
+    private final SingleWriterRecorder recorder = new SingleWriterRecorder(3);
+    private Histogram recycled;
+
+    // the histogram corrected for coordinated omission, with what its thread measured so far; null if off
+    private final SingleWriterRecorder corrected;
+    private Histogram correctedRecycled;
+    private long operations;
+    private long totalLatency;
+
+    // what the threads which ended recorded since the last interval, on the shard they are folded into
+    private Histogram endedInterval;
+    private Histogram correctedEndedInterval;
+
+    private Shard(boolean correction) {
+      corrected = correction ? new SingleWriterRecorder(3) : null;
+    }
+  }
+
+  private final ThreadShards<Shard> histogram = new ThreadShards<Shard>() {
+    @Override
+    protected Shard newShard() {
+      return new Shard(correction);
+    }
+
+    @Override
+    protected void retire(Shard ended, Shard retired) {
+      if (retired.endedInterval == null) {
+        retired.endedInterval = new Histogram(3);
+      }
+      retired.endedInterval.add(ended.recorder.getIntervalHistogram());
+      if (ended.corrected != null) {
+        if (retired.correctedEndedInterval == null) {
+          retired.correctedEndedInterval = new Histogram(3);
+        }
+        retired.correctedEndedInterval.add(ended.corrected.getIntervalHistogram());
+      }
+    }
+  };
+
+  /**
+   * The name of the property for correcting a second histogram for coordinated omission.
+   */
+  public static final String CORRECTION_PROPERTY = "hdrhistogram.correction";
+  public static final String CORRECTION_PROPERTY_DEFAULT = "false";
+
+  private final boolean correction;
+  private Histogram correctedTotalHistogram;
+
   private Histogram totalHistogram;
+  private long intervalStartTimeStamp = System.currentTimeMillis();
+  private volatile Snapshot snapshot;
+  private volatile IntervalListener intervalListener;
 
   /**
    * The name of the property for deciding what percentile values to output.
@@ -60,6 +135,7 @@ public class OneMeasurementHdrHistogram extends OneMeasurement {
   public OneMeasurementHdrHistogram(String name, Properties props) {
     super(name);
     percentiles = getPercentileValues(props.getProperty(PERCENTILES_PROPERTY, PERCENTILES_PROPERTY_DEFAULT));
+    correction = Boolean.parseBoolean(props.getProperty(CORRECTION_PROPERTY, CORRECTION_PROPERTY_DEFAULT));
     boolean shouldLog = Boolean.parseBoolean(props.getProperty("hdrhistogram.fileoutput", "false"));
     if (!shouldLog) {
       log = null;
@@ -79,15 +155,130 @@ public class OneMeasurementHdrHistogram extends OneMeasurement {
       histogramLogWriter.setBaseTime(now);
       histogramLogWriter.outputLegend();
     }
-    histogram = new Recorder(3);
   }
 
   /**
    * It appears latency is reported in micros.
-   * Using {@link Recorder} to support concurrent updates to histogram.
+   * Each thread records into its own {@link SingleWriterRecorder}, so concurrent updates do not contend.
    */
   public void measure(int latencyInMicros) {
-    histogram.recordValue(latencyInMicros);
+    Shard shard = histogram.get();
+    shard.recorder.recordValue(latencyInMicros);
+    if (shard.corrected != null) {
+      // no correction until the thread has a mean, or while it is below 1us
+      long expectedInterval = shard.operations == 0 ? 0 : shard.totalLatency / shard.operations;
+      shard.corrected.recordValueWithExpectedInterval(latencyInMicros, expectedInterval);
+      shard.operations++;
+      shard.totalLatency += latencyInMicros;
+    }
+  }
+
+  /**
+   * Also starts a new interval, the log and the interval listener do not see the latencies recorded before.
+   */
+  @Override
+  public synchronized void reset() {
+    super.reset();
+    histogram.clear();
+    totalHistogram = null;
+    correctedTotalHistogram = null;
+    snapshot = null;
+    intervalStartTimeStamp = System.currentTimeMillis();
+  }
+
+  /**
+   * The last interval taken and the totals up to its end. Immutable, so it can be read without a lock while
+   * operations are being measured.
+   */
+  public static final class Snapshot {
+    private final Histogram interval;
+    private final long totalCount;
+    private final double totalLatency;
+
+    private Snapshot(Histogram interval, long totalCount, double totalLatency) {
+      this.interval = interval;
+      this.totalCount = totalCount;
+      this.totalLatency = totalLatency;
+    }
+
+    /**
+     * @return The latency, in us, at a percentile of the last interval.
+     */
+    public long getIntervalValueAtPercentile(double percentile) {
+      return interval.getValueAtPercentile(percentile);
+    }
+
+    public long getIntervalCount() {
+      return interval.getTotalCount();
+    }
+
+    public long getIntervalMin() {
+      return interval.getMinValue();
+    }
+
+    public long getIntervalMax() {
+      return interval.getMaxValue();
+    }
+
+    public double getIntervalMean() {
+      return interval.getMean();
+    }
+
+    /**
+     * @return The number of operations measured up to the end of the last interval.
+     */
+    public long getTotalCount() {
+      return totalCount;
+    }
+
+    /**
+     * @return The sum of the latencies, in us, measured up to the end of the last interval.
+     */
+    public double getTotalLatency() {
+      return totalLatency;
+    }
+  }
+
+  /**
+   * @return The last interval taken, by the status thread or anything else, or null if none was since the start
+   * or the last reset.
+   */
+  public Snapshot getSnapshot() {
+    return snapshot;
+  }
+
+  public List<Double> getPercentiles() {
+    return percentiles;
+  }
+
+  public void setIntervalListener(IntervalListener listener) {
+    this.intervalListener = listener;
+  }
+
+  /**
+   * Close the current interval now, adding it to the total and handing it to the log and the interval listener,
+   * without producing a summary.
+   */
+  public void takeInterval() {
+    nextInterval();
+  }
+
+  /**
+   * @return The latency at a percentile of everything measured so far, including the current interval.
+   */
+  public synchronized long getValueAtPercentile(double percentile) {
+    nextInterval();
+    return totalHistogram.getValueAtPercentile(percentile);
+  }
+
+  /**
+   * Add latencies recorded elsewhere, such as an interval of another process, to the total.
+   */
+  public synchronized void addInterval(Histogram interval) {
+    if (totalHistogram == null) {
+      totalHistogram = new Histogram(3);
+    }
+    totalHistogram.add(interval);
   }
 
   /**
@@ -96,9 +287,8 @@ public class OneMeasurementHdrHistogram extends OneMeasurement {
   @Override
   public void exportMeasurements(MeasurementsExporter exporter) throws IOException {
     // accumulate the last interval which was not caught by status thread
-    Histogram intervalHistogram = getIntervalHistogramAndAccumulate();
-    if (histogramLogWriter != null) {
-      histogramLogWriter.outputIntervalHistogram(intervalHistogram);
+    nextInterval();
+    if (log != null) {
       // we can close now
       log.close();
     }
@@ -114,6 +304,18 @@ public class OneMeasurementHdrHistogram extends OneMeasurement {
 
     exportStatusCounts(exporter);
 
+    if (correctedTotalHistogram != null) {
+      String corrected = "Corrected-" + getName();
+      exporter.write(corrected, "Operations", correctedTotalHistogram.getTotalCount());
+      exporter.write(corrected, "AverageLatency(us)", correctedTotalHistogram.getMean());
+      exporter.write(corrected, "MinLatency(us)", correctedTotalHistogram.getMinValue());
+      exporter.write(corrected, "MaxLatency(us)", correctedTotalHistogram.getMaxValue());
+      for (Double percentile : percentiles) {
+        exporter.write(corrected, ordinal(percentile) + "PercentileLatency(us)",
+            correctedTotalHistogram.getValueAtPercentile(percentile));
+      }
+    }
+
     // also export totalHistogram
     for (HistogramIterationValue v : totalHistogram.recordedValues()) {
       int value;
@@ -136,14 +338,19 @@ public class OneMeasurementHdrHistogram extends OneMeasurement {
    */
   @Override
   public String getSummary() {
-    Histogram intervalHistogram = getIntervalHistogramAndAccumulate();
     // we use the summary interval as the histogram file interval.
-    if (histogramLogWriter != null) {
-      histogramLogWriter.outputIntervalHistogram(intervalHistogram);
-    }
+    Histogram intervalHistogram = nextInterval();
+    setSummaryInterval(intervalHistogram.getTotalCount(),
+        intervalHistogram.getMean() * intervalHistogram.getTotalCount());
+    return getSummary(getName(), intervalHistogram);
+  }
 
+  /**
+   * The status line summary of a histogram: its count, max, min, mean and a few high percentiles.
+   */
+  public static String getSummary(String name, Histogram intervalHistogram) {
     DecimalFormat d = new DecimalFormat("#.##");
-    return "[" + getName() + ": Count=" + intervalHistogram.getTotalCount() + ", Max="
+    return "[" + name + ": Count=" + intervalHistogram.getTotalCount() + ", Max="
         + intervalHistogram.getMaxValue() + ", Min=" + intervalHistogram.getMinValue() + ", Avg="
         + d.format(intervalHistogram.getMean()) + ", 90=" + d.format(intervalHistogram.getValueAtPercentile(90))
         + ", 99=" + d.format(intervalHistogram.getValueAtPercentile(99)) + ", 99.9="
@@ -151,14 +358,56 @@ public class OneMeasurementHdrHistogram extends OneMeasurement {
         + d.format(intervalHistogram.getValueAtPercentile(99.99)) + "]";
   }
 
-  private Histogram getIntervalHistogramAndAccumulate() {
-    Histogram intervalHistogram = histogram.getIntervalHistogram();
+  /**
+   * Intervals may be taken by the status thread, an interval listener's reporter and the final export, so they
+   * are taken one at a time.
+   */
+  private synchronized Histogram nextInterval() {
+    Histogram intervalHistogram = new Histogram(3);
+    for (Shard shard : histogram) {
+      shard.recycled = shard.recycled == null ?
+          shard.recorder.getIntervalHistogram() :
+          shard.recorder.getIntervalHistogram(shard.recycled);
+      intervalHistogram.add(shard.recycled);
+      if (shard.endedInterval != null) {
+        intervalHistogram.add(shard.endedInterval);
+        shard.endedInterval.reset();
+      }
+      if (shard.corrected != null) {
+        shard.correctedRecycled = shard.correctedRecycled == null ?
+            shard.corrected.getIntervalHistogram() :
+            shard.corrected.getIntervalHistogram(shard.correctedRecycled);
+        if (correctedTotalHistogram == null) {
+          correctedTotalHistogram = new Histogram(3);
+        }
+        correctedTotalHistogram.add(shard.correctedRecycled);
+        if (shard.correctedEndedInterval != null) {
+          correctedTotalHistogram.add(shard.correctedEndedInterval);
+          shard.correctedEndedInterval.reset();
+        }
+      }
+    }
+    // the merged histogram carries no time stamps of its own, the log writer needs them
+    long now = System.currentTimeMillis();
+    intervalHistogram.setStartTimeStamp(intervalStartTimeStamp);
+    intervalHistogram.setEndTimeStamp(now);
+    intervalStartTimeStamp = now;
     // add this to the total time histogram.
     if (totalHistogram == null) {
-      totalHistogram = intervalHistogram;
+      // a copy, the interval is published as it is
+      totalHistogram = intervalHistogram.copy();
     } else {
       totalHistogram.add(intervalHistogram);
     }
+    snapshot = new Snapshot(intervalHistogram, totalHistogram.getTotalCount(),
+        totalHistogram.getMean() * totalHistogram.getTotalCount());
+    if (histogramLogWriter != null) {
+      histogramLogWriter.outputIntervalHistogram(intervalHistogram);
+    }
+    IntervalListener listener = intervalListener;
+    if (listener != null) {
+      listener.onInterval(getName(), intervalHistogram);
+    }
     return intervalHistogram;
   }
 
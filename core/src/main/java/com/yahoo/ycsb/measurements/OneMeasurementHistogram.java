@@ -25,7 +25,7 @@ import java.util.Properties;
 
 /**
  * Take measurements and maintain a histogram of a given metric, such as READ LATENCY.
- *
+ * Each thread records into its own histogram; they are added up when reporting.
  */
 public class OneMeasurementHistogram extends OneMeasurement {
   public static final String BUCKETS = "histogram.buckets";
@@ -37,81 +37,133 @@ public class OneMeasurementHistogram extends OneMeasurement {
   private final int buckets;
 
   /**
-   * Groups operations in discrete blocks of 1ms width.
+   * The statistics recorded by one thread.
    */
-  private long[] histogram;
-
-  /**
-   * Counts all operations outside the histogram's range.
-   */
-  private long histogramoverflow;
-
-  /**
-   * The total number of reported operations.
-   */
-  private long operations;
-
-  /**
-   * The sum of each latency measurement over all operations.
-   * Calculated in ms.
-   */
-  private long totallatency;
-
-  /**
-   * The sum of each latency measurement squared over all operations. 
-   * Used to calculate variance of latency.
-   * Calculated in ms. 
-   */
-  private double totalsquaredlatency;
+  private final class Shard {
+    /**
+     * Groups operations in discrete blocks of 1ms width.
+     */
+    private final long[] histogram = new long[buckets];
+
+    /**
+     * Counts all operations outside the histogram's range.
+     */
+    private long histogramoverflow = 0;
+
+    /**
+     * The total number of reported operations.
+     */
+    private long operations = 0;
+
+    /**
+     * The sum of each latency measurement over all operations.
+     * Calculated in ms.
+     */
+    private long totallatency = 0;
+
+    /**
+     * The sum of each latency measurement squared over all operations. 
+     * Used to calculate variance of latency.
+     * Calculated in ms. 
+     */
+    private double totalsquaredlatency = 0;
+
+    private int min = -1;
+    private int max = -1;
+
+    //what the last status report has seen of this shard, only touched by the reader
+    private long reportedoperations = 0;
+    private long reportedtotallatency = 0;
+
+    private void addAll(Shard other) {
+      for (int i = 0; i < buckets; i++) {
+        histogram[i] += other.histogram[i];
+      }
+      histogramoverflow += other.histogramoverflow;
+      operations += other.operations;
+      totallatency += other.totallatency;
+      totalsquaredlatency += other.totalsquaredlatency;
+      if ((min < 0) || (other.min >= 0 && other.min < min)) {
+        min = other.min;
+      }
+      max = Math.max(max, other.max);
+      reportedoperations += other.reportedoperations;
+      reportedtotallatency += other.reportedtotallatency;
+    }
+  }
 
-  //keep a windowed version of these stats for printing status
-  private long windowoperations;
-  private long windowtotallatency;
+  private final ThreadShards<Shard> shards = new ThreadShards<Shard>() {
+    @Override
+    protected Shard newShard() {
+      return new Shard();
+    }
 
-  private int min;
-  private int max;
+    @Override
+    protected void retire(Shard ended, Shard retired) {
+      retired.addAll(ended);
+    }
+  };
 
   public OneMeasurementHistogram(String name, Properties props) {
     super(name);
     buckets = Integer.parseInt(props.getProperty(BUCKETS, BUCKETS_DEFAULT));
-    histogram = new long[buckets];
-    histogramoverflow = 0;
-    operations = 0;
-    totallatency = 0;
-    totalsquaredlatency = 0;
-    windowoperations = 0;
-    windowtotallatency = 0;
-    min = -1;
-    max = -1;
+  }
+
+  @Override
+  public synchronized void reset() {
+    super.reset();
+    shards.clear();
   }
 
   /* (non-Javadoc)
    * @see com.yahoo.ycsb.OneMeasurement#measure(int)
    */
-  public synchronized void measure(int latency) {
+  public void measure(int latency) {
+    Shard shard = shards.get();
     //latency reported in us and collected in bucket by ms.
     if (latency / 1000 >= buckets) {
-      histogramoverflow++;
+      shard.histogramoverflow++;
     } else {
-      histogram[latency / 1000]++;
+      shard.histogram[latency / 1000]++;
     }
-    operations++;
-    totallatency += latency;
-    totalsquaredlatency += ((double) latency) * ((double) latency);
-    windowoperations++;
-    windowtotallatency += latency;
-
-    if ((min < 0) || (latency < min)) {
-      min = latency;
+    shard.operations++;
+    shard.totallatency += latency;
+    shard.totalsquaredlatency += ((double) latency) * ((double) latency);
+
+    if ((shard.min < 0) || (latency < shard.min)) {
+      shard.min = latency;
     }
 
-    if ((max < 0) || (latency > max)) {
-      max = latency;
+    if ((shard.max < 0) || (latency > shard.max)) {
+      shard.max = latency;
     }
   }
 
   @Override
-  public void exportMeasurements(MeasurementsExporter exporter) throws IOException {
+  public synchronized void exportMeasurements(MeasurementsExporter exporter) throws IOException {
+    long[] histogram = new long[buckets];
+    long histogramoverflow = 0;
+    long operations = 0;
+    long totallatency = 0;
+    double totalsquaredlatency = 0;
+    int min = -1;
+    int max = -1;
+    for (Shard shard : shards) {
+      for (int i = 0; i < buckets; i++) {
+        histogram[i] += shard.histogram[i];
+      }
+      histogramoverflow += shard.histogramoverflow;
+      operations += shard.operations;
+      totallatency += shard.totallatency;
+      totalsquaredlatency += shard.totalsquaredlatency;
+      if ((min < 0) || (shard.min >= 0 && shard.min < min)) {
+        min = shard.min;
+      }
+      if (shard.max > max) {
+        max = shard.max;
+      }
+    }
+
     double mean = totallatency / ((double) operations);
     double variance = totalsquaredlatency / ((double) operations) - (mean * mean);
     exporter.write(getName(), "Operations", operations);
@@ -143,14 +195,23 @@ public class OneMeasurementHistogram extends OneMeasurement {
   }
 
   @Override
-  public String getSummary() {
+  public synchronized String getSummary() {
+    long windowoperations = 0;
+    long windowtotallatency = 0;
+    for (Shard shard : shards) {
+      long operations = shard.operations;
+      long totallatency = shard.totallatency;
+      windowoperations += operations - shard.reportedoperations;
+      windowtotallatency += totallatency - shard.reportedtotallatency;
+      shard.reportedoperations = operations;
+      shard.reportedtotallatency = totallatency;
+    }
+    setSummaryInterval(windowoperations, windowtotallatency);
     if (windowoperations == 0) {
       return "";
     }
     DecimalFormat d = new DecimalFormat("#.##");
     double report = ((double) windowtotallatency) / ((double) windowoperations);
-    windowtotallatency = 0;
-    windowoperations = 0;
     return "[" + getName() + " AverageLatency(us)=" + d.format(report) + "]";
   }
 }
@@ -23,52 +23,24 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.LinkedList;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Properties;
 
 /**
  * Record a series of measurements as raw data points without down sampling,
  * optionally write to an output file when configured.
- *
+ * <p>
+ * Each thread stores its data points in a fixed-size chunk of off-heap
+ * memory, allocated when it first records. When the chunk is full it is
+ * written to the output and reused, so memory use does not grow with the
+ * length of the run. The data points of a
+ * chunk are in time order, but chunks of different threads are interleaved
+ * in the output. Percentiles are computed exactly from a count of each
+ * distinct latency value instead of sorting all data points.
+ * </p>
  */
 public class OneMeasurementRaw extends OneMeasurement {
-  /**
-   * One raw data point, two fields: timestamp (ms) when the datapoint is
-   * inserted, and the value.
-   */
-  class RawDataPoint {
-    private final long timestamp;
-    private final int value;
-
-    public RawDataPoint(int value) {
-      this.timestamp = System.currentTimeMillis();
-      this.value = value;
-    }
-
-    public long timeStamp() {
-      return timestamp;
-    }
-
-    public int value() {
-      return value;
-    }
-  }
-
-  class RawDataPointComparator implements Comparator<RawDataPoint> {
-    @Override
-    public int compare(RawDataPoint p1, RawDataPoint p2) {
-      if (p1.value() < p2.value()) {
-        return -1;
-      } else if (p1.value() == p2.value()) {
-        return 0;
-      } else {
-        return 1;
-      }
-    }
-  }
-
   /**
    * Optionally, user can configure an output file to save the raw data points.
    * Default is none, raw results will be written to stdout.
@@ -88,18 +60,62 @@ public class OneMeasurementRaw extends OneMeasurement {
   public static final String NO_SUMMARY_STATS = "measurement.raw.no_summary";
   public static final String NO_SUMMARY_STATS_DEFAULT = "false";
 
+  /**
+   * The number of data points each thread buffers before writing them out.
+   * Every thread holds one chunk of 12 bytes per data point, of direct
+   * memory, for each measurement it records into: 12 KB at the default, so
+   * 64 threads recording READ, UPDATE and their intended latencies hold
+   * 3 MB. Raise it with care when there are many recording threads, such as
+   * open-loop workers, or -XX:MaxDirectMemorySize may be exceeded.
+   */
+  public static final String CHUNK_SIZE = "measurement.raw.chunk_size";
+  public static final String CHUNK_SIZE_DEFAULT = "1024";
+
+  /** Bytes per data point: timestamp (ms) as a long, then the value as an int. */
+  private static final int DATA_POINT_SIZE = 12;
+
   private final PrintStream outputStream;
 
   private boolean noSummaryStats = false;
 
-  private LinkedList<RawDataPoint> measurements;
-  private long totalLatency = 0;
+  private final int chunkSize;
+
+  private boolean headerWritten = false;
 
-  // A window of stats to print summary for at the next getSummary() call.
-  // It's supposed to be a one line summary, so we will just print count and
-  // average.
-  private int windowOperations = 0;
-  private long windowTotalLatency = 0;
+  /**
+   * The data points recorded by one thread which have not been written yet,
+   * and the statistics of all the points it recorded.
+   */
+  private final class Shard {
+    /** Null until the thread first records, so a shard which is only merged into costs no direct memory. */
+    private ByteBuffer chunk;
+    private final LatencyCounts counts = new LatencyCounts();
+    private final StringBuilder lines = new StringBuilder();
+    private long operations = 0;
+    private long totalLatency = 0;
+
+    // What the last getSummary() call has seen of this shard, only touched by
+    // the reader.
+    private long reportedOperations = 0;
+    private long reportedTotalLatency = 0;
+  }
+
+  private final ThreadShards<Shard> shards = new ThreadShards<Shard>() {
+    @Override
+    protected Shard newShard() {
+      return new Shard();
+    }
+
+    @Override
+    protected void retire(Shard ended, Shard retired) {
+      writeChunk(ended);
+      retired.counts.addAll(ended.counts);
+      retired.operations += ended.operations;
+      retired.totalLatency += ended.totalLatency;
+      retired.reportedOperations += ended.reportedOperations;
+      retired.reportedTotalLatency += ended.reportedTotalLatency;
+    }
+  };
 
   public OneMeasurementRaw(String name, Properties props) {
     super(name);
@@ -112,7 +128,7 @@ public class OneMeasurementRaw extends OneMeasurement {
       try {
         outputStream = new PrintStream(
             new FileOutputStream(outputFilePath, true),
-            true);
+            false);
       } catch (FileNotFoundException e) {
         throw new RuntimeException("Failed to open raw data output file", e);
       }
@@ -126,36 +142,86 @@ public class OneMeasurementRaw extends OneMeasurement {
     noSummaryStats = Boolean.parseBoolean(props.getProperty(NO_SUMMARY_STATS,
         NO_SUMMARY_STATS_DEFAULT));
 
-    measurements = new LinkedList<>();
+    chunkSize = Integer.parseInt(props.getProperty(CHUNK_SIZE, CHUNK_SIZE_DEFAULT));
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException(CHUNK_SIZE + " must be at least 1");
+    }
+  }
+
+  /**
+   * Data points already written out stay in the output, those still buffered are dropped.
+   */
+  @Override
+  public synchronized void reset() {
+    super.reset();
+    shards.clear();
   }
 
   @Override
-  public synchronized void measure(int latency) {
-    totalLatency += latency;
-    windowTotalLatency += latency;
-    windowOperations++;
+  public void measure(int latency) {
+    Shard shard = shards.get();
+    if (shard.chunk == null) {
+      shard.chunk = ByteBuffer.allocateDirect(chunkSize * DATA_POINT_SIZE);
+    } else if (!shard.chunk.hasRemaining()) {
+      writeChunk(shard);
+    }
+    shard.chunk.putLong(System.currentTimeMillis());
+    shard.chunk.putInt(latency);
+    shard.counts.add(latency, 1);
+    shard.totalLatency += latency;
+    shard.operations++;
+  }
+
+  /**
+   * Write out the data points of a chunk and empty it. The output is shared
+   * by all threads, so each chunk is written as a whole by the thread which
+   * filled it.
+   */
+  private void writeChunk(Shard shard) {
+    ByteBuffer chunk = shard.chunk;
+    StringBuilder lines = shard.lines;
+    if (chunk != null) {
+      chunk.flip();
+      while (chunk.hasRemaining()) {
+        lines.append(getName()).append(',').append(chunk.getLong()).append(',')
+            .append(chunk.getInt()).append('\n');
+      }
+      chunk.clear();
+    }
 
-    measurements.add(new RawDataPoint(latency));
+    synchronized (outputStream) {
+      if (!headerWritten) {
+        lines.insert(0, getName() +
+            " latency raw data: op, timestamp(ms), latency(us)\n");
+        headerWritten = true;
+      }
+      // a single write, so that measurements sharing an output file do not
+      // interleave within a line
+      byte[] bytes = lines.toString().getBytes(StandardCharsets.UTF_8);
+      outputStream.write(bytes, 0, bytes.length);
+      outputStream.flush();
+    }
+    lines.setLength(0);
   }
 
   @Override
-  public void exportMeasurements(MeasurementsExporter exporter)
+  public synchronized void exportMeasurements(MeasurementsExporter exporter)
       throws IOException {
-    // Output raw data points first then print out a summary of percentiles to
-    // stdout.
-
-    outputStream.println(getName() +
-        " latency raw data: op, timestamp(ms), latency(us)");
-    for (RawDataPoint point : measurements) {
-      outputStream.println(
-          String.format("%s,%d,%d", getName(), point.timeStamp(),
-              point.value()));
+    // Output the remaining raw data points first then print out a summary of
+    // percentiles to stdout.
+
+    LatencyCounts counts = new LatencyCounts();
+    long totalLatency = 0;
+    for (Shard shard : shards) {
+      writeChunk(shard);
+      counts.addAll(shard.counts);
+      totalLatency += shard.totalLatency;
     }
     if (outputStream != System.out) {
       outputStream.close();
     }
 
-    int totalOps = measurements.size();
+    long totalOps = counts.total();
     exporter.write(getName(), "Total Operations", totalOps);
     if (totalOps > 0 && !noSummaryStats) {
       exporter.write(getName(),
@@ -163,27 +229,18 @@ public class OneMeasurementRaw extends OneMeasurement {
       exporter.write(getName(), "Average",
           (double) totalLatency / (double) totalOps);
 
-      Collections.sort(measurements, new RawDataPointComparator());
-
-      exporter.write(getName(), "Min", measurements.get(0).value());
-      exporter.write(
-          getName(), "Max", measurements.get(totalOps - 1).value());
-      exporter.write(
-          getName(), "p1", measurements.get((int) (totalOps * 0.01)).value());
-      exporter.write(
-          getName(), "p5", measurements.get((int) (totalOps * 0.05)).value());
-      exporter.write(
-          getName(), "p50", measurements.get((int) (totalOps * 0.5)).value());
-      exporter.write(
-          getName(), "p90", measurements.get((int) (totalOps * 0.9)).value());
-      exporter.write(
-          getName(), "p95", measurements.get((int) (totalOps * 0.95)).value());
-      exporter.write(
-          getName(), "p99", measurements.get((int) (totalOps * 0.99)).value());
-      exporter.write(getName(), "p99.9",
-          measurements.get((int) (totalOps * 0.999)).value());
-      exporter.write(getName(), "p99.99",
-          measurements.get((int) (totalOps * 0.9999)).value());
+      int[] sorted = counts.distinctValues();
+
+      exporter.write(getName(), "Min", sorted[0]);
+      exporter.write(getName(), "Max", sorted[sorted.length - 1]);
+      exporter.write(getName(), "p1", counts.valueAt(sorted, 0.01));
+      exporter.write(getName(), "p5", counts.valueAt(sorted, 0.05));
+      exporter.write(getName(), "p50", counts.valueAt(sorted, 0.5));
+      exporter.write(getName(), "p90", counts.valueAt(sorted, 0.9));
+      exporter.write(getName(), "p95", counts.valueAt(sorted, 0.95));
+      exporter.write(getName(), "p99", counts.valueAt(sorted, 0.99));
+      exporter.write(getName(), "p99.9", counts.valueAt(sorted, 0.999));
+      exporter.write(getName(), "p99.99", counts.valueAt(sorted, 0.9999));
     }
 
     exportStatusCounts(exporter);
@@ -191,17 +248,24 @@ public class OneMeasurementRaw extends OneMeasurement {
 
   @Override
   public synchronized String getSummary() {
+    long windowOperations = 0;
+    long windowTotalLatency = 0;
+    for (Shard shard : shards) {
+      long operations = shard.operations;
+      long totalLatency = shard.totalLatency;
+      windowOperations += operations - shard.reportedOperations;
+      windowTotalLatency += totalLatency - shard.reportedTotalLatency;
+      shard.reportedOperations = operations;
+      shard.reportedTotalLatency = totalLatency;
+    }
+
+    setSummaryInterval(windowOperations, windowTotalLatency);
     if (windowOperations == 0) {
       return "";
     }
 
-    String toReturn = String.format("%s count: %d, average latency(us): %.2f",
+    return String.format("%s count: %d, average latency(us): %.2f",
         getName(), windowOperations,
         (double) windowTotalLatency / (double) windowOperations);
-
-    windowTotalLatency = 0;
-    windowOperations = 0;
-
-    return toReturn;
   }
 }
@@ -21,8 +21,9 @@ import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
 
 import java.io.IOException;
 import java.text.DecimalFormat;
+import java.util.Arrays;
 import java.util.Properties;
-import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLong;
 
 class SeriesUnit {
   /**
@@ -40,6 +41,7 @@ class SeriesUnit {
 
 /**
  * A time series measurement of a metric, such as READ LATENCY.
+ * Each thread keeps its own series; they are added up unit by unit when reporting.
  */
 public class OneMeasurementTimeSeries extends OneMeasurement {
 
@@ -50,73 +52,128 @@ public class OneMeasurementTimeSeries extends OneMeasurement {
   public static final String GRANULARITY_DEFAULT = "1000";
 
   private final int granularity;
-  private final Vector<SeriesUnit> measurements;
 
-  private long start = -1;
-  private long currentunit = -1;
-  private long count = 0;
-  private long sum = 0;
-  private long operations = 0;
-  private long totallatency = 0;
-
-  //keep a windowed version of these stats for printing status
-  private int windowoperations = 0;
-  private long windowtotallatency = 0;
+  /**
+   * Start of the series, set by the first measurement of any thread.
+   */
+  private final AtomicLong start = new AtomicLong(-1);
 
-  private int min = -1;
-  private int max = -1;
+  /**
+   * The series recorded by one thread. Unit i covers [start + i * granularity, start + (i + 1) * granularity).
+   */
+  private static final class Shard {
+    private long[] counts = new long[16];
+    private long[] sums = new long[16];
+    private int units = 0;
+    private long operations = 0;
+    private long totallatency = 0;
+
+    private int min = -1;
+    private int max = -1;
+
+    //what the last status report has seen of this shard, only touched by the reader
+    private long reportedoperations = 0;
+    private long reportedtotallatency = 0;
+
+    private void add(int unit, int latency) {
+      if (unit >= counts.length) {
+        int length = Math.max(unit + 1, counts.length * 2);
+        counts = Arrays.copyOf(counts, length);
+        sums = Arrays.copyOf(sums, length);
+      }
+      counts[unit]++;
+      sums[unit] += latency;
+      units = Math.max(units, unit + 1);
+    }
 
-  public OneMeasurementTimeSeries(String name, Properties props) {
-    super(name);
-    granularity = Integer.parseInt(props.getProperty(GRANULARITY, GRANULARITY_DEFAULT));
-    measurements = new Vector<>();
+    private void addAll(Shard other) {
+      if (other.units > counts.length) {
+        counts = Arrays.copyOf(counts, other.units);
+        sums = Arrays.copyOf(sums, other.units);
+      }
+      for (int i = 0; i < other.units; i++) {
+        counts[i] += other.counts[i];
+        sums[i] += other.sums[i];
+      }
+      units = Math.max(units, other.units);
+      operations += other.operations;
+      totallatency += other.totallatency;
+      if ((min < 0) || (other.min >= 0 && other.min < min)) {
+        min = other.min;
+      }
+      max = Math.max(max, other.max);
+      reportedoperations += other.reportedoperations;
+      reportedtotallatency += other.reportedtotallatency;
+    }
   }
 
-  private synchronized void checkEndOfUnit(boolean forceend) {
-    long now = System.currentTimeMillis();
-
-    if (start < 0) {
-      currentunit = 0;
-      start = now;
+  private final ThreadShards<Shard> shards = new ThreadShards<Shard>() {
+    @Override
+    protected Shard newShard() {
+      return new Shard();
     }
 
-    long unit = ((now - start) / granularity) * granularity;
+    @Override
+    protected void retire(Shard ended, Shard retired) {
+      retired.addAll(ended);
+    }
+  };
 
-    if ((unit > currentunit) || (forceend)) {
-      double avg = ((double) sum) / ((double) count);
-      measurements.add(new SeriesUnit(currentunit, avg));
+  public OneMeasurementTimeSeries(String name, Properties props) {
+    super(name);
+    granularity = Integer.parseInt(props.getProperty(GRANULARITY, GRANULARITY_DEFAULT));
+  }
 
-      currentunit = unit;
+  /**
+   * Also restarts the series, so its first unit starts with the first measurement after the reset.
+   */
+  @Override
+  public synchronized void reset() {
+    super.reset();
+    shards.clear();
+    start.set(-1);
+  }
 
-      count = 0;
-      sum = 0;
+  private int currentUnit() {
+    long now = System.currentTimeMillis();
+    long begin = start.get();
+    if (begin < 0) {
+      start.compareAndSet(-1, now);
+      begin = start.get();
     }
+    return (int) (Math.max(0, now - begin) / granularity);
   }
 
   @Override
   public void measure(int latency) {
-    checkEndOfUnit(false);
+    Shard shard = shards.get();
+    shard.add(currentUnit(), latency);
+    shard.totallatency += latency;
+    shard.operations++;
 
-    count++;
-    sum += latency;
-    totallatency += latency;
-    operations++;
-    windowoperations++;
-    windowtotallatency += latency;
-
-    if (latency > max) {
-      max = latency;
+    if (latency > shard.max) {
+      shard.max = latency;
     }
 
-    if ((latency < min) || (min < 0)) {
-      min = latency;
+    if ((latency < shard.min) || (shard.min < 0)) {
+      shard.min = latency;
     }
   }
 
 
   @Override
-  public void exportMeasurements(MeasurementsExporter exporter) throws IOException {
-    checkEndOfUnit(true);
+  public synchronized void exportMeasurements(MeasurementsExporter exporter) throws IOException {
+    Shard total = new Shard();
+    for (Shard shard : shards) {
+      total.addAll(shard);
+    }
+    long operations = total.operations;
+    long totallatency = total.totallatency;
+    int min = total.min;
+    int max = total.max;
+    int units = total.units;
+    long[] counts = total.counts;
+    long[] sums = total.sums;
 
     exporter.write(getName(), "Operations", operations);
     exporter.write(getName(), "AverageLatency(us)", (((double) totallatency) / ((double) operations)));
@@ -126,20 +183,32 @@ public class OneMeasurementTimeSeries extends OneMeasurement {
     // TODO: 95th and 99th percentile latency
 
     exportStatusCounts(exporter);
-    for (SeriesUnit unit : measurements) {
-      exporter.write(getName(), Long.toString(unit.time), unit.average);
+    for (int i = 0; i < units; i++) {
+      if (counts[i] > 0) {
+        SeriesUnit unit = new SeriesUnit((long) i * granularity, ((double) sums[i]) / ((double) counts[i]));
+        exporter.write(getName(), Long.toString(unit.time), unit.average);
+      }
     }
   }
 
   @Override
-  public String getSummary() {
+  public synchronized String getSummary() {
+    long windowoperations = 0;
+    long windowtotallatency = 0;
+    for (Shard shard : shards) {
+      long operations = shard.operations;
+      long totallatency = shard.totallatency;
+      windowoperations += operations - shard.reportedoperations;
+      windowtotallatency += totallatency - shard.reportedtotallatency;
+      shard.reportedoperations = operations;
+      shard.reportedtotallatency = totallatency;
+    }
+    setSummaryInterval(windowoperations, windowtotallatency);
     if (windowoperations == 0) {
       return "";
     }
     DecimalFormat d = new DecimalFormat("#.##");
     double report = ((double) windowtotallatency) / ((double) windowoperations);
-    windowtotallatency = 0;
-    windowoperations = 0;
     return "[" + getName() + " AverageLatency(us)=" + d.format(report) + "]";
   }
 
@@ -0,0 +1,217 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Splits the wall time of the operations of each client thread into the time the workload spends choosing keys and
+ * generating values, the time spent in the DB, and the time DBWrapper spends around the DB call tracing it and
+ * recording its latency and status. Together with the bytes each thread allocates, this tells whether a saturated
+ * load host is busy generating load or measuring it, rather than waiting on the database.
+ * <p>
+ * Enabled by {@link #OVERHEAD_PROPERTY}. Each thread adds to an accumulator of its own, so profiling takes a few
+ * timer reads per operation but no coordination between threads. The DB time is measured by DBWrapper on the thread
+ * calling the DB; with a session pool those are the pool's threads, and the workload time of the client threads
+ * includes waiting for a pooled DB.
+ * </p>
+ * <p>
+ * Open-loop runs cannot be broken down this way: the client threads only hand the operations to worker threads,
+ * which call the DB, so the DB time is no part of the operation time it is taken from and the workload share of
+ * the totals is meaningless, possibly negative. Only the rows of each thread hold.
+ * </p>
+ */
+public final class OverheadBreakdown {
+  /**
+   * Whether to break the operations down into workload, DB and measurement time. Off by default.
+   */
+  public static final String OVERHEAD_PROPERTY = "measurement.overhead";
+  public static final String OVERHEAD_PROPERTY_DEFAULT = "false";
+
+  /**
+   * The time and allocations of one thread.
+   */
+  private static final class Accumulator {
+    private final Thread thread;
+    private int epoch;
+    private long operations;
+    private long operationNanos;
+    private long dbNanos;
+    private long wrapperNanos;
+    private long startNanos;
+    private long startAllocated;
+    private volatile long endNanos;
+    private volatile long endAllocated;
+
+    private Accumulator(Thread thread, int epoch) {
+      this.thread = thread;
+      this.epoch = epoch;
+      start();
+    }
+
+    private void start() {
+      operations = 0;
+      operationNanos = 0;
+      dbNanos = 0;
+      wrapperNanos = 0;
+      startNanos = System.nanoTime();
+      startAllocated = allocatedBytes(thread);
+      endNanos = 0;
+    }
+  }
+
+  private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+  private final Queue<Accumulator> accumulators = new ConcurrentLinkedQueue<>();
+  private final ThreadLocal<Accumulator> current = new ThreadLocal<>();
+
+  /** Incremented by {@link #reset()}; each thread clears its accumulator when it notices. */
+  private volatile int epoch;
+
+  /**
+   * @return True if the properties enable the breakdown.
+   */
+  public static boolean isSet(Properties props) {
+    return Boolean.parseBoolean(props.getProperty(OVERHEAD_PROPERTY, OVERHEAD_PROPERTY_DEFAULT));
+  }
+
+  private Accumulator current() {
+    Accumulator accumulator = current.get();
+    int now = epoch;
+    if (accumulator == null) {
+      accumulator = new Accumulator(Thread.currentThread(), now);
+      current.set(accumulator);
+      accumulators.add(accumulator);
+    } else if (accumulator.epoch != now) {
+      accumulator.epoch = now;
+      accumulator.start();
+    }
+    return accumulator;
+  }
+
+  /**
+   * Add an operation of the calling thread, from the workload deciding what to do to the DB returning.
+   *
+   * @param nanos The wall time of the whole operation.
+   */
+  public void operation(long nanos) {
+    Accumulator accumulator = current();
+    accumulator.operations++;
+    accumulator.operationNanos += nanos;
+  }
+
+  /**
+   * Add a DB call made by the calling thread through DBWrapper.
+   *
+   * @param wrapperNanos The time spent in DBWrapper, including the DB call.
+   * @param dbNanos The time spent in the DB.
+   */
+  public void dbCall(long wrapperNanos, long dbNanos) {
+    Accumulator accumulator = current();
+    accumulator.dbNanos += dbNanos;
+    accumulator.wrapperNanos += wrapperNanos - dbNanos;
+  }
+
+  /**
+   * Note that the calling thread has done all its operations, so its allocations can still be read once it is gone.
+   */
+  public void finish() {
+    Accumulator accumulator = current();
+    accumulator.endAllocated = allocatedBytes(accumulator.thread);
+    accumulator.endNanos = System.nanoTime();
+  }
+
+  /**
+   * Forget the operations so far, such as those of a warm-up period. Each thread starts over with its next
+   * operation.
+   */
+  public void reset() {
+    epoch++;
+  }
+
+  /**
+   * @return The bytes allocated by a live thread so far, or -1 if the JVM does not tell.
+   */
+  private static long allocatedBytes(Thread thread) {
+    if (!(THREADS instanceof com.sun.management.ThreadMXBean)) {
+      return -1;
+    }
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+    if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled()) {
+      return -1;
+    }
+    return threads.getThreadAllocatedBytes(thread.getId());
+  }
+
+  /**
+   * Export the breakdown of all threads, then the operations and allocation rate of each thread. Threads which
+   * started over after a {@link #reset()} but did nothing since are left out.
+   */
+  public void exportMeasurements(MeasurementsExporter exporter) throws IOException {
+    long operations = 0;
+    long operationNanos = 0;
+    long dbNanos = 0;
+    long wrapperNanos = 0;
+    for (Accumulator accumulator : accumulators) {
+      if (accumulator.epoch == epoch) {
+        operations += accumulator.operations;
+        operationNanos += accumulator.operationNanos;
+        dbNanos += accumulator.dbNanos;
+        wrapperNanos += accumulator.wrapperNanos;
+      }
+    }
+    long workloadNanos = operationNanos - dbNanos - wrapperNanos;
+    exporter.write("OVERHEAD", "Operations", operations);
+    if (operations > 0) {
+      exporter.write("OVERHEAD", "Workload(us/op)", workloadNanos / 1000.0 / operations);
+      exporter.write("OVERHEAD", "DB(us/op)", dbNanos / 1000.0 / operations);
+      exporter.write("OVERHEAD", "Measurement(us/op)", wrapperNanos / 1000.0 / operations);
+    }
+    if (operationNanos > 0) {
+      exporter.write("OVERHEAD", "Workload(%)", 100.0 * workloadNanos / operationNanos);
+      exporter.write("OVERHEAD", "DB(%)", 100.0 * dbNanos / operationNanos);
+      exporter.write("OVERHEAD", "Measurement(%)", 100.0 * wrapperNanos / operationNanos);
+    }
+
+    long now = System.nanoTime();
+    double totalRate = 0;
+    for (Accumulator accumulator : accumulators) {
+      if (accumulator.epoch != epoch || accumulator.operations + accumulator.dbNanos == 0) {
+        continue;
+      }
+      String metric = "OVERHEAD-" + accumulator.thread.getName();
+      exporter.write(metric, "Operations", accumulator.operations);
+      boolean finished = accumulator.endNanos != 0;
+      long end = finished ? accumulator.endNanos : now;
+      long allocated = finished ? accumulator.endAllocated : allocatedBytes(accumulator.thread);
+      if (accumulator.startAllocated >= 0 && allocated >= 0 && end > accumulator.startNanos) {
+        double rate = (allocated - accumulator.startAllocated) / 1048576.0 / ((end - accumulator.startNanos) / 1e9);
+        exporter.write(metric, "AllocationRate(MB/sec)", rate);
+        totalRate += rate;
+      }
+    }
+    exporter.write("OVERHEAD", "AllocationRate(MB/sec)", totalRate);
+  }
+}
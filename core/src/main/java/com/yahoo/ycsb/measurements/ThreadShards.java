@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Hands every recording thread its own shard of a measurement, so that recording never touches state shared
+ * with other threads. All shards created since the last {@link #clear()} are kept for the reader (the status
+ * thread or the final export), which merges them.
+ * <p>
+ * A shard is only written by the thread owning it. Readers merging while the run is still in progress may see
+ * a shard a few operations behind; once the recording threads have been joined the merged result is exact.
+ * </p>
+ * <p>
+ * When a thread has ended, the next reader folds its shard into a single shard for all the threads which ended,
+ * so short-lived recording threads, such as pooled workers or virtual threads, cost as much as the threads alive
+ * at a time rather than all the threads of the run. Readers must not run concurrently with each other.
+ * </p>
+ *
+ * @param <S> The shard type.
+ */
+abstract class ThreadShards<S> implements Iterable<S> {
+  /** A shard and the thread writing it. */
+  private static final class Owned<S> {
+    private final S shard;
+    private final WeakReference<Thread> thread;
+
+    private Owned(S shard, Thread thread) {
+      this.shard = shard;
+      this.thread = new WeakReference<>(thread);
+    }
+
+    private boolean hasEnded() {
+      Thread t = thread.get();
+      return t == null || !t.isAlive();
+    }
+  }
+
+  /** The shards since a {@link #clear()}. */
+  private static final class Generation<S> {
+    private final ConcurrentLinkedQueue<Owned<S>> owned = new ConcurrentLinkedQueue<>();
+    /** What the threads which ended recorded, only touched by the reader. */
+    private S retired;
+  }
+
+  /** Replaced, never emptied, by {@link #clear()}. */
+  private volatile Generation<S> generation = new Generation<>();
+
+  /** A thread's shard, and the generation it was added to. */
+  private static final class Local<S> {
+    private S shard;
+    private Generation<S> owner;
+  }
+
+  private final ThreadLocal<Local<S>> local = new ThreadLocal<Local<S>>() {
+    @Override
+    protected Local<S> initialValue() {
+      return new Local<>();
+    }
+  };
+
+  /**
+   * @return A new, empty shard.
+   */
+  protected abstract S newShard();
+
+  /**
+   * Add the shard of a thread which ended to the shard of the threads which ended before. Called by a reader.
+   */
+  protected abstract void retire(S ended, S retired);
+
+  /**
+   * @return The calling thread's shard.
+   */
+  S get() {
+    Local<S> l = local.get();
+    Generation<S> current = generation;
+    if (l.owner != current) {
+      l.shard = newShard();
+      l.owner = current;
+      current.owned.add(new Owned<>(l.shard, Thread.currentThread()));
+    }
+    return l.shard;
+  }
+
+  /**
+   * Forget every shard; each thread gets a new, empty one the next time it records. Whatever a thread records
+   * into its old shard while this happens is lost.
+   */
+  void clear() {
+    generation = new Generation<>();
+  }
+
+  /**
+   * Folds the shards of the threads which ended first.
+   */
+  @Override
+  public Iterator<S> iterator() {
+    Generation<S> current = generation;
+    List<S> shards = new ArrayList<>();
+    for (Iterator<Owned<S>> it = current.owned.iterator(); it.hasNext();) {
+      Owned<S> owned = it.next();
+      if (owned.hasEnded()) {
+        if (current.retired == null) {
+          current.retired = newShard();
+        }
+        retire(owned.shard, current.retired);
+        it.remove();
+      } else {
+        shards.add(owned.shard);
+      }
+    }
+    if (current.retired != null) {
+      shards.add(current.retired);
+    }
+    return shards.iterator();
+  }
+}
@@ -70,7 +70,16 @@ public class TwoInOneMeasurement extends OneMeasurement {
    */
   @Override
   public String getSummary() {
-    return thing1.getSummary() + "\n" + thing2.getSummary();
+    String summary = thing1.getSummary() + "\n" + thing2.getSummary();
+    setSummaryInterval(thing1.getSummaryOperations(), thing1.getSummaryTotalLatency());
+    return summary;
+  }
+
+  @Override
+  public synchronized void reset() {
+    super.reset();
+    thing1.reset();
+    thing2.reset();
   }
 
 }
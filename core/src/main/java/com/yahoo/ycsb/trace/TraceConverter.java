@@ -0,0 +1,257 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.trace;
+
+import com.yahoo.ycsb.Workload;
+import com.yahoo.ycsb.workloads.CoreWorkload;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Converts a text trace into the binary trace format replayed by
+ * {@link com.yahoo.ycsb.workloads.TraceReplayWorkload}.
+ * <p>
+ * Supported input formats:
+ * <ul>
+ * <li><b>csv</b>: {@code op,table,key[,fields[,valuesize[,recordcount[,timestampnanos]]]]} where fields is
+ * {@code *} or empty for all fields, or field names separated by {@code ;}. Empty lines and lines starting with
+ * {@code #} are skipped.</li>
+ * <li><b>basicdb</b>: the output of {@link com.yahoo.ycsb.BasicDB} with {@code basicdb.verbose=true}. Other lines
+ * are skipped. Field values must not contain a space followed by the field prefix and a number.</li>
+ * <li><b>keys</b>: one key per line, as read by {@link com.yahoo.ycsb.generator.FileGenerator} or the URL traces
+ * of {@link com.yahoo.ycsb.workloads.RestWorkload}, all replayed as the operation given by {@code -op}.</li>
+ * </ul>
+ * </p>
+ */
+public final class TraceConverter {
+  private TraceConverter() {
+    //not used
+  }
+
+  public static void usageMessage() {
+    System.out.println("Usage: java com.yahoo.ycsb.trace.TraceConverter [options] input output");
+    System.out.println("Options:");
+    System.out.println("  -format csv|basicdb|keys: Format of the input (default csv)");
+    System.out.println("  -op operation: Operation of every key, for the keys format (default READ)");
+    System.out.println("  -table tablename: Table of every key, for the keys format (default \""
+        + CoreWorkload.TABLENAME_PROPERTY_DEFAULT + "\")");
+    System.out.println("  -valuesize n: Size of the values written, for the keys format (default "
+        + CoreWorkload.FIELD_LENGTH_PROPERTY_DEFAULT + ")");
+    System.out.println("  -fieldprefix prefix: Field name prefix (default \"" + TraceFormat.DEFAULT_FIELD_PREFIX
+        + "\")");
+    System.out.println("  -blocksize n: Size of the trace blocks (default " + TraceFormat.DEFAULT_BLOCK_SIZE + ")");
+  }
+
+  public static void main(String[] args) throws IOException {
+    String format = "csv";
+    Workload.Operation op = Workload.Operation.READ;
+    String table = CoreWorkload.TABLENAME_PROPERTY_DEFAULT;
+    int valueSize = Integer.parseInt(CoreWorkload.FIELD_LENGTH_PROPERTY_DEFAULT);
+    String fieldPrefix = TraceFormat.DEFAULT_FIELD_PREFIX;
+    int blockSize = TraceFormat.DEFAULT_BLOCK_SIZE;
+
+    int argindex = 0;
+    try {
+      while (argindex < args.length - 2 && args[argindex].startsWith("-")) {
+        String option = args[argindex++];
+        String value = args[argindex++];
+        if (option.equals("-format")) {
+          format = value;
+        } else if (option.equals("-op")) {
+          op = Workload.Operation.valueOf(value.toUpperCase());
+        } else if (option.equals("-table")) {
+          table = value;
+        } else if (option.equals("-valuesize")) {
+          valueSize = Integer.parseInt(value);
+        } else if (option.equals("-fieldprefix")) {
+          fieldPrefix = value;
+        } else if (option.equals("-blocksize")) {
+          blockSize = Integer.parseInt(value);
+        } else {
+          System.out.println("Unknown option " + option);
+          usageMessage();
+          System.exit(1);
+        }
+      }
+    } catch (IllegalArgumentException e) {
+      System.out.println("Bad option value: " + e.getMessage());
+      usageMessage();
+      System.exit(1);
+    }
+    if (argindex != args.length - 2 || !Arrays.asList("csv", "basicdb", "keys").contains(format)) {
+      usageMessage();
+      System.exit(1);
+    }
+
+    TraceFormat traceFormat = new TraceFormat(blockSize, fieldPrefix);
+    long count;
+    try (BufferedReader in = Files.newBufferedReader(Paths.get(args[argindex]), StandardCharsets.UTF_8);
+         TraceWriter writer = new TraceWriter(Paths.get(args[argindex + 1]), traceFormat);
+         TraceWriter.Appender out = writer.newAppender()) {
+      count = convert(format, in, out, new TraceRecord(traceFormat), op, table, valueSize);
+    }
+    System.out.println("Converted " + count + " operations");
+  }
+
+  /**
+   * Convert every line of {@code in}.
+   *
+   * @return The number of operations written.
+   */
+  static long convert(String format, BufferedReader in, TraceWriter.Appender out, TraceRecord record,
+                      Workload.Operation keyOp, String table, int valueSize) throws IOException {
+    LineParser parser;
+    if (format.equals("csv")) {
+      parser = new CsvParser();
+    } else if (format.equals("basicdb")) {
+      parser = new BasicDBParser(out.getFormat().getFieldPrefix());
+    } else {
+      parser = new LineParser() {
+        @Override
+        public boolean parse(String line, TraceRecord r) {
+          boolean write = keyOp == Workload.Operation.INSERT || keyOp == Workload.Operation.UPDATE;
+          r.set(keyOp, -1, table, line, null, write ? valueSize : 0, keyOp == Workload.Operation.SCAN ? 1 : 0);
+          return !line.isEmpty();
+        }
+      };
+    }
+    long count = 0;
+    String line;
+    int lineNumber = 0;
+    while ((line = in.readLine()) != null) {
+      lineNumber++;
+      try {
+        if (parser.parse(line, record)) {
+          out.append(record);
+          count++;
+        }
+      } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+        throw new IOException("Line " + lineNumber + ": cannot convert \"" + line + "\": " + e.getMessage(), e);
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Parses one line of a text trace.
+   */
+  private interface LineParser {
+    /**
+     * @return false if the line holds no operation.
+     */
+    boolean parse(String line, TraceRecord record);
+  }
+
+  private static final class CsvParser implements LineParser {
+    @Override
+    public boolean parse(String line, TraceRecord record) {
+      if (line.isEmpty() || line.startsWith("#")) {
+        return false;
+      }
+      String[] columns = line.split(",", -1);
+      if (columns.length < 3) {
+        throw new IllegalArgumentException("expected at least op,table,key");
+      }
+      Set<String> fields = null;
+      if (columns.length > 3 && !columns[3].isEmpty() && !columns[3].equals("*")) {
+        fields = new HashSet<>(Arrays.asList(columns[3].split(";")));
+      }
+      record.set(Workload.Operation.valueOf(columns[0].trim().toUpperCase()),
+          columns.length > 6 ? Long.parseLong(columns[6].trim()) : -1, columns[1], columns[2], fields,
+          columns.length > 4 ? Integer.parseInt(columns[4].trim()) : 0,
+          columns.length > 5 ? Integer.parseInt(columns[5].trim()) : 0);
+      return true;
+    }
+  }
+
+  /**
+   * Parses the lines printed by BasicDB, such as {@code UPDATE usertable user1 [ field0=value field3=value ]}.
+   */
+  private static final class BasicDBParser implements LineParser {
+    private static final String ALL_FIELDS = "<all fields>";
+
+    private final Pattern fieldPattern;
+
+    BasicDBParser(String fieldPrefix) {
+      fieldPattern = Pattern.compile("(?<=^| )(" + Pattern.quote(fieldPrefix) + "\\d+)=");
+    }
+
+    @Override
+    public boolean parse(String line, TraceRecord record) {
+      int space = line.indexOf(' ');
+      if (space < 0) {
+        return false;
+      }
+      Workload.Operation op;
+      try {
+        op = Workload.Operation.valueOf(line.substring(0, space));
+      } catch (IllegalArgumentException e) {
+        return false;
+      }
+      String[] words = line.split(" ", op == Workload.Operation.SCAN ? 5 : 4);
+      if (words.length < 3) {
+        return false;
+      }
+      String table = words[1];
+      String key = words[2];
+      if (op == Workload.Operation.DELETE) {
+        record.set(op, -1, table, key, null, 0, 0);
+        return true;
+      }
+      int count = op == Workload.Operation.SCAN ? Integer.parseInt(words[3]) : 0;
+      String list = words[words.length - 1];
+      if (!list.startsWith("[ ") || !list.endsWith("]")) {
+        return false;
+      }
+      list = list.substring(2, list.length() - 1);
+
+      Set<String> fields = null;
+      int valueSize = 0;
+      if (op == Workload.Operation.READ || op == Workload.Operation.SCAN) {
+        if (!list.equals(ALL_FIELDS)) {
+          fields = new HashSet<>(Arrays.asList(list.trim().split(" +")));
+        }
+      } else {
+        fields = new HashSet<>();
+        Matcher matcher = fieldPattern.matcher(list);
+        int valueStart = -1;
+        while (matcher.find()) {
+          if (valueStart >= 0) {
+            valueSize = Math.max(valueSize, matcher.start() - 1 - valueStart);
+          }
+          fields.add(matcher.group(1));
+          valueStart = matcher.end();
+        }
+        if (valueStart >= 0) {
+          valueSize = Math.max(valueSize, list.length() - 1 - valueStart);
+        }
+      }
+      record.set(op, -1, table, key, fields, valueSize, count);
+      return true;
+    }
+  }
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.trace;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Layout of a binary trace file.
+ * <p>
+ * A trace starts with a {@value #HEADER_SIZE} byte header holding the magic number, the format version, the block
+ * size and the field name prefix. It is followed by blocks of exactly <i>block size</i> bytes. Each block starts
+ * with the number of bytes used by the records it holds, as an int, and holds whole records only, so a block can be
+ * decoded without looking at any other block. This is what lets several threads replay disjoint blocks of one
+ * memory-mapped trace without coordination beyond claiming a block number.
+ * </p>
+ * <p>
+ * A record is laid out as follows, all numbers big-endian:
+ * <pre>
+ *   byte   operation   1 + {@link com.yahoo.ycsb.Workload.Operation#ordinal()}
+ *   byte   flags       {@link #FLAG_ALL_FIELDS}, {@link #FLAG_FIELD_NAMES}
+ *   long   timestamp   nanoseconds since the start of the trace, or -1 if unknown
+ *   short  length, then the UTF-8 bytes of the table
+ *   short  length, then the UTF-8 bytes of the key
+ *   long   field mask  bit i set for the field named prefix + i, unless a flag is set
+ *     or   byte count, then for each field a short length and the UTF-8 bytes of its name, with FLAG_FIELD_NAMES
+ *   int    value size  bytes per field value written, 0 for reads
+ *   int    record count of a scan, 0 otherwise
+ * </pre>
+ * Fields named prefix + i with i below 63 are stored in the mask; any other field name makes the record list all of
+ * its field names.
+ * </p>
+ */
+public final class TraceFormat {
+  public static final long MAGIC = 0x5943534254524331L; // "YCSBTRC1"
+  public static final int VERSION = 1;
+  public static final int HEADER_SIZE = 64;
+  public static final int BLOCK_HEADER_SIZE = 4;
+
+  /**
+   * The default block size. Large enough to hold many records, small enough to balance the replay over threads.
+   */
+  public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+  /** The field name prefix of CoreWorkload. */
+  public static final String DEFAULT_FIELD_PREFIX = "field";
+
+  /** The record reads or writes all fields; there is no field mask. */
+  public static final int FLAG_ALL_FIELDS = 1;
+
+  /** The record lists its field names instead of a field mask. */
+  public static final int FLAG_FIELD_NAMES = 2;
+
+  private final int blockSize;
+  private final String fieldPrefix;
+
+  public TraceFormat(int blockSize, String fieldPrefix) {
+    if (blockSize < 256) {
+      throw new IllegalArgumentException("Trace block size must be at least 256 bytes, got " + blockSize);
+    }
+    if (fieldPrefix.getBytes(StandardCharsets.UTF_8).length > HEADER_SIZE - 20) {
+      throw new IllegalArgumentException("Trace field prefix is too long: " + fieldPrefix);
+    }
+    this.blockSize = blockSize;
+    this.fieldPrefix = fieldPrefix;
+  }
+
+  public int getBlockSize() {
+    return blockSize;
+  }
+
+  public String getFieldPrefix() {
+    return fieldPrefix;
+  }
+
+  /**
+   * Write the header at the start of a trace.
+   */
+  void writeHeader(FileChannel channel) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    byte[] prefix = fieldPrefix.getBytes(StandardCharsets.UTF_8);
+    header.putLong(MAGIC).putInt(VERSION).putInt(blockSize).putShort((short) prefix.length).put(prefix);
+    header.clear();
+    while (header.hasRemaining()) {
+      channel.write(header, header.position());
+    }
+  }
+
+  /**
+   * Read the header at the start of a trace.
+   *
+   * @throws IOException If the file is not a trace, or has an unsupported version.
+   */
+  static TraceFormat readHeader(FileChannel channel) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    while (header.hasRemaining()) {
+      if (channel.read(header, header.position()) < 0) {
+        throw new IOException("Not a trace file, it is shorter than the header");
+      }
+    }
+    header.flip();
+    if (header.getLong() != MAGIC) {
+      throw new IOException("Not a trace file, wrong magic number");
+    }
+    int version = header.getInt();
+    if (version != VERSION) {
+      throw new IOException("Unsupported trace version " + version);
+    }
+    int blockSize = header.getInt();
+    byte[] prefix = new byte[header.getShort()];
+    header.get(prefix);
+    return new TraceFormat(blockSize, new String(prefix, StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.trace;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads a binary trace written by {@link TraceWriter}, see {@link TraceFormat}.
+ * <p>
+ * The trace is memory-mapped, so reading it costs no system call and no copy, and threads claim whole blocks from
+ * a shared counter. Each thread decodes the records of the blocks it claimed with its own {@link TraceRecord}.
+ * </p>
+ */
+public class TraceReader implements Closeable {
+  /** Traces are mapped in segments of about this many bytes, as one mapping is limited to 2GB. */
+  private static final long SEGMENT_SIZE = 1L << 30;
+
+  private final FileChannel channel;
+  private final TraceFormat format;
+  private final MappedByteBuffer[] segments;
+  private final int blocksPerSegment;
+  private final long blockCount;
+  private final AtomicLong nextBlock = new AtomicLong();
+
+  public TraceReader(Path path) throws IOException {
+    channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      format = TraceFormat.readHeader(channel);
+      int blockSize = format.getBlockSize();
+      blockCount = (channel.size() - TraceFormat.HEADER_SIZE) / blockSize;
+      blocksPerSegment = (int) Math.max(1, SEGMENT_SIZE / blockSize);
+      segments = new MappedByteBuffer[(int) ((blockCount + blocksPerSegment - 1) / blocksPerSegment)];
+      for (int i = 0; i < segments.length; i++) {
+        long first = (long) i * blocksPerSegment;
+        long blocks = Math.min(blocksPerSegment, blockCount - first);
+        segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, TraceFormat.HEADER_SIZE + first * blockSize,
+            blocks * blockSize);
+      }
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  public TraceFormat getFormat() {
+    return format;
+  }
+
+  public long getBlockCount() {
+    return blockCount;
+  }
+
+  /**
+   * Claim the next block not yet claimed by any thread.
+   *
+   * @return A buffer holding the records of the block, positioned at the first one, or null if the trace is
+   * exhausted.
+   */
+  public ByteBuffer nextBlock() {
+    long block = nextBlock.getAndIncrement();
+    if (block >= blockCount) {
+      return null;
+    }
+    ByteBuffer segment = segments[(int) (block / blocksPerSegment)].duplicate();
+    int offset = (int) (block % blocksPerSegment) * format.getBlockSize();
+    int used = segment.getInt(offset);
+    if (used < TraceFormat.BLOCK_HEADER_SIZE || used > format.getBlockSize()) {
+      throw new IllegalStateException("Corrupt trace block " + block);
+    }
+    segment.limit(offset + used).position(offset + TraceFormat.BLOCK_HEADER_SIZE);
+    return segment.slice();
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
@@ -0,0 +1,276 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.trace;
+
+import com.yahoo.ycsb.Workload;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One operation of a trace, see {@link TraceFormat} for its binary layout.
+ * <p>
+ * Instances are mutable and meant to be reused by one thread for every record it reads or writes. Decoding keeps
+ * the field sets it built so records with the same fields share the same, unmodifiable, set.
+ * </p>
+ */
+public final class TraceRecord {
+  private static final Workload.Operation[] OPERATIONS = Workload.Operation.values();
+
+  private final TraceFormat format;
+  private final Map<Long, Set<String>> fieldsByMask = new HashMap<>();
+  private byte[] scratch = new byte[256];
+
+  private Workload.Operation operation;
+  private long timestampNanos = -1;
+  private String table;
+  private String key;
+  private Set<String> fields;
+  private int valueSize;
+  private int recordCount;
+
+  public TraceRecord(TraceFormat format) {
+    this.format = format;
+  }
+
+  /**
+   * Set every attribute of the record at once.
+   *
+   * @param fieldNames The fields read or written, or null for all of them.
+   */
+  public TraceRecord set(Workload.Operation op, long timestamp, String tableName, String recordKey,
+                         Set<String> fieldNames, int size, int count) {
+    this.operation = op;
+    this.timestampNanos = timestamp;
+    this.table = tableName;
+    this.key = recordKey;
+    this.fields = fieldNames;
+    this.valueSize = size;
+    this.recordCount = count;
+    return this;
+  }
+
+  public Workload.Operation getOperation() {
+    return operation;
+  }
+
+  /**
+   * @return Nanoseconds since the start of the trace, or -1 if unknown.
+   */
+  public long getTimestampNanos() {
+    return timestampNanos;
+  }
+
+  public String getTable() {
+    return table;
+  }
+
+  public String getKey() {
+    return key;
+  }
+
+  /**
+   * @return The fields read or written, or null for all of them.
+   */
+  public Set<String> getFields() {
+    return fields;
+  }
+
+  /**
+   * @return The size of each field value written, 0 for reads.
+   */
+  public int getValueSize() {
+    return valueSize;
+  }
+
+  /**
+   * @return The number of records of a scan, 0 for other operations.
+   */
+  public int getRecordCount() {
+    return recordCount;
+  }
+
+  /**
+   * Append the record to a block.
+   *
+   * @return false, leaving the block unchanged, if the record does not fit in the rest of the block.
+   * @throws IllegalArgumentException If the record would not even fit in an empty block, or cannot be encoded at
+   *                                  all; the block is left unchanged then too.
+   */
+  public boolean encode(ByteBuffer block) {
+    int start = block.position();
+    try {
+      block.put((byte) (operation.ordinal() + 1));
+      long mask = fields == null ? 0 : fieldMask(fields);
+      int flags = fields == null ? TraceFormat.FLAG_ALL_FIELDS : mask == -1 ? TraceFormat.FLAG_FIELD_NAMES : 0;
+      block.put((byte) flags);
+      block.putLong(timestampNanos);
+      putString(block, table);
+      putString(block, key);
+      if (flags == 0) {
+        block.putLong(mask);
+      } else if (flags == TraceFormat.FLAG_FIELD_NAMES) {
+        if (fields.size() > 255) {
+          throw new IllegalArgumentException("A trace record holds at most 255 field names");
+        }
+        block.put((byte) fields.size());
+        for (String field : fields) {
+          putString(block, field);
+        }
+      }
+      block.putInt(valueSize);
+      block.putInt(recordCount);
+      return true;
+    } catch (BufferOverflowException e) {
+      block.position(start);
+      if (start == TraceFormat.BLOCK_HEADER_SIZE) {
+        throw new IllegalArgumentException("Trace record for key " + key + " does not fit in a block of "
+            + format.getBlockSize() + " bytes");
+      }
+      return false;
+    } catch (IllegalArgumentException e) {
+      block.position(start);
+      throw e;
+    }
+  }
+
+  /**
+   * Read the record at the position of a block, advancing past it.
+   */
+  public void decode(ByteBuffer block) {
+    operation = OPERATIONS[block.get() - 1];
+    int flags = block.get();
+    timestampNanos = block.getLong();
+    table = getString(block, table);
+    key = getString(block, null);
+    if (flags == TraceFormat.FLAG_ALL_FIELDS) {
+      fields = null;
+    } else if (flags == TraceFormat.FLAG_FIELD_NAMES) {
+      int count = block.get() & 0xff;
+      Set<String> names = new HashSet<>(count * 2);
+      for (int i = 0; i < count; i++) {
+        names.add(getString(block, null));
+      }
+      fields = names;
+    } else {
+      long mask = block.getLong();
+      fields = fieldsByMask.get(mask);
+      if (fields == null) {
+        fields = Collections.unmodifiableSet(fieldsOf(mask));
+        fieldsByMask.put(mask, fields);
+      }
+    }
+    valueSize = block.getInt();
+    recordCount = block.getInt();
+  }
+
+  /**
+   * @return The mask of the fields, or -1 if one of them is not named prefix + i with i below 63.
+   */
+  private long fieldMask(Set<String> names) {
+    String prefix = format.getFieldPrefix();
+    long mask = 0;
+    for (String name : names) {
+      if (!name.startsWith(prefix) || name.length() == prefix.length() || name.length() > prefix.length() + 2) {
+        return -1;
+      }
+      int index = 0;
+      for (int i = prefix.length(); i < name.length(); i++) {
+        char c = name.charAt(i);
+        if (c < '0' || c > '9' || (i == prefix.length() && c == '0' && name.length() > i + 1)) {
+          return -1;
+        }
+        index = index * 10 + (c - '0');
+      }
+      if (index >= 63) {
+        return -1;
+      }
+      mask |= 1L << index;
+    }
+    return mask;
+  }
+
+  private Set<String> fieldsOf(long mask) {
+    Set<String> names = new HashSet<>();
+    for (int i = 0; i < 63; i++) {
+      if ((mask & (1L << i)) != 0) {
+        names.add(format.getFieldPrefix() + i);
+      }
+    }
+    return names;
+  }
+
+  /**
+   * Writes the string as a short length followed by its UTF-8 bytes, without allocating for plain ASCII.
+   */
+  private static void putString(ByteBuffer block, String value) {
+    int length = value.length();
+    boolean ascii = true;
+    for (int i = 0; i < length && ascii; i++) {
+      ascii = value.charAt(i) < 0x80;
+    }
+    if (ascii) {
+      checkLength(length);
+      block.putShort((short) length);
+      if (block.remaining() < length) {
+        throw new BufferOverflowException();
+      }
+      for (int i = 0; i < length; i++) {
+        block.put((byte) value.charAt(i));
+      }
+    } else {
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      checkLength(bytes.length);
+      block.putShort((short) bytes.length);
+      block.put(bytes);
+    }
+  }
+
+  private static void checkLength(int length) {
+    if (length > 0xffff) {
+      throw new IllegalArgumentException("Trace strings are at most 65535 bytes long");
+    }
+  }
+
+  /**
+   * Reads a string written by {@link #putString}, returning {@code previous} instead of a new string if equal.
+   */
+  private String getString(ByteBuffer block, String previous) {
+    int length = block.getShort() & 0xffff;
+    if (scratch.length < length) {
+      scratch = new byte[Math.max(length, scratch.length * 2)];
+    }
+    block.get(scratch, 0, length);
+    if (previous != null && previous.length() == length) {
+      boolean same = true;
+      for (int i = 0; i < length && same; i++) {
+        same = previous.charAt(i) == scratch[i];
+      }
+      if (same) {
+        return previous;
+      }
+    }
+    return new String(scratch, 0, length, StandardCharsets.UTF_8);
+  }
+}
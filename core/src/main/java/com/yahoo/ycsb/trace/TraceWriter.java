@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.trace;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes a binary trace, see {@link TraceFormat}.
+ * <p>
+ * Every writing thread gets its own {@link Appender} filling a block of its own, so threads only share the counter
+ * handing out block numbers. Full blocks are written at their position in the file without any locking. Records
+ * of different threads are therefore not in timestamp order across blocks.
+ * </p>
+ */
+public class TraceWriter implements Closeable {
+  private final FileChannel channel;
+  private final TraceFormat format;
+  private final AtomicLong nextBlock = new AtomicLong();
+
+  /**
+   * Create a trace, replacing any existing file.
+   */
+  public TraceWriter(Path path, TraceFormat format) throws IOException {
+    this.format = format;
+    this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING);
+    format.writeHeader(channel);
+  }
+
+  public TraceFormat getFormat() {
+    return format;
+  }
+
+  /**
+   * @return A new appender, to be used by a single thread.
+   */
+  public Appender newAppender() {
+    return new Appender();
+  }
+
+  /**
+   * @return The number of blocks written so far.
+   */
+  public long getBlockCount() {
+    return nextBlock.get();
+  }
+
+  /**
+   * Close the file. Appenders must have been flushed before.
+   */
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  private void writeBlock(ByteBuffer block) throws IOException {
+    long position = TraceFormat.HEADER_SIZE + nextBlock.getAndIncrement() * format.getBlockSize();
+    while (block.hasRemaining()) {
+      position += channel.write(block, position);
+    }
+  }
+
+  /**
+   * Fills one block at a time with records, and writes it when full. Not thread-safe.
+   */
+  public final class Appender implements Closeable {
+    private final ByteBuffer block = ByteBuffer.allocateDirect(format.getBlockSize());
+
+    private Appender() {
+      block.position(TraceFormat.BLOCK_HEADER_SIZE);
+    }
+
+    public TraceFormat getFormat() {
+      return format;
+    }
+
+    public void append(TraceRecord record) throws IOException {
+      if (!record.encode(block)) {
+        flush();
+        record.encode(block);
+      }
+    }
+
+    /**
+     * Write the records appended so far, if any, in a block of their own.
+     */
+    public void flush() throws IOException {
+      int used = block.position();
+      if (used == TraceFormat.BLOCK_HEADER_SIZE) {
+        return;
+      }
+      block.putInt(0, used);
+      while (block.hasRemaining()) {
+        block.put((byte) 0);
+      }
+      block.flip();
+      writeBlock(block);
+      block.clear();
+      block.position(TraceFormat.BLOCK_HEADER_SIZE);
+    }
+
+    @Override
+    public void close() throws IOException {
+      flush();
+    }
+  }
+}
@@ -59,6 +59,11 @@ import java.util.*;
  * digits in the record number.
  * <LI><b>insertorder</b>: should records be inserted in order by key ("ordered"), or in hashed
  * order ("hashed") (default: hashed)
+ * <LI><b>valuepool</b>: should field values be slices of a per-thread buffer of random bytes generated once
+ * (true), or be generated for each value (false) (default: false)
+ * <LI><b>valuepool.size</b>: the size of the buffer of each thread, in bytes (default: 1048576)
+ * <LI><b>valuepool.compressibility</b>: the fraction of the buffer made of repeated bytes, between 0 and 1
+ * (default: 0)
  * </ul>
  */
 public class CoreWorkload extends Workload {
@@ -171,6 +176,41 @@ public class CoreWorkload extends Workload {
    */
   private boolean dataintegrity;
 
+  /**
+   * The name of the property for deciding whether field values are sliced out of a {@link ValuePool}.
+   */
+  public static final String VALUE_POOL_PROPERTY = "valuepool";
+
+  /**
+   * The default value for the valuepool property.
+   */
+  public static final String VALUE_POOL_PROPERTY_DEFAULT = "false";
+
+  /**
+   * The name of the property for the size of the value pool buffer of each thread.
+   */
+  public static final String VALUE_POOL_SIZE_PROPERTY = "valuepool.size";
+
+  /**
+   * The default size of the value pool buffer of each thread.
+   */
+  public static final String VALUE_POOL_SIZE_PROPERTY_DEFAULT = "1048576";
+
+  /**
+   * The name of the property for the fraction of the value pool made of repeated bytes.
+   */
+  public static final String VALUE_POOL_COMPRESSIBILITY_PROPERTY = "valuepool.compressibility";
+
+  /**
+   * The default fraction of the value pool made of repeated bytes.
+   */
+  public static final String VALUE_POOL_COMPRESSIBILITY_PROPERTY_DEFAULT = "0";
+
+  /**
+   * Where random field values come from, or null to generate each of them.
+   */
+  private ValuePool valuepool;
+
   /**
    * The name of the property for the proportion of transactions that are reads.
    */
@@ -322,6 +362,35 @@ public class CoreWorkload extends Workload {
 
   private Measurements measurements = Measurements.getMeasurements();
 
+  private static final String KEY_PREFIX = "user";
+
+  /** For each field, the set holding only that field. Shared by all threads, never modified. */
+  private List<Set<String>> singlefieldsets;
+
+  /** The set of all fields. Shared by all threads, never modified. */
+  private Set<String> allfieldset;
+
+  /**
+   * Buffers reused by every operation of a client thread, so choosing a record allocates nothing but the key.
+   */
+  private static final class ThreadBuffers {
+    private final char[] key;
+    private final HashMap<String, ByteIterator> cells = new HashMap<>();
+
+    private ThreadBuffers(int keyLength) {
+      key = new char[keyLength];
+      KEY_PREFIX.getChars(0, KEY_PREFIX.length(), key, 0);
+    }
+  }
+
+  private final ThreadLocal<ThreadBuffers> buffers = new ThreadLocal<ThreadBuffers>() {
+    @Override
+    protected ThreadBuffers initialValue() {
+      // The longest key: the prefix, then either the padding or the 19 digits of the largest long
+      return new ThreadBuffers(KEY_PREFIX.length() + Math.max(zeropadding, 19));
+    }
+  };
+
   protected static NumberGenerator getFieldLengthGenerator(Properties p) throws WorkloadException {
     NumberGenerator fieldlengthgenerator;
     String fieldlengthdistribution = p.getProperty(
@@ -361,9 +430,12 @@ public class CoreWorkload extends Workload {
     fieldcount =
         Long.parseLong(p.getProperty(FIELD_COUNT_PROPERTY, FIELD_COUNT_PROPERTY_DEFAULT));
     fieldnames = new ArrayList<>();
+    singlefieldsets = new ArrayList<>();
     for (int i = 0; i < fieldcount; i++) {
       fieldnames.add("field" + i);
+      singlefieldsets.add(Collections.singleton(fieldnames.get(i)));
     }
+    allfieldset = Collections.unmodifiableSet(new HashSet<>(fieldnames));
     fieldlengthgenerator = CoreWorkload.getFieldLengthGenerator(p);
 
     recordcount =
@@ -407,6 +479,17 @@ public class CoreWorkload extends Workload {
       System.exit(-1);
     }
 
+    if (Boolean.parseBoolean(p.getProperty(VALUE_POOL_PROPERTY, VALUE_POOL_PROPERTY_DEFAULT))) {
+      try {
+        valuepool = new ValuePool(
+            Integer.parseInt(p.getProperty(VALUE_POOL_SIZE_PROPERTY, VALUE_POOL_SIZE_PROPERTY_DEFAULT)),
+            Double.parseDouble(p.getProperty(VALUE_POOL_COMPRESSIBILITY_PROPERTY,
+                VALUE_POOL_COMPRESSIBILITY_PROPERTY_DEFAULT)));
+      } catch (IllegalArgumentException e) {
+        throw new WorkloadException("Invalid value pool settings: " + e.getMessage(), e);
+      }
+    }
+
     if (p.getProperty(INSERT_ORDER_PROPERTY, INSERT_ORDER_PROPERTY_DEFAULT).compareTo("hashed") == 0) {
       orderedinserts = false;
     } else if (requestdistrib.compareTo("exponential") == 0) {
@@ -475,23 +558,65 @@ public class CoreWorkload extends Workload {
         INSERTION_RETRY_INTERVAL, INSERTION_RETRY_INTERVAL_DEFAULT));
   }
 
+  /**
+   * Builds the key of a record: "user", followed by the record number, or its hash, left padded with zeros to
+   * {@link #zeropadding} digits. The key is assembled in a per-thread buffer, so the key string is the only
+   * allocation.
+   */
   protected String buildKeyName(long keynum) {
     if (!orderedinserts) {
       keynum = Utils.hash(keynum);
     }
-    String value = Long.toString(keynum);
-    int fill = zeropadding - value.length();
-    String prekey = "user";
-    for (int i = 0; i < fill; i++) {
-      prekey += '0';
+    if (keynum < 0) {
+      // Only Long.MIN_VALUE survives the hash's Math.abs; keep the historical rendering of the sign
+      StringBuilder key = new StringBuilder(KEY_PREFIX);
+      String value = Long.toString(keynum);
+      for (int i = value.length(); i < zeropadding; i++) {
+        key.append('0');
+      }
+      return key.append(value).toString();
+    }
+    char[] key = buffers.get().key;
+    int digits = 1;
+    for (long rest = keynum / 10; rest != 0; rest /= 10) {
+      digits++;
+    }
+    int length = KEY_PREFIX.length() + Math.max(zeropadding, digits);
+    int pos = length;
+    do {
+      key[--pos] = (char) ('0' + keynum % 10);
+      keynum /= 10;
+    } while (keynum != 0);
+    while (pos > KEY_PREFIX.length()) {
+      key[--pos] = '0';
+    }
+    return new String(key, 0, length);
+  }
+
+  /**
+   * @return The set of the fields a read or scan chooses to read, never modified, or null for all fields.
+   */
+  private Set<String> chooseReadFields() {
+    if (!readallfields) {
+      // read a random field
+      return singlefieldsets.get(fieldchooser.nextValue().intValue());
     }
-    return prekey + value;
+    return null;
+  }
+
+  /**
+   * @return The calling thread's map for read results, emptied.
+   */
+  private HashMap<String, ByteIterator> emptyCells() {
+    HashMap<String, ByteIterator> cells = buffers.get().cells;
+    cells.clear();
+    return cells;
   }
 
   /**
    * Builds a value for a randomly chosen field.
    */
-  private HashMap<String, ByteIterator> buildSingleValue(String key) {
+  protected HashMap<String, ByteIterator> buildSingleValue(String key) {
     HashMap<String, ByteIterator> value = new HashMap<>();
 
     String fieldkey = fieldnames.get(fieldchooser.nextValue().intValue());
@@ -499,8 +624,7 @@ public class CoreWorkload extends Workload {
     if (dataintegrity) {
       data = new StringByteIterator(buildDeterministicValue(key, fieldkey));
     } else {
-      // fill with random data
-      data = new RandomByteIterator(fieldlengthgenerator.nextValue().longValue());
+      data = randomValue();
     }
     value.put(fieldkey, data);
 
@@ -510,7 +634,7 @@ public class CoreWorkload extends Workload {
   /**
    * Builds values for all fields.
    */
-  private HashMap<String, ByteIterator> buildValues(String key) {
+  protected HashMap<String, ByteIterator> buildValues(String key) {
     HashMap<String, ByteIterator> values = new HashMap<>();
 
     for (String fieldkey : fieldnames) {
@@ -518,14 +642,25 @@ public class CoreWorkload extends Workload {
       if (dataintegrity) {
         data = new StringByteIterator(buildDeterministicValue(key, fieldkey));
       } else {
-        // fill with random data
-        data = new RandomByteIterator(fieldlengthgenerator.nextValue().longValue());
+        data = randomValue();
       }
       values.put(fieldkey, data);
     }
     return values;
   }
 
+  /**
+   * Builds a random value for a field.
+   */
+  private ByteIterator randomValue() {
+    long length = fieldlengthgenerator.nextValue().longValue();
+    if (valuepool != null) {
+      return valuepool.next(length);
+    }
+    // fill with random data
+    return new RandomByteIterator(length);
+  }
+
   /**
    * Build a deterministic value given the key information.
    */
@@ -666,20 +801,14 @@ public class CoreWorkload extends Workload {
 
     String keyname = buildKeyName(keynum);
 
-    HashSet<String> fields = null;
+    Set<String> fields = chooseReadFields();
 
-    if (!readallfields) {
-      // read a random field
-      String fieldname = fieldnames.get(fieldchooser.nextValue().intValue());
-
-      fields = new HashSet<String>();
-      fields.add(fieldname);
-    } else if (dataintegrity) {
+    if (fields == null && dataintegrity) {
       // pass the full field list if dataintegrity is on for verification
-      fields = new HashSet<String>(fieldnames);
+      fields = allfieldset;
     }
 
-    HashMap<String, ByteIterator> cells = new HashMap<String, ByteIterator>();
+    HashMap<String, ByteIterator> cells = emptyCells();
     db.read(table, keyname, fields, cells);
 
     if (dataintegrity) {
@@ -693,15 +822,7 @@ public class CoreWorkload extends Workload {
 
     String keyname = buildKeyName(keynum);
 
-    HashSet<String> fields = null;
-
-    if (!readallfields) {
-      // read a random field
-      String fieldname = fieldnames.get(fieldchooser.nextValue().intValue());
-
-      fields = new HashSet<String>();
-      fields.add(fieldname);
-    }
+    Set<String> fields = chooseReadFields();
 
     HashMap<String, ByteIterator> values;
 
@@ -715,8 +836,7 @@ public class CoreWorkload extends Workload {
 
     // do the transaction
 
-    HashMap<String, ByteIterator> cells = new HashMap<String, ByteIterator>();
-
+    HashMap<String, ByteIterator> cells = emptyCells();
 
     long ist = measurements.getIntendedtartTimeNs();
     long st = System.nanoTime();
@@ -743,15 +863,7 @@ public class CoreWorkload extends Workload {
     // choose a random scan length
     int len = scanlength.nextValue().intValue();
 
-    HashSet<String> fields = null;
-
-    if (!readallfields) {
-      // read a random field
-      String fieldname = fieldnames.get(fieldchooser.nextValue().intValue());
-
-      fields = new HashSet<String>();
-      fields.add(fieldname);
-    }
+    Set<String> fields = chooseReadFields();
 
     db.scan(table, startkeyname, len, fields, new Vector<HashMap<String, ByteIterator>>());
   }
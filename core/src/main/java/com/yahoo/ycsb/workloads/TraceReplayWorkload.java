@@ -0,0 +1,234 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.workloads;
+
+import com.yahoo.ycsb.ByteIterator;
+import com.yahoo.ycsb.DB;
+import com.yahoo.ycsb.RandomByteIterator;
+import com.yahoo.ycsb.Workload;
+import com.yahoo.ycsb.WorkloadException;
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.trace.TraceReader;
+import com.yahoo.ycsb.trace.TraceRecord;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a binary trace, as written by {@link com.yahoo.ycsb.trace.TraceConverter} or recorded from a run.
+ * <p>
+ * The trace is memory-mapped and client threads claim its blocks one at a time, so every operation of the trace is
+ * replayed exactly once, and a thread stops when no block is left. The operation count bounds the replay as usual;
+ * use 0 to replay the whole trace. The same trace can be used for the load and the transaction phase.
+ * </p>
+ * <p>
+ * With recorded timing the threads instead claim the operations one at a time, in the order of the trace, so
+ * operations which overlapped in time are issued by different threads, and a slow operation only holds up its own
+ * thread. The thread count bounds how many operations can be outstanding at once; an operation claimed late
+ * because every thread was busy is still measured from its recorded time.
+ * </p>
+ * Properties to control the replay are:
+ * <UL>
+ * <LI><b>tracefile</b>: the binary trace to replay (required)
+ * <LI><b>tracereplay.timing</b>: <i>none</i> to issue operations as fast as the throttling allows, or
+ * <i>recorded</i> to issue each operation at its recorded time since the start of the trace (default: none).
+ * Latencies are then also measured from the recorded time, like with a target throughput. Use enough threads to
+ * cover the operations outstanding at a time in the trace.
+ * <LI><b>tracereplay.speedup</b>: divides the recorded times, to replay a trace faster or slower (default: 1.0)
+ * <LI><b>fieldcount</b>: the number of fields written by operations recorded as writing all fields (default: 10)
+ * </ul>
+ */
+public class TraceReplayWorkload extends Workload {
+  public static final String TRACE_FILE_PROPERTY = "tracefile";
+
+  public static final String TIMING_PROPERTY = "tracereplay.timing";
+  public static final String TIMING_PROPERTY_DEFAULT = "none";
+
+  public static final String SPEEDUP_PROPERTY = "tracereplay.speedup";
+  public static final String SPEEDUP_PROPERTY_DEFAULT = "1.0";
+
+  private static final long NOT_STARTED = Long.MIN_VALUE;
+
+  private TraceReader reader;
+  private boolean recordedTiming;
+  private double speedup;
+  private Set<String> allFields;
+  private final AtomicLong startNanos = new AtomicLong(NOT_STARTED);
+
+  /** Guards {@link #sharedBlock}, the block the threads take their next operation from with recorded timing. */
+  private final Object sharedLock = new Object();
+  private ByteBuffer sharedBlock;
+
+  /**
+   * What a client thread is replaying.
+   */
+  private static final class ReplayState {
+    private final TraceRecord record;
+    private ByteBuffer block;
+
+    private ReplayState(TraceRecord record) {
+      this.record = record;
+    }
+  }
+
+  @Override
+  public void init(Properties p) throws WorkloadException {
+    String tracefile = p.getProperty(TRACE_FILE_PROPERTY);
+    if (tracefile == null) {
+      throw new WorkloadException("Missing property " + TRACE_FILE_PROPERTY);
+    }
+    String timing = p.getProperty(TIMING_PROPERTY, TIMING_PROPERTY_DEFAULT);
+    if (!timing.equals("none") && !timing.equals("recorded")) {
+      throw new WorkloadException("Unknown " + TIMING_PROPERTY + " \"" + timing + "\", use none or recorded");
+    }
+    recordedTiming = timing.equals("recorded");
+    speedup = Double.parseDouble(p.getProperty(SPEEDUP_PROPERTY, SPEEDUP_PROPERTY_DEFAULT));
+    if (speedup <= 0) {
+      throw new WorkloadException(SPEEDUP_PROPERTY + " must be positive");
+    }
+    try {
+      reader = new TraceReader(Paths.get(tracefile));
+    } catch (IOException e) {
+      throw new WorkloadException("Cannot open trace " + tracefile, e);
+    }
+    int fieldcount = Integer.parseInt(p.getProperty(CoreWorkload.FIELD_COUNT_PROPERTY,
+        CoreWorkload.FIELD_COUNT_PROPERTY_DEFAULT));
+    allFields = new HashSet<>();
+    for (int i = 0; i < fieldcount; i++) {
+      allFields.add(reader.getFormat().getFieldPrefix() + i);
+    }
+  }
+
+  @Override
+  public Object initThread(Properties p, int mythreadid, int threadcount) throws WorkloadException {
+    return new ReplayState(new TraceRecord(reader.getFormat()));
+  }
+
+  @Override
+  public void cleanup() throws WorkloadException {
+    try {
+      reader.close();
+    } catch (IOException e) {
+      throw new WorkloadException("Cannot close trace", e);
+    }
+  }
+
+  @Override
+  public boolean doInsert(DB db, Object threadstate) {
+    return doTransaction(db, threadstate);
+  }
+
+  @Override
+  public boolean doTransaction(DB db, Object threadstate) {
+    ReplayState state = (ReplayState) threadstate;
+    TraceRecord record = state.record;
+    if (recordedTiming) {
+      if (!claimShared(record)) {
+        return false;
+      }
+      if (record.getTimestampNanos() >= 0) {
+        waitUntilRecordedTime(record.getTimestampNanos());
+      }
+    } else {
+      while (state.block == null || !state.block.hasRemaining()) {
+        state.block = reader.nextBlock();
+        if (state.block == null) {
+          return false;
+        }
+      }
+      record.decode(state.block);
+    }
+
+    // the maps are fresh for every operation, an open-loop DB hands them to another thread
+    String table = record.getTable();
+    switch (record.getOperation()) {
+    case READ:
+      db.read(table, record.getKey(), record.getFields(), new HashMap<String, ByteIterator>());
+      break;
+    case SCAN:
+      db.scan(table, record.getKey(), record.getRecordCount(), record.getFields(),
+          new Vector<HashMap<String, ByteIterator>>());
+      break;
+    case UPDATE:
+      db.update(table, record.getKey(), values(record));
+      break;
+    case INSERT:
+      db.insert(table, record.getKey(), values(record));
+      break;
+    case DELETE:
+      db.delete(table, record.getKey());
+      break;
+    default:
+      throw new IllegalStateException("Unknown operation " + record.getOperation());
+    }
+    return true;
+  }
+
+  /**
+   * Take the next operation of the trace, whichever thread took the one before.
+   *
+   * @return False if the trace is over.
+   */
+  private boolean claimShared(TraceRecord record) {
+    synchronized (sharedLock) {
+      while (sharedBlock == null || !sharedBlock.hasRemaining()) {
+        sharedBlock = reader.nextBlock();
+        if (sharedBlock == null) {
+          return false;
+        }
+      }
+      record.decode(sharedBlock);
+      return true;
+    }
+  }
+
+  private Map<String, ByteIterator> values(TraceRecord record) {
+    Set<String> fields = record.getFields() == null ? allFields : record.getFields();
+    Map<String, ByteIterator> values = new HashMap<>();
+    for (String field : fields) {
+      values.put(field, new RandomByteIterator(record.getValueSize()));
+    }
+    return values;
+  }
+
+  /**
+   * Wait until the time of a record, relative to the first operation replayed by any thread.
+   */
+  private void waitUntilRecordedTime(long timestampNanos) {
+    long start = startNanos.get();
+    if (start == NOT_STARTED) {
+      startNanos.compareAndSet(NOT_STARTED, System.nanoTime());
+      start = startNanos.get();
+    }
+    long deadline = start + (long) (timestampNanos / speedup);
+    long now;
+    while ((now = System.nanoTime()) < deadline) {
+      LockSupport.parkNanos(deadline - now);
+    }
+    Measurements.getMeasurements().setIntendedStartTimeNs(deadline);
+  }
+}
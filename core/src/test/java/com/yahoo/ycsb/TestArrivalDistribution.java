@@ -0,0 +1,165 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Properties;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+public class TestArrivalDistribution {
+
+  private static final int SAMPLES = 200000;
+
+  @Test
+  public void poissonInterArrivalsAreExponential() {
+    double sum = 0;
+    double squares = 0;
+    for (int i = 0; i < SAMPLES; i++) {
+      double x = ArrivalDistribution.POISSON.next();
+      sum += x;
+      squares += x * x;
+    }
+    double mean = sum / SAMPLES;
+    // an exponential distribution has a standard deviation equal to its mean
+    assertEquals(mean, 1, 0.02);
+    assertEquals(Math.sqrt(squares / SAMPLES - mean * mean), 1, 0.03);
+  }
+
+  @Test
+  public void histogramIsSampledByCount() throws Exception {
+    File file = File.createTempFile("arrivals", ".txt");
+    file.deleteOnExit();
+    Files.write(file.toPath(), Arrays.asList("# micros count", "100 3", "", "200 0", "300"),
+        StandardCharsets.UTF_8);
+    ArrivalDistribution.Histogram histogram = ArrivalDistribution.Histogram.fromFile(file.getPath());
+    assertEquals(histogram.getMeanMicros(), 150.0);
+
+    int slow = 0;
+    for (int i = 0; i < SAMPLES; i++) {
+      double x = histogram.next();
+      if (x == 2.0) {
+        slow++;
+      } else {
+        assertEquals(x, 100 / 150.0, 1e-12);
+      }
+    }
+    assertEquals(slow / (double) SAMPLES, 0.25, 0.01);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void histogramNeedsAPositiveMean() {
+    new ArrivalDistribution.Histogram(new double[] {0}, new double[] {10});
+  }
+
+  @Test
+  public void hdrLogIntervalsAreAddedUp() throws Exception {
+    try {
+      Class.forName("javax.xml.bind.DatatypeConverter");
+    } catch (ClassNotFoundException e) {
+      throw new SkipException("HdrHistogram logs need javax.xml.bind, which this JDK does not have");
+    }
+    File file = File.createTempFile("latencies", ".hdr");
+    file.deleteOnExit();
+    try (PrintStream out = new PrintStream(file)) {
+      HistogramLogWriter writer = new HistogramLogWriter(out);
+      Histogram interval = new Histogram(3);
+      interval.recordValueWithCount(100, 3);
+      writer.outputIntervalHistogram(interval);
+      interval.reset();
+      interval.recordValue(1000);
+      writer.outputIntervalHistogram(interval);
+    }
+    ArrivalDistribution.Histogram histogram = ArrivalDistribution.Histogram.fromHdrLog(file.getPath());
+    assertEquals(histogram.getMeanMicros(), 325, 1);
+
+    int slow = 0;
+    for (int i = 0; i < SAMPLES; i++) {
+      if (histogram.next() * histogram.getMeanMicros() > 500) {
+        slow++;
+      }
+    }
+    assertEquals(slow / (double) SAMPLES, 0.25, 0.01);
+  }
+
+  @Test
+  public void percentilesAreInterpolated() {
+    ArrivalDistribution.Percentiles percentiles = new ArrivalDistribution.Percentiles("50:100, 90:500,100:500");
+    // half at 100, then evenly spread up to 500 for 40%, then 500 for 10%
+    assertEquals(percentiles.getMeanMicros(), 0.5 * 100 + 0.4 * 300 + 0.1 * 500, 1e-9);
+
+    int atMedian = 0;
+    int belowThree = 0;
+    for (int i = 0; i < SAMPLES; i++) {
+      double micros = percentiles.next() * percentiles.getMeanMicros();
+      assertEquals(micros >= 100 - 1e-9 && micros <= 500 + 1e-9, true);
+      if (Math.abs(micros - 100) < 1e-9) {
+        atMedian++;
+      } else if (micros < 300) {
+        belowThree++;
+      }
+    }
+    assertEquals(atMedian / (double) SAMPLES, 0.5, 0.01);
+    assertEquals(belowThree / (double) SAMPLES, 0.2, 0.01);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void percentilesMustIncrease() {
+    new ArrivalDistribution.Percentiles("99:1000,50:100");
+  }
+
+  @Test
+  public void perThreadArrivalsNeedNoController() throws Exception {
+    Properties props = new Properties();
+    props.setProperty(Client.TARGET_PROPERTY, "1000");
+    assertNull(RateController.fromProperties(props));
+  }
+
+  @Test
+  public void poissonArrivalsFollowTheTarget() throws Exception {
+    Properties props = new Properties();
+    props.setProperty(Client.TARGET_PROPERTY, "1000");
+    props.setProperty(RateController.ARRIVAL_PROPERTY, "poisson");
+    RateController controller = RateController.fromProperties(props);
+    long first = controller.nextStartNanos();
+    long last = first;
+    for (int i = 1; i < SAMPLES; i++) {
+      long start = controller.nextStartNanos();
+      assertEquals(start >= last, true);
+      last = start;
+    }
+    assertEquals((last - first) / 1e9, SAMPLES / 1000.0, SAMPLES / 1000.0 * 0.02);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void arrivalsNeedARate() throws Exception {
+    Properties props = new Properties();
+    props.setProperty(RateController.ARRIVAL_PROPERTY, "constant");
+    RateController.fromProperties(props);
+  }
+}
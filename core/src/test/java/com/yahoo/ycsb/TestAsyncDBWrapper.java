@@ -0,0 +1,126 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import org.apache.htrace.core.Tracer;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestAsyncDBWrapper {
+
+  private static final Tracer TRACER = new Tracer.Builder("TestAsyncDBWrapper").build();
+
+  /** Completes nothing until told to. */
+  public static class PendingDB extends AsyncDB {
+    static final ConcurrentLinkedQueue<CompletableFuture<Status>> PENDING = new ConcurrentLinkedQueue<>();
+
+    private CompletionStage<Status> pending() {
+      CompletableFuture<Status> future = new CompletableFuture<>();
+      PENDING.add(future);
+      return future;
+    }
+
+    @Override
+    public CompletionStage<Status> readAsync(String table, String key, Set<String> fields,
+                                             Map<String, ByteIterator> result) {
+      return pending();
+    }
+
+    @Override
+    public CompletionStage<Status> scanAsync(String table, String startkey, int recordcount, Set<String> fields,
+                                             Vector<HashMap<String, ByteIterator>> result) {
+      return pending();
+    }
+
+    @Override
+    public CompletionStage<Status> updateAsync(String table, String key, Map<String, ByteIterator> values) {
+      return pending();
+    }
+
+    @Override
+    public CompletionStage<Status> insertAsync(String table, String key, Map<String, ByteIterator> values) {
+      return pending();
+    }
+
+    @Override
+    public CompletionStage<Status> deleteAsync(String table, String key) {
+      return pending();
+    }
+  }
+
+  @BeforeClass
+  public static void setUp() {
+    Measurements.setProperties(new Properties());
+  }
+
+  @Test
+  public void factoryWrapsAsyncBindings() throws Exception {
+    DB db = DBFactory.newDB(PendingDB.class.getName(), new Properties(), TRACER);
+    assertTrue(db instanceof AsyncDBWrapper);
+  }
+
+  @Test
+  public void latencyIsRecordedOnCompletion() throws Exception {
+    AsyncDBWrapper db = (AsyncDBWrapper) DBFactory.newDB(PendingDB.class.getName(), new Properties(), TRACER);
+    db.init();
+    Measurements measurements = Measurements.getMeasurements();
+    measurements.getSummary();
+
+    PendingDB.PENDING.clear();
+    CompletionStage<Status> stage = db.deleteAsync("usertable", "user1");
+    assertFalse(measurements.getSummary().contains("[DELETE: Count=1"));
+
+    PendingDB.PENDING.poll().complete(Status.OK);
+    assertEquals(stage.toCompletableFuture().get(), Status.OK);
+    assertTrue(measurements.getSummary().contains("[DELETE: Count=1"));
+  }
+
+  @Test
+  public void openLoopReleasesWindowOnCompletion() throws Exception {
+    Properties props = new Properties();
+    props.setProperty(OpenLoopDB.MAX_IN_FLIGHT_PROPERTY, "1");
+    DB db = new OpenLoopDB(DBFactory.newDB(PendingDB.class.getName(), props, TRACER),
+        PendingDB.class.getName(), TRACER);
+    db.init();
+
+    PendingDB.PENDING.clear();
+    assertEquals(db.read("usertable", "user1", null, new HashMap<String, ByteIterator>()), Status.BATCHED_OK);
+    assertEquals(PendingDB.PENDING.size(), 1);
+
+    // The window holds a single operation, so the next one can only be issued once this one completes.
+    PendingDB.PENDING.poll().complete(Status.OK);
+    assertEquals(db.read("usertable", "user2", null, new HashMap<String, ByteIterator>()), Status.BATCHED_OK);
+
+    PendingDB.PENDING.poll().complete(Status.NOT_FOUND);
+    db.cleanup();
+  }
+}
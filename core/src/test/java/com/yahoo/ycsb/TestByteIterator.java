@@ -18,6 +18,8 @@
 package com.yahoo.ycsb;
 
 import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
 import static org.testng.AssertJUnit.*;
 
 public class TestByteIterator {
@@ -36,4 +38,77 @@ public class TestByteIterator {
     assertFalse(itor.hasNext());
     assertEquals(0, itor.bytesLeft());
   }
+
+  @Test
+  public void testByteArrayByteIteratorSlice() {
+    byte[] bytes = "0123456789".getBytes();
+    ByteIterator itor = new ByteArrayByteIterator(bytes, 2, 5);
+    assertEquals(5, itor.bytesLeft());
+    byte[] buf = new byte[4];
+    assertEquals(4, itor.nextBuf(buf, 1));
+    assertEquals("234", new String(buf, 1, 3));
+    assertEquals("56", itor.toString());
+    assertFalse(itor.hasNext());
+  }
+
+  @Test
+  public void testValuePool() {
+    ValuePool pool = new ValuePool(1000, 0);
+    ByteIterator itor = pool.next(100);
+    assertEquals(100, itor.bytesLeft());
+    assertEquals(100, itor.toArray().length);
+    assertEquals(5000, pool.next(5000).toArray().length);
+
+    byte[] compressible = new ValuePool(6400, 0.5).next(6400).toArray();
+    int repeats = 0;
+    for (int i = 1; i < compressible.length; i++) {
+      if (compressible[i] == compressible[i - 1]) {
+        repeats++;
+      }
+    }
+    assertTrue(repeats >= 100 * 31);
+  }
+
+  @Test
+  public void testBulkTransferIntoByteBuffers() {
+    ByteIterator[] itors = {new StringByteIterator("0123456789"),
+        new ByteArrayByteIterator("xx0123456789".getBytes(), 2, 10)};
+    for (ByteIterator itor : itors) {
+      assertEquals(10, itor.bytesLeft());
+      ByteBuffer heap = ByteBuffer.allocate(8);
+      heap.position(1).limit(5);
+      assertEquals(4, itor.nextBuf(heap));
+      assertEquals(5, heap.position());
+      assertEquals("0123", new String(heap.array(), 1, 4));
+      ByteBuffer direct = ByteBuffer.allocateDirect(16);
+      assertEquals(6, itor.nextBuf(direct));
+      assertEquals(6, direct.position());
+      assertEquals((byte) '9', direct.get(5));
+      assertFalse(itor.hasNext());
+    }
+
+    ByteIterator random = new RandomByteIterator(20);
+    ByteBuffer heap = ByteBuffer.allocate(30);
+    heap.position(3).limit(10);
+    assertEquals(7, random.nextBuf(heap));
+    assertEquals(10, heap.position());
+    assertEquals(13, random.nextBuf(ByteBuffer.allocateDirect(30)));
+    assertEquals(0, random.bytesLeft());
+  }
+
+  @Test
+  public void testToByteBuffer() {
+    byte[] bytes = "0123456789".getBytes();
+    ByteIterator itor = new ByteArrayByteIterator(bytes, 3, 4);
+    ByteBuffer view = itor.toByteBuffer();
+    assertTrue(view.isReadOnly());
+    assertEquals(4, view.remaining());
+    assertEquals((byte) '3', view.get(0));
+    assertEquals(0, itor.bytesLeft());
+
+    ByteBuffer copy = new StringByteIterator("abc").toByteBuffer();
+    assertEquals(3, copy.remaining());
+    assertEquals((byte) 'a', copy.get());
+    assertEquals(8, new RandomByteIterator(8).toByteBuffer().remaining());
+  }
 }
@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb;
+
+import com.yahoo.ycsb.measurements.CacheStatistics;
+import com.yahoo.ycsb.measurements.Measurements;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestCachingDB {
+
+  private static final String TABLE = "usertable";
+
+  private DB db;
+  private CacheStatistics statistics;
+
+  private void open(String write, String size) throws DBException {
+    Measurements.setProperties(new Properties());
+    statistics = Measurements.getMeasurements().getCacheStatistics();
+    statistics.reset();
+    InMemoryDB.clear();
+    Properties props = new Properties();
+    props.setProperty(CachingDB.SIZE_PROPERTY, size);
+    props.setProperty(CachingDB.WRITE_PROPERTY, write);
+    props.setProperty(CachingDB.SHARDS_PROPERTY, "1");
+    db = new CachingDB(new InMemoryDB());
+    db.setProperties(props);
+    db.init();
+  }
+
+  @AfterMethod
+  public void tearDown() throws DBException {
+    if (db != null) {
+      db.cleanup();
+      db = null;
+    }
+  }
+
+  private static Map<String, ByteIterator> values(String... fieldsAndValues) {
+    Map<String, ByteIterator> values = new HashMap<>();
+    for (int i = 0; i < fieldsAndValues.length; i += 2) {
+      values.put(fieldsAndValues[i], new StringByteIterator(fieldsAndValues[i + 1]));
+    }
+    return values;
+  }
+
+  private Map<String, String> read(String key, String... fields) {
+    Map<String, ByteIterator> result = new HashMap<>();
+    Set<String> fieldSet = fields.length == 0 ? null : new HashSet<>(Arrays.asList(fields));
+    assertEquals(db.read(TABLE, key, fieldSet, result), Status.OK);
+    return StringByteIterator.getStringMap(result);
+  }
+
+  @Test
+  public void secondReadHits() throws DBException {
+    open("invalidate", "100000");
+    db.insert(TABLE, "user1", values("field0", "a", "field1", "b"));
+    assertEquals(read("user1", "field1"), Collections.singletonMap("field1", "b"));
+    assertEquals(read("user1").size(), 2);
+    assertEquals(read("user1", "field0"), Collections.singletonMap("field0", "a"));
+    assertEquals(statistics.getMisses(), 1);
+    assertEquals(statistics.getHits(), 2);
+    assertEquals(db.read(TABLE, "user2", null, new HashMap<String, ByteIterator>()), Status.NOT_FOUND);
+    assertEquals(statistics.getMisses(), 2);
+  }
+
+  @Test
+  public void writeThroughUpdatesTheCachedRecord() throws DBException {
+    open("through", "100000");
+    db.insert(TABLE, "user1", values("field0", "a", "field1", "b"));
+    db.update(TABLE, "user1", values("field1", "c"));
+    Map<String, String> record = read("user1");
+    assertEquals(record.get("field0"), "a");
+    assertEquals(record.get("field1"), "c");
+    assertEquals(statistics.getHits(), 1);
+    assertEquals(statistics.getMisses(), 0);
+  }
+
+  @Test
+  public void writeInvalidateDropsTheCachedRecord() throws DBException {
+    open("invalidate", "100000");
+    db.insert(TABLE, "user1", values("field0", "a"));
+    read("user1");
+    db.update(TABLE, "user1", values("field0", "c"));
+    assertEquals(read("user1").get("field0"), "c");
+    assertEquals(statistics.getMisses(), 2);
+    db.delete(TABLE, "user1");
+    assertEquals(db.read(TABLE, "user1", null, new HashMap<String, ByteIterator>()), Status.NOT_FOUND);
+  }
+
+  @Test
+  public void evictionsAndRejectionsAreCounted() throws DBException {
+    open("through", "1000");
+    for (int i = 0; i < 100; i++) {
+      db.insert(TABLE, "user" + i, values("field0", "0123456789"));
+    }
+    // the inserted records are all equally popular, so W-TinyLFU turns most of them down
+    assertTrue(statistics.getRejections() > 0);
+    assertTrue(statistics.getEvictions() + statistics.getRejections() > 50);
+    for (int i = 0; i < 100; i++) {
+      assertEquals(read("user" + i).get("field0"), "0123456789");
+    }
+  }
+
+  @Test(expectedExceptions = DBException.class)
+  public void unknownPoliciesAreRefused() throws DBException {
+    Properties props = new Properties();
+    props.setProperty(CachingDB.SIZE_PROPERTY, "1000");
+    props.setProperty(CachingDB.POLICY_PROPERTY, "fifo");
+    DB caching = new CachingDB(new InMemoryDB());
+    caching.setProperties(props);
+    caching.init();
+  }
+}
@@ -0,0 +1,180 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.net.ServerSocket;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestCoordinator {
+
+  /** Keeps the last value written for each (metric, measurement). */
+  private static class MapExporter implements MeasurementsExporter {
+    private final Map<String, Number> values = new HashMap<>();
+
+    @Override
+    public void write(String metric, String measurement, int i) {
+      values.put(metric + "/" + measurement, i);
+    }
+
+    @Override
+    public void write(String metric, String measurement, long i) {
+      values.put(metric + "/" + measurement, i);
+    }
+
+    @Override
+    public void write(String metric, String measurement, double d) {
+      values.put(metric + "/" + measurement, d);
+    }
+
+    @Override
+    public void close() {
+    }
+
+    double get(String key) {
+      return values.get(key).doubleValue();
+    }
+  }
+
+  @DataProvider(name = "phases")
+  public Object[][] phases() {
+    return new Object[][] {{"false"}, {"true"}};
+  }
+
+  @Test(dataProvider = "phases")
+  public void keysAreSplitIntoContiguousSlices(String doTransactions) {
+    Properties props = new Properties();
+    props.setProperty(Coordinator.WORKERS_PROPERTY, "3");
+    props.setProperty(Client.DO_TRANSACTIONS_PROPERTY, doTransactions);
+    props.setProperty(Client.RECORD_COUNT_PROPERTY, "1000");
+    props.setProperty(Workload.INSERT_START_PROPERTY, "100");
+    props.setProperty(Client.TARGET_PROPERTY, "1000");
+
+    long next = 100;
+    long target = 0;
+    for (int i = 0; i < 3; i++) {
+      Properties worker = Coordinator.workerProperties(props, i, 3);
+      assertEquals(worker.getProperty(Workload.INSERT_START_PROPERTY), String.valueOf(next));
+      next += Long.parseLong(worker.getProperty(Client.INSERT_COUNT_PROPERTY));
+      target += Long.parseLong(worker.getProperty(Client.TARGET_PROPERTY));
+      assertEquals(worker.getProperty(Measurements.MEASUREMENT_TYPE_PROPERTY), "hdrhistogram");
+      assertTrue(!worker.containsKey(Coordinator.WORKERS_PROPERTY));
+    }
+    assertEquals(next, 1000);
+    assertEquals(target, 1000);
+  }
+
+  @Test
+  public void operationsAreSplitOverWorkers() {
+    Properties props = new Properties();
+    props.setProperty(Client.OPERATION_COUNT_PROPERTY, "10");
+    long operations = 0;
+    for (int i = 0; i < 4; i++) {
+      long share = Long.parseLong(Coordinator.workerProperties(props, i, 4).getProperty(
+          Client.OPERATION_COUNT_PROPERTY));
+      assertTrue(share == 2 || share == 3);
+      operations += share;
+    }
+    assertEquals(operations, 10);
+  }
+
+  @Test
+  public void noThroughputWithoutARuntime() throws Exception {
+    Coordinator.Results results = new Coordinator.Results(new Properties());
+    results.addFailedWorker();
+    results.addWorker(0, 0);
+    MapExporter exporter = new MapExporter();
+    results.export(exporter);
+    assertEquals(exporter.get("OVERALL/RunTime(ms)"), 0.0);
+    assertFalse(exporter.values.containsKey("OVERALL/Throughput(ops/sec)"));
+  }
+
+  @Test(timeOut = 60000)
+  public void histogramsOfWorkersAreMerged() throws Exception {
+    final Properties props = new Properties();
+    props.setProperty(Coordinator.WORKERS_PROPERTY, "2");
+    props.setProperty(Coordinator.INTERVAL_PROPERTY, "1");
+    props.setProperty(Client.OPERATION_COUNT_PROPERTY, "2000");
+    ExecutorService executor = Executors.newCachedThreadPool();
+    try (final ServerSocket server = new ServerSocket(0)) {
+      Future<Coordinator.Results> coordinator = executor.submit(new Callable<Coordinator.Results>() {
+        @Override
+        public Coordinator.Results call() throws Exception {
+          return Coordinator.coordinate(props, server);
+        }
+      });
+
+      Future<?>[] workers = new Future<?>[2];
+      for (int w = 0; w < 2; w++) {
+        final int first = w * 1000 + 1;
+        final long runtime = (w + 1) * 100;
+        workers[w] = executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            Properties local = new Properties();
+            local.setProperty(Coordinator.ADDRESS_PROPERTY, "localhost:" + server.getLocalPort());
+            CoordinatedWorker worker = CoordinatedWorker.connect(local);
+            assertEquals(local.getProperty(Client.OPERATION_COUNT_PROPERTY), "1000");
+            Measurements measurements = new Measurements(local);
+            worker.awaitStart(measurements, null);
+            int handle = measurements.getOperationHandle("READ");
+            for (int i = first; i < first + 1000; i++) {
+              measurements.measure(handle, i);
+              measurements.reportStatus(handle, Status.OK);
+            }
+            worker.finish(1000, runtime);
+            return null;
+          }
+        });
+      }
+      for (Future<?> worker : workers) {
+        worker.get();
+      }
+
+      Coordinator.Results results = coordinator.get();
+      assertEquals(results.getFailedWorkers(), 0);
+      MapExporter exporter = new MapExporter();
+      results.export(exporter);
+      assertEquals(exporter.get("OVERALL/RunTime(ms)"), 200.0);
+      assertEquals(exporter.get("OVERALL/Throughput(ops/sec)"), 10000.0);
+      assertEquals(exporter.get("READ/Operations"), 2000.0);
+      assertEquals(exporter.get("READ/Return=OK"), 2000.0);
+      assertEquals(exporter.get("READ/MinLatency(us)"), 1.0);
+      assertEquals(exporter.get("READ/MaxLatency(us)"), 2000, 2);
+      assertEquals(exporter.get("READ/AverageLatency(us)"), 1000.5, 1);
+    } finally {
+      executor.shutdownNow();
+      executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+  }
+}
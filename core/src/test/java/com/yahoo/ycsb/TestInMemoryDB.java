@@ -0,0 +1,186 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Vector;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestInMemoryDB {
+
+  private static final String TABLE = "usertable";
+
+  private InMemoryDB db;
+
+  @BeforeMethod
+  public void setUp() throws DBException {
+    InMemoryDB.clear();
+    db = newDB(new Properties());
+  }
+
+  private static InMemoryDB newDB(Properties props) throws DBException {
+    InMemoryDB db = new InMemoryDB();
+    db.setProperties(props);
+    db.init();
+    return db;
+  }
+
+  private static Map<String, ByteIterator> values(String... fieldsAndValues) {
+    Map<String, ByteIterator> values = new HashMap<>();
+    for (int i = 0; i < fieldsAndValues.length; i += 2) {
+      values.put(fieldsAndValues[i], new StringByteIterator(fieldsAndValues[i + 1]));
+    }
+    return values;
+  }
+
+  private static Map<String, String> strings(Map<String, ByteIterator> values) {
+    Map<String, String> strings = new HashMap<>();
+    for (Map.Entry<String, ByteIterator> entry : values.entrySet()) {
+      strings.put(entry.getKey(), entry.getValue().toString());
+    }
+    return strings;
+  }
+
+  private Map<String, String> read(String key) {
+    Map<String, ByteIterator> result = new HashMap<>();
+    assertEquals(db.read(TABLE, key, null, result), Status.OK);
+    return strings(result);
+  }
+
+  @Test
+  public void readsWhatWasWritten() {
+    assertEquals(db.insert(TABLE, "user1", values("field0", "a", "field1", "bb")), Status.OK);
+    assertEquals(read("user1"), strings(values("field0", "a", "field1", "bb")));
+
+    Map<String, ByteIterator> result = new HashMap<>();
+    assertEquals(db.read(TABLE, "user1", Collections.singleton("field1"), result), Status.OK);
+    assertEquals(strings(result), strings(values("field1", "bb")));
+
+    assertEquals(db.read(TABLE, "user2", null, new HashMap<String, ByteIterator>()), Status.NOT_FOUND);
+    assertEquals(db.read("othertable", "user1", null, new HashMap<String, ByteIterator>()), Status.NOT_FOUND);
+  }
+
+  @Test
+  public void updateKeepsTheOtherFields() {
+    db.insert(TABLE, "user1", values("field0", "a", "field1", "b", "field2", "c"));
+    assertEquals(db.update(TABLE, "user1", values("field1", "longer value", "field3", "")), Status.OK);
+    assertEquals(read("user1"), strings(values("field0", "a", "field1", "longer value", "field2", "c",
+        "field3", "")));
+    assertEquals(db.update(TABLE, "user2", values("field1", "x")), Status.NOT_FOUND);
+  }
+
+  @Test
+  public void deleteRemovesTheRecord() {
+    db.insert(TABLE, "user1", values("field0", "a"));
+    assertEquals(db.delete(TABLE, "user1"), Status.OK);
+    assertEquals(db.delete(TABLE, "user1"), Status.NOT_FOUND);
+    assertEquals(db.read(TABLE, "user1", null, new HashMap<String, ByteIterator>()), Status.NOT_FOUND);
+  }
+
+  @Test
+  public void scanGoesOverTheKeysInOrder() {
+    for (int i = 9; i >= 0; i--) {
+      db.insert(TABLE, "user" + i, values("field0", "v" + i, "field1", "w" + i));
+    }
+    Vector<HashMap<String, ByteIterator>> result = new Vector<>();
+    assertEquals(db.scan(TABLE, "user35", 4, Collections.singleton("field0"), result), Status.OK);
+    assertEquals(result.size(), 4);
+    for (int i = 0; i < 4; i++) {
+      assertEquals(strings(result.get(i)), strings(values("field0", "v" + (i + 4))));
+    }
+
+    result.clear();
+    assertEquals(db.scan(TABLE, "user8", 10, null, result), Status.OK);
+    assertEquals(result.size(), 2);
+    assertEquals(strings(result.get(1)), strings(values("field0", "v9", "field1", "w9")));
+  }
+
+  @Test
+  public void concurrentUpdatesOfOtherFieldsAreAllKept() throws Exception {
+    db.insert(TABLE, "user1", values());
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      final String field = "field" + t;
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          for (int i = 0; i < 1000; i++) {
+            db.update(TABLE, "user1", values(field, Integer.toString(i)));
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(read("user1"), strings(values("field0", "999", "field1", "999", "field2", "999",
+        "field3", "999")));
+  }
+
+  @Test
+  public void operationsTakeTheConfiguredLatency() throws DBException {
+    Properties props = new Properties();
+    props.setProperty(InMemoryDB.LATENCY_PROPERTY, "2000");
+    InMemoryDB slow = newDB(props);
+    long start = System.nanoTime();
+    for (int i = 0; i < 5; i++) {
+      slow.insert(TABLE, "user" + i, values("field0", "a"));
+    }
+    assertTrue(System.nanoTime() - start >= 10000000L);
+  }
+
+  @Test
+  public void tablesAreKeptInTheFileBetweenRuns() throws Exception {
+    File file = File.createTempFile("inmemorydb", ".bin");
+    file.delete();
+    file.deleteOnExit();
+    Properties props = new Properties();
+    props.setProperty(InMemoryDB.FILE_PROPERTY, file.getPath());
+
+    InMemoryDB.clear();
+    InMemoryDB first = newDB(props);
+    InMemoryDB second = newDB(props);
+    first.insert(TABLE, "user1", values("field0", "a", "field1", "b"));
+    second.insert("othertable", "user2", values());
+    first.cleanup();
+    assertTrue(!file.exists());
+    second.cleanup();
+    assertTrue(file.exists());
+
+    InMemoryDB.clear();
+    db = newDB(props);
+    assertEquals(read("user1"), strings(values("field0", "a", "field1", "b")));
+    assertEquals(db.read("othertable", "user2", null, new HashMap<String, ByteIterator>()), Status.OK);
+  }
+
+  @Test(expectedExceptions = DBException.class)
+  public void rejectsAnUnknownDistribution() throws DBException {
+    Properties props = new Properties();
+    props.setProperty(InMemoryDB.LATENCY_DISTRIBUTION_PROPERTY, "lognormal");
+    newDB(props);
+  }
+}
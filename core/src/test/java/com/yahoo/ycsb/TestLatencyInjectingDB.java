@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb;
+
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestLatencyInjectingDB {
+
+  private static final String TABLE = "usertable";
+
+  private static DB newDB(Properties props) throws DBException {
+    InMemoryDB.clear();
+    DB db = new LatencyInjectingDB(new InMemoryDB());
+    db.setProperties(props);
+    db.init();
+    return db;
+  }
+
+  @Test
+  public void errorsAreInjectedPerOperation() throws DBException {
+    Properties props = new Properties();
+    props.setProperty(LatencyInjectingDB.ERROR_RATE_PROPERTY, "1");
+    props.setProperty(LatencyInjectingDB.ERROR_RATE_PROPERTY + ".insert", "0");
+    DB db = newDB(props);
+    Map<String, ByteIterator> values = new HashMap<>();
+    values.put("field0", new StringByteIterator("value"));
+
+    for (int i = 0; i < 100; i++) {
+      assertEquals(db.insert(TABLE, "user" + i, values), Status.OK);
+      assertEquals(db.read(TABLE, "user" + i, null, new HashMap<String, ByteIterator>()), Status.ERROR);
+      assertEquals(db.update(TABLE, "user" + i, values), Status.ERROR);
+    }
+  }
+
+  @Test
+  public void someErrorsAreInjected() throws DBException {
+    Properties props = new Properties();
+    props.setProperty(LatencyInjectingDB.ERROR_RATE_PROPERTY + ".delete", "0.25");
+    DB db = newDB(props);
+    int errors = 0;
+    for (int i = 0; i < 10000; i++) {
+      if (db.delete(TABLE, "user" + i) == Status.ERROR) {
+        errors++;
+      }
+    }
+    assertEquals(errors / 10000.0, 0.25, 0.03);
+  }
+
+  @Test
+  public void operationsAreDelayed() throws DBException {
+    Properties props = new Properties();
+    props.setProperty(LatencyInjectingDB.LATENCY_DISTRIBUTION_PROPERTY, "percentiles");
+    props.setProperty(LatencyInjectingDB.LATENCY_PERCENTILES_PROPERTY, "50:2000,100:4000");
+    DB db = newDB(props);
+    long start = System.nanoTime();
+    for (int i = 0; i < 50; i++) {
+      assertEquals(db.read(TABLE, "user" + i, null, new HashMap<String, ByteIterator>()), Status.NOT_FOUND);
+    }
+    // at least 2ms each, 2.5ms on average
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+  }
+
+  @Test
+  public void pausesHoldOperationsUntilTheyEnd() {
+    LatencyInjectingDB.Pauses pauses = new LatencyInjectingDB.Pauses(1000, 100, 0);
+    int paused = 0;
+    long time = 0;
+    for (int i = 0; i < 1000000; i++) {
+      time += 7;
+      long release = pauses.release(time);
+      assertTrue(release >= time && release - time <= 100);
+      if (release > time) {
+        paused++;
+      }
+    }
+    // 100ns of pause every 1100ns on average
+    assertEquals(paused / 1000000.0, 100 / 1100.0, 0.01);
+  }
+
+  @Test
+  public void factoryWrapsTheDBWhenAsked() {
+    Properties props = new Properties();
+    assertTrue(!LatencyInjectingDB.isEnabled(props));
+    props.setProperty(LatencyInjectingDB.PAUSE_INTERVAL_PROPERTY, "1000");
+    assertTrue(LatencyInjectingDB.isEnabled(props));
+  }
+
+  @Test(expectedExceptions = DBException.class)
+  public void errorRatesMustBeShares() throws DBException {
+    Properties props = new Properties();
+    props.setProperty(LatencyInjectingDB.ERROR_RATE_PROPERTY, "1.5");
+    newDB(props);
+  }
+}
@@ -0,0 +1,207 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import org.apache.htrace.core.Tracer;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestOpenLoopDB {
+
+  private static final Tracer TRACER = new Tracer.Builder("TestOpenLoopDB").build();
+
+  /** Holds every read until told to let it complete. */
+  public static class BlockingDB extends DB {
+    static final Semaphore STARTED = new Semaphore(0);
+    static final Semaphore REFUSED = new Semaphore(0);
+    static final Semaphore RELEASE = new Semaphore(0);
+    static final AtomicInteger INSTANCES = new AtomicInteger();
+    static final AtomicInteger CLEANUPS = new AtomicInteger();
+    static final AtomicInteger IN_FLIGHT = new AtomicInteger();
+    static final AtomicInteger MAX_IN_FLIGHT = new AtomicInteger();
+    static final ConcurrentLinkedQueue<Long> INTENDED_STARTS = new ConcurrentLinkedQueue<>();
+    static volatile boolean failNewInstances;
+    static volatile Measurements measurements;
+
+    @Override
+    public void init() throws DBException {
+      if (INSTANCES.incrementAndGet() > 1 && failNewInstances) {
+        REFUSED.release();
+        throw new DBException("No more connections.");
+      }
+    }
+
+    @Override
+    public void cleanup() {
+      CLEANUPS.incrementAndGet();
+    }
+
+    @Override
+    public Status read(String table, String key, Set<String> fields, Map<String, ByteIterator> result) {
+      int inFlight = IN_FLIGHT.incrementAndGet();
+      MAX_IN_FLIGHT.accumulateAndGet(inFlight, Math::max);
+      INTENDED_STARTS.add(measurements.getIntendedtartTimeNs());
+      STARTED.release();
+      RELEASE.acquireUninterruptibly();
+      IN_FLIGHT.decrementAndGet();
+      return Status.OK;
+    }
+
+    @Override
+    public Status scan(String table, String startkey, int recordcount, Set<String> fields,
+                       Vector<HashMap<String, ByteIterator>> result) {
+      return Status.OK;
+    }
+
+    @Override
+    public Status update(String table, String key, Map<String, ByteIterator> values) {
+      return Status.OK;
+    }
+
+    @Override
+    public Status insert(String table, String key, Map<String, ByteIterator> values) {
+      return Status.OK;
+    }
+
+    @Override
+    public Status delete(String table, String key) {
+      return Status.OK;
+    }
+  }
+
+  @BeforeMethod
+  public void setUp() {
+    // DBFactory wraps the instances it creates with the process wide measurements
+    Measurements.setProperties(new Properties());
+    BlockingDB.STARTED.drainPermits();
+    BlockingDB.REFUSED.drainPermits();
+    BlockingDB.RELEASE.drainPermits();
+    BlockingDB.INSTANCES.set(0);
+    BlockingDB.CLEANUPS.set(0);
+    BlockingDB.MAX_IN_FLIGHT.set(0);
+    BlockingDB.INTENDED_STARTS.clear();
+    BlockingDB.failNewInstances = false;
+  }
+
+  private static OpenLoopDB openLoop(Properties props, Measurements measurements) throws Exception {
+    BlockingDB.measurements = measurements;
+    OpenLoopDB db = new OpenLoopDB(DBFactory.newDB(BlockingDB.class.getName(), props, TRACER),
+        BlockingDB.class.getName(), TRACER, measurements);
+    db.init();
+    return db;
+  }
+
+  @Test(timeOut = 60000)
+  public void windowBoundsWorkersAndCarriesIntendedStart() throws Exception {
+    Properties props = new Properties();
+    props.setProperty(OpenLoopDB.MAX_IN_FLIGHT_PROPERTY, "2");
+    props.setProperty(Measurements.MEASUREMENT_INTERVAL, "both");
+    final Measurements measurements = new Measurements(props);
+    final OpenLoopDB db = openLoop(props, measurements);
+
+    for (long intended = 1000; intended <= 2000; intended += 1000) {
+      measurements.setIntendedStartTimeNs(intended);
+      assertEquals(db.read("usertable", "user1", null, new HashMap<String, ByteIterator>()), Status.BATCHED_OK);
+    }
+
+    // Both slots are taken, so the third operation waits in the issuing thread.
+    Thread issuer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        measurements.setIntendedStartTimeNs(3000);
+        db.read("usertable", "user3", null, new HashMap<String, ByteIterator>());
+      }
+    });
+    issuer.start();
+    issuer.join(200);
+    assertTrue(issuer.isAlive());
+
+    BlockingDB.RELEASE.release(3);
+    issuer.join();
+    db.cleanup();
+
+    assertEquals(BlockingDB.MAX_IN_FLIGHT.get(), 2);
+    assertEquals(new HashSet<>(BlockingDB.INTENDED_STARTS), new HashSet<>(Arrays.asList(1000L, 2000L, 3000L)));
+  }
+
+  @Test(timeOut = 60000)
+  public void clientThreadsShareTheWorkers() throws Exception {
+    Properties props = new Properties();
+    props.setProperty(OpenLoopDB.MAX_IN_FLIGHT_PROPERTY, "2");
+    props.setProperty(OpenLoopDB.WORKER_THREADS_PROPERTY, "1");
+    Measurements measurements = new Measurements(props);
+    OpenLoopDB first = openLoop(props, measurements);
+    OpenLoopDB second = openLoop(props, measurements);
+
+    first.read("usertable", "user1", null, new HashMap<String, ByteIterator>());
+    second.read("usertable", "user2", null, new HashMap<String, ByteIterator>());
+    BlockingDB.STARTED.acquire();
+    // The only worker is busy with the first read.
+    assertFalse(BlockingDB.STARTED.tryAcquire(200, TimeUnit.MILLISECONDS));
+
+    BlockingDB.RELEASE.release(2);
+    first.cleanup();
+    second.cleanup();
+    assertEquals(BlockingDB.MAX_IN_FLIGHT.get(), 1);
+    assertEquals(BlockingDB.INTENDED_STARTS.size(), 2);
+  }
+
+  @Test(timeOut = 60000)
+  public void operationWithoutAnInstanceIsAnErrorAndThePoolStopsGrowing() throws Exception {
+    Measurements global = Measurements.getMeasurements();
+    Properties props = new Properties();
+    props.setProperty(OpenLoopDB.MAX_IN_FLIGHT_PROPERTY, "2");
+    OpenLoopDB db = openLoop(props, global);
+    BlockingDB.failNewInstances = true;
+    global.getSummary();
+
+    // The first read holds the only instance, the second cannot get one of its own.
+    db.read("usertable", "user1", null, new HashMap<String, ByteIterator>());
+    BlockingDB.STARTED.acquire();
+    db.read("usertable", "user2", null, new HashMap<String, ByteIterator>());
+    BlockingDB.REFUSED.acquire();
+    // Does not try another instance, but waits for the one there is.
+    db.read("usertable", "user3", null, new HashMap<String, ByteIterator>());
+    BlockingDB.RELEASE.release(2);
+    db.cleanup();
+
+    String summary = global.getSummary();
+    assertTrue(summary.contains("[READ-FAILED: Count=1"), summary);
+    assertTrue(summary.contains("[READ: Count=2"), summary);
+    assertEquals(BlockingDB.INSTANCES.get(), 2);
+    // The refused instance is cleaned up as well.
+    assertEquals(BlockingDB.CLEANUPS.get(), 2);
+  }
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import org.testng.annotations.Test;
+
+import java.util.Properties;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class TestRateProfile {
+
+  @Test
+  public void constantRateSpacesOperationsEvenly() {
+    RateProfile profile = RateProfile.parse("10s constant 100");
+    assertEquals(profile.getDuration(), 10.0);
+    assertEquals(profile.getCount(), 1000.0);
+    assertEquals(profile.startNanos(0), 0);
+    assertEquals(profile.startNanos(1), 10000000);
+    assertEquals(profile.startNanos(150), 1500000000);
+  }
+
+  @Test
+  public void segmentsFollowEachOtherAndRepeat() {
+    RateProfile profile = RateProfile.parse("1s constant 100, 2s ramp 100 300 # comment\n500ms constant 0");
+    assertEquals(profile.getDuration(), 3.5);
+    assertEquals(profile.getCount(), 100 + 400.0);
+    assertEquals(profile.rate(0.5), 100.0);
+    assertEquals(profile.rate(2), 200.0);
+    assertEquals(profile.rate(3.2), 0.0);
+    // half of the ramp's operations are done once the rate is about 241
+    assertEquals(profile.startNanos(300) / 1e9, 1 + (-100 + Math.sqrt(100 * 100 + 2 * 100 * 200)) / 100, 1e-5);
+    // the next pass starts after the idle segment
+    assertEquals(profile.startNanos(500) / 1e9, 3.5, 1e-5);
+    assertEquals(profile.startNanos(600) / 1e9, 4.5, 1e-5);
+  }
+
+  @Test
+  public void shapesHaveTheirRates() {
+    RateProfile step = RateProfile.parse("1m step 100 50 20s");
+    assertEquals(step.rate(10), 100.0);
+    assertEquals(step.rate(30), 150.0);
+    assertEquals(step.rate(50), 200.0);
+    assertEquals(step.getCount(), 20 * (100 + 150 + 200.0));
+
+    RateProfile sine = RateProfile.parse("1h sine 1000 500 1h");
+    assertEquals(sine.rate(900), 1500.0, 1e-9);
+    assertEquals(sine.rate(2700), 500.0, 1e-9);
+    assertEquals(sine.getCount(), 3600 * 1000.0, 1e-6);
+
+    RateProfile burst = RateProfile.parse("1m burst 100 500 30s 5s");
+    assertEquals(burst.rate(10), 100.0);
+    assertEquals(burst.rate(27), 500.0);
+    assertEquals(burst.rate(31), 100.0);
+    assertEquals(burst.getCount(), 2 * (25 * 100 + 5 * 500.0));
+    assertEquals(burst.startNanos(2500) / 1e9, 25.0, 1e-5);
+    assertEquals(burst.startNanos(3000) / 1e9, 26.0, 1e-5);
+  }
+
+  @Test
+  public void startTimesNeverGoBack() {
+    RateProfile profile = RateProfile.parse("2s sine 200 200 1s, 1s burst 0 300 500ms 100ms, 1s step 10 20 250ms");
+    long previous = -1;
+    for (int n = 0; n < 2 * profile.getCount(); n++) {
+      long start = profile.startNanos(n);
+      assertTrue(start >= previous, "operation " + n);
+      previous = start;
+    }
+  }
+
+  @Test
+  public void durationsHaveUnits() {
+    assertEquals(RateProfile.parseDuration("250ms"), 0.25);
+    assertEquals(RateProfile.parseDuration("1.5s"), 1.5);
+    assertEquals(RateProfile.parseDuration("2m"), 120.0);
+    assertEquals(RateProfile.parseDuration("1h"), 3600.0);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void durationsNeedAUnit() {
+    RateProfile.parse("10 constant 100");
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void ratesCannotBeNegative() {
+    RateProfile.parse("1m step 100 -60 20s");
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void sineWavesCannotGoBelowZero() {
+    RateProfile.parse("1m sine 100 200 20s");
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void profilesNeedOperations() {
+    RateProfile.parse("1m constant 0");
+  }
+
+  @Test
+  public void controllerScalesTheProfile() throws Exception {
+    Properties props = new Properties();
+    assertNull(RateController.fromProperties(props));
+    props.setProperty(RateController.PROFILE_PROPERTY, "1s constant 1000");
+    props.setProperty(RateController.SCALE_PROPERTY, "0.5");
+    RateController controller = RateController.fromProperties(props);
+    long first = controller.nextStartNanos();
+    assertEquals(controller.nextStartNanos() - first, 2000000);
+    assertEquals(controller.nextStartNanos() - first, 4000000);
+  }
+}
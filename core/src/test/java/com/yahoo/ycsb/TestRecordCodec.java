@@ -0,0 +1,68 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+
+public class TestRecordCodec {
+
+  private static byte[] encode(String... namesAndValues) {
+    return RecordCodec.merge(null, RecordCodec.toBytes(values(namesAndValues)));
+  }
+
+  private static Map<String, ByteIterator> values(String... namesAndValues) {
+    Map<String, String> values = new HashMap<>();
+    for (int i = 0; i < namesAndValues.length; i += 2) {
+      values.put(namesAndValues[i], namesAndValues[i + 1]);
+    }
+    return StringByteIterator.getByteIteratorMap(values);
+  }
+
+  private static Map<String, String> decode(byte[] record, String... fields) {
+    Map<String, ByteIterator> result = new HashMap<>();
+    RecordCodec.decode(record, fields.length == 0 ? null : new HashSet<>(Arrays.asList(fields)), result);
+    return StringByteIterator.getStringMap(result);
+  }
+
+  @Test
+  public void mergeKeepsTheFieldsNotSetAgain() {
+    byte[] record = encode("field0", "a", "field1", "b");
+    byte[] merged = RecordCodec.merge(record, RecordCodec.toBytes(values("field1", "c", "field2", "")));
+
+    Map<String, String> expected = new HashMap<>();
+    expected.put("field0", "a");
+    expected.put("field1", "c");
+    expected.put("field2", "");
+    assertEquals(decode(merged), expected);
+    // the record merged into is left as it was
+    assertEquals(decode(record, "field1"), Collections.singletonMap("field1", "b"));
+  }
+
+  @Test
+  public void decodeOnlyPutsTheFieldsAskedFor() {
+    byte[] record = encode("field0", "a", "field1", "b");
+    assertEquals(decode(record, "field1", "field9"), Collections.singletonMap("field1", "b"));
+  }
+}
@@ -0,0 +1,165 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import org.apache.htrace.core.Tracer;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class TestSessionPool {
+
+  private static final Tracer TRACER = new Tracer.Builder("TestSessionPool").build();
+
+  /** Counts its instances and how many of them run an operation at once. */
+  public static class CountingDB extends DB {
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+    private static final AtomicInteger RUNNING = new AtomicInteger();
+    private static final AtomicInteger MAX_RUNNING = new AtomicInteger();
+    private static final AtomicInteger CLEANED_UP = new AtomicInteger();
+
+    public CountingDB() {
+      INSTANCES.incrementAndGet();
+    }
+
+    @Override
+    public void cleanup() {
+      CLEANED_UP.incrementAndGet();
+    }
+
+    @Override
+    public Status read(String table, String key, Set<String> fields, Map<String, ByteIterator> result) {
+      int running = RUNNING.incrementAndGet();
+      int max = MAX_RUNNING.get();
+      while (running > max && !MAX_RUNNING.compareAndSet(max, running)) {
+        max = MAX_RUNNING.get();
+      }
+      LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(200));
+      result.put("key", new StringByteIterator(key));
+      RUNNING.decrementAndGet();
+      return Status.OK;
+    }
+
+    @Override
+    public Status scan(String table, String startkey, int recordcount, Set<String> fields,
+                       Vector<HashMap<String, ByteIterator>> result) {
+      return Status.NOT_IMPLEMENTED;
+    }
+
+    @Override
+    public Status update(String table, String key, Map<String, ByteIterator> values) {
+      return Status.OK;
+    }
+
+    @Override
+    public Status insert(String table, String key, Map<String, ByteIterator> values) {
+      return Status.OK;
+    }
+
+    @Override
+    public Status delete(String table, String key) {
+      return Status.OK;
+    }
+  }
+
+  private static Properties properties(String... pairs) {
+    Properties props = new Properties();
+    for (int i = 0; i < pairs.length; i += 2) {
+      props.setProperty(pairs[i], pairs[i + 1]);
+    }
+    Measurements.setProperties(props);
+    return props;
+  }
+
+  @Test
+  public void sessionsShareTheDBInstancesOfThePool() throws Exception {
+    Properties props = properties(SessionPool.POOL_SIZE_PROPERTY, "2");
+    final SessionPool pool = SessionPool.fromProperties(CountingDB.class.getName(), props, TRACER);
+    final AtomicInteger wrongResults = new AtomicInteger();
+    Thread[] sessions = new Thread[16];
+    final DB[] dbs = new DB[sessions.length];
+    for (int i = 0; i < sessions.length; i++) {
+      dbs[i] = pool.newSession();
+      dbs[i].init();
+    }
+    for (int i = 0; i < sessions.length; i++) {
+      final DB db = dbs[i];
+      final String key = "user" + i;
+      sessions[i] = new Thread() {
+        @Override
+        public void run() {
+          for (int op = 0; op < 50; op++) {
+            Map<String, ByteIterator> result = new HashMap<>();
+            if (db.read("usertable", key, null, result) != Status.OK || !key.equals(result.get("key").toString())) {
+              wrongResults.incrementAndGet();
+            }
+          }
+        }
+      };
+      sessions[i].start();
+    }
+    for (Thread session : sessions) {
+      session.join();
+    }
+    for (DB db : dbs) {
+      db.cleanup();
+    }
+
+    assertEquals(wrongResults.get(), 0);
+    assertTrue(CountingDB.INSTANCES.get() <= 2, "instances: " + CountingDB.INSTANCES.get());
+    assertTrue(CountingDB.MAX_RUNNING.get() <= 2, "running at once: " + CountingDB.MAX_RUNNING.get());
+    assertEquals(CountingDB.CLEANED_UP.get(), CountingDB.INSTANCES.get());
+  }
+
+  @Test
+  public void thinkTimesFollowTheirDistribution() throws Exception {
+    SessionPool constant = SessionPool.fromProperties(CountingDB.class.getName(),
+        properties(SessionPool.POOL_SIZE_PROPERTY, "1", SessionPool.THINK_TIME_PROPERTY, "2"), TRACER);
+    assertEquals(constant.nextThinkTimeNanos(), 2000000);
+
+    SessionPool exponential = SessionPool.fromProperties(CountingDB.class.getName(),
+        properties(SessionPool.POOL_SIZE_PROPERTY, "1", SessionPool.THINK_TIME_PROPERTY, "2",
+            SessionPool.THINK_TIME_DISTRIBUTION_PROPERTY, "exponential"), TRACER);
+    double sum = 0;
+    for (int i = 0; i < 100000; i++) {
+      sum += exponential.nextThinkTimeNanos();
+    }
+    assertEquals(sum / 100000 / 1e6, 2, 0.05);
+
+    SessionPool none = SessionPool.fromProperties(CountingDB.class.getName(),
+        properties(SessionPool.POOL_SIZE_PROPERTY, "1"), TRACER);
+    assertEquals(none.nextThinkTimeNanos(), 0);
+  }
+
+  @Test
+  public void sessionsAreOffByDefault() throws Exception {
+    assertNull(SessionPool.fromProperties(CountingDB.class.getName(), properties(), TRACER));
+  }
+}
@@ -0,0 +1,171 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import org.apache.htrace.core.Tracer;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestSlaSearch {
+
+  /** Takes about a millisecond per read, so one thread does at most 1000 reads per second. */
+  public static class SlowDB extends DB {
+    @Override
+    public Status read(String table, String key, Set<String> fields, Map<String, ByteIterator> result) {
+      LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+      return Status.OK;
+    }
+
+    @Override
+    public Status scan(String table, String startkey, int recordcount, Set<String> fields,
+                       Vector<HashMap<String, ByteIterator>> result) {
+      return Status.OK;
+    }
+
+    @Override
+    public Status update(String table, String key, Map<String, ByteIterator> values) {
+      return Status.OK;
+    }
+
+    @Override
+    public Status insert(String table, String key, Map<String, ByteIterator> values) {
+      return Status.OK;
+    }
+
+    @Override
+    public Status delete(String table, String key) {
+      return Status.OK;
+    }
+  }
+
+  private static class ReadWorkload extends Workload {
+    @Override
+    public boolean doInsert(DB db, Object threadstate) {
+      return true;
+    }
+
+    @Override
+    public boolean doTransaction(DB db, Object threadstate) {
+      db.read("usertable", "user1", null, new HashMap<String, ByteIterator>());
+      return true;
+    }
+  }
+
+  @Test
+  public void parsesLimits() {
+    List<SlaSearch.Limit> limits = SlaSearch.parse("READ p99 < 5ms, UPDATE p99.9<20 ms,SCAN p50 < 1500us");
+    assertEquals(limits.size(), 3);
+    assertEquals(limits.get(0).getName(), "READ p99");
+    assertEquals(limits.get(1).getName(), "UPDATE p99.9");
+    assertEquals(limits.get(2).getName(), "SCAN p50");
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void rejectsALimitWithoutPercentile() {
+    SlaSearch.parse("READ < 5ms");
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void rejectsAPercentileAbove100() {
+    SlaSearch.parse("READ p101 < 5ms");
+  }
+
+  /**
+   * Run a search over one client thread and a measurements instance of its own.
+   *
+   * @return The exported results.
+   */
+  private static String search(String sla, int maxTrials) throws Exception {
+    File output = File.createTempFile("sla", ".txt");
+    output.deleteOnExit();
+    Properties props = new Properties();
+    props.setProperty(SlaSearch.SLA_PROPERTY, sla);
+    props.setProperty(SlaSearch.TRIAL_TIME_PROPERTY, "0.3");
+    props.setProperty(SlaSearch.MAX_PROPERTY, "4000");
+    props.setProperty(SlaSearch.MAX_TRIALS_PROPERTY, String.valueOf(maxTrials));
+    props.setProperty(Client.EXPORT_FILE_PROPERTY, output.getPath());
+    SlaSearch.configure(props);
+    // the client thread starts out on the process wide measurements
+    Measurements.setProperties(props);
+    Measurements measurements = new Measurements(props);
+
+    Workload workload = new ReadWorkload();
+    DB db = new DBWrapper(new SlowDB(), new Tracer.Builder("TestSlaSearch").build(), measurements);
+    db.setProperties(props);
+    List<ClientThread> clients = new ArrayList<>();
+    ClientThread client = new ClientThread(db, true, workload, props, 0, 0, new CountDownLatch(1));
+    client.setMeasurements(measurements);
+    clients.add(client);
+    assertEquals(SlaSearch.run(props, workload, clients, measurements), 0);
+    return new String(Files.readAllBytes(output.toPath()), "UTF-8");
+  }
+
+  /**
+   * @return The value of the given measurement in exported results.
+   */
+  private static double exported(String results, String metric, String measurement) {
+    Matcher m = Pattern.compile("\\[" + Pattern.quote(metric) + "\\], " + Pattern.quote(measurement) + ", (\\S+)")
+        .matcher(results);
+    assertTrue(m.find(), results);
+    return Double.parseDouble(m.group(1));
+  }
+
+  @Test
+  public void bisectsDownToTheThroughputTheClientKeepsUpWith() throws Exception {
+    String results = search("READ p99 < 10s", 5);
+
+    // 4000, 2050 and 1075 are out of reach, 587.5 is not
+    assertTrue(results.contains("[SLA], Trials, 5"), results);
+    assertTrue(results.contains("[SLA-TRIAL-1], Target(ops/sec), 4000.0"), results);
+    assertTrue(results.contains("[SLA-TRIAL-1], MeetsSLA, 0"), results);
+    assertTrue(results.contains("[SLA-TRIAL-4], Target(ops/sec), 587.5"), results);
+    assertTrue(results.contains("[SLA-TRIAL-4], MeetsSLA, 1"), results);
+    assertTrue(results.contains("[SLA], MaxThroughput(ops/sec), 587.5")
+        || results.contains("[SLA], MaxThroughput(ops/sec), 831.25"), results);
+
+    // every read takes about a millisecond
+    double p99 = exported(results, "SLA-TRIAL-4", "READ p99(us)");
+    assertTrue(p99 >= 1000 && p99 < 10000000, results);
+  }
+
+  @Test
+  public void aLimitOnAnOperationThatNeverRunsIsMissed() throws Exception {
+    String results = search("RAED p99 < 10s", 2);
+    assertTrue(results.contains("[SLA-TRIAL-1], MeetsSLA, 0"), results);
+    assertTrue(results.contains("[SLA-TRIAL-2], MeetsSLA, 0"), results);
+    assertEquals(exported(results, "SLA", "MaxThroughput(ops/sec)"), 0.0);
+  }
+}
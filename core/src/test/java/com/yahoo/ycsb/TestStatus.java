@@ -18,6 +18,7 @@ package com.yahoo.ycsb;
 
 import org.testng.annotations.Test;
 
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
@@ -38,4 +39,13 @@ public class TestStatus {
     assertFalse(Status.SERVICE_UNAVAILABLE.isOk());
     assertFalse(Status.UNEXPECTED_STATE.isOk());
   }
+
+  @Test
+  public void predefinedStatusesHaveTheirOwnSlots() {
+    for (int slot = 0; slot < Status.PREDEFINED; slot++) {
+      assertEquals(Status.getPredefined(slot).getSlot(), slot);
+    }
+    assertEquals(new Status("TIMEOUT", "Timed out.").getSlot(), -1);
+    assertEquals(new Status("ERROR", "The operation failed.").getSlot(), -1);
+  }
 }
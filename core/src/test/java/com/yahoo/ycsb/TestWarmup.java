@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.Properties;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestWarmup {
+
+  private static Warmup autoWarmup(Measurements measurements) {
+    Properties props = new Properties();
+    props.setProperty(Warmup.AUTO_PROPERTY, "true");
+    props.setProperty(Warmup.AUTO_INTERVALS_PROPERTY, "3");
+    props.setProperty(Warmup.AUTO_TOLERANCE_PROPERTY, "0.05");
+    Warmup warmup = new Warmup(props, measurements, Collections.<ClientThread>emptyList());
+    warmup.start();
+    return warmup;
+  }
+
+  @Test
+  public void endsOnceIntervalsAreSteady() {
+    Properties props = new Properties();
+    props.setProperty(Measurements.MEASUREMENT_TYPE_PROPERTY, "hdrhistogram");
+    Measurements measurements = new Measurements(props);
+    int handle = measurements.getOperationHandle("READ");
+    measurements.measure(handle, 5000);
+
+    Warmup warmup = autoWarmup(measurements);
+    warmup.onInterval(Double.NaN, Double.NaN);
+    warmup.onInterval(500, 900);
+    warmup.onInterval(1000, 450);
+    warmup.onInterval(1000, 450);
+    assertFalse(warmup.isOver());
+    // an empty interval starts over
+    warmup.onInterval(0, Double.NaN);
+    warmup.onInterval(1000, 450);
+    warmup.onInterval(1010, 445);
+    assertFalse(warmup.isOver());
+    warmup.onInterval(990, 455);
+    assertTrue(warmup.isOver());
+
+    measurements.getSummary();
+    assertTrue(Double.isNaN(measurements.getSummaryAverageLatency()));
+    warmup.stop();
+  }
+
+  @Test
+  public void latencyMustSettleToo() {
+    Warmup warmup = autoWarmup(new Measurements(new Properties()));
+    for (int i = 0; i < 10; i++) {
+      warmup.onInterval(1000, i % 2 == 0 ? 400 : 500);
+    }
+    assertFalse(warmup.isOver());
+    warmup.stop();
+    assertEquals(warmup.measuredOperations(123), 123);
+    assertEquals(warmup.measuredStart(42), 42);
+  }
+
+  @Test
+  public void withoutWarmupEverythingIsMeasured() {
+    Warmup warmup = new Warmup(new Properties(), new Measurements(new Properties()),
+        Collections.<ClientThread>emptyList());
+    warmup.start();
+    assertTrue(warmup.isOver());
+    warmup.stop();
+    assertEquals(warmup.measuredOperations(123), 123);
+    assertEquals(warmup.measuredStart(42), 42);
+  }
+}
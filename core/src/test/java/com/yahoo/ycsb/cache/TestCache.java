@@ -0,0 +1,172 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.cache;
+
+import com.yahoo.ycsb.generator.ZipfianGenerator;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class TestCache {
+
+  @DataProvider(name = "policies")
+  public Object[][] policies() {
+    return new Object[][] {{Cache.LRU}, {Cache.CLOCK}, {Cache.W_TINY_LFU}};
+  }
+
+  @Test(dataProvider = "policies")
+  public void weightStaysWithinCapacity(String policy) {
+    Cache<Integer> cache = new Cache<>(policy, 1000, 4);
+    int evicted = 0;
+    for (int i = 0; i < 10000; i++) {
+      evicted += cache.put("key" + (i % 500), i, 10 + i % 30);
+      assertTrue(cache.getWeight() <= 1000);
+    }
+    assertTrue(evicted > 0);
+    assertTrue(cache.size() > 0);
+  }
+
+  @Test(dataProvider = "policies")
+  public void valuesAreReplacedAndRemoved(String policy) {
+    Cache<String> cache = new Cache<>(policy, 10000, 1);
+    assertEquals(cache.put("a", "1", 10), 0);
+    assertEquals(cache.put("a", "2", 20), 0);
+    assertEquals(cache.get("a"), "2");
+    assertEquals(cache.getWeight(), 20);
+    cache.remove("a");
+    assertNull(cache.get("a"));
+    assertEquals(cache.getWeight(), 0);
+    assertEquals(cache.size(), 0);
+  }
+
+  @Test(dataProvider = "policies")
+  public void entriesLargerThanTheCacheAreTurnedDown(String policy) {
+    Cache<String> cache = new Cache<>(policy, 100, 1);
+    cache.put("a", "small", 10);
+    assertEquals(cache.put("a", "large", 101), 1);
+    assertNull(cache.get("a"));
+    assertEquals(cache.getWeight(), 0);
+  }
+
+  @Test
+  public void lruEvictsTheLeastRecentlyUsed() {
+    Cache<String> cache = new Cache<>(Cache.LRU, 30, 1);
+    cache.put("a", "a", 10);
+    cache.put("b", "b", 10);
+    cache.put("c", "c", 10);
+    cache.get("a");
+    assertEquals(cache.put("d", "d", 10), 1);
+    assertNull(cache.get("b"));
+    assertEquals(cache.get("a"), "a");
+  }
+
+  @Test
+  public void clockGivesReadEntriesASecondChance() {
+    Cache<String> cache = new Cache<>(Cache.CLOCK, 30, 1);
+    cache.put("a", "a", 10);
+    cache.put("b", "b", 10);
+    cache.put("c", "c", 10);
+    cache.get("a");
+    cache.get("b");
+    assertEquals(cache.put("d", "d", 10), 1);
+    assertNull(cache.get("c"));
+    assertEquals(cache.get("a"), "a");
+    assertEquals(cache.get("b"), "b");
+  }
+
+  @Test
+  public void tinyLfuKeepsPopularEntriesThroughAScan() {
+    Cache<String> lru = new Cache<>(Cache.LRU, 1000, 1);
+    Cache<String> tinyLfu = new Cache<>(Cache.W_TINY_LFU, 1000, 1);
+    for (Cache<String> cache : Arrays.asList(lru, tinyLfu)) {
+      for (int round = 0; round < 10; round++) {
+        for (int i = 0; i < 50; i++) {
+          if (cache.get("hot" + i) == null) {
+            cache.put("hot" + i, "hot", 10);
+          }
+        }
+      }
+      for (int i = 0; i < 1000; i++) {
+        if (cache.get("scan" + i) == null) {
+          cache.put("scan" + i, "scan", 10);
+        }
+      }
+    }
+    int lruHot = 0;
+    int tinyLfuHot = 0;
+    for (int i = 0; i < 50; i++) {
+      lruHot += lru.get("hot" + i) == null ? 0 : 1;
+      tinyLfuHot += tinyLfu.get("hot" + i) == null ? 0 : 1;
+    }
+    assertEquals(lruHot, 0);
+    assertTrue(tinyLfuHot >= 45, "kept " + tinyLfuHot);
+  }
+
+  @Test
+  public void tinyLfuCountsRefusedEntriesAsRejections() {
+    AtomicInteger rejected = new AtomicInteger();
+    Cache<String> cache = new Cache<>(Cache.W_TINY_LFU, 1000, 1, rejected::addAndGet);
+    int evicted = 0;
+    for (int round = 0; round < 10; round++) {
+      for (int i = 0; i < 50; i++) {
+        if (cache.get("hot" + i) == null) {
+          evicted += cache.put("hot" + i, "hot", 10);
+        }
+      }
+    }
+    for (int i = 0; i < 1000; i++) {
+      evicted += cache.put("scan" + i, "scan", 10);
+    }
+    assertTrue(rejected.get() > 0);
+    // every key put is still cached, evicted or rejected, but only once
+    assertEquals(cache.size() + evicted + rejected.get(), 1050);
+  }
+
+  @Test
+  public void sketchKeepsItsCountsWhenItGrows() {
+    FrequencySketch sketch = new FrequencySketch();
+    for (int i = 0; i < 5; i++) {
+      sketch.increment("a");
+    }
+    sketch.ensureCapacity(10000);
+    assertEquals(sketch.frequency("a"), 5);
+    assertEquals(sketch.frequency("b"), 0);
+  }
+
+  @Test(dataProvider = "policies")
+  public void skewedReadsMostlyHit(String policy) {
+    Cache<Long> cache = new Cache<>(policy, 1000, 1);
+    ZipfianGenerator keys = new ZipfianGenerator(10000);
+    int hits = 0;
+    for (int i = 0; i < 100000; i++) {
+      long key = keys.nextValue();
+      if (cache.get("key" + key) != null) {
+        hits++;
+      } else {
+        cache.put("key" + key, key, 10);
+      }
+    }
+    // 100 of 10000 keys fit, which zipfian reads hit about half the time
+    assertTrue(hits > 35000, policy + " hit " + hits);
+  }
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.measurements;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+import static org.testng.Assert.assertEquals;
+
+public class TestIntervalExporter {
+
+  private static Measurements measurements(String type) {
+    Properties props = new Properties();
+    props.setProperty(Measurements.MEASUREMENT_TYPE_PROPERTY, type);
+    Measurements measurements = new Measurements(props);
+    int handle = measurements.getOperationHandle("READ");
+    for (int i = 1; i <= 10; i++) {
+      measurements.measure(handle, i * 100);
+    }
+    measurements.getSummary();
+    return measurements;
+  }
+
+  @Test
+  public void writesCsvRecords() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    IntervalExporter exporter = new IntervalExporter(out, false, new double[] {50, 99.9});
+    exporter.write(measurements("hdrhistogram"), 1500000000000L, 12.5, 2);
+    exporter.write(measurements("histogram"), 1500000002000L, 14.5, 2);
+    exporter.close();
+    assertEquals(new String(out.toByteArray(), StandardCharsets.UTF_8),
+        "timestamp,elapsed,operation,count,throughput,min,max,mean,p50,p99.9\n"
+        + "1500000000000,12.5,READ,10,5,100,1000,550,500,1000\n"
+        + "1500000002000,14.5,READ,10,5,,,550,,\n");
+  }
+
+  @Test
+  public void writesJsonLines() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    IntervalExporter exporter = new IntervalExporter(out, true, new double[] {99});
+    exporter.write(measurements("hdrhistogram"), 1500000000000L, 10, 4);
+    exporter.write(measurements("timeseries"), 1500000000000L, 10, 0);
+    exporter.close();
+    assertEquals(new String(out.toByteArray(), StandardCharsets.UTF_8),
+        "{\"timestamp\":1500000000000,\"elapsed\":10.0,\"operation\":\"READ\",\"count\":10,\"throughput\":2.5,"
+        + "\"min\":100,\"max\":1000,\"mean\":550,\"p99\":1000}\n"
+        + "{\"timestamp\":1500000000000,\"elapsed\":10.0,\"operation\":\"READ\",\"count\":10,\"throughput\":null,"
+        + "\"min\":null,\"max\":null,\"mean\":550,\"p99\":null}\n");
+  }
+}
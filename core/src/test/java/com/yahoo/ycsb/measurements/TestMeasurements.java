@@ -0,0 +1,313 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.measurements;
+
+import com.yahoo.ycsb.Status;
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.testng.Assert.assertEquals;
+
+public class TestMeasurements {
+
+  private static final int THREADS = 4;
+  private static final int OPS_PER_THREAD = 10000;
+
+  /** Keeps the last value written for each (metric, measurement). */
+  private static class MapExporter implements MeasurementsExporter {
+    private final Map<String, Number> values = new HashMap<>();
+
+    @Override
+    public void write(String metric, String measurement, int i) {
+      values.put(metric + "/" + measurement, i);
+    }
+
+    @Override
+    public void write(String metric, String measurement, long i) {
+      values.put(metric + "/" + measurement, i);
+    }
+
+    @Override
+    public void write(String metric, String measurement, double d) {
+      values.put(metric + "/" + measurement, d);
+    }
+
+    @Override
+    public void close() {
+    }
+
+    long get(String key) {
+      return values.get(key).longValue();
+    }
+  }
+
+  @DataProvider(name = "types")
+  public Object[][] types() {
+    return new Object[][] {{"hdrhistogram", "Operations"}, {"histogram", "Operations"},
+        {"timeseries", "Operations"}, {"raw", "Total Operations"}};
+  }
+
+  @Test(dataProvider = "types")
+  public void threadsRecordingThroughAHandleAreMerged(String type, String operationsKey) throws Exception {
+    Properties props = new Properties();
+    props.setProperty(Measurements.MEASUREMENT_TYPE_PROPERTY, type);
+    props.setProperty(OneMeasurementRaw.NO_SUMMARY_STATS, "true");
+    File rawOutput = File.createTempFile("raw", ".csv");
+    rawOutput.deleteOnExit();
+    props.setProperty(OneMeasurementRaw.OUTPUT_FILE_PATH, rawOutput.getPath());
+    final Measurements measurements = new Measurements(props);
+    final int handle = measurements.getOperationHandle("READ");
+    assertEquals(measurements.getOperationHandle("READ"), handle);
+
+    Thread[] threads = new Thread[THREADS];
+    for (int t = 0; t < THREADS; t++) {
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          for (int i = 1; i <= OPS_PER_THREAD; i++) {
+            measurements.measure(handle, i);
+            measurements.reportStatus(handle, Status.OK);
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    MapExporter exporter = new MapExporter();
+    measurements.exportMeasurements(exporter);
+    assertEquals(exporter.get("READ/" + operationsKey), THREADS * OPS_PER_THREAD);
+    assertEquals(exporter.get("READ/Return=OK"), THREADS * OPS_PER_THREAD);
+  }
+
+  @Test(dataProvider = "types")
+  public void threadsWhichEndedAreStillCounted(String type, String operationsKey) throws Exception {
+    Properties props = new Properties();
+    props.setProperty(Measurements.MEASUREMENT_TYPE_PROPERTY, type);
+    props.setProperty(OneMeasurementRaw.NO_SUMMARY_STATS, "true");
+    File rawOutput = File.createTempFile("raw", ".csv");
+    rawOutput.deleteOnExit();
+    props.setProperty(OneMeasurementRaw.OUTPUT_FILE_PATH, rawOutput.getPath());
+    final Measurements measurements = new Measurements(props);
+    final int handle = measurements.getOperationHandle("READ");
+
+    for (int t = 0; t < 100; t++) {
+      Thread thread = new Thread() {
+        @Override
+        public void run() {
+          for (int i = 1; i <= 10; i++) {
+            measurements.measure(handle, i);
+            measurements.reportStatus(handle, Status.OK);
+          }
+        }
+      };
+      thread.start();
+      thread.join();
+      if (t % 10 == 0) {
+        measurements.getSummary();
+      }
+    }
+
+    MapExporter exporter = new MapExporter();
+    measurements.exportMeasurements(exporter);
+    assertEquals(exporter.get("READ/" + operationsKey), 1000);
+    assertEquals(exporter.get("READ/Return=OK"), 1000);
+  }
+
+  @Test
+  public void shardsOfThreadsWhichEndedAreFolded() throws Exception {
+    final ThreadShards<long[]> shards = new ThreadShards<long[]>() {
+      @Override
+      protected long[] newShard() {
+        return new long[1];
+      }
+
+      @Override
+      protected void retire(long[] ended, long[] retired) {
+        retired[0] += ended[0];
+      }
+    };
+    for (int t = 0; t < 100; t++) {
+      Thread thread = new Thread() {
+        @Override
+        public void run() {
+          shards.get()[0]++;
+        }
+      };
+      thread.start();
+      thread.join();
+    }
+    shards.get()[0]++;
+
+    int count = 0;
+    long total = 0;
+    for (long[] shard : shards) {
+      count++;
+      total += shard[0];
+    }
+    // the shard of this thread, and the one of all the threads which ended
+    assertEquals(count, 2);
+    assertEquals(total, 101);
+  }
+
+  @Test
+  public void statusSummaryOnlyCoversTheLastInterval() throws IOException {
+    Properties props = new Properties();
+    props.setProperty(Measurements.MEASUREMENT_TYPE_PROPERTY, "histogram");
+    Measurements measurements = new Measurements(props);
+    int handle = measurements.getOperationHandle("UPDATE");
+
+    measurements.measure(handle, 1000);
+    assertEquals(measurements.getSummary().trim(), "[UPDATE AverageLatency(us)=1000]");
+    measurements.measure(handle, 3000);
+    assertEquals(measurements.getSummary().trim(), "[UPDATE AverageLatency(us)=3000]");
+    assertEquals(measurements.getSummary().trim(), "");
+  }
+
+  @Test
+  public void equalStatusesAreCountedTogether() throws IOException {
+    Properties props = new Properties();
+    props.setProperty(Measurements.MEASUREMENT_TYPE_PROPERTY, "histogram");
+    Measurements measurements = new Measurements(props);
+    int handle = measurements.getOperationHandle("INSERT");
+
+    measurements.measure(handle, 1000);
+    measurements.reportStatus(handle, new Status("TIMEOUT", "Timed out."));
+    measurements.reportStatus(handle, new Status("TIMEOUT", "Timed out."));
+    measurements.reportStatus(handle, Status.OK);
+
+    MapExporter exporter = new MapExporter();
+    measurements.exportMeasurements(exporter);
+    assertEquals(exporter.get("INSERT/Return=TIMEOUT"), 2);
+    assertEquals(exporter.get("INSERT/Return=OK"), 1);
+  }
+
+  @Test
+  public void aStatusPerFailureSharesOneCounter() {
+    OneMeasurement measurement = new OneMeasurementHistogram("INSERT", new Properties());
+    for (int i = 0; i < 100000; i++) {
+      measurement.reportStatus(new Status("TIMEOUT", "Timed out."));
+    }
+
+    Map<Status, Long> counts = measurement.getStatusCounts();
+    assertEquals(counts.size(), 1);
+    assertEquals(counts.get(new Status("TIMEOUT", "Timed out.")).longValue(), 100000L);
+  }
+
+  @Test
+  public void aCopyOfAPredefinedStatusIsCountedWithIt() {
+    OneMeasurement measurement = new OneMeasurementHistogram("READ", new Properties());
+    measurement.reportStatus(Status.ERROR);
+    measurement.reportStatus(new Status("ERROR", "The operation failed."));
+    measurement.reportStatus(Status.OK, 3);
+
+    Map<Status, Long> counts = measurement.getStatusCounts();
+    assertEquals(counts.size(), 2);
+    assertEquals(counts.get(Status.ERROR).longValue(), 2L);
+    assertEquals(counts.get(Status.OK).longValue(), 3L);
+  }
+
+  @Test
+  public void rawPercentilesAreExact() throws IOException {
+    Properties props = new Properties();
+    props.setProperty(Measurements.MEASUREMENT_TYPE_PROPERTY, "raw");
+    props.setProperty(OneMeasurementRaw.CHUNK_SIZE, "7");
+    File rawOutput = File.createTempFile("raw", ".csv");
+    rawOutput.deleteOnExit();
+    props.setProperty(OneMeasurementRaw.OUTPUT_FILE_PATH, rawOutput.getPath());
+    Measurements measurements = new Measurements(props);
+    int handle = measurements.getOperationHandle("SCAN");
+
+    // 100 distinct values, recorded out of order
+    for (int i = 0; i < 100; i++) {
+      measurements.measure(handle, (i * 37) % 100 + 1);
+    }
+
+    MapExporter exporter = new MapExporter();
+    measurements.exportMeasurements(exporter);
+    assertEquals(exporter.get("SCAN/Total Operations"), 100);
+    assertEquals(exporter.get("SCAN/Min"), 1);
+    assertEquals(exporter.get("SCAN/Max"), 100);
+    assertEquals(exporter.get("SCAN/p50"), 51);
+    assertEquals(exporter.get("SCAN/p99"), 100);
+    assertEquals(Files.readAllLines(rawOutput.toPath()).size(), 101);
+  }
+
+  @Test(dataProvider = "types")
+  public void resetForgetsEarlierOperations(String type, String operationsKey) throws IOException {
+    Properties props = new Properties();
+    props.setProperty(Measurements.MEASUREMENT_TYPE_PROPERTY, type);
+    props.setProperty(OneMeasurementRaw.NO_SUMMARY_STATS, "true");
+    File rawOutput = File.createTempFile("raw", ".csv");
+    rawOutput.deleteOnExit();
+    props.setProperty(OneMeasurementRaw.OUTPUT_FILE_PATH, rawOutput.getPath());
+    Measurements measurements = new Measurements(props);
+    int handle = measurements.getOperationHandle("READ");
+
+    for (int i = 0; i < 100; i++) {
+      measurements.measure(handle, 100000);
+      measurements.reportStatus(handle, Status.ERROR);
+    }
+    measurements.reset();
+    for (int i = 0; i < 10; i++) {
+      measurements.measure(handle, 10);
+      measurements.reportStatus(handle, Status.OK);
+    }
+
+    measurements.getSummary();
+    assertEquals(measurements.getSummaryAverageLatency(), 10.0);
+    MapExporter exporter = new MapExporter();
+    measurements.exportMeasurements(exporter);
+    assertEquals(exporter.get("READ/" + operationsKey), 10);
+    assertEquals(exporter.get("READ/Return=OK"), 10);
+    assertEquals(exporter.values.containsKey("READ/Return=ERROR"), false);
+  }
+
+  @Test
+  public void correctionAddsTheOperationsAStallHeldBack() throws IOException {
+    Properties props = new Properties();
+    props.setProperty(Measurements.MEASUREMENT_TYPE_PROPERTY, "hdrhistogram");
+    props.setProperty(OneMeasurementHdrHistogram.CORRECTION_PROPERTY, "true");
+    Measurements measurements = new Measurements(props);
+    int handle = measurements.getOperationHandle("READ");
+
+    for (int i = 0; i < 100; i++) {
+      measurements.measure(handle, 100);
+    }
+    // a stall as long as 100 operations
+    measurements.measure(handle, 10000);
+
+    MapExporter exporter = new MapExporter();
+    measurements.exportMeasurements(exporter);
+    assertEquals(exporter.get("READ/Operations"), 101);
+    assertEquals(exporter.get("READ/MaxLatency(us)"), 10000, 10);
+    // 9900us, 9800us ... 100us were held back
+    assertEquals(exporter.get("Corrected-READ/Operations"), 200);
+    assertEquals(exporter.get("Corrected-READ/MaxLatency(us)"), 10000, 10);
+    assertEquals(exporter.values.get("Corrected-READ/AverageLatency(us)").doubleValue(), 2575, 20);
+  }
+}
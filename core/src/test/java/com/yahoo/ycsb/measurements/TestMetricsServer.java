@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.measurements;
+
+import com.yahoo.ycsb.Status;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestMetricsServer {
+
+  @Test
+  public void scrapeShowsTheLastIntervalAndTheTotals() {
+    Properties props = new Properties();
+    props.setProperty(Measurements.MEASUREMENT_TYPE_PROPERTY, "hdrhistogram");
+    props.setProperty(OneMeasurementHdrHistogram.PERCENTILES_PROPERTY, "50,99.9");
+    Measurements measurements = new Measurements(props);
+    int handle = measurements.getOperationHandle("READ");
+
+    for (int i = 1; i <= 100; i++) {
+      measurements.measure(handle, 1000);
+      measurements.reportStatus(handle, Status.OK);
+    }
+    measurements.reportStatus(handle, Status.ERROR);
+    // no interval taken yet, only the counters are known
+    String scrape = MetricsServer.scrape(measurements);
+    assertTrue(scrape.contains("ycsb_operations_total{operation=\"READ\",status=\"OK\"} 100\n"), scrape);
+    assertTrue(scrape.contains("ycsb_operations_total{operation=\"READ\",status=\"ERROR\"} 1\n"), scrape);
+    assertFalse(scrape.contains("ycsb_latency_us{"), scrape);
+
+    measurements.getSummary();
+    for (int i = 1; i <= 10; i++) {
+      measurements.measure(handle, 5000);
+    }
+    // the operations since the last interval are not in it
+    scrape = MetricsServer.scrape(measurements);
+    assertTrue(scrape.contains("ycsb_latency_us{operation=\"READ\",quantile=\"0.5\"} 1000\n"), scrape);
+    assertTrue(scrape.contains("ycsb_latency_us{operation=\"READ\",quantile=\"0.999\"} 1000\n"), scrape);
+    assertTrue(scrape.contains("ycsb_latency_us_count{operation=\"READ\"} 100\n"), scrape);
+    assertTrue(scrape.contains("ycsb_latency_us_sum{operation=\"READ\"} 100000\n"), scrape);
+    assertTrue(scrape.contains("ycsb_interval_operations{operation=\"READ\"} 100\n"), scrape);
+
+    measurements.getSummary();
+    scrape = MetricsServer.scrape(measurements);
+    assertTrue(scrape.contains("ycsb_latency_us{operation=\"READ\",quantile=\"0.5\"} 5003\n"), scrape);
+    assertTrue(scrape.contains("ycsb_latency_us_count{operation=\"READ\"} 110\n"), scrape);
+    assertTrue(scrape.contains("ycsb_interval_latency_mean_us{operation=\"READ\"} 50"), scrape);
+  }
+
+  @Test
+  public void servesTheTextFormat() throws Exception {
+    Properties props = new Properties();
+    props.setProperty(MetricsServer.PORT_PROPERTY, "0");
+    props.setProperty(MetricsServer.HOST_PROPERTY, "127.0.0.1");
+    Measurements.setProperties(props);
+    MetricsServer server = MetricsServer.start(props);
+    try {
+      HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + server.getPort()
+          + MetricsServer.PATH).openConnection();
+      assertEquals(connection.getResponseCode(), 200);
+      assertEquals(connection.getContentType(), MetricsServer.CONTENT_TYPE);
+      ByteArrayOutputStream body = new ByteArrayOutputStream();
+      try (InputStream in = connection.getInputStream()) {
+        byte[] buffer = new byte[4096];
+        for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+          body.write(buffer, 0, n);
+        }
+      }
+      String text = new String(body.toByteArray(), StandardCharsets.UTF_8);
+      assertTrue(text.contains("# TYPE ycsb_operations_total counter\n"), text);
+      assertTrue(text.contains("\nycsb_jvm_threads "), text);
+    } finally {
+      server.stop();
+    }
+  }
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.measurements;
+
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class TestOverheadBreakdown {
+
+  /** Keeps the values written. */
+  private static class MapExporter implements MeasurementsExporter {
+    private final Map<String, Double> values = new HashMap<>();
+
+    @Override
+    public void write(String metric, String measurement, int i) {
+      values.put(metric + "/" + measurement, (double) i);
+    }
+
+    @Override
+    public void write(String metric, String measurement, long i) {
+      values.put(metric + "/" + measurement, (double) i);
+    }
+
+    @Override
+    public void write(String metric, String measurement, double d) {
+      values.put(metric + "/" + measurement, d);
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+  private static MapExporter export(OverheadBreakdown overhead) throws IOException {
+    MapExporter exporter = new MapExporter();
+    overhead.exportMeasurements(exporter);
+    return exporter;
+  }
+
+  @Test
+  public void onlyOnWhenAsked() {
+    Properties props = new Properties();
+    assertNull(new Measurements(props).getOverheadBreakdown());
+    props.setProperty(OverheadBreakdown.OVERHEAD_PROPERTY, "true");
+    assertNotNull(new Measurements(props).getOverheadBreakdown());
+  }
+
+  @Test
+  public void splitsTheOperationsOfAllThreads() throws Exception {
+    final OverheadBreakdown overhead = new OverheadBreakdown();
+    Thread[] threads = new Thread[2];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread("client-" + t) {
+        @Override
+        public void run() {
+          for (int i = 0; i < 100; i++) {
+            // 10us of workload, 2us in DBWrapper around 8us in the DB
+            overhead.dbCall(10000, 8000);
+            overhead.operation(20000);
+          }
+          overhead.finish();
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    MapExporter exporter = export(overhead);
+    assertEquals(exporter.values.get("OVERHEAD/Operations"), 200.0);
+    assertEquals(exporter.values.get("OVERHEAD/Workload(us/op)"), 10.0);
+    assertEquals(exporter.values.get("OVERHEAD/DB(us/op)"), 8.0);
+    assertEquals(exporter.values.get("OVERHEAD/Measurement(us/op)"), 2.0);
+    assertEquals(exporter.values.get("OVERHEAD/Workload(%)"), 50.0);
+    assertEquals(exporter.values.get("OVERHEAD/DB(%)"), 40.0);
+    assertEquals(exporter.values.get("OVERHEAD/Measurement(%)"), 10.0);
+    assertEquals(exporter.values.get("OVERHEAD-client-0/Operations"), 100.0);
+    assertEquals(exporter.values.get("OVERHEAD-client-1/Operations"), 100.0);
+    if (exporter.values.containsKey("OVERHEAD-client-0/AllocationRate(MB/sec)")) {
+      assertTrue(exporter.values.get("OVERHEAD/AllocationRate(MB/sec)") >= 0);
+    }
+  }
+
+  @Test
+  public void resetForgetsEarlierOperations() throws Exception {
+    OverheadBreakdown overhead = new OverheadBreakdown();
+    for (int i = 0; i < 10; i++) {
+      overhead.dbCall(1000000, 1000000);
+      overhead.operation(1000000);
+    }
+    overhead.reset();
+    assertEquals(export(overhead).values.get("OVERHEAD/Operations"), 0.0);
+    assertFalse(export(overhead).values.containsKey("OVERHEAD/DB(us/op)"));
+
+    overhead.dbCall(3000, 1000);
+    overhead.operation(4000);
+    MapExporter exporter = export(overhead);
+    assertEquals(exporter.values.get("OVERHEAD/Operations"), 1.0);
+    assertEquals(exporter.values.get("OVERHEAD/DB(us/op)"), 1.0);
+    assertEquals(exporter.values.get("OVERHEAD/Measurement(us/op)"), 2.0);
+    assertEquals(exporter.values.get("OVERHEAD/Workload(us/op)"), 1.0);
+  }
+}
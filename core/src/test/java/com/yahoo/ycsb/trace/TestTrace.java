@@ -0,0 +1,341 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.trace;
+
+import com.yahoo.ycsb.ByteIterator;
+import com.yahoo.ycsb.DB;
+import com.yahoo.ycsb.RecordingDB;
+import com.yahoo.ycsb.Status;
+import com.yahoo.ycsb.StringByteIterator;
+import com.yahoo.ycsb.Workload;
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.workloads.TraceReplayWorkload;
+import org.testng.annotations.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.Vector;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class TestTrace {
+
+  private static final int THREADS = 4;
+  private static final int RECORDS_PER_THREAD = 5000;
+
+  private static File tempTrace() throws Exception {
+    File file = File.createTempFile("trace", ".bin");
+    file.deleteOnExit();
+    return file;
+  }
+
+  @Test
+  public void recordsWrittenByManyThreadsAreAllReadBack() throws Exception {
+    File file = tempTrace();
+    final TraceFormat format = new TraceFormat(512, TraceFormat.DEFAULT_FIELD_PREFIX);
+    try (final TraceWriter writer = new TraceWriter(file.toPath(), format)) {
+      Thread[] threads = new Thread[THREADS];
+      for (int t = 0; t < THREADS; t++) {
+        final int thread = t;
+        threads[t] = new Thread() {
+          @Override
+          public void run() {
+            TraceRecord record = new TraceRecord(format);
+            try (TraceWriter.Appender appender = writer.newAppender()) {
+              for (int i = 0; i < RECORDS_PER_THREAD; i++) {
+                record.set(Workload.Operation.UPDATE, i, "usertable", "user" + thread + "-" + i,
+                    Collections.singleton("field" + (i % 10)), 100, 0);
+                appender.append(record);
+              }
+            } catch (Exception e) {
+              throw new RuntimeException(e);
+            }
+          }
+        };
+        threads[t].start();
+      }
+      for (Thread thread : threads) {
+        thread.join();
+      }
+    }
+
+    Set<String> keys = new HashSet<>();
+    try (TraceReader reader = new TraceReader(file.toPath())) {
+      assertEquals(reader.getFormat().getBlockSize(), 512);
+      TraceRecord record = new TraceRecord(reader.getFormat());
+      ByteBuffer block;
+      while ((block = reader.nextBlock()) != null) {
+        while (block.hasRemaining()) {
+          record.decode(block);
+          assertEquals(record.getOperation(), Workload.Operation.UPDATE);
+          assertEquals(record.getTable(), "usertable");
+          assertEquals(record.getValueSize(), 100);
+          int i = Integer.parseInt(record.getKey().substring(record.getKey().indexOf('-') + 1));
+          assertEquals(record.getTimestampNanos(), i);
+          assertEquals(record.getFields(), Collections.singleton("field" + (i % 10)));
+          keys.add(record.getKey());
+        }
+      }
+    }
+    assertEquals(keys.size(), THREADS * RECORDS_PER_THREAD);
+  }
+
+  @Test
+  public void fieldsOutsideTheMaskAndAllFieldsRoundTrip() throws Exception {
+    TraceFormat format = new TraceFormat(TraceFormat.DEFAULT_BLOCK_SIZE, "f");
+    ByteBuffer block = ByteBuffer.allocate(format.getBlockSize());
+    block.position(TraceFormat.BLOCK_HEADER_SIZE);
+    TraceRecord record = new TraceRecord(format);
+    Set<String> named = new HashSet<>(Arrays.asList("f1", "name", "f01"));
+    assertTrue(record.set(Workload.Operation.READ, -1, "t", "ké", named, 0, 0).encode(block));
+    assertTrue(record.set(Workload.Operation.SCAN, 7, "t", "k2", null, 0, 50).encode(block));
+    assertTrue(record.set(Workload.Operation.READ, 8, "t", "k3", Collections.singleton("f3"), 0, 0).encode(block));
+    assertTrue(record.set(Workload.Operation.READ, 9, "t", "k4", Collections.singleton("f3"), 0, 0).encode(block));
+    block.flip().position(TraceFormat.BLOCK_HEADER_SIZE);
+
+    TraceRecord decoded = new TraceRecord(format);
+    decoded.decode(block);
+    assertEquals(decoded.getKey(), "ké");
+    assertEquals(decoded.getFields(), named);
+    decoded.decode(block);
+    assertEquals(decoded.getOperation(), Workload.Operation.SCAN);
+    assertNull(decoded.getFields());
+    assertEquals(decoded.getRecordCount(), 50);
+    decoded.decode(block);
+    Set<String> first = decoded.getFields();
+    decoded.decode(block);
+    assertSame(decoded.getFields(), first);
+    assertFalse(block.hasRemaining());
+  }
+
+  @Test
+  public void basicDBOutputIsConverted() throws Exception {
+    String output = "***************** properties *****************\n"
+        + "READ usertable user1 [ <all fields>]\n"
+        + "READ usertable user2 [ field1 field3 ]\n"
+        + "SCAN usertable user3 12 [ field0 ]\n"
+        + "UPDATE usertable user4 [ field2=a b=c field7=xyz ]\n"
+        + "INSERT usertable user5 [ field0=12345 ]\n"
+        + "DELETE usertable user6\n";
+    File file = tempTrace();
+    TraceFormat format = new TraceFormat(TraceFormat.DEFAULT_BLOCK_SIZE, TraceFormat.DEFAULT_FIELD_PREFIX);
+    try (TraceWriter writer = new TraceWriter(file.toPath(), format);
+         TraceWriter.Appender appender = writer.newAppender()) {
+      long count = TraceConverter.convert("basicdb", new BufferedReader(new StringReader(output)), appender,
+          new TraceRecord(format), Workload.Operation.READ, "usertable", 100);
+      assertEquals(count, 6);
+    }
+
+    DescribingDB db = new DescribingDB();
+    Properties p = new Properties();
+    p.setProperty(TraceReplayWorkload.TRACE_FILE_PROPERTY, file.getPath());
+    p.setProperty("fieldcount", "2");
+    TraceReplayWorkload workload = new TraceReplayWorkload();
+    workload.init(p);
+    Object state = workload.initThread(p, 0, 1);
+    while (workload.doTransaction(db, state)) {
+      continue;
+    }
+    workload.cleanup();
+
+    assertEquals(db.operations, Arrays.asList(
+        "READ user1 null",
+        "READ user2 [field1, field3]",
+        "SCAN user3 12 [field0]",
+        "UPDATE user4 {field2=5, field7=5}",
+        "INSERT user5 {field0=5}",
+        "DELETE user6"));
+  }
+
+  @Test
+  public void recordedOperationsAreReplayed() throws Exception {
+    File file = tempTrace();
+    Properties p = new Properties();
+    p.setProperty(RecordingDB.TRACE_FILE_PROPERTY, file.getPath());
+    RecordingDB recorded = new RecordingDB(new DescribingDB());
+    recorded.setProperties(p);
+    recorded.init();
+    recorded.read("usertable", "user1", Collections.singleton("field4"), new HashMap<String, ByteIterator>());
+    recorded.insert("usertable", "user2", Collections.<String, ByteIterator>singletonMap("field0",
+        new StringByteIterator("abc")));
+    recorded.delete("usertable", "user3");
+    recorded.cleanup();
+
+    DescribingDB db = new DescribingDB();
+    p.setProperty(TraceReplayWorkload.TRACE_FILE_PROPERTY, file.getPath());
+    TraceReplayWorkload workload = new TraceReplayWorkload();
+    workload.init(p);
+    Object state = workload.initThread(p, 0, 1);
+    while (workload.doInsert(db, state)) {
+      continue;
+    }
+    workload.cleanup();
+    assertEquals(db.operations, Arrays.asList("READ user1 [field4]", "INSERT user2 {field0=3}", "DELETE user3"));
+  }
+
+  @Test
+  public void operationsWhichCannotBeRecordedAreLeftOut() throws Exception {
+    File file = tempTrace();
+    Properties p = new Properties();
+    p.setProperty(RecordingDB.TRACE_FILE_PROPERTY, file.getPath());
+    RecordingDB recorded = new RecordingDB(new DescribingDB());
+    recorded.setProperties(p);
+    recorded.init();
+    char[] longKey = new char[70000];
+    Arrays.fill(longKey, 'k');
+    recorded.read("usertable", "user1", null, new HashMap<String, ByteIterator>());
+    assertEquals(recorded.delete("usertable", new String(longKey)), Status.OK);
+    recorded.delete("usertable", "user3");
+    recorded.cleanup();
+
+    DescribingDB db = new DescribingDB();
+    p.setProperty(TraceReplayWorkload.TRACE_FILE_PROPERTY, file.getPath());
+    TraceReplayWorkload workload = new TraceReplayWorkload();
+    workload.init(p);
+    Object state = workload.initThread(p, 0, 1);
+    while (workload.doInsert(db, state)) {
+      continue;
+    }
+    workload.cleanup();
+    assertEquals(db.operations, Arrays.asList("READ user1 null", "DELETE user3"));
+  }
+
+  @Test(timeOut = 60000)
+  public void overlappingRecordedOperationsRunOnDifferentThreads() throws Exception {
+    File file = tempTrace();
+    TraceFormat format = new TraceFormat(TraceFormat.DEFAULT_BLOCK_SIZE, TraceFormat.DEFAULT_FIELD_PREFIX);
+    try (TraceWriter writer = new TraceWriter(file.toPath(), format);
+         TraceWriter.Appender appender = writer.newAppender()) {
+      TraceRecord record = new TraceRecord(format);
+      for (int i = 0; i < 4; i++) {
+        // all in one block, and all at the start of the trace
+        appender.append(record.set(Workload.Operation.READ, 0, "usertable", "user" + i, null, 0, 0));
+      }
+    }
+
+    Measurements.setProperties(new Properties());
+    Properties p = new Properties();
+    p.setProperty(TraceReplayWorkload.TRACE_FILE_PROPERTY, file.getPath());
+    p.setProperty(TraceReplayWorkload.TIMING_PROPERTY, "recorded");
+    final TraceReplayWorkload workload = new TraceReplayWorkload();
+    workload.init(p);
+    // each read waits for the other thread to be in a read as well
+    final CyclicBarrier overlap = new CyclicBarrier(2);
+    final AtomicInteger overlapped = new AtomicInteger();
+    final DB db = new DescribingDB() {
+      @Override
+      public Status read(String table, String key, Set<String> fields, Map<String, ByteIterator> result) {
+        try {
+          overlap.await(10, TimeUnit.SECONDS);
+          overlapped.incrementAndGet();
+        } catch (Exception e) {
+          overlap.reset();
+        }
+        return Status.OK;
+      }
+    };
+    Thread[] threads = new Thread[2];
+    for (int t = 0; t < threads.length; t++) {
+      final Object state = workload.initThread(p, t, threads.length);
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          while (workload.doTransaction(db, state)) {
+            continue;
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    workload.cleanup();
+    assertEquals(overlapped.get(), 4);
+  }
+
+  /**
+   * Describes every operation it receives.
+   */
+  private static class DescribingDB extends DB {
+    private final List<String> operations = new ArrayList<>();
+
+    private static String sizes(Map<String, ByteIterator> values) {
+      Map<String, Long> sizes = new TreeMap<>();
+      for (Map.Entry<String, ByteIterator> entry : values.entrySet()) {
+        sizes.put(entry.getKey(), entry.getValue().bytesLeft());
+      }
+      return sizes.toString();
+    }
+
+    private static String sorted(Set<String> fields) {
+      return fields == null ? "null" : new TreeSet<>(fields).toString();
+    }
+
+    @Override
+    public Status read(String table, String key, Set<String> fields, Map<String, ByteIterator> result) {
+      operations.add("READ " + key + " " + sorted(fields));
+      return Status.OK;
+    }
+
+    @Override
+    public Status scan(String table, String startkey, int recordcount, Set<String> fields,
+                       Vector<HashMap<String, ByteIterator>> result) {
+      operations.add("SCAN " + startkey + " " + recordcount + " " + sorted(fields));
+      return Status.OK;
+    }
+
+    @Override
+    public Status update(String table, String key, Map<String, ByteIterator> values) {
+      operations.add("UPDATE " + key + " " + sizes(values));
+      return Status.OK;
+    }
+
+    @Override
+    public Status insert(String table, String key, Map<String, ByteIterator> values) {
+      operations.add("INSERT " + key + " " + sizes(values));
+      return Status.OK;
+    }
+
+    @Override
+    public Status delete(String table, String key) {
+      operations.add("DELETE " + key);
+      return Status.OK;
+    }
+  }
+}
@@ -16,12 +16,14 @@
  */
 package com.yahoo.ycsb.workloads;
 
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertTrue;
 
 import java.util.Properties;
 
 import org.testng.annotations.Test;
 
+import com.yahoo.ycsb.Utils;
 import com.yahoo.ycsb.generator.DiscreteGenerator;
 
 public class TestCoreWorkload {
@@ -67,4 +69,25 @@ public class TestCoreWorkload {
   public void createOperationChooserNullProperties() {
     CoreWorkload.createOperationGenerator(null);
   }
-}
\ No newline at end of file
+
+  @Test
+  public void keyNamesAreUnchanged() throws Exception {
+    for (String order : new String[] {"ordered", "hashed"}) {
+      for (int padding : new int[] {1, 8, 25}) {
+        final Properties p = new Properties();
+        p.setProperty(CoreWorkload.INSERT_ORDER_PROPERTY, order);
+        p.setProperty(CoreWorkload.ZERO_PADDING_PROPERTY, String.valueOf(padding));
+        CoreWorkload workload = new CoreWorkload();
+        workload.init(p);
+        for (long keynum : new long[] {0, 5, 9, 10, 12345678, 123456789012L, Long.MAX_VALUE}) {
+          long value = order.equals("ordered") ? keynum : Utils.hash(keynum);
+          String expected = "user";
+          for (int i = Long.toString(value).length(); i < padding; i++) {
+            expected += '0';
+          }
+          assertEquals(workload.buildKeyName(keynum), expected + value);
+        }
+      }
+    }
+  }
+}
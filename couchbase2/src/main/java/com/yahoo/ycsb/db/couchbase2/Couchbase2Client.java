@@ -25,6 +25,7 @@ import com.couchbase.client.core.metrics.DefaultLatencyMetricsCollectorConfig;
 import com.couchbase.client.core.metrics.DefaultMetricsCollectorConfig;
 import com.couchbase.client.core.metrics.LatencyMetricsCollectorConfig;
 import com.couchbase.client.core.metrics.MetricsCollectorConfig;
+import com.couchbase.client.core.time.Delay;
 import com.couchbase.client.deps.com.fasterxml.jackson.core.JsonFactory;
 import com.couchbase.client.deps.com.fasterxml.jackson.core.JsonGenerator;
 import com.couchbase.client.deps.com.fasterxml.jackson.databind.JsonNode;
@@ -51,21 +52,24 @@ import com.couchbase.client.java.env.DefaultCouchbaseEnvironment;
 import com.couchbase.client.java.error.TemporaryFailureException;
 import com.couchbase.client.java.query.*;
 import com.couchbase.client.java.transcoder.JacksonTransformers;
-import com.couchbase.client.java.util.Blocking;
+import com.couchbase.client.java.util.retry.RetryBuilder;
+import com.yahoo.ycsb.AsyncDB;
 import com.yahoo.ycsb.ByteIterator;
-import com.yahoo.ycsb.DB;
 import com.yahoo.ycsb.DBException;
 import com.yahoo.ycsb.Status;
 import com.yahoo.ycsb.StringByteIterator;
 import rx.Observable;
 import rx.Subscriber;
 import rx.functions.Action1;
+import rx.functions.Func0;
 import rx.functions.Func1;
 
 import java.io.StringWriter;
 import java.io.Writer;
 import java.nio.channels.spi.SelectorProvider;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.LockSupport;
@@ -96,8 +100,11 @@ import java.util.concurrent.locks.LockSupport;
  * <li><b>couchbase.documentExpiry=0</b> Document Expiry is the amount of time until a document expires in
  *      Couchbase.</li>
  * </ul>
+ *
+ * <p> Key/Value operations and full-document scans are non-blocking, so with openloop=true a single client thread
+ * keeps many of them in flight. Operations going through N1QL only still block the calling thread.
  */
-public class Couchbase2Client extends DB {
+public class Couchbase2Client extends AsyncDB {
 
   static {
     // No need to send the full encoded_plan for this benchmark workload, less network overhead!
@@ -240,18 +247,18 @@ public class Couchbase2Client extends DB {
   }
 
   @Override
-  public Status read(final String table, final String key, Set<String> fields,
-                     final Map<String, ByteIterator> result) {
+  public CompletionStage<Status> readAsync(final String table, final String key, Set<String> fields,
+                                           final Map<String, ByteIterator> result) {
     try {
       String docId = formatId(table, key);
       if (kv) {
         return readKv(docId, fields, result);
       } else {
-        return readN1ql(docId, fields, result);
+        return CompletableFuture.completedFuture(readN1ql(docId, fields, result));
       }
     } catch (Exception ex) {
       ex.printStackTrace();
-      return Status.ERROR;
+      return CompletableFuture.completedFuture(Status.ERROR);
     }
   }
 
@@ -263,14 +270,33 @@ public class Couchbase2Client extends DB {
    * @param result the result map where the doc needs to be converted into
    * @return The result of the operation.
    */
-  private Status readKv(final String docId, final Set<String> fields, final Map<String, ByteIterator> result)
-    throws Exception {
-    RawJsonDocument loaded = bucket.get(docId, RawJsonDocument.class);
-    if (loaded == null) {
-      return Status.NOT_FOUND;
-    }
-    decode(loaded.content(), fields, result);
-    return Status.OK;
+  private CompletionStage<Status> readKv(final String docId, final Set<String> fields,
+                                         final Map<String, ByteIterator> result) {
+    final CompletableFuture<Status> future = new CompletableFuture<Status>();
+    bucket.async()
+        .get(docId, RawJsonDocument.class)
+        .timeout(kvTimeout, TimeUnit.MILLISECONDS)
+        .subscribe(new Subscriber<RawJsonDocument>() {
+          private boolean found = false;
+
+          @Override
+          public void onCompleted() {
+            future.complete(found ? Status.OK : Status.NOT_FOUND);
+          }
+
+          @Override
+          public void onError(Throwable e) {
+            e.printStackTrace();
+            future.complete(Status.ERROR);
+          }
+
+          @Override
+          public void onNext(RawJsonDocument loaded) {
+            found = true;
+            decode(loaded.content(), fields, result);
+          }
+        });
+    return future;
   }
 
   /**
@@ -319,7 +345,8 @@ public class Couchbase2Client extends DB {
   }
 
   @Override
-  public Status update(final String table, final String key, final Map<String, ByteIterator> values) {
+  public CompletionStage<Status> updateAsync(final String table, final String key,
+                                             final Map<String, ByteIterator> values) {
     if (upsert) {
       return upsert(table, key, values);
     }
@@ -329,11 +356,11 @@ public class Couchbase2Client extends DB {
       if (kv) {
         return updateKv(docId, values);
       } else {
-        return updateN1ql(docId, values);
+        return CompletableFuture.completedFuture(updateN1ql(docId, values));
       }
     } catch (Exception ex) {
       ex.printStackTrace();
-      return Status.ERROR;
+      return CompletableFuture.completedFuture(Status.ERROR);
     }
   }
 
@@ -344,13 +371,12 @@ public class Couchbase2Client extends DB {
    * @param values the values to update the document with.
    * @return The result of the operation.
    */
-  private Status updateKv(final String docId, final Map<String, ByteIterator> values) {
-    waitForMutationResponse(bucket.async().replace(
+  private CompletionStage<Status> updateKv(final String docId, final Map<String, ByteIterator> values) {
+    return mutationResponse(bucket.async().replace(
         RawJsonDocument.create(docId, documentExpiry, encode(values)),
         persistTo,
         replicateTo
-    ));
-    return Status.OK;
+    ).timeout(kvTimeout, TimeUnit.MILLISECONDS));
   }
 
   /**
@@ -381,7 +407,8 @@ public class Couchbase2Client extends DB {
   }
 
   @Override
-  public Status insert(final String table, final String key, final Map<String, ByteIterator> values) {
+  public CompletionStage<Status> insertAsync(final String table, final String key,
+                                             final Map<String, ByteIterator> values) {
     if (upsert) {
       return upsert(table, key, values);
     }
@@ -391,11 +418,11 @@ public class Couchbase2Client extends DB {
       if (kv) {
         return insertKv(docId, values);
       } else {
-        return insertN1ql(docId, values);
+        return CompletableFuture.completedFuture(insertN1ql(docId, values));
       }
     } catch (Exception ex) {
       ex.printStackTrace();
-      return Status.ERROR;
+      return CompletableFuture.completedFuture(Status.ERROR);
     }
   }
 
@@ -404,34 +431,30 @@ public class Couchbase2Client extends DB {
    *
    * Note that during the "load" phase it makes sense to retry TMPFAILS (so that even if the server is
    * overloaded temporarily the ops will succeed eventually). The current code will retry TMPFAILs
-   * for maximum of one minute and then bubble up the error.
+   * for maximum of one minute and then bubble up the error. The retries are scheduled on the SDK's
+   * computation scheduler, so the calling thread is not held up by the backoff.
    *
    * @param docId the document ID
    * @param values the values to update the document with.
    * @return The result of the operation.
    */
-  private Status insertKv(final String docId, final Map<String, ByteIterator> values) {
-    int tries = 60; // roughly 60 seconds with the 1 second sleep, not 100% accurate.
-
-    for(int i = 0; i < tries; i++) {
-      try {
-        waitForMutationResponse(bucket.async().insert(
-            RawJsonDocument.create(docId, documentExpiry, encode(values)),
-            persistTo,
-            replicateTo
-        ));
-        return Status.OK;
-      } catch (TemporaryFailureException ex) {
-        try {
-          Thread.sleep(1000);
-        } catch (InterruptedException e) {
-          throw new RuntimeException("Interrupted while sleeping on TMPFAIL backoff.", ex);
-        }
-      }
-    }
+  private CompletionStage<Status> insertKv(final String docId, final Map<String, ByteIterator> values) {
+    int tries = 60; // roughly 60 seconds with the 1 second delay, not 100% accurate.
 
-    throw new RuntimeException("Still receiving TMPFAIL from the server after trying " + tries + " times. " +
-      "Check your server.");
+    final RawJsonDocument document = RawJsonDocument.create(docId, documentExpiry, encode(values));
+    return mutationResponse(Observable
+        .defer(new Func0<Observable<RawJsonDocument>>() {
+          @Override
+          public Observable<RawJsonDocument> call() {
+            return bucket.async().insert(document, persistTo, replicateTo)
+                .timeout(kvTimeout, TimeUnit.MILLISECONDS);
+          }
+        })
+        .retryWhen(RetryBuilder
+            .anyOf(TemporaryFailureException.class)
+            .delay(Delay.fixed(1, TimeUnit.SECONDS))
+            .max(tries)
+            .build()));
   }
 
   /**
@@ -470,17 +493,18 @@ public class Couchbase2Client extends DB {
    * @param values A HashMap of field/value pairs to insert in the record
    * @return The result of the operation.
    */
-  private Status upsert(final String table, final String key, final Map<String, ByteIterator> values) {
+  private CompletionStage<Status> upsert(final String table, final String key,
+                                         final Map<String, ByteIterator> values) {
     try {
       String docId = formatId(table, key);
       if (kv) {
         return upsertKv(docId, values);
       } else {
-        return upsertN1ql(docId, values);
+        return CompletableFuture.completedFuture(upsertN1ql(docId, values));
       }
     } catch (Exception ex) {
       ex.printStackTrace();
-      return Status.ERROR;
+      return CompletableFuture.completedFuture(Status.ERROR);
     }
   }
 
@@ -493,13 +517,12 @@ public class Couchbase2Client extends DB {
    * @param values the values to update the document with.
    * @return The result of the operation.
    */
-  private Status upsertKv(final String docId, final Map<String, ByteIterator> values) {
-    waitForMutationResponse(bucket.async().upsert(
+  private CompletionStage<Status> upsertKv(final String docId, final Map<String, ByteIterator> values) {
+    return mutationResponse(bucket.async().upsert(
         RawJsonDocument.create(docId, documentExpiry, encode(values)),
         persistTo,
         replicateTo
-    ));
-    return Status.OK;
+    ).timeout(kvTimeout, TimeUnit.MILLISECONDS));
   }
 
   /**
@@ -529,17 +552,17 @@ public class Couchbase2Client extends DB {
   }
 
   @Override
-  public Status delete(final String table, final String key) {
+  public CompletionStage<Status> deleteAsync(final String table, final String key) {
     try {
       String docId = formatId(table, key);
       if (kv) {
         return deleteKv(docId);
       } else {
-        return deleteN1ql(docId);
+        return CompletableFuture.completedFuture(deleteN1ql(docId));
       }
     } catch (Exception ex) {
       ex.printStackTrace();
-      return Status.ERROR;
+      return CompletableFuture.completedFuture(Status.ERROR);
     }
   }
 
@@ -549,13 +572,12 @@ public class Couchbase2Client extends DB {
    * @param docId the document ID.
    * @return The result of the operation.
    */
-  private Status deleteKv(final String docId) {
-    waitForMutationResponse(bucket.async().remove(
+  private CompletionStage<Status> deleteKv(final String docId) {
+    return mutationResponse(bucket.async().remove(
         docId,
         persistTo,
         replicateTo
-    ));
-    return Status.OK;
+    ).timeout(kvTimeout, TimeUnit.MILLISECONDS));
   }
 
   /**
@@ -582,17 +604,17 @@ public class Couchbase2Client extends DB {
   }
 
   @Override
-  public Status scan(final String table, final String startkey, final int recordcount, final Set<String> fields,
-      final Vector<HashMap<String, ByteIterator>> result) {
+  public CompletionStage<Status> scanAsync(final String table, final String startkey, final int recordcount,
+      final Set<String> fields, final Vector<HashMap<String, ByteIterator>> result) {
     try {
       if (fields == null || fields.isEmpty()) {
         return scanAllFields(table, startkey, recordcount, result);
       } else {
-        return scanSpecificFields(table, startkey, recordcount, fields, result);
+        return CompletableFuture.completedFuture(scanSpecificFields(table, startkey, recordcount, fields, result));
       }
     } catch (Exception ex) {
       ex.printStackTrace();
-      return Status.ERROR;
+      return CompletableFuture.completedFuture(Status.ERROR);
     }
   }
 
@@ -609,9 +631,9 @@ public class Couchbase2Client extends DB {
    * @param result A Vector of HashMaps, where each HashMap is a set field/value pairs for one record
    * @return The result of the operation.
    */
-  private Status scanAllFields(final String table, final String startkey, final int recordcount,
+  private CompletionStage<Status> scanAllFields(final String table, final String startkey, final int recordcount,
       final Vector<HashMap<String, ByteIterator>> result) {
-    final List<HashMap<String, ByteIterator>> data = new ArrayList<HashMap<String, ByteIterator>>(recordcount);
+    final CompletableFuture<Status> future = new CompletableFuture<Status>();
     bucket.async()
         .query(N1qlQuery.parameterized(
           scanAllQuery,
@@ -648,16 +670,25 @@ public class Couchbase2Client extends DB {
             return tuple;
           }
         })
-        .toBlocking()
-        .forEach(new Action1<HashMap<String, ByteIterator>>() {
+        .toList()
+        .subscribe(new Subscriber<List<HashMap<String, ByteIterator>>>() {
           @Override
-          public void call(HashMap<String, ByteIterator> tuple) {
-            data.add(tuple);
+          public void onCompleted() {
+            future.complete(Status.OK);
           }
-        });
 
-    result.addAll(data);
-    return Status.OK;
+          @Override
+          public void onError(Throwable e) {
+            e.printStackTrace();
+            future.complete(Status.ERROR);
+          }
+
+          @Override
+          public void onNext(List<HashMap<String, ByteIterator>> data) {
+            result.addAll(data);
+          }
+        });
+    return future;
   }
 
   /**
@@ -704,16 +735,17 @@ public class Couchbase2Client extends DB {
   }
 
   /**
-   * Helper method to block on the response, depending on the property set.
+   * Helper method to turn the response into a status, depending on the property set.
    *
-   * By default, since YCSB is sync the code will always wait for the operation to complete. In some
+   * By default the returned stage completes once the server has acknowledged the mutation. In some
    * cases it can be useful to just "drive load" and disable the waiting. Note that when the
    * "-p couchbase.syncMutationResponse=false" option is used, the measured results by YCSB can basically
    * be thrown away. Still helpful sometimes during load phases to speed them up :)
    *
    * @param input the async input observable.
+   * @return A stage completing with the result of the mutation.
    */
-  private void waitForMutationResponse(final Observable<? extends Document<?>> input) {
+  private CompletionStage<Status> mutationResponse(final Observable<? extends Document<?>> input) {
     if (!syncMutResponse) {
       ((Observable<Document<?>>)input).subscribe(new Subscriber<Document<?>>() {
         @Override
@@ -728,9 +760,27 @@ public class Couchbase2Client extends DB {
         public void onNext(Document<?> document) {
         }
       });
-    } else {
-      Blocking.blockForSingle(input, kvTimeout, TimeUnit.MILLISECONDS);
+      return CompletableFuture.completedFuture(Status.OK);
     }
+
+    final CompletableFuture<Status> future = new CompletableFuture<Status>();
+    ((Observable<Document<?>>)input).subscribe(new Subscriber<Document<?>>() {
+      @Override
+      public void onCompleted() {
+        future.complete(Status.OK);
+      }
+
+      @Override
+      public void onError(Throwable e) {
+        e.printStackTrace();
+        future.complete(Status.ERROR);
+      }
+
+      @Override
+      public void onNext(Document<?> document) {
+      }
+    });
+    return future;
   }
 
   /**
@@ -29,6 +29,7 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.CellUtil;
 import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.client.BufferedMutator;
 import org.apache.hadoop.hbase.client.BufferedMutatorParams;
@@ -46,6 +47,7 @@ import org.apache.hadoop.hbase.filter.PageFilter;
 import org.apache.hadoop.hbase.util.Bytes;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ConcurrentModificationException;
 import java.util.HashMap;
 import java.util.Map;
@@ -428,12 +430,14 @@ public class HBaseClient10 extends com.yahoo.ycsb.DB {
     Put p = new Put(Bytes.toBytes(key));
     p.setDurability(durability);
     for (Map.Entry<String, ByteIterator> entry : values.entrySet()) {
-      byte[] value = entry.getValue().toArray();
+      // Handed to HBase as a buffer, which it copies straight into the cell, without an intermediate array
+      ByteBuffer value = entry.getValue().toByteBuffer();
       if (debug) {
         System.out.println("Adding field/value " + entry.getKey() + "/"
             + Bytes.toStringBinary(value) + " to put request");
       }
-      p.addColumn(columnFamilyBytes, Bytes.toBytes(entry.getKey()), value);
+      p.addColumn(columnFamilyBytes, ByteBuffer.wrap(Bytes.toBytes(entry.getKey())), HConstants.LATEST_TIMESTAMP,
+          value);
     }
 
     try {
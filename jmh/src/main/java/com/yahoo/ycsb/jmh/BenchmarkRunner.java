@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.jmh;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.ProfilerConfig;
+
+/**
+ * Runs the benchmarks twice, with a single thread and with a thread per processor, with the GC profiler reporting
+ * the bytes allocated per operation. Takes the usual JMH options; with -t the benchmarks run with that many threads
+ * only.
+ */
+public final class BenchmarkRunner {
+  private BenchmarkRunner() {
+    // not used
+  }
+
+  public static void main(String[] args) throws Exception {
+    CommandLineOptions cmd = new CommandLineOptions(args);
+    if (cmd.shouldHelp() || cmd.shouldList() || cmd.shouldListWithParams() || cmd.shouldListProfilers()
+        || cmd.shouldListResultFormats()) {
+      Main.main(args);
+      return;
+    }
+
+    int[] threads;
+    if (cmd.getThreads().hasValue()) {
+      threads = new int[] {cmd.getThreads().get()};
+    } else {
+      threads = new int[] {1, Runtime.getRuntime().availableProcessors()};
+    }
+    boolean gcProfiler = false;
+    for (ProfilerConfig profiler : cmd.getProfilers()) {
+      if (profiler.getKlass().equals(GCProfiler.class.getName()) || profiler.getKlass().equals("gc")) {
+        gcProfiler = true;
+      }
+    }
+
+    for (int t : threads) {
+      ChainedOptionsBuilder options = new OptionsBuilder().parent(cmd).threads(t);
+      if (!gcProfiler) {
+        options.addProfiler(GCProfiler.class);
+      }
+      if (cmd.getResult().hasValue() && threads.length > 1) {
+        // one result file per thread count, rather than the second run overwriting the first
+        options.result(cmd.getResult().get().replaceFirst("(\\.[^./]*)?$", "-t" + t + "$1"));
+      }
+      new Runner(options.build()).run();
+    }
+  }
+}
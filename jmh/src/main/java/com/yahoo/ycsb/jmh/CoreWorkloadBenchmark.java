@@ -0,0 +1,101 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.jmh;
+
+import com.yahoo.ycsb.ByteIterator;
+import com.yahoo.ycsb.Client;
+import com.yahoo.ycsb.WorkloadException;
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.workloads.CoreWorkload;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.Properties;
+
+/**
+ * Building the key and the values of a record, which CoreWorkload does for every operation.
+ */
+@State(Scope.Benchmark)
+public class CoreWorkloadBenchmark {
+
+  /**
+   * Makes the record building methods of CoreWorkload callable.
+   */
+  static class Workload extends CoreWorkload {
+    String key(long keynum) {
+      return buildKeyName(keynum);
+    }
+
+    HashMap<String, ByteIterator> values(String key) {
+      return buildValues(key);
+    }
+  }
+
+  /**
+   * The key number of each thread.
+   */
+  @State(Scope.Thread)
+  public static class Keys {
+    private long next;
+
+    long next() {
+      return next++;
+    }
+  }
+
+  @Param({"hashed", "ordered"})
+  private String insertorder;
+
+  @Param({"10"})
+  private String fieldcount;
+
+  @Param({"100"})
+  private String fieldlength;
+
+  @Param({"false", "true"})
+  private String valuepool;
+
+  private Workload workload;
+
+  @Setup
+  public void setup() throws WorkloadException {
+    Properties props = new Properties();
+    props.setProperty(Client.RECORD_COUNT_PROPERTY, "10000000");
+    props.setProperty(CoreWorkload.INSERT_ORDER_PROPERTY, insertorder);
+    props.setProperty(CoreWorkload.FIELD_COUNT_PROPERTY, fieldcount);
+    props.setProperty(CoreWorkload.FIELD_LENGTH_PROPERTY, fieldlength);
+    props.setProperty(CoreWorkload.VALUE_POOL_PROPERTY, valuepool);
+    Measurements.setProperties(props);
+    workload = new Workload();
+    workload.init(props);
+  }
+
+  @Benchmark
+  public String buildKeyName(Keys keys) {
+    return workload.key(keys.next());
+  }
+
+  @Benchmark
+  public HashMap<String, ByteIterator> buildValues(Keys keys) {
+    return workload.values(workload.key(keys.next()));
+  }
+}
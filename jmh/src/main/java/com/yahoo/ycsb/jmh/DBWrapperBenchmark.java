@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.jmh;
+
+import com.yahoo.ycsb.ByteIterator;
+import com.yahoo.ycsb.DB;
+import com.yahoo.ycsb.DBException;
+import com.yahoo.ycsb.DBWrapper;
+import com.yahoo.ycsb.Status;
+import com.yahoo.ycsb.measurements.Measurements;
+import org.apache.htrace.core.Tracer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+
+/**
+ * The cost DBWrapper adds to an operation: tracing, timing it and recording the latency and the status, around a
+ * database which does nothing. All threads share the wrapper's measurements, as they do in a run.
+ */
+@State(Scope.Benchmark)
+public class DBWrapperBenchmark {
+
+  /**
+   * A database which returns at once.
+   */
+  public static class NoopDB extends DB {
+    @Override
+    public Status read(String table, String key, Set<String> fields, Map<String, ByteIterator> result) {
+      return Status.OK;
+    }
+
+    @Override
+    public Status scan(String table, String startkey, int recordcount, Set<String> fields,
+                       Vector<HashMap<String, ByteIterator>> result) {
+      return Status.OK;
+    }
+
+    @Override
+    public Status update(String table, String key, Map<String, ByteIterator> values) {
+      return Status.OK;
+    }
+
+    @Override
+    public Status insert(String table, String key, Map<String, ByteIterator> values) {
+      return Status.OK;
+    }
+
+    @Override
+    public Status delete(String table, String key) {
+      return Status.OK;
+    }
+  }
+
+  @Param({"hdrhistogram", "histogram"})
+  private String measurementtype;
+
+  @Param({"op", "both"})
+  private String interval;
+
+  private DB db;
+
+  @Setup
+  public void setup() throws DBException {
+    Properties props = new Properties();
+    props.setProperty(Measurements.MEASUREMENT_TYPE_PROPERTY, measurementtype);
+    props.setProperty(Measurements.MEASUREMENT_INTERVAL, interval);
+    // each combination of parameters runs in a JVM of its own, so the shared measurements are these
+    Measurements.setProperties(props);
+    db = new DBWrapper(new NoopDB(), new Tracer.Builder("DBWrapperBenchmark").build());
+    db.setProperties(props);
+    db.init();
+  }
+
+  @TearDown
+  public void tearDown() throws DBException {
+    db.cleanup();
+  }
+
+  @Benchmark
+  public Status read() {
+    return db.read("usertable", "user1", null, null);
+  }
+}
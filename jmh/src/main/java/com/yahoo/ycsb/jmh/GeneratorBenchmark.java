@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.jmh;
+
+import com.yahoo.ycsb.generator.AcknowledgedCounterGenerator;
+import com.yahoo.ycsb.generator.DiscreteGenerator;
+import com.yahoo.ycsb.generator.ScrambledZipfianGenerator;
+import com.yahoo.ycsb.generator.ZipfianGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The generators choosing keys and operations. Like in a run, one instance of each generator is shared by all the
+ * benchmark threads.
+ */
+@State(Scope.Benchmark)
+public class GeneratorBenchmark {
+  private static final long RECORDS = 10000000L;
+
+  private ZipfianGenerator zipfian;
+  private ScrambledZipfianGenerator scrambledZipfian;
+  private DiscreteGenerator discrete;
+  private AcknowledgedCounterGenerator counter;
+
+  @Setup
+  public void setup() {
+    zipfian = new ZipfianGenerator(RECORDS);
+    scrambledZipfian = new ScrambledZipfianGenerator(RECORDS);
+    discrete = new DiscreteGenerator();
+    discrete.addValue(0.5, "READ");
+    discrete.addValue(0.3, "UPDATE");
+    discrete.addValue(0.15, "INSERT");
+    discrete.addValue(0.05, "SCAN");
+    counter = new AcknowledgedCounterGenerator(0);
+  }
+
+  @Benchmark
+  public long zipfian() {
+    return zipfian.nextValue();
+  }
+
+  @Benchmark
+  public long scrambledZipfian() {
+    return scrambledZipfian.nextValue();
+  }
+
+  @Benchmark
+  public String discrete() {
+    return discrete.nextValue();
+  }
+
+  /**
+   * An insert: take the next key, then acknowledge it once written.
+   */
+  @Benchmark
+  public long acknowledgedCounter() {
+    long value = counter.nextValue();
+    counter.acknowledge(value);
+    return value;
+  }
+}
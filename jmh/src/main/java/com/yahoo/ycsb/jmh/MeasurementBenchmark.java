@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.jmh;
+
+import com.yahoo.ycsb.Status;
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.OneMeasurementHdrHistogram;
+import com.yahoo.ycsb.measurements.OneMeasurementRaw;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Recording a latency and a status with each type of OneMeasurement, all threads recording the same operation.
+ */
+@State(Scope.Benchmark)
+public class MeasurementBenchmark {
+  @Param({"hdrhistogram", "histogram", "hdrhistogram+histogram", "hdrhistogram+raw", "timeseries", "raw"})
+  private String measurementtype;
+
+  /** Pass -p correction=true to also record the coordinated omission corrected histograms. */
+  @Param({"false"})
+  private String correction;
+
+  private File rawOutput;
+  private Measurements measurements;
+  private int handle;
+
+  @Setup
+  public void setup() throws IOException {
+    rawOutput = File.createTempFile("raw", ".csv");
+    Properties props = new Properties();
+    props.setProperty(Measurements.MEASUREMENT_TYPE_PROPERTY, measurementtype);
+    props.setProperty(OneMeasurementHdrHistogram.CORRECTION_PROPERTY, correction);
+    props.setProperty(OneMeasurementRaw.OUTPUT_FILE_PATH, rawOutput.getPath());
+    measurements = new Measurements(props);
+    handle = measurements.getOperationHandle("READ");
+  }
+
+  @TearDown
+  public void tearDown() {
+    rawOutput.delete();
+  }
+
+  @Benchmark
+  public void measure() {
+    measurements.measure(handle, ThreadLocalRandom.current().nextInt(100, 10000));
+    measurements.reportStatus(handle, Status.OK);
+  }
+}
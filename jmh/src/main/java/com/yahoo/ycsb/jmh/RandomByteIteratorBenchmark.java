@@ -0,0 +1,48 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.jmh;
+
+import com.yahoo.ycsb.ByteIterator;
+import com.yahoo.ycsb.RandomByteIterator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Generating a random value, the way bindings consume it: all at once into an array, or byte by byte.
+ */
+@State(Scope.Thread)
+public class RandomByteIteratorBenchmark {
+  @Param({"100", "1000"})
+  private int length;
+
+  @Benchmark
+  public byte[] toArray() {
+    return new RandomByteIterator(length).toArray();
+  }
+
+  @Benchmark
+  public void nextByte(Blackhole blackhole) {
+    ByteIterator iterator = new RandomByteIterator(length);
+    while (iterator.hasNext()) {
+      blackhole.consume(iterator.nextByte());
+    }
+  }
+}
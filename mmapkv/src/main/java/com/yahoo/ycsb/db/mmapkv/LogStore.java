@@ -0,0 +1,645 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.db.mmapkv;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * A key-value store kept in an append-only log of memory-mapped {@link Segment segments}, with a sorted index of
+ * each table in memory.
+ * <p>
+ * Every write appends an entry to the active segment, then points the index at it. Writes of one key are serialized
+ * by a lock of a stripe of keys, so the order of the entries of a key in the log is the order of its index updates,
+ * and replaying the log on open rebuilds the same index. Reads and scans take no lock: they follow the index into
+ * the mapped segments.
+ * </p>
+ * <p>
+ * When a segment is full, the next one becomes active. A background thread compacts the segments whose live entries
+ * fall below a share of their size: it appends the live entries again, then removes the segment. A delete counts as
+ * live for as long as an older entry of its key is left in some segment, since replaying the log would bring that
+ * entry back without it.
+ * </p>
+ */
+final class LogStore {
+  /**
+   * When a write is made durable before it returns.
+   */
+  enum Fsync {
+    /** Never, the operating system writes the mapped pages out when it sees fit. */
+    NONE,
+    /** At the next group commit, which forces the active segment for all the writes since the previous one. */
+    GROUP,
+    /** Right away, each write forces the active segment. */
+    ALWAYS
+  }
+
+  /**
+   * Where the record of a key is.
+   */
+  static final class Location {
+    private final Segment segment;
+    private final int offset;
+    private final int length;
+    /** Of the whole entry. */
+    private final int size;
+    /** The earlier puts of the key still in some segment; guarded by the lock of the stripe of the key. */
+    private int hidden;
+
+    private Location(Segment segment, int offset, int length, int size) {
+      this.segment = segment;
+      this.offset = offset;
+      this.length = length;
+      this.size = size;
+    }
+
+    byte[] read() {
+      return segment.read(offset, length);
+    }
+  }
+
+  /**
+   * An entry of a segment, as found when going over it.
+   */
+  private static final class Entry {
+    private byte type;
+    private String table;
+    private String key;
+    private Location location;
+  }
+
+  private static final int STRIPES = 1024;
+
+  private final File dir;
+  private final int segmentSize;
+  private final Fsync fsync;
+  private final long fsyncIntervalNanos;
+  private final double compactionThreshold;
+  private final long compactionIntervalNanos;
+
+  private final ConcurrentMap<String, ConcurrentSkipListMap<String, Location>> tables = new ConcurrentHashMap<>();
+  /** The deletes of each table which still hide a put, by key. */
+  private final ConcurrentMap<String, ConcurrentMap<String, Location>> tombstones = new ConcurrentHashMap<>();
+  private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+  private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+
+  /** Guards appending to the active segment, rolling to the next one and {@link #appended}. */
+  private final Object appendLock = new Object();
+  private volatile Segment active;
+  private long appended;
+
+  /** Guards {@link #durable}, writers wait on it for a group commit. */
+  private final Object durableLock = new Object();
+  private long durable;
+
+  /** The background threads; also what they wait on between runs. */
+  private final List<Thread> threads = new ArrayList<>();
+  private volatile boolean closed;
+
+  /**
+   * Open the store in a directory, replaying the segments found there.
+   *
+   * @param segmentSize The size of a segment file, in bytes.
+   * @param fsyncIntervalMs The time between group commits.
+   * @param compactionThreshold The share of live entries under which a segment is compacted.
+   * @param compactionIntervalMs The time between looks for segments to compact, 0 to never compact.
+   */
+  static LogStore open(File dir, int segmentSize, Fsync fsync, long fsyncIntervalMs, double compactionThreshold,
+                       long compactionIntervalMs) throws IOException {
+    LogStore store = new LogStore(dir, segmentSize, fsync, fsyncIntervalMs, compactionThreshold,
+        compactionIntervalMs);
+    store.recover();
+    store.start();
+    return store;
+  }
+
+  private LogStore(File dir, int segmentSize, Fsync fsync, long fsyncIntervalMs, double compactionThreshold,
+                   long compactionIntervalMs) {
+    this.dir = dir;
+    this.segmentSize = segmentSize;
+    this.fsync = fsync;
+    this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMs);
+    this.compactionThreshold = compactionThreshold;
+    this.compactionIntervalNanos = TimeUnit.MILLISECONDS.toNanos(compactionIntervalMs);
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new ReentrantLock();
+    }
+  }
+
+  private void recover() throws IOException {
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      throw new IOException("Could not create " + dir);
+    }
+    TreeMap<Long, File> files = new TreeMap<>();
+    File[] children = dir.listFiles();
+    if (children != null) {
+      for (File file : children) {
+        long id = Segment.parseId(file.getName());
+        if (id >= 0) {
+          files.put(id, file);
+        }
+      }
+    }
+    for (long id : files.keySet()) {
+      Segment segment = Segment.open(dir, id, segmentSize);
+      segments.put(id, segment);
+      Entry entry = new Entry();
+      int position = 0;
+      // a torn or partly written entry ends the segment
+      while (readEntry(segment, position, entry, true)) {
+        if (entry.type == Segment.PUT) {
+          indexPut(entry.table, entry.key, entry.location);
+        } else {
+          indexDelete(entry.table, entry.key, entry.location);
+        }
+        position += entry.location.size;
+      }
+      segment.setPosition(position);
+      active = segment;
+    }
+    if (active == null) {
+      roll();
+    }
+  }
+
+  private void start() {
+    if (fsync == Fsync.GROUP) {
+      threads.add(new Thread("mmapkv-group-commit") {
+        @Override
+        public void run() {
+          while (pause(fsyncIntervalNanos)) {
+            groupCommit();
+          }
+        }
+      });
+    }
+    if (compactionIntervalNanos > 0) {
+      threads.add(new Thread("mmapkv-compaction") {
+        @Override
+        public void run() {
+          while (pause(compactionIntervalNanos)) {
+            try {
+              compact();
+            } catch (IOException e) {
+              System.err.println("mmapkv: compaction failed, stopping it: " + e);
+              return;
+            }
+          }
+        }
+      });
+    }
+    for (Thread thread : threads) {
+      thread.setDaemon(true);
+      thread.start();
+    }
+  }
+
+  /**
+   * @return False if the store was closed meanwhile.
+   */
+  private boolean pause(long nanos) {
+    long deadline = System.nanoTime() + nanos;
+    synchronized (threads) {
+      long remaining = nanos;
+      while (!closed && remaining > 0) {
+        try {
+          TimeUnit.NANOSECONDS.timedWait(threads, remaining);
+        } catch (InterruptedException e) {
+          return false;
+        }
+        remaining = deadline - System.nanoTime();
+      }
+    }
+    return !closed;
+  }
+
+  /**
+   * Stop the background threads, and make every write durable unless the fsync policy is none.
+   */
+  void close() {
+    // not interrupted, that would close the channel of a segment being mapped
+    synchronized (threads) {
+      closed = true;
+      threads.notifyAll();
+    }
+    for (Thread thread : threads) {
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    if (fsync != Fsync.NONE) {
+      groupCommit();
+    }
+    synchronized (durableLock) {
+      durableLock.notifyAll();
+    }
+  }
+
+  private ConcurrentSkipListMap<String, Location> index(String table) {
+    ConcurrentSkipListMap<String, Location> index = tables.get(table);
+    if (index == null) {
+      ConcurrentSkipListMap<String, Location> created = new ConcurrentSkipListMap<>();
+      index = tables.putIfAbsent(table, created);
+      if (index == null) {
+        index = created;
+      }
+    }
+    return index;
+  }
+
+  private ConcurrentMap<String, Location> tombstones(String table) {
+    ConcurrentMap<String, Location> deletes = tombstones.get(table);
+    if (deletes == null) {
+      ConcurrentMap<String, Location> created = new ConcurrentHashMap<>();
+      deletes = tombstones.putIfAbsent(table, created);
+      if (deletes == null) {
+        deletes = created;
+      }
+    }
+    return deletes;
+  }
+
+  private ReentrantLock stripe(String table, String key) {
+    int hash = table.hashCode() * 31 + key.hashCode();
+    return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+  }
+
+  /**
+   * Move the live bytes of a key from the segment of its old entry to the one of its new entry.
+   */
+  private static void replaced(Location old, Location now) {
+    if (old != null) {
+      old.segment.addLiveBytes(-old.size);
+    }
+    if (now != null) {
+      now.segment.addLiveBytes(now.size);
+    }
+  }
+
+  /**
+   * Point the index at a new put of a key, which hides the entries of the key before it. Called with the lock of the
+   * stripe of the key held.
+   */
+  private void indexPut(String table, String key, Location location) {
+    Location old = index(table).put(key, location);
+    Location tombstone = tombstones(table).remove(key);
+    if (old != null) {
+      location.hidden = old.hidden + 1;
+    } else if (tombstone != null) {
+      location.hidden = tombstone.hidden;
+    }
+    replaced(old, location);
+    replaced(tombstone, null);
+  }
+
+  /**
+   * Take a deleted key out of the index, keeping the delete as long as it hides a put. Called with the lock of the
+   * stripe of the key held.
+   */
+  private void indexDelete(String table, String key, Location location) {
+    Location old = index(table).remove(key);
+    Location tombstone = tombstones(table).get(key);
+    if (old != null) {
+      location.hidden = old.hidden + 1;
+    } else if (tombstone != null) {
+      // the copy of a delete, made by a compaction which did not get to remove the original
+      location.hidden = tombstone.hidden;
+    } else {
+      return;
+    }
+    tombstones(table).put(key, location);
+    replaced(old, location);
+    replaced(tombstone, null);
+  }
+
+  /**
+   * @return The record of a key, or null if there is none.
+   */
+  byte[] get(String table, String key) {
+    Location location = index(table).get(key);
+    return location == null ? null : location.read();
+  }
+
+  /**
+   * @return Up to count records, in the order of their keys, starting from the given key.
+   */
+  List<byte[]> scan(String table, String startkey, int count) {
+    List<byte[]> records = new ArrayList<>(Math.max(0, Math.min(count, 1024)));
+    if (count <= 0) {
+      return records;
+    }
+    for (Location location : index(table).tailMap(startkey, true).values()) {
+      records.add(location.read());
+      if (records.size() == count) {
+        break;
+      }
+    }
+    return records;
+  }
+
+  /**
+   * A change to the record of a key.
+   */
+  interface Change {
+    /**
+     * @param record The record, or null if there is none.
+     * @return The new record, or null to leave the key as it is.
+     */
+    byte[] apply(byte[] record);
+  }
+
+  /**
+   * Change the record of a key, atomically with respect to the other writes of the key.
+   *
+   * @return False if the change left the key as it was.
+   */
+  boolean put(String table, String key, Change change) throws IOException {
+    ConcurrentSkipListMap<String, Location> index = index(table);
+    ReentrantLock lock = stripe(table, key);
+    Location location;
+    lock.lock();
+    try {
+      Location old = index.get(key);
+      byte[] record = change.apply(old == null ? null : old.read());
+      if (record == null) {
+        return false;
+      }
+      location = append(Segment.PUT, table, key, record);
+      indexPut(table, key, location);
+    } finally {
+      lock.unlock();
+    }
+    awaitDurable(location.segment);
+    return true;
+  }
+
+  /**
+   * Delete the record of a key.
+   *
+   * @return False if there was none.
+   */
+  boolean delete(String table, String key) throws IOException {
+    ConcurrentSkipListMap<String, Location> index = index(table);
+    ReentrantLock lock = stripe(table, key);
+    Location tombstone;
+    lock.lock();
+    try {
+      if (!index.containsKey(key)) {
+        return false;
+      }
+      tombstone = append(Segment.DELETE, table, key, new byte[0]);
+      indexDelete(table, key, tombstone);
+    } finally {
+      lock.unlock();
+    }
+    awaitDurable(tombstone.segment);
+    return true;
+  }
+
+  /**
+   * Append an entry to the active segment, moving to a new one if it is full.
+   *
+   * @return The location of the record of the entry.
+   */
+  private Location append(byte type, String table, String key, byte[] record) throws IOException {
+    byte[] tableBytes = table.getBytes(StandardCharsets.UTF_8);
+    byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+    int length = 5 + tableBytes.length + keyBytes.length + record.length;
+    int size = Segment.ENTRY_HEADER_SIZE + length;
+    if (size > segmentSize) {
+      throw new IOException("An entry of " + size + " bytes does not fit in segments of " + segmentSize + " bytes");
+    }
+    ByteBuffer entry = ByteBuffer.allocate(size);
+    entry.putInt(length).putInt(0).put(type);
+    entry.putShort((short) tableBytes.length).put(tableBytes).putShort((short) keyBytes.length).put(keyBytes);
+    entry.put(record);
+    CRC32 checksum = new CRC32();
+    checksum.update(entry.array(), Segment.ENTRY_HEADER_SIZE, length);
+    entry.putInt(4, (int) checksum.getValue());
+    entry.flip();
+
+    Segment segment;
+    int offset;
+    synchronized (appendLock) {
+      if (!active.fits(size)) {
+        roll();
+      }
+      segment = active;
+      offset = segment.append(entry);
+      appended++;
+    }
+    return new Location(segment, offset + size - record.length, record.length, size);
+  }
+
+  /**
+   * Make a new segment the active one. Called with the append lock held, or before the store is in use.
+   */
+  private void roll() throws IOException {
+    Segment previous = active;
+    long id = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+    Segment next = Segment.open(dir, id, segmentSize);
+    segments.put(id, next);
+    if (previous != null && fsync != Fsync.NONE) {
+      // group commits only force the active segment
+      previous.force();
+    }
+    active = next;
+  }
+
+  /**
+   * Wait until a write to the given segment is durable, as the fsync policy asks.
+   */
+  private void awaitDurable(Segment segment) {
+    if (fsync == Fsync.ALWAYS) {
+      segment.force();
+    } else if (fsync == Fsync.GROUP) {
+      long sequence;
+      synchronized (appendLock) {
+        sequence = appended;
+      }
+      synchronized (durableLock) {
+        while (durable < sequence && !closed) {
+          try {
+            durableLock.wait();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Force the active segment, making every write so far durable.
+   */
+  private void groupCommit() {
+    long sequence;
+    Segment segment;
+    synchronized (appendLock) {
+      sequence = appended;
+      segment = active;
+    }
+    synchronized (durableLock) {
+      if (sequence <= durable) {
+        return;
+      }
+    }
+    segment.force();
+    synchronized (durableLock) {
+      durable = Math.max(durable, sequence);
+      durableLock.notifyAll();
+    }
+  }
+
+  /**
+   * Read the entry at a place of a segment.
+   *
+   * @param verify Whether to check the length and checksum, for a segment which may have been cut short.
+   * @return False if there is no entry there.
+   */
+  private static boolean readEntry(Segment segment, int position, Entry entry, boolean verify) {
+    ByteBuffer view = segment.view();
+    if (position + Segment.ENTRY_HEADER_SIZE > view.capacity()) {
+      return false;
+    }
+    int length = view.getInt(position);
+    if (length <= 0) {
+      return false;
+    }
+    int start = position + Segment.ENTRY_HEADER_SIZE;
+    if (verify) {
+      if (length > view.capacity() - start) {
+        return false;
+      }
+      ByteBuffer body = view.duplicate();
+      body.position(start).limit(start + length);
+      CRC32 checksum = new CRC32();
+      checksum.update(body);
+      if ((int) checksum.getValue() != view.getInt(position + 4)) {
+        return false;
+      }
+    }
+    view.position(start);
+    entry.type = view.get();
+    entry.table = readString(view);
+    entry.key = readString(view);
+    int recordLength = start + length - view.position();
+    entry.location = new Location(segment, view.position(), recordLength, Segment.ENTRY_HEADER_SIZE + length);
+    return true;
+  }
+
+  private static String readString(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getShort() & 0xffff];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Compact the segments, other than the active one, whose live entries are below the threshold.
+   *
+   * @return The number of segments compacted.
+   */
+  int compact() throws IOException {
+    int compacted = 0;
+    for (Segment segment : segments.values()) {
+      if (closed) {
+        break;
+      }
+      if (segment != active && segment.getLiveBytes() < compactionThreshold * segment.getPosition()) {
+        compact(segment);
+        compacted++;
+      }
+    }
+    return compacted;
+  }
+
+  private void compact(Segment segment) throws IOException {
+    Entry entry = new Entry();
+    int position = 0;
+    while (position < segment.getPosition() && readEntry(segment, position, entry, false)) {
+      ConcurrentSkipListMap<String, Location> index = index(entry.table);
+      ReentrantLock lock = stripe(entry.table, entry.key);
+      lock.lock();
+      try {
+        ConcurrentMap<String, Location> deletes = tombstones(entry.table);
+        Location current = index.get(entry.key);
+        Location tombstone = deletes.get(entry.key);
+        if (entry.type == Segment.PUT) {
+          if (isAt(current, entry)) {
+            Location location = append(Segment.PUT, entry.table, entry.key, current.read());
+            location.hidden = current.hidden;
+            index.put(entry.key, location);
+            replaced(current, location);
+          } else {
+            // a put hidden by a later entry, which hides one less once this segment is gone
+            Location latest = current != null ? current : tombstone;
+            if (latest != null && latest.hidden > 0) {
+              latest.hidden--;
+            }
+            if (current == null && tombstone != null && tombstone.hidden == 0) {
+              deletes.remove(entry.key);
+              replaced(tombstone, null);
+            }
+          }
+        } else if (isAt(tombstone, entry)) {
+          Location location = append(Segment.DELETE, entry.table, entry.key, new byte[0]);
+          location.hidden = tombstone.hidden;
+          deletes.put(entry.key, location);
+          replaced(tombstone, location);
+        }
+      } finally {
+        lock.unlock();
+      }
+      position += entry.location.size;
+    }
+    // the copies must be on the disk before the originals go
+    if (fsync != Fsync.NONE) {
+      groupCommit();
+    }
+    segments.remove(segment.getId());
+    if (!segment.getFile().delete()) {
+      System.err.println("mmapkv: could not delete " + segment.getFile());
+    }
+  }
+
+  private static boolean isAt(Location location, Entry entry) {
+    return location != null && location.segment == entry.location.segment
+        && location.offset == entry.location.offset;
+  }
+
+  /**
+   * @return The number of segments.
+   */
+  int getSegmentCount() {
+    return segments.size();
+  }
+}
@@ -0,0 +1,225 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.db.mmapkv;
+
+import com.yahoo.ycsb.ByteIterator;
+import com.yahoo.ycsb.DB;
+import com.yahoo.ycsb.DBException;
+import com.yahoo.ycsb.RecordCodec;
+import com.yahoo.ycsb.Status;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+
+/**
+ * A local key-value store in memory-mapped files, to test the storage side of a workload without a database server.
+ * <p>
+ * Records go to an append-only log of segment files, with a sorted index of each table in memory, see
+ * {@link LogStore}. All the client threads of a run share the store of a directory; it is opened when the first DB
+ * instance is initialized, replaying the segments already there, and closed when the last one is cleaned up.
+ * </p>
+ * Properties:
+ * <UL>
+ * <LI><b>mmapkv.dir</b>: the directory of the segment files (required)
+ * <LI><b>mmapkv.clear</b>: whether to delete the segments already there first, such as for a load (default: false)
+ * <LI><b>mmapkv.segmentsize</b>: the size of a segment file, in bytes (default: 64 MB)
+ * <LI><b>mmapkv.fsync</b>: when a write is made durable: none, leaving it to the operating system; group, at the
+ * next group commit; always, before each write returns (default: group)
+ * <LI><b>mmapkv.fsync.interval</b>: the milliseconds between group commits (default: 10)
+ * <LI><b>mmapkv.compaction.threshold</b>: the share of a segment still live under which it is compacted
+ * (default: 0.5)
+ * <LI><b>mmapkv.compaction.interval</b>: the milliseconds between looks for segments to compact, 0 to never compact
+ * (default: 1000)
+ * </UL>
+ */
+public class MmapKVClient extends DB {
+  public static final String DIR_PROPERTY = "mmapkv.dir";
+  public static final String CLEAR_PROPERTY = "mmapkv.clear";
+  public static final String SEGMENT_SIZE_PROPERTY = "mmapkv.segmentsize";
+  public static final String SEGMENT_SIZE_PROPERTY_DEFAULT = Integer.toString(64 * 1024 * 1024);
+  public static final String FSYNC_PROPERTY = "mmapkv.fsync";
+  public static final String FSYNC_PROPERTY_DEFAULT = "group";
+  public static final String FSYNC_INTERVAL_PROPERTY = "mmapkv.fsync.interval";
+  public static final String FSYNC_INTERVAL_PROPERTY_DEFAULT = "10";
+  public static final String COMPACTION_THRESHOLD_PROPERTY = "mmapkv.compaction.threshold";
+  public static final String COMPACTION_THRESHOLD_PROPERTY_DEFAULT = "0.5";
+  public static final String COMPACTION_INTERVAL_PROPERTY = "mmapkv.compaction.interval";
+  public static final String COMPACTION_INTERVAL_PROPERTY_DEFAULT = "1000";
+
+  /** Guards the stores and their users. */
+  private static final Object MUTEX = new Object();
+  private static final Map<File, LogStore> STORES = new HashMap<>();
+  private static final Map<File, Integer> USERS = new HashMap<>();
+
+  private File dir;
+  private LogStore store;
+
+  @Override
+  public void init() throws DBException {
+    Properties props = getProperties();
+    String path = props.getProperty(DIR_PROPERTY);
+    if (path == null) {
+      throw new DBException(DIR_PROPERTY + " must be set");
+    }
+    try {
+      dir = new File(path).getCanonicalFile();
+    } catch (IOException e) {
+      throw new DBException("Could not resolve " + path, e);
+    }
+    synchronized (MUTEX) {
+      store = STORES.get(dir);
+      if (store == null) {
+        store = openStore(dir, props);
+        STORES.put(dir, store);
+        USERS.put(dir, 0);
+      }
+      USERS.put(dir, USERS.get(dir) + 1);
+    }
+  }
+
+  private static LogStore openStore(File dir, Properties props) throws DBException {
+    LogStore.Fsync fsync;
+    String policy = props.getProperty(FSYNC_PROPERTY, FSYNC_PROPERTY_DEFAULT);
+    try {
+      fsync = LogStore.Fsync.valueOf(policy.toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      throw new DBException("Unknown " + FSYNC_PROPERTY + " '" + policy + "', expected none, group or always");
+    }
+    int segmentSize = Integer.parseInt(props.getProperty(SEGMENT_SIZE_PROPERTY, SEGMENT_SIZE_PROPERTY_DEFAULT));
+    long fsyncInterval = Long.parseLong(props.getProperty(FSYNC_INTERVAL_PROPERTY, FSYNC_INTERVAL_PROPERTY_DEFAULT));
+    double threshold = Double.parseDouble(props.getProperty(COMPACTION_THRESHOLD_PROPERTY,
+        COMPACTION_THRESHOLD_PROPERTY_DEFAULT));
+    long compactionInterval = Long.parseLong(props.getProperty(COMPACTION_INTERVAL_PROPERTY,
+        COMPACTION_INTERVAL_PROPERTY_DEFAULT));
+    if (segmentSize < 4096) {
+      throw new DBException(SEGMENT_SIZE_PROPERTY + " must be at least 4096 bytes");
+    }
+    if (fsyncInterval < 1 || compactionInterval < 0 || threshold < 0 || threshold > 1) {
+      throw new DBException("Invalid " + FSYNC_INTERVAL_PROPERTY + ", " + COMPACTION_INTERVAL_PROPERTY + " or "
+          + COMPACTION_THRESHOLD_PROPERTY);
+    }
+
+    if (Boolean.parseBoolean(props.getProperty(CLEAR_PROPERTY, "false"))) {
+      File[] files = dir.listFiles();
+      if (files != null) {
+        for (File file : files) {
+          if (Segment.parseId(file.getName()) >= 0 && !file.delete()) {
+            throw new DBException("Could not delete " + file);
+          }
+        }
+      }
+    }
+    try {
+      return LogStore.open(dir, segmentSize, fsync, fsyncInterval, threshold, compactionInterval);
+    } catch (IOException e) {
+      throw new DBException("Could not open the store in " + dir, e);
+    }
+  }
+
+  @Override
+  public void cleanup() throws DBException {
+    synchronized (MUTEX) {
+      int users = USERS.get(dir) - 1;
+      if (users == 0) {
+        STORES.remove(dir).close();
+        USERS.remove(dir);
+      } else {
+        USERS.put(dir, users);
+      }
+    }
+  }
+
+  /**
+   * @return The store this instance uses.
+   */
+  LogStore getStore() {
+    return store;
+  }
+
+  @Override
+  public Status read(String table, String key, Set<String> fields, Map<String, ByteIterator> result) {
+    byte[] record = store.get(table, key);
+    if (record == null) {
+      return Status.NOT_FOUND;
+    }
+    RecordCodec.decode(record, fields, result);
+    return Status.OK;
+  }
+
+  @Override
+  public Status scan(String table, String startkey, int recordcount, Set<String> fields,
+                     Vector<HashMap<String, ByteIterator>> result) {
+    for (byte[] record : store.scan(table, startkey, recordcount)) {
+      HashMap<String, ByteIterator> values = new HashMap<>();
+      RecordCodec.decode(record, fields, values);
+      result.add(values);
+    }
+    return Status.OK;
+  }
+
+  @Override
+  public Status update(String table, String key, Map<String, ByteIterator> values) {
+    final List<byte[]> fields = RecordCodec.toBytes(values);
+    try {
+      boolean found = store.put(table, key, new LogStore.Change() {
+        @Override
+        public byte[] apply(byte[] record) {
+          return record == null ? null : RecordCodec.merge(record, fields);
+        }
+      });
+      return found ? Status.OK : Status.NOT_FOUND;
+    } catch (IOException e) {
+      System.err.println("mmapkv: could not update " + key + ": " + e);
+      return Status.ERROR;
+    }
+  }
+
+  @Override
+  public Status insert(String table, String key, Map<String, ByteIterator> values) {
+    final byte[] record = RecordCodec.merge(null, RecordCodec.toBytes(values));
+    try {
+      store.put(table, key, new LogStore.Change() {
+        @Override
+        public byte[] apply(byte[] old) {
+          return record;
+        }
+      });
+      return Status.OK;
+    } catch (IOException e) {
+      System.err.println("mmapkv: could not insert " + key + ": " + e);
+      return Status.ERROR;
+    }
+  }
+
+  @Override
+  public Status delete(String table, String key) {
+    try {
+      return store.delete(table, key) ? Status.OK : Status.NOT_FOUND;
+    } catch (IOException e) {
+      System.err.println("mmapkv: could not delete " + key + ": " + e);
+      return Status.ERROR;
+    }
+  }
+}
@@ -0,0 +1,165 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.db.mmapkv;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A segment of the log: a file of a fixed size, memory-mapped, filled with entries from the start.
+ * <p>
+ * An entry is laid out as follows, all numbers big-endian:
+ * <pre>
+ *   int    length      of the rest of the entry
+ *   int    checksum    CRC32 of the rest of the entry
+ *   byte   type        {@link #PUT} or {@link #DELETE}
+ *   short  length, then the UTF-8 bytes of the table
+ *   short  length, then the UTF-8 bytes of the key
+ *   bytes  record      the fields of the record, for a put
+ * </pre>
+ * The file starts out zero-filled, so a zero length marks the end of the entries.
+ * </p>
+ */
+final class Segment {
+  static final byte PUT = 1;
+  static final byte DELETE = 2;
+
+  /** The length and checksum in front of every entry. */
+  static final int ENTRY_HEADER_SIZE = 8;
+
+  private final long id;
+  private final File file;
+  private final MappedByteBuffer buffer;
+
+  /** Where the next entry goes; only changed by the thread holding the append lock of the store. */
+  private volatile int position;
+
+  /** The bytes of the entries the index still points to. */
+  private final AtomicLong liveBytes = new AtomicLong();
+
+  private Segment(long id, File file, MappedByteBuffer buffer) {
+    this.id = id;
+    this.file = file;
+    this.buffer = buffer;
+  }
+
+  /**
+   * Map the segment file, creating it with the given size if it does not exist yet.
+   */
+  static Segment open(File dir, long id, int size) throws IOException {
+    File file = new File(dir, fileName(id));
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+         FileChannel channel = raf.getChannel()) {
+      long length = Math.max(channel.size(), size);
+      return new Segment(id, file, channel.map(FileChannel.MapMode.READ_WRITE, 0, length));
+    }
+  }
+
+  static String fileName(long id) {
+    return String.format("segment-%012d.log", id);
+  }
+
+  /**
+   * @return The id of the segment of the given file name, or -1 if it is not a segment.
+   */
+  static long parseId(String fileName) {
+    if (!fileName.matches("segment-\\d{12}\\.log")) {
+      return -1;
+    }
+    return Long.parseLong(fileName.substring(8, 20));
+  }
+
+  long getId() {
+    return id;
+  }
+
+  File getFile() {
+    return file;
+  }
+
+  int getPosition() {
+    return position;
+  }
+
+  void setPosition(int newPosition) {
+    position = newPosition;
+  }
+
+  int getCapacity() {
+    return buffer.capacity();
+  }
+
+  /**
+   * @return Whether an entry of the given size still fits.
+   */
+  boolean fits(int entrySize) {
+    return position + entrySize <= buffer.capacity();
+  }
+
+  /**
+   * Append an entry, which must fit. Only called by the thread holding the append lock of the store.
+   *
+   * @return The offset of the entry.
+   */
+  int append(ByteBuffer entry) {
+    int offset = position;
+    ByteBuffer target = buffer.duplicate();
+    target.position(offset);
+    target.put(entry);
+    position = target.position();
+    return offset;
+  }
+
+  /**
+   * @return The bytes at the given place, such as the record of an entry.
+   */
+  byte[] read(int offset, int length) {
+    byte[] bytes = new byte[length];
+    ByteBuffer source = buffer.duplicate();
+    source.position(offset);
+    source.get(bytes);
+    return bytes;
+  }
+
+  /**
+   * @return A view of the whole segment, to go over its entries.
+   */
+  ByteBuffer view() {
+    return buffer.duplicate();
+  }
+
+  /**
+   * Write the changes to the file out to the disk.
+   */
+  void force() {
+    buffer.force();
+  }
+
+  void addLiveBytes(long bytes) {
+    liveBytes.addAndGet(bytes);
+  }
+
+  long getLiveBytes() {
+    return liveBytes.get();
+  }
+}
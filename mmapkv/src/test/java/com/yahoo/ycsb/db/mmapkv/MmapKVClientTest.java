@@ -0,0 +1,199 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.db.mmapkv;
+
+import com.yahoo.ycsb.ByteIterator;
+import com.yahoo.ycsb.DBException;
+import com.yahoo.ycsb.Status;
+import com.yahoo.ycsb.StringByteIterator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Vector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MmapKVClientTest {
+  private static final String TABLE = "usertable";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private Properties props;
+  private MmapKVClient client;
+
+  @Before
+  public void setUp() throws DBException {
+    props = new Properties();
+    props.setProperty(MmapKVClient.DIR_PROPERTY, folder.getRoot().getPath());
+    props.setProperty(MmapKVClient.SEGMENT_SIZE_PROPERTY, "4096");
+    props.setProperty(MmapKVClient.COMPACTION_INTERVAL_PROPERTY, "0");
+    client = open();
+  }
+
+  @After
+  public void tearDown() throws DBException {
+    client.cleanup();
+  }
+
+  private MmapKVClient open() throws DBException {
+    MmapKVClient db = new MmapKVClient();
+    db.setProperties(props);
+    db.init();
+    return db;
+  }
+
+  private void reopen() throws DBException {
+    client.cleanup();
+    client = open();
+  }
+
+  private static Map<String, ByteIterator> values(String... namesAndValues) {
+    Map<String, String> values = new HashMap<>();
+    for (int i = 0; i < namesAndValues.length; i += 2) {
+      values.put(namesAndValues[i], namesAndValues[i + 1]);
+    }
+    return StringByteIterator.getByteIteratorMap(values);
+  }
+
+  private Map<String, String> read(String key) {
+    Map<String, ByteIterator> result = new HashMap<>();
+    assertEquals(Status.OK, client.read(TABLE, key, null, result));
+    return StringByteIterator.getStringMap(result);
+  }
+
+  @Test
+  public void insertReadUpdateDelete() {
+    assertEquals(Status.OK, client.insert(TABLE, "user1", values("field0", "a", "field1", "b")));
+    assertEquals(Status.OK, client.update(TABLE, "user1", values("field1", "c", "field2", "d")));
+    Map<String, String> record = read("user1");
+    assertEquals(3, record.size());
+    assertEquals("a", record.get("field0"));
+    assertEquals("c", record.get("field1"));
+    assertEquals("d", record.get("field2"));
+
+    Map<String, ByteIterator> result = new HashMap<>();
+    assertEquals(Status.OK, client.read(TABLE, "user1", Collections.singleton("field2"), result));
+    assertEquals(Collections.singleton("field2"), result.keySet());
+
+    assertEquals(Status.OK, client.delete(TABLE, "user1"));
+    assertEquals(Status.NOT_FOUND, client.read(TABLE, "user1", null, new HashMap<String, ByteIterator>()));
+    assertEquals(Status.NOT_FOUND, client.update(TABLE, "user1", values("field0", "e")));
+    assertEquals(Status.NOT_FOUND, client.delete(TABLE, "user1"));
+  }
+
+  @Test
+  public void scanIsInKeyOrder() {
+    for (int i = 9; i >= 0; i--) {
+      client.insert(TABLE, "user" + i, values("field0", Integer.toString(i)));
+    }
+    Vector<HashMap<String, ByteIterator>> result = new Vector<>();
+    assertEquals(Status.OK, client.scan(TABLE, "user3", 4, null, result));
+    assertEquals(4, result.size());
+    for (int i = 0; i < 4; i++) {
+      assertEquals(Integer.toString(3 + i), result.get(i).get("field0").toString());
+    }
+  }
+
+  @Test
+  public void recordsSurviveAReopen() throws DBException {
+    client.insert(TABLE, "user1", values("field0", "a"));
+    client.insert(TABLE, "user2", values("field0", "b"));
+    client.update(TABLE, "user1", values("field0", "c"));
+    client.delete(TABLE, "user2");
+    reopen();
+    assertEquals("c", read("user1").get("field0"));
+    assertEquals(Status.NOT_FOUND, client.read(TABLE, "user2", null, new HashMap<String, ByteIterator>()));
+
+    // writes after a reopen go after the recovered entries
+    client.insert(TABLE, "user3", values("field0", "d"));
+    reopen();
+    assertEquals("c", read("user1").get("field0"));
+    assertEquals("d", read("user3").get("field0"));
+  }
+
+  @Test
+  public void compactionReclaimsOverwrittenSegments() throws Exception {
+    String value = new String(new char[200]).replace('\0', 'x');
+    for (int round = 0; round < 20; round++) {
+      for (int i = 0; i < 10; i++) {
+        client.insert(TABLE, "user" + i, values("field0", value + round));
+      }
+    }
+    client.delete(TABLE, "user9");
+    LogStore store = client.getStore();
+    int before = store.getSegmentCount();
+    assertTrue(store.compact() > 0);
+    assertTrue(store.getSegmentCount() < before);
+
+    reopen();
+    for (int i = 0; i < 9; i++) {
+      assertEquals(value + 19, read("user" + i).get("field0"));
+    }
+    assertEquals(Status.NOT_FOUND, client.read(TABLE, "user9", null, new HashMap<String, ByteIterator>()));
+  }
+
+  @Test
+  public void deletesGoOnceThePutsTheyHideAreCompacted() throws Exception {
+    String value = new String(new char[200]).replace('\0', 'x');
+    // a segment which stays live, older than every delete
+    for (int i = 0; i < 20; i++) {
+      client.insert(TABLE, "kept" + i, values("field0", value));
+    }
+    for (int round = 0; round < 5; round++) {
+      for (int i = 0; i < 10; i++) {
+        client.insert(TABLE, "user" + i, values("field0", value + round));
+      }
+    }
+    for (int i = 0; i < 10; i++) {
+      client.delete(TABLE, "user" + i);
+    }
+    // roll past the segment of the deletes
+    for (int round = 0; round < 40; round++) {
+      client.insert(TABLE, "other", values("field0", value + round));
+    }
+    LogStore store = client.getStore();
+    for (int pass = 0; pass < 10 && store.compact() > 0; pass++) {
+      client.insert(TABLE, "other", values("field0", value));
+    }
+    assertEquals(0, store.compact());
+
+    for (File file : folder.getRoot().listFiles()) {
+      String contents = new String(Files.readAllBytes(file.toPath()), StandardCharsets.ISO_8859_1);
+      assertFalse(file.getName(), contents.matches("(?s).*user\\d.*"));
+    }
+    reopen();
+    for (int i = 0; i < 10; i++) {
+      assertEquals(Status.NOT_FOUND, client.read(TABLE, "user" + i, null, new HashMap<String, ByteIterator>()));
+    }
+    assertEquals(value, read("other").get("field0"));
+    assertEquals(value, read("kept0").get("field0"));
+  }
+}
@@ -22,8 +22,8 @@ import java.util.HashMap;
 import java.util.Properties;
 import java.util.Set;
 import java.util.Vector;
-import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.net.*;
@@ -343,9 +343,9 @@ public class S3Client extends DB {
     int fieldCount = values.size(); //number of fields to concatenate
     // getting the first field in the values
     Object keyToSearch = values.keySet().toArray()[0];
-    // getting the content of just one field
-    byte[] sourceArray = values.get(keyToSearch).toArray();
-    int sizeArray = sourceArray.length; //size of each array
+    // getting the content of just one field, without copying it when it is backed by an array
+    ByteBuffer source = values.get(keyToSearch).toByteBuffer();
+    int sizeArray = source.remaining(); //size of each array
     if (updateMarker){
       totalSize = sizeArray*fieldCount;
     } else {
@@ -361,13 +361,8 @@ public class S3Client extends DB {
         return Status.ERROR;
       }
     }
-    byte[] destinationArray = new byte[totalSize];
-    int offset = 0;
-    for (int i = 0; i < fieldCount; i++) {
-      System.arraycopy(sourceArray, 0, destinationArray, offset, sizeArray);
-      offset += sizeArray;
-    }
-    try (InputStream input = new ByteArrayInputStream(destinationArray)) {
+    // the object is the field repeated fieldCount times, streamed rather than concatenated into a new array
+    try (InputStream input = new RepeatedBufferInputStream(source, (long) sizeArray * fieldCount, totalSize)) {
       ObjectMetadata metadata = new ObjectMetadata();
       metadata.setContentLength(totalSize);
       PutObjectRequest putObjectRequest = null;
@@ -411,6 +406,78 @@ public class S3Client extends DB {
     return Status.OK;
   }
 
+  /**
+   * Stream of a buffer repeated up to a length, then of zeros up to the total length. Supports mark and reset,
+   * so the S3 client can retry an upload without buffering it.
+   */
+  private static final class RepeatedBufferInputStream extends InputStream {
+    private final ByteBuffer source;
+    private final long repeatedLength;
+    private final long length;
+    private long pos = 0;
+    private long mark = 0;
+
+    RepeatedBufferInputStream(ByteBuffer source, long repeatedLength, long length) {
+      this.source = source.slice();
+      this.repeatedLength = source.hasRemaining() ? Math.min(repeatedLength, length) : 0;
+      this.length = length;
+    }
+
+    @Override
+    public int read() {
+      byte[] one = new byte[1];
+      return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0) {
+        return 0;
+      }
+      if (pos >= length) {
+        return -1;
+      }
+      int n = (int) Math.min(len, length - pos);
+      int done = 0;
+      while (done < n) {
+        int count;
+        if (pos < repeatedLength) {
+          int start = (int) (pos % source.limit());
+          count = (int) Math.min(Math.min(n - done, source.limit() - start), repeatedLength - pos);
+          ByteBuffer chunk = source.duplicate();
+          chunk.position(start);
+          chunk.get(b, off + done, count);
+        } else {
+          count = n - done;
+          Arrays.fill(b, off + done, off + n, (byte) 0);
+        }
+        done += count;
+        pos += count;
+      }
+      return n;
+    }
+
+    @Override
+    public int available() {
+      return (int) Math.min(Integer.MAX_VALUE, length - pos);
+    }
+
+    @Override
+    public boolean markSupported() {
+      return true;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+      mark = pos;
+    }
+
+    @Override
+    public synchronized void reset() {
+      pos = mark;
+    }
+  }
+
   /**
   * Download an object from S3.
   *
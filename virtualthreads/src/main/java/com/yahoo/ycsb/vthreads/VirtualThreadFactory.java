@@ -0,0 +1,36 @@
+/**
+ * Copyright (c) 2018 YCSB contributors. All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.vthreads;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Makes the client threads virtual threads, set with <b>threadfactory</b>=com.yahoo.ycsb.vthreads.VirtualThreadFactory.
+ * <p>
+ * Client threads mostly wait, on the target throughput, a think time or a DB instance of a
+ * {@link com.yahoo.ycsb.SessionPool}, so a few carrier threads can run tens of thousands of them.
+ * </p>
+ */
+public class VirtualThreadFactory implements ThreadFactory {
+  private final ThreadFactory factory = Thread.ofVirtual().name("ClientThread-", 0).factory();
+
+  @Override
+  public Thread newThread(Runnable r) {
+    return factory.newThread(r);
+  }
+}